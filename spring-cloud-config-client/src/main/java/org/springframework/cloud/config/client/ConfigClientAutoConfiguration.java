@@ -87,4 +87,21 @@ public class ConfigClientAutoConfiguration {
 		}
 	}
 
+	@Configuration
+	@ConditionalOnClass(ContextRefresher.class)
+	@ConditionalOnBean(ContextRefresher.class)
+	@ConditionalOnProperty(value = "spring.cloud.config.watch.events.enabled")
+	protected static class ConfigClientEventWatchConfiguration {
+
+		@Bean
+		public ConfigClientEventWatch configClientEventWatch(
+				ContextRefresher contextRefresher, ConfigClientProperties properties,
+				Environment environment) {
+			return new ConfigClientEventWatch(contextRefresher, properties,
+					environment.getProperty(
+							"spring.cloud.config.watch.events.reconnect-delay",
+							Long.class, 5000L));
+		}
+	}
+
 }
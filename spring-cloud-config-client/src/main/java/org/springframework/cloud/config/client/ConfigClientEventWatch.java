@@ -0,0 +1,254 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.client;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.cloud.config.client.ConfigClientProperties.Credentials;
+import org.springframework.cloud.context.refresh.ContextRefresher;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.util.Base64Utils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestTemplate;
+
+import static org.springframework.cloud.config.client.ConfigClientProperties.AUTHORIZATION;
+import static org.springframework.cloud.config.client.ConfigClientProperties.TOKEN_HEADER;
+
+/**
+ * Watches the environment of the application through the stream of change events of the
+ * config server (<code>/{name}/{profile}/{label}</code> as <code>text/event-stream</code>),
+ * and refreshes the context only when the server announces a version other than the one
+ * the application has. The stream is opened again when the server closes it, and after a
+ * delay when the server cannot be reached.
+ *
+ * 通过配置服务器的更改事件流（以<code>text/event-stream</code>请求<code>/{name}/{profile}/{label}</code>）监视应用程序的环境，
+ * 并且仅当服务器宣布的版本与应用程序所具有的版本不同时才刷新上下文。服务器关闭流时会再次打开流，无法访问服务器时会在延迟后再次打开。
+ */
+public class ConfigClientEventWatch implements Closeable, EnvironmentAware {
+
+	static final String CHANGE_EVENT = "change";
+
+	private static Log log = LogFactory.getLog(ConfigClientEventWatch.class);
+
+	private final AtomicBoolean running = new AtomicBoolean(false);
+
+	private final ContextRefresher refresher;
+
+	private final ConfigClientProperties properties;
+
+	private final long reconnectDelay;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private Environment environment;
+
+	private RestTemplate restTemplate;
+
+	private Thread thread;
+
+	/**
+	 * @param refresher the refresher of the context
+	 * @param properties the properties of the config client
+	 * @param reconnectDelay the time (in milliseconds) to wait before opening the stream
+	 * again when the server cannot be reached
+	 */
+	public ConfigClientEventWatch(ContextRefresher refresher,
+			ConfigClientProperties properties, long reconnectDelay) {
+		this.refresher = refresher;
+		this.properties = properties;
+		this.reconnectDelay = reconnectDelay;
+	}
+
+	@Override
+	public void setEnvironment(Environment environment) {
+		this.environment = environment;
+	}
+
+	public void setRestTemplate(RestTemplate restTemplate) {
+		this.restTemplate = restTemplate;
+	}
+
+	@PostConstruct
+	public void start() {
+		if (this.running.compareAndSet(false, true)) {
+			this.thread = new Thread(this::watch, "config-client-watch");
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+	}
+
+	@Override
+	public void close() {
+		if (this.running.compareAndSet(true, false) && this.thread != null) {
+			this.thread.interrupt();
+		}
+	}
+
+	private void watch() {
+		while (this.running.get()) {
+			ConfigClientProperties properties = this.properties
+					.override(this.environment);
+			boolean connected = false;
+			for (int i = 0; i < properties.getUri().length && !connected; i++) {
+				try {
+					stream(properties, properties.getCredentials(i));
+					connected = true;
+				}
+				catch (Exception e) {
+					if (this.running.get()) {
+						log.debug("Cannot watch config server at "
+								+ properties.getCredentials(i).getUri(), e);
+					}
+				}
+			}
+			if (!connected) {
+				try {
+					Thread.sleep(this.reconnectDelay);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	private void stream(ConfigClientProperties properties, Credentials credentials) {
+		String path = "/{name}/{profile}";
+		String label = properties.getLabel();
+		Object[] args = new String[] { properties.getName(), properties.getProfile() };
+		if (StringUtils.hasText(label)) {
+			// Same label as the environment when there is a list
+			label = StringUtils.commaDelimitedListToStringArray(label)[0].trim()
+					.replace("/", "(_)");
+			args = new String[] { properties.getName(), properties.getProfile(), label };
+			path = path + "/{label}";
+		}
+		String version = this.environment.getProperty("config.client.version");
+		if (StringUtils.hasText(version)) {
+			path = path + "?version={version}";
+			Object[] withVersion = new String[args.length + 1];
+			System.arraycopy(args, 0, withVersion, 0, args.length);
+			withVersion[args.length] = version;
+			args = withVersion;
+		}
+		HttpHeaders headers = getHeaders(properties, credentials);
+		getRestTemplate(properties).execute(credentials.getUri() + path, HttpMethod.GET,
+				request -> request.getHeaders().putAll(headers), response -> {
+					MediaType type = response.getHeaders().getContentType();
+					if (type == null || !MediaType.TEXT_EVENT_STREAM.isCompatibleWith(type)) {
+						// Not a server that streams its changes (try again later)
+						throw new IllegalStateException(
+								"Config server does not stream change events: " + type);
+					}
+					read(response.getBody());
+					return null;
+				}, args);
+	}
+
+	/* for testing */ void read(InputStream body) throws IOException {
+		BufferedReader reader = new BufferedReader(
+				new InputStreamReader(body, StandardCharsets.UTF_8));
+		String event = null;
+		StringBuilder data = new StringBuilder();
+		String line;
+		while (!Thread.currentThread().isInterrupted()
+				&& (line = reader.readLine()) != null) {
+			if (line.isEmpty()) {
+				if (CHANGE_EVENT.equals(event) && data.length() > 0) {
+					changed(data.toString());
+				}
+				event = null;
+				data.setLength(0);
+			}
+			else if (line.startsWith("event:")) {
+				event = line.substring("event:".length()).trim();
+			}
+			else if (line.startsWith("data:")) {
+				if (data.length() > 0) {
+					data.append("\n");
+				}
+				data.append(line.substring("data:".length()));
+			}
+		}
+	}
+
+	private void changed(String data) throws IOException {
+		Map<?, ?> event = this.objectMapper.readValue(data, Map.class);
+		Object version = event.get("version");
+		String current = this.environment.getProperty("config.client.version");
+		// only refresh if our own environment has changed
+		if (version != null && !version.equals(current)) {
+			log.info("Config server announced version " + version + " (was " + current
+					+ "), refreshing");
+			this.refresher.refresh();
+		}
+	}
+
+	private HttpHeaders getHeaders(ConfigClientProperties properties,
+			Credentials credentials) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(Collections.singletonList(MediaType.TEXT_EVENT_STREAM));
+		Map<String, String> extra = new HashMap<>(properties.getHeaders());
+		String authorization = extra.remove(AUTHORIZATION);
+		if (credentials.getPassword() != null) {
+			byte[] token = Base64Utils.encode((credentials.getUsername() + ":"
+					+ credentials.getPassword()).getBytes());
+			headers.add("Authorization", "Basic " + new String(token));
+		}
+		else if (authorization != null) {
+			headers.add("Authorization", authorization);
+		}
+		if (StringUtils.hasText(properties.getToken())) {
+			headers.add(TOKEN_HEADER, properties.getToken());
+		}
+		for (Map.Entry<String, String> header : extra.entrySet()) {
+			headers.add(header.getKey(), header.getValue());
+		}
+		return headers;
+	}
+
+	private RestTemplate getRestTemplate(ConfigClientProperties properties) {
+		if (this.restTemplate == null) {
+			SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+			requestFactory.setReadTimeout(properties.getRequestReadTimeout());
+			this.restTemplate = new RestTemplate(requestFactory);
+		}
+		return this.restTemplate;
+	}
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.environment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The difference between two versions of an {@link Environment}: for every property
+ * source of the newer one (in order) the keys that were added, changed and removed.
+ * Property sources that are not listed were removed as a whole. If the older version is
+ * not known the delta carries the full {@link #getEnvironment() environment} instead.
+ *
+ * 一个{@link Environment}两个版本之间的差异：对于较新版本的每个属性源（按顺序），列出添加、更改和删除的键。
+ * 未列出的属性源已被整体删除。如果较旧的版本未知，则差异改为携带完整的{@link #getEnvironment() 环境}。
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class EnvironmentDelta {
+
+	private final String name;
+
+	private final String[] profiles;
+
+	private final String label;
+
+	private final String version;
+
+	private final String state;
+
+	private final String fromVersion;
+
+	private final List<PropertySourceDelta> propertySources;
+
+	private final Environment environment;
+
+	@JsonCreator
+	public EnvironmentDelta(@JsonProperty("name") String name,
+			@JsonProperty("profiles") String[] profiles,
+			@JsonProperty("label") String label,
+			@JsonProperty("version") String version,
+			@JsonProperty("state") String state,
+			@JsonProperty("fromVersion") String fromVersion,
+			@JsonProperty("propertySources") List<PropertySourceDelta> propertySources,
+			@JsonProperty("environment") Environment environment) {
+		this.name = name;
+		this.profiles = profiles;
+		this.label = label;
+		this.version = version;
+		this.state = state;
+		this.fromVersion = fromVersion;
+		this.propertySources = propertySources;
+		this.environment = environment;
+	}
+
+	/**
+	 * @param from the version the client has
+	 * @param environment the current version
+	 * @return a delta carrying the whole current environment
+	 */
+	public static EnvironmentDelta full(String from, Environment environment) {
+		return new EnvironmentDelta(environment.getName(), environment.getProfiles(),
+				environment.getLabel(), environment.getVersion(), environment.getState(),
+				from, null, environment);
+	}
+
+	/**
+	 * @param from the version the client has
+	 * @param to the current version
+	 * @return the changes from one to the other
+	 */
+	public static EnvironmentDelta between(Environment from, Environment to) {
+		Map<String, PropertySource> previous = new HashMap<>();
+		for (PropertySource source : from.getPropertySources()) {
+			previous.putIfAbsent(source.getName(), source);
+		}
+		List<PropertySourceDelta> sources = new ArrayList<>();
+		for (PropertySource source : to.getPropertySources()) {
+			PropertySource old = previous.get(source.getName());
+			Map<?, ?> oldValues = old == null ? new HashMap<>() : old.getSource();
+			Map<String, Object> added = new LinkedHashMap<>();
+			Map<String, Object> changed = new LinkedHashMap<>();
+			List<String> removed = new ArrayList<>();
+			for (Map.Entry<?, ?> entry : source.getSource().entrySet()) {
+				String key = String.valueOf(entry.getKey());
+				if (!oldValues.containsKey(entry.getKey())) {
+					added.put(key, entry.getValue());
+				}
+				else if (!Objects.equals(oldValues.get(entry.getKey()),
+						entry.getValue())) {
+					changed.put(key, entry.getValue());
+				}
+			}
+			for (Object key : oldValues.keySet()) {
+				if (!source.getSource().containsKey(key)) {
+					removed.add(String.valueOf(key));
+				}
+			}
+			sources.add(new PropertySourceDelta(source.getName(), added, changed,
+					removed));
+		}
+		return new EnvironmentDelta(to.getName(), to.getProfiles(), to.getLabel(),
+				to.getVersion(), to.getState(), from.getVersion(), sources, null);
+	}
+
+	/**
+	 * Apply the delta to the version it was computed from.
+	 *
+	 * @param base the version the client has (not modified)
+	 * @return the current version
+	 */
+	public Environment apply(Environment base) {
+		if (this.environment != null) {
+			return this.environment;
+		}
+		Map<String, PropertySource> previous = new HashMap<>();
+		for (PropertySource source : base.getPropertySources()) {
+			previous.putIfAbsent(source.getName(), source);
+		}
+		Environment result = new Environment(this.name, this.profiles, this.label,
+				this.version, this.state);
+		for (PropertySourceDelta delta : this.propertySources) {
+			PropertySource old = previous.get(delta.getName());
+			Map<Object, Object> values = new LinkedHashMap<>();
+			if (old != null) {
+				values.putAll(old.getSource());
+			}
+			for (String key : delta.getRemoved()) {
+				values.remove(key);
+			}
+			values.putAll(delta.getChanged());
+			values.putAll(delta.getAdded());
+			result.add(new PropertySource(delta.getName(), values));
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if this delta carries the full environment
+	 */
+	@JsonIgnore
+	public boolean isFull() {
+		return this.environment != null;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public String[] getProfiles() {
+		return this.profiles;
+	}
+
+	public String getLabel() {
+		return this.label;
+	}
+
+	public String getVersion() {
+		return this.version;
+	}
+
+	public String getState() {
+		return this.state;
+	}
+
+	public String getFromVersion() {
+		return this.fromVersion;
+	}
+
+	/**
+	 * @return the changes of each property source, or null if this delta carries the
+	 * full environment
+	 */
+	public List<PropertySourceDelta> getPropertySources() {
+		return this.propertySources;
+	}
+
+	/**
+	 * @return the full environment, or null if this is a real delta
+	 */
+	public Environment getEnvironment() {
+		return this.environment;
+	}
+
+	/**
+	 * The changes of one property source.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	public static class PropertySourceDelta {
+
+		private final String name;
+
+		private final Map<String, Object> added;
+
+		private final Map<String, Object> changed;
+
+		private final List<String> removed;
+
+		@JsonCreator
+		public PropertySourceDelta(@JsonProperty("name") String name,
+				@JsonProperty("added") Map<String, Object> added,
+				@JsonProperty("changed") Map<String, Object> changed,
+				@JsonProperty("removed") List<String> removed) {
+			this.name = name;
+			this.added = added == null ? new LinkedHashMap<>() : added;
+			this.changed = changed == null ? new LinkedHashMap<>() : changed;
+			this.removed = removed == null ? new ArrayList<>() : removed;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public Map<String, Object> getAdded() {
+			return this.added;
+		}
+
+		public Map<String, Object> getChanged() {
+			return this.changed;
+		}
+
+		public List<String> getRemoved() {
+			return this.removed;
+		}
+
+	}
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.client;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.springframework.cloud.context.refresh.ContextRefresher;
+import org.springframework.mock.env.MockEnvironment;
+
+public class ConfigClientEventWatchTests {
+
+	private ContextRefresher refresher = Mockito.mock(ContextRefresher.class);
+
+	@Test
+	public void refreshOnlyWhenVersionChanged() throws Exception {
+		MockEnvironment environment = new MockEnvironment();
+		environment.setProperty("config.client.version", "v1");
+		ConfigClientEventWatch watch = new ConfigClientEventWatch(this.refresher,
+				new ConfigClientProperties(environment), 1000);
+		watch.setEnvironment(environment);
+		read(watch, ":comment\n\nevent:change\nid:v1\ndata:{\"version\":\"v1\"}\n\n");
+		Mockito.verify(this.refresher, Mockito.never()).refresh();
+		read(watch, "event:other\ndata:{\"version\":\"v2\"}\n\n"
+				+ "event:change\nid:v2\ndata:{\"name\":\"foo\",\"version\":\"v2\"}\n\n");
+		Mockito.verify(this.refresher, Mockito.times(1)).refresh();
+		watch.close();
+	}
+
+	private void read(ConfigClientEventWatch watch, String stream) throws Exception {
+		watch.read(new ByteArrayInputStream(stream.getBytes(StandardCharsets.UTF_8)));
+	}
+
+}
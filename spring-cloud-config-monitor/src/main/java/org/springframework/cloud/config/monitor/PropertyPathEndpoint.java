@@ -26,6 +26,7 @@ import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.cloud.bus.event.RefreshRemoteApplicationEvent;
+import org.springframework.cloud.config.server.environment.RepositoryChangeEvent;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.http.HttpHeaders;
@@ -88,6 +89,9 @@ public class PropertyPathEndpoint
 							.publishEvent(new RefreshRemoteApplicationEvent(this,
 									this.busId, service));
 				}
+				// Clients watching the server directly
+				this.applicationEventPublisher
+						.publishEvent(new RepositoryChangeEvent(this, services));
 				return services;
 			}
 
@@ -16,7 +16,9 @@
 package org.springframework.cloud.config.server.config;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
@@ -38,18 +40,24 @@ public class CompositeConfiguration {
 
 	private List<EnvironmentRepository> environmentRepos = new ArrayList<>();
 
+	private Map<String, EnvironmentRepository> namedEnvironmentRepos = new LinkedHashMap<>();
+
+	private ConfigServerProperties server;
+
 	@Bean
 	@Primary
 	@ConditionalOnBean(SearchPathLocator.class)
 	public SearchPathCompositeEnvironmentRepository searchPathCompositeEnvironmentRepository() {
-		return new SearchPathCompositeEnvironmentRepository(environmentRepos);
+		return configure(new SearchPathCompositeEnvironmentRepository(environmentRepos),
+				server, namedEnvironmentRepos);
 	}
 
 	@Bean
 	@Primary
 	@ConditionalOnMissingBean(SearchPathLocator.class)
 	public CompositeEnvironmentRepository compositeEnvironmentRepository() {
-		return new CompositeEnvironmentRepository(environmentRepos);
+		return configure(new CompositeEnvironmentRepository(environmentRepos), server,
+				namedEnvironmentRepos);
 	}
 
 	@Autowired
@@ -57,4 +65,45 @@ public class CompositeConfiguration {
 		this.environmentRepos = repos;
 	}
 
+	@Autowired
+	public void setNamedEnvironmentRepos(Map<String, EnvironmentRepository> repos) {
+		this.namedEnvironmentRepos = repos;
+	}
+
+	@Autowired(required = false)
+	public void setServer(ConfigServerProperties server) {
+		this.server = server;
+	}
+
+	/**
+	 * Apply the parallel settings and the policies of the repositories (by bean name).
+	 */
+	static <T extends CompositeEnvironmentRepository> T configure(T composite,
+			ConfigServerProperties server, Map<String, EnvironmentRepository> repos) {
+		if (server == null) {
+			return composite;
+		}
+		ConfigServerProperties.Parallel parallel = server.getParallel();
+		if (parallel.isEnabled()) {
+			composite.setPoolSize(parallel.getPoolSize(), parallel.getQueueCapacity());
+		}
+		composite.setDefaultPolicy(new CompositeEnvironmentRepository.Policy(
+				parallel.getTimeout(), parallel.isFailOpen()));
+		for (Map.Entry<String, ConfigServerProperties.Backend> entry : parallel
+				.getBackends().entrySet()) {
+			EnvironmentRepository repo = repos.get(entry.getKey());
+			if (repo == null) {
+				throw new IllegalStateException("No environment repository named "
+						+ entry.getKey() + " (one of " + repos.keySet() + ")");
+			}
+			ConfigServerProperties.Backend backend = entry.getValue();
+			composite.setPolicy(repo, new CompositeEnvironmentRepository.Policy(
+					backend.getTimeout() != null ? backend.getTimeout()
+							: parallel.getTimeout(),
+					backend.getFailOpen() != null ? backend.getFailOpen()
+							: parallel.isFailOpen()));
+		}
+		return composite;
+	}
+
 }
@@ -15,20 +15,45 @@
  */
 package org.springframework.cloud.config.server.config;
 
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ListableBeanFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.cloud.config.server.encryption.EncryptionController;
 import org.springframework.cloud.config.server.encryption.EnvironmentEncryptor;
+import org.springframework.cloud.config.server.environment.BatchEnvironmentController;
+import org.springframework.cloud.config.server.environment.CoalescingEnvironmentRepository;
+import org.springframework.cloud.config.server.environment.EnvironmentChangeNotifier;
 import org.springframework.cloud.config.server.environment.EnvironmentController;
+import org.springframework.cloud.config.server.environment.EnvironmentDeltaController;
 import org.springframework.cloud.config.server.environment.EnvironmentEncryptorEnvironmentRepository;
 import org.springframework.cloud.config.server.environment.EnvironmentRepository;
+import org.springframework.cloud.config.server.environment.EnvironmentWatchController;
+import org.springframework.cloud.config.server.environment.RenderedResponseCache;
 import org.springframework.cloud.config.server.resource.ResourceController;
 import org.springframework.cloud.config.server.resource.ResourceRepository;
+import org.springframework.cloud.config.server.support.OffloadingRequestMappingHandlerAdapter;
+import org.springframework.cloud.config.server.support.VirtualThreads;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
 import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -53,14 +78,53 @@ public class ConfigServerMvcConfiguration extends WebMvcConfigurerAdapter {
 		configurer.mediaType("yaml", MediaType.valueOf("text/yaml"));
 	}
 
+	/**
+	 * Shared by the controllers, but not a candidate for injection as an
+	 * {@link EnvironmentRepository} (it only wraps the real one).
+	 */
+	@Bean(autowireCandidate = false)
+	public CoalescingEnvironmentRepository coalescingEnvironmentRepository(EnvironmentRepository envRepository, ConfigServerProperties server) {
+		CoalescingEnvironmentRepository repository = new CoalescingEnvironmentRepository(envRepository);
+		repository.setEnabled(server.isCoalesceRequests());
+		return repository;
+	}
+
 	@Bean
 	public EnvironmentController environmentController(EnvironmentRepository envRepository, ConfigServerProperties server) {
 		EnvironmentController controller = new EnvironmentController(encrypted(envRepository, server), this.objectMapper);
 		controller.setStripDocumentFromYaml(server.isStripDocumentFromYaml());
 		controller.setAcceptEmpty(server.isAcceptEmpty());
+		ConfigServerProperties.ResponseCache responseCache = server.getResponseCache();
+		if (responseCache.getSize() > 0) {
+			controller.setResponseCache(new RenderedResponseCache(responseCache.getSize(),
+					responseCache.getMaxBytes(), responseCache.isGzip()));
+		}
 		return controller;
 	}
 
+	@Bean
+	public BatchEnvironmentController batchEnvironmentController(EnvironmentController environmentController) {
+		return new BatchEnvironmentController(environmentController, this.objectMapper);
+	}
+
+	@Bean
+	public EnvironmentDeltaController environmentDeltaController(EnvironmentController environmentController, ConfigServerProperties server) {
+		return new EnvironmentDeltaController(environmentController, server.getDeltaHistorySize());
+	}
+
+	@Bean
+	@ConditionalOnProperty(value = "spring.cloud.config.server.watch.enabled", matchIfMissing = true)
+	public EnvironmentChangeNotifier environmentChangeNotifier(EnvironmentController environmentController, ConfigServerProperties server) {
+		ConfigServerProperties.Watch watch = server.getWatch();
+		return new EnvironmentChangeNotifier(environmentController, watch.getTimeout(), watch.getCheckInterval());
+	}
+
+	@Bean
+	@ConditionalOnBean(EnvironmentChangeNotifier.class)
+	public EnvironmentWatchController environmentWatchController(EnvironmentChangeNotifier notifier) {
+		return new EnvironmentWatchController(notifier);
+	}
+
 	@Bean
 	@ConditionalOnBean(ResourceRepository.class)
 	public ResourceController resourceController(ResourceRepository repository, EnvironmentRepository envRepository, ConfigServerProperties server) {
@@ -71,8 +135,86 @@ public class ConfigServerMvcConfiguration extends WebMvcConfigurerAdapter {
 
 	private EnvironmentRepository encrypted(EnvironmentRepository envRepository, ConfigServerProperties server) {
 		EnvironmentEncryptorEnvironmentRepository encrypted = new EnvironmentEncryptorEnvironmentRepository(
-				envRepository, this.environmentEncryptor);
+				coalescingEnvironmentRepository(envRepository, server), this.environmentEncryptor);
 		encrypted.setOverrides(server.getOverrides());
 		return encrypted;
 	}
+
+	@Configuration
+	@ConditionalOnProperty("spring.cloud.config.server.async.enabled")
+	protected static class AsyncRequestConfiguration {
+
+		@Bean
+		public OffloadingWebMvcRegistrations offloadingWebMvcRegistrations(ConfigServerProperties server) {
+			return new OffloadingWebMvcRegistrations(server.getAsync());
+		}
+
+	}
+
+	/**
+	 * Owns the pool (or the virtual threads) of the offloaded requests (not a bean, so it
+	 * does not replace the default task executor of the application).
+	 */
+	protected static class OffloadingWebMvcRegistrations implements WebMvcRegistrations, DisposableBean {
+
+		private final ConfigServerProperties.Async async;
+
+		private final AsyncTaskExecutor executor;
+
+		private final ExecutorService executorService;
+
+		OffloadingWebMvcRegistrations(ConfigServerProperties.Async async) {
+			this.async = async;
+			if (async.isVirtualThreads()) {
+				this.executorService = VirtualThreads.newVirtualThreadPerTaskExecutor();
+				this.executor = new TaskExecutorAdapter(this.executorService);
+			}
+			else {
+				ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+				pool.setCorePoolSize(async.getPoolSize());
+				pool.setMaxPoolSize(async.getPoolSize());
+				pool.setThreadNamePrefix("config-server-request-");
+				pool.initialize();
+				this.executorService = pool.getThreadPoolExecutor();
+				this.executor = pool;
+			}
+		}
+
+		@Override
+		public RequestMappingHandlerAdapter getRequestMappingHandlerAdapter() {
+			OffloadingRequestMappingHandlerAdapter adapter = new OffloadingRequestMappingHandlerAdapter(this.executor,
+					Arrays.asList(EnvironmentController.class, EnvironmentDeltaController.class,
+							BatchEnvironmentController.class, ResourceController.class,
+							EncryptionController.class),
+					this.async.getMaxRequests());
+			adapter.setTimeout(this.async.getTimeout() > 0 ? this.async.getTimeout() : null);
+			return adapter;
+		}
+
+		@Override
+		public void destroy() {
+			this.executorService.shutdown();
+		}
+
+	}
+
+	@Configuration
+	@ConditionalOnClass(MeterRegistry.class)
+	protected static class CoalescingMetricsConfiguration {
+
+		@Bean
+		public MeterBinder coalescingEnvironmentRepositoryMetrics(ListableBeanFactory beanFactory) {
+			return registry -> beanFactory.getBeansOfType(CoalescingEnvironmentRepository.class)
+					.values().forEach(repository -> {
+						FunctionCounter.builder("config.server.environment.requests", repository,
+								CoalescingEnvironmentRepository::getRequestCount)
+								.description("Requests for an environment").register(registry);
+						FunctionCounter.builder("config.server.environment.requests.coalesced", repository,
+								CoalescingEnvironmentRepository::getCoalescedCount)
+								.description("Requests for an environment that shared a concurrent identical request")
+								.register(registry);
+					});
+		}
+
+	}
 }
@@ -79,6 +79,38 @@ public class ConfigServerProperties {
 	 */
 	private Encrypt encrypt = new Encrypt();
 
+	/**
+	 * Flag to indicate that concurrent requests for the same application, profiles and
+	 * label (and credential headers) should share a single load of the environment.
+	 */
+	private boolean coalesceRequests = false;
+
+	/**
+	 * Maximum number of recently served environments to keep for computing the changes
+	 * since a version a client already has (the <code>since</code> parameter).
+	 */
+	private int deltaHistorySize = 1000;
+
+	/**
+	 * Cache of the rendered properties, JSON and YAML responses.
+	 */
+	private ResponseCache responseCache = new ResponseCache();
+
+	/**
+	 * Stream of change events for clients that watch their environment.
+	 */
+	private Watch watch = new Watch();
+
+	/**
+	 * Asynchronous handling of the requests that load environments and resources.
+	 */
+	private Async async = new Async();
+
+	/**
+	 * Parallel calls and failure policies of the repositories of a composite.
+	 */
+	private Parallel parallel = new Parallel();
+
 	public Encrypt getEncrypt() {
 		return this.encrypt;
 	}
@@ -146,6 +178,54 @@ public class ConfigServerProperties {
 		this.defaultProfile = defaultProfile;
 	}
 
+	public boolean isCoalesceRequests() {
+		return this.coalesceRequests;
+	}
+
+	public void setCoalesceRequests(boolean coalesceRequests) {
+		this.coalesceRequests = coalesceRequests;
+	}
+
+	public int getDeltaHistorySize() {
+		return this.deltaHistorySize;
+	}
+
+	public void setDeltaHistorySize(int deltaHistorySize) {
+		this.deltaHistorySize = deltaHistorySize;
+	}
+
+	public ResponseCache getResponseCache() {
+		return this.responseCache;
+	}
+
+	public void setResponseCache(ResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+
+	public Watch getWatch() {
+		return this.watch;
+	}
+
+	public void setWatch(Watch watch) {
+		this.watch = watch;
+	}
+
+	public Async getAsync() {
+		return this.async;
+	}
+
+	public void setAsync(Async async) {
+		this.async = async;
+	}
+
+	public Parallel getParallel() {
+		return this.parallel;
+	}
+
+	public void setParallel(Parallel parallel) {
+		this.parallel = parallel;
+	}
+
 	public static class Encrypt {
 		/**
 		 * Enable decryption of environment properties before sending to client.
@@ -160,4 +240,279 @@ public class ConfigServerProperties {
 			this.enabled = enabled;
 		}
 	}
+
+	public static class ResponseCache {
+		/**
+		 * Maximum number of rendered responses to keep (0 disables the cache).
+		 */
+		private int size = 0;
+
+		/**
+		 * Maximum total number of bytes of the rendered responses to keep (0 for no
+		 * limit other than the size).
+		 */
+		private long maxBytes = 16 * 1024 * 1024;
+
+		/**
+		 * Keep a gzipped copy of each response as well, and send it to clients that
+		 * accept gzip.
+		 */
+		private boolean gzip = false;
+
+		public int getSize() {
+			return this.size;
+		}
+
+		public void setSize(int size) {
+			this.size = size;
+		}
+
+		public long getMaxBytes() {
+			return this.maxBytes;
+		}
+
+		public void setMaxBytes(long maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+
+		public boolean isGzip() {
+			return this.gzip;
+		}
+
+		public void setGzip(boolean gzip) {
+			this.gzip = gzip;
+		}
+	}
+
+	public static class Watch {
+		/**
+		 * Enable the endpoint that streams change events to the clients.
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * Time (in milliseconds) after which a stream is closed, so the client
+		 * reconnects.
+		 */
+		private long timeout = 60000;
+
+		/**
+		 * Time (in seconds) between checks of the watched environments for a new
+		 * version (0 to only check when a change is pushed to the server, e.g. by the
+		 * monitor, or fetched by a git repository). The checks run without a request, so backends that take credentials
+		 * from the request (e.g. Vault) cannot be checked.
+		 */
+		private int checkInterval = 0;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public long getTimeout() {
+			return this.timeout;
+		}
+
+		public void setTimeout(long timeout) {
+			this.timeout = timeout;
+		}
+
+		public int getCheckInterval() {
+			return this.checkInterval;
+		}
+
+		public void setCheckInterval(int checkInterval) {
+			this.checkInterval = checkInterval;
+		}
+	}
+
+	public static class Async {
+		/**
+		 * Run the environment, resource and encryption endpoints on a bounded pool of
+		 * threads as asynchronous requests, releasing the threads of the servlet
+		 * container while the repositories are loading.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Number of threads that load environments and resources.
+		 */
+		private int poolSize = 50;
+
+		/**
+		 * Maximum number of requests running on or waiting for the pool, further ones are
+		 * rejected with a 503 (Service Unavailable).
+		 */
+		private int maxRequests = 1000;
+
+		/**
+		 * Time (in milliseconds) after which a request fails if it is not complete (0 for
+		 * the default of asynchronous requests, spring.mvc.async.request-timeout).
+		 */
+		private long timeout = 0;
+
+		/**
+		 * Run each request on a new virtual thread instead of the pool (needs Java 21 or
+		 * later). The maximum number of requests still applies.
+		 */
+		private boolean virtualThreads = false;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getPoolSize() {
+			return this.poolSize;
+		}
+
+		public void setPoolSize(int poolSize) {
+			this.poolSize = poolSize;
+		}
+
+		public int getMaxRequests() {
+			return this.maxRequests;
+		}
+
+		public void setMaxRequests(int maxRequests) {
+			this.maxRequests = maxRequests;
+		}
+
+		public long getTimeout() {
+			return this.timeout;
+		}
+
+		public void setTimeout(long timeout) {
+			this.timeout = timeout;
+		}
+
+		public boolean isVirtualThreads() {
+			return this.virtualThreads;
+		}
+
+		public void setVirtualThreads(boolean virtualThreads) {
+			this.virtualThreads = virtualThreads;
+		}
+	}
+
+	public static class Parallel {
+
+		/**
+		 * Flag to call the repositories of a composite in parallel.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Number of threads that call the repositories.
+		 */
+		private int poolSize = 10;
+
+		/**
+		 * Number of repository calls that can wait for a thread, the others fail at once.
+		 */
+		private int queueCapacity = 100;
+
+		/**
+		 * Time (in milliseconds) to wait for each repository when they are called in
+		 * parallel, from the time its call starts running (0 for no limit).
+		 */
+		private long timeout = 0;
+
+		/**
+		 * Flag to skip the repositories that fail (or time out) instead of failing the
+		 * whole request.
+		 */
+		private boolean failOpen = false;
+
+		/**
+		 * Timeout and fail open flag of single repositories, by bean name (e.g.
+		 * git-env-repo0 in the composite profile).
+		 */
+		private Map<String, Backend> backends = new LinkedHashMap<>();
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getPoolSize() {
+			return this.poolSize;
+		}
+
+		public void setPoolSize(int poolSize) {
+			this.poolSize = poolSize;
+		}
+
+		public int getQueueCapacity() {
+			return this.queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public long getTimeout() {
+			return this.timeout;
+		}
+
+		public void setTimeout(long timeout) {
+			this.timeout = timeout;
+		}
+
+		public boolean isFailOpen() {
+			return this.failOpen;
+		}
+
+		public void setFailOpen(boolean failOpen) {
+			this.failOpen = failOpen;
+		}
+
+		public Map<String, Backend> getBackends() {
+			return this.backends;
+		}
+
+		public void setBackends(Map<String, Backend> backends) {
+			this.backends = backends;
+		}
+	}
+
+	public static class Backend {
+
+		/**
+		 * Time (in milliseconds) to wait for the repository (defaults to the timeout of
+		 * all repositories).
+		 */
+		private Long timeout;
+
+		/**
+		 * Flag to skip the repository if it fails (defaults to the flag of all
+		 * repositories).
+		 */
+		private Boolean failOpen;
+
+		public Long getTimeout() {
+			return this.timeout;
+		}
+
+		public void setTimeout(Long timeout) {
+			this.timeout = timeout;
+		}
+
+		public Boolean getFailOpen() {
+			return this.failOpen;
+		}
+
+		public void setFailOpen(Boolean failOpen) {
+			this.failOpen = failOpen;
+		}
+	}
 }
@@ -15,22 +15,31 @@
  */
 package org.springframework.cloud.config.server.config;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletRequest;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.http.client.HttpClient;
 import org.eclipse.jgit.api.TransportConfigCallback;
 import org.tmatesoft.svn.core.SVNException;
 
+import org.springframework.beans.factory.ListableBeanFactory;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.condition.SearchStrategy;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.config.server.composite.CompositeEnvironmentBeanFactoryPostProcessor;
 import org.springframework.cloud.config.server.composite.ConditionalOnMissingSearchPathLocator;
@@ -42,6 +51,11 @@ import org.springframework.cloud.config.server.environment.EnvironmentWatch;
 import org.springframework.cloud.config.server.environment.HttpClientConfigurableHttpConnectionFactory;
 import org.springframework.cloud.config.server.environment.HttpClientVaultRestTemplateFactory;
 import org.springframework.cloud.config.server.environment.ConfigurableHttpConnectionFactory;
+import org.springframework.cloud.config.server.environment.JGitEnvironmentRepository;
+import org.springframework.cloud.config.server.environment.JGitFetchMetrics;
+import org.springframework.cloud.config.server.environment.JGitInitializationHealthIndicator;
+import org.springframework.cloud.config.server.environment.JGitWindowCacheMetrics;
+import org.springframework.cloud.config.server.environment.JGitWindowCacheProperties;
 import org.springframework.cloud.config.server.environment.JdbcEnvironmentProperties;
 import org.springframework.cloud.config.server.environment.JdbcEnvironmentRepository;
 import org.springframework.cloud.config.server.environment.JdbcEnvironmentRepositoryFactory;
@@ -59,12 +73,15 @@ import org.springframework.cloud.config.server.environment.VaultEnvironmentPrope
 import org.springframework.cloud.config.server.environment.VaultEnvironmentRepository;
 import org.springframework.cloud.config.server.environment.VaultEnvironmentRepositoryFactory;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.ConditionContext;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotatedTypeMetadata;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 /**
@@ -116,15 +133,36 @@ public class EnvironmentRepositoryConfiguration {
 
     @Configuration
     @ConditionalOnClass(TransportConfigCallback.class)
+    @EnableConfigurationProperties(JGitWindowCacheProperties.class)
     static class JGitFactoryConfig {
 
         @Bean
         public MultipleJGitEnvironmentRepositoryFactory gitEnvironmentRepositoryFactory(
                 ConfigurableEnvironment environment, ConfigServerProperties server,
                 Optional<ConfigurableHttpConnectionFactory> jgitHttpConnectionFactory,
-                Optional<TransportConfigCallback> customTransportConfigCallback) {
-            return new MultipleJGitEnvironmentRepositoryFactory(environment, server, jgitHttpConnectionFactory,
-					customTransportConfigCallback);
+                Optional<TransportConfigCallback> customTransportConfigCallback,
+                JGitWindowCacheProperties windowCache) {
+            MultipleJGitEnvironmentRepositoryFactory factory = new MultipleJGitEnvironmentRepositoryFactory(
+                    environment, server, jgitHttpConnectionFactory, customTransportConfigCallback);
+            factory.setWindowCache(windowCache);
+            return factory;
+        }
+    }
+
+    @Configuration
+    @ConditionalOnClass({ MeterRegistry.class, TransportConfigCallback.class })
+    static class JGitMetricsConfig {
+
+        @Bean
+        public JGitFetchMetrics jgitFetchMetrics(
+                ObjectProvider<List<JGitEnvironmentRepository>> repositories) {
+            return new JGitFetchMetrics(repositories.getIfAvailable(Collections::emptyList));
+        }
+
+        @Bean
+        public JGitWindowCacheMetrics jgitWindowCacheMetrics(
+                ObjectProvider<JGitWindowCacheProperties> windowCache) {
+            return new JGitWindowCacheMetrics(windowCache.getIfAvailable(JGitWindowCacheProperties::new));
         }
     }
 
@@ -208,6 +246,15 @@ class DefaultRepositoryConfiguration {
 			MultipleJGitEnvironmentProperties environmentProperties) throws Exception {
 		return gitEnvironmentRepositoryFactory.build(environmentProperties);
 	}
+
+	@Bean
+	@ConditionalOnMissingBean(JGitInitializationHealthIndicator.class)
+	@ConditionalOnProperty(value = "spring.cloud.config.server.health.enabled", matchIfMissing = true)
+	public JGitInitializationHealthIndicator jgitInitializationHealthIndicator(
+			MultipleJGitEnvironmentRepository defaultEnvironmentRepository) {
+		return new JGitInitializationHealthIndicator(
+				Collections.singletonList(defaultEnvironmentRepository));
+	}
 }
 
 @Configuration
@@ -277,15 +324,69 @@ class CompositeRepositoryConfiguration {
 	@Bean
 	@ConditionalOnSearchPathLocator
 	public SearchPathCompositeEnvironmentRepository searchPathCompositeEnvironmentRepository(
-			List<EnvironmentRepository> environmentRepositories) throws Exception {
-		return new SearchPathCompositeEnvironmentRepository(environmentRepositories);
+			List<EnvironmentRepository> environmentRepositories,
+			Map<String, EnvironmentRepository> namedEnvironmentRepositories,
+			ConfigServerProperties server) throws Exception {
+		return CompositeConfiguration.configure(
+				new SearchPathCompositeEnvironmentRepository(environmentRepositories),
+				server, namedEnvironmentRepositories);
 	}
 
 	@Primary
 	@Bean
 	@ConditionalOnMissingSearchPathLocator
 	public CompositeEnvironmentRepository compositeEnvironmentRepository(
-			List<EnvironmentRepository> environmentRepositories) throws Exception {
-		return new CompositeEnvironmentRepository(environmentRepositories);
+			List<EnvironmentRepository> environmentRepositories,
+			Map<String, EnvironmentRepository> namedEnvironmentRepositories,
+			ConfigServerProperties server) throws Exception {
+		return CompositeConfiguration.configure(
+				new CompositeEnvironmentRepository(environmentRepositories), server,
+				namedEnvironmentRepositories);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(JGitInitializationHealthIndicator.class)
+	@ConditionalOnProperty(value = "spring.cloud.config.server.health.enabled", matchIfMissing = true)
+	@Conditional(GitCompositeCondition.class)
+	public JGitInitializationHealthIndicator jgitInitializationHealthIndicator(
+			ListableBeanFactory beanFactory) {
+		// The repositories of the composite are only known once they are created
+		return new JGitInitializationHealthIndicator(() -> beanFactory
+				.getBeansOfType(MultipleJGitEnvironmentRepository.class).values());
+	}
+
+	/**
+	 * Matches when one of the repositories of the composite is a git repository.
+	 */
+	static class GitCompositeCondition extends SpringBootCondition {
+
+		@Override
+		public ConditionOutcome getMatchOutcome(ConditionContext context,
+				AnnotatedTypeMetadata metadata) {
+			List<String> types = Binder.get(context.getEnvironment())
+					.bind("spring.cloud.config.server.composite", Bindable
+							.listOf(CompositeType.class))
+					.orElse(Collections.emptyList()).stream()
+					.map(CompositeType::getType).collect(Collectors.toList());
+			if (types.contains("git")) {
+				return ConditionOutcome.match("Git repository in the composite");
+			}
+			return ConditionOutcome.noMatch("No git repository in the composite " + types);
+		}
+
+	}
+
+	static class CompositeType {
+
+		private String type;
+
+		public String getType() {
+			return this.type;
+		}
+
+		public void setType(String type) {
+			this.type = type;
+		}
+
 	}
 }
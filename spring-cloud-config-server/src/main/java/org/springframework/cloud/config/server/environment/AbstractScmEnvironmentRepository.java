@@ -15,11 +15,23 @@
  */
 package org.springframework.cloud.config.server.environment;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
 import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
 import org.springframework.cloud.config.server.support.AbstractScmAccessor;
 import org.springframework.cloud.config.server.support.AbstractScmAccessorProperties;
+import org.springframework.cloud.config.server.support.BoundedCache;
+import org.springframework.cloud.config.server.support.Environments;
 import org.springframework.core.Ordered;
 import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.util.ObjectUtils;
 
 /**
  * @author Dave Syer
@@ -31,6 +43,48 @@ public abstract class AbstractScmEnvironmentRepository extends AbstractScmAccess
 	private EnvironmentCleaner cleaner = new EnvironmentCleaner();
 	private int order = Ordered.LOWEST_PRECEDENCE;
 
+	/**
+	 * Maximum number of environments to cache (0 disables the cache).
+	 *
+	 * 缓存的环境的最大数量（0表示禁用缓存）。
+	 */
+	private int environmentCacheSize;
+
+	/**
+	 * Maximum total number of properties in the environment cache (0 means no limit).
+	 *
+	 * 环境缓存中属性的最大总数（0表示无限制）。
+	 */
+	private long environmentCacheMaxWeight;
+
+	/**
+	 * The engine used to load the configuration files from the working copy.
+	 *
+	 * 用于从工作副本加载配置文件的引擎。
+	 */
+	private NativeEnvironmentProperties.LoadingEngine loadingEngine = NativeEnvironmentProperties.LoadingEngine.SPRING_APPLICATION;
+
+	/**
+	 * Maximum number of parsed configuration files to cache (0 disables the cache).
+	 *
+	 * 缓存的已解析配置文件的最大数量（0表示禁用缓存）。
+	 */
+	private int fileCacheSize;
+
+	private volatile BoundedCache<EnvironmentCacheKey, Environment> environmentCache;
+
+	private volatile PropertySourceFileCache fileCache;
+
+	/**
+	 * The last version seen for each label, so that stale cache entries can be evicted
+	 * as soon as a refresh moves the label on.
+	 *
+	 * 每个标签最近一次看到的版本，以便在刷新移动标签后立即驱逐过时的缓存条目。
+	 */
+	private final Map<String, String> versions = new ConcurrentHashMap<>();
+
+	private final ReadWriteLock workingCopyLock = new ReentrantReadWriteLock();
+
 	public AbstractScmEnvironmentRepository(ConfigurableEnvironment environment) {
 		super(environment);
 	}
@@ -38,16 +92,83 @@ public abstract class AbstractScmEnvironmentRepository extends AbstractScmAccess
 	public AbstractScmEnvironmentRepository(ConfigurableEnvironment environment, AbstractScmAccessorProperties properties) {
 		super(environment, properties);
 		this.order = properties.getOrder();
+		this.environmentCacheSize = properties.getEnvironmentCacheSize();
+		this.environmentCacheMaxWeight = properties.getEnvironmentCacheMaxWeight();
+		this.loadingEngine = properties.getLoadingEngine();
+		this.fileCacheSize = properties.getFileCacheSize();
 	}
 
 	@Override
-	public synchronized Environment findOne(String application, String profile, String label) {
-		NativeEnvironmentRepository delegate = new NativeEnvironmentRepository(getEnvironment(),
-				new NativeEnvironmentProperties());
+	public Environment findOne(String application, String profile, String label) {
 		// --------------------关键方法-----------------------
         // 获得git，会在这里面做git初始化，checkout，merge，等等
-		Locations locations = getLocations(application, profile, label);
+		return withWorkingCopy(application, profile, label,
+				locations -> doFindOne(application, profile, label, locations));
+	}
+
+	@Override
+	public <T> T withLocations(String application, String profile, String label,
+			Function<Locations, T> callback) {
+		return withWorkingCopy(application, profile, label, callback);
+	}
+
+	/**
+	 * Locate the working copy for a label and pass it to the callback while the files in
+	 * it are guaranteed not to change. The default holds an exclusive lock for the whole
+	 * callback; subclasses that can tell when a working copy is already up to date may
+	 * let readers share it.
+	 *
+	 * 定位标签对应的工作副本，并在保证其中文件不变的情况下将其传递给回调。默认在整个回调期间持有排他锁；
+	 * 能够判断工作副本已是最新的子类可以让读者共享它。
+	 */
+	protected <T> T withWorkingCopy(String application, String profile, String label,
+			Function<Locations, T> callback) {
+		Lock lock = this.workingCopyLock.writeLock();
+		lock.lock();
+		try {
+			return callback.apply(getLocations(application, profile, label));
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the lock guarding the working copy: readers of the files hold the read
+	 * lock, anything that changes them (fetch, checkout, reset) holds the write lock
+	 */
+	protected ReadWriteLock getWorkingCopyLock() {
+		return this.workingCopyLock;
+	}
+
+	/**
+	 * Load the environment from locations that have already been resolved (and are kept
+	 * stable by the caller).
+	 */
+	protected Environment doFindOne(String application, String profile, String label,
+			Locations locations) {
+		BoundedCache<EnvironmentCacheKey, Environment> cache = getEnvironmentCache();
+		EnvironmentCacheKey key = null;
+		if (cache != null && locations.getVersion() != null) {
+			evictStaleVersions(cache, locations);
+			key = new EnvironmentCacheKey(application, profile, label, locations);
+			Environment cached = cache.get(key);
+			if (cached != null) {
+				// Callers may modify what they get, so the cache never hands out its own
+				// instance
+				return Environments.copy(cached);
+			}
+		}
+		NativeEnvironmentRepository delegate = new NativeEnvironmentRepository(getEnvironment(),
+				new NativeEnvironmentProperties());
+		delegate.setLoadingEngine(this.loadingEngine);
+		PropertySourceFileCache fileCache = getFileCache();
+		delegate.setFileCache(
+				fileCache != null ? fileCache : EnvironmentBatch.getFileCache());
 		delegate.setSearchLocations(locations.getLocations());
+		if (locations.getResourceLoader() != null) {
+			delegate.setResourceLoader(locations.getResourceLoader());
+		}
 		// --------------------关键方法-----------------------
         // 通过委托获得环境变量
 		Environment result = delegate.findOne(application, profile, "");
@@ -55,8 +176,72 @@ public abstract class AbstractScmEnvironmentRepository extends AbstractScmAccess
 		result.setLabel(label);
 		// --------------------关键方法-----------------------
 		// 对上面的result的数据，进行一些replace， 获得application.yml
-		return this.cleaner.clean(result, getWorkingDirectory().toURI().toString(),
+		result = this.cleaner.clean(result, getWorkingDirectory().toURI().toString(),
 				getUri());
+		if (key != null) {
+			cache.put(key, Environments.copy(result));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the cache of parsed environments, or null if caching is disabled
+	 */
+	public BoundedCache<EnvironmentCacheKey, Environment> getEnvironmentCache() {
+		if (this.environmentCacheSize <= 0) {
+			return null;
+		}
+		if (this.environmentCache == null) {
+			synchronized (this.versions) {
+				if (this.environmentCache == null) {
+					this.environmentCache = new BoundedCache<>(this.environmentCacheSize,
+							this.environmentCacheMaxWeight,
+							(key, value) -> weigh(value));
+				}
+			}
+		}
+		return this.environmentCache;
+	}
+
+	/**
+	 * @return the cache of parsed files shared by all the requests, or null if caching is
+	 * disabled
+	 */
+	public PropertySourceFileCache getFileCache() {
+		if (this.fileCacheSize <= 0) {
+			return null;
+		}
+		if (this.fileCache == null) {
+			synchronized (this.versions) {
+				if (this.fileCache == null) {
+					this.fileCache = new PropertySourceFileCache(this.fileCacheSize);
+				}
+			}
+		}
+		return this.fileCache;
+	}
+
+	private void evictStaleVersions(BoundedCache<EnvironmentCacheKey, Environment> cache,
+			Locations locations) {
+		String label = String.valueOf(locations.getLabel());
+		String version = locations.getVersion();
+		String previous = this.versions.put(label, version);
+		if (previous != null && !previous.equals(version)) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Label " + label + " moved from " + previous + " to "
+						+ version + ", evicting cached environments");
+			}
+			cache.invalidateIf(key -> label.equals(String.valueOf(key.resolvedLabel))
+					&& previous.equals(key.version));
+		}
+	}
+
+	private static long weigh(Environment environment) {
+		long weight = 1;
+		for (PropertySource source : environment.getPropertySources()) {
+			weight += source.getSource().size();
+		}
+		return weight;
 	}
 
 	@Override
@@ -67,4 +252,96 @@ public abstract class AbstractScmEnvironmentRepository extends AbstractScmAccess
 	public void setOrder(int order) {
 		this.order = order;
 	}
+
+	public int getEnvironmentCacheSize() {
+		return this.environmentCacheSize;
+	}
+
+	public void setEnvironmentCacheSize(int environmentCacheSize) {
+		this.environmentCacheSize = environmentCacheSize;
+		this.environmentCache = null;
+	}
+
+	public long getEnvironmentCacheMaxWeight() {
+		return this.environmentCacheMaxWeight;
+	}
+
+	public void setEnvironmentCacheMaxWeight(long environmentCacheMaxWeight) {
+		this.environmentCacheMaxWeight = environmentCacheMaxWeight;
+		this.environmentCache = null;
+	}
+
+	public NativeEnvironmentProperties.LoadingEngine getLoadingEngine() {
+		return this.loadingEngine;
+	}
+
+	public void setLoadingEngine(NativeEnvironmentProperties.LoadingEngine loadingEngine) {
+		this.loadingEngine = loadingEngine;
+	}
+
+	public int getFileCacheSize() {
+		return this.fileCacheSize;
+	}
+
+	public void setFileCacheSize(int fileCacheSize) {
+		this.fileCacheSize = fileCacheSize;
+		this.fileCache = null;
+	}
+
+	/**
+	 * Key for a cached environment. The resolved version and search locations are
+	 * included so that a moved label or a different search path never shares an entry.
+	 */
+	public static final class EnvironmentCacheKey {
+
+		private final String application;
+
+		private final String profile;
+
+		private final String label;
+
+		private final String resolvedLabel;
+
+		private final String version;
+
+		private final String[] locations;
+
+		EnvironmentCacheKey(String application, String profile, String label,
+				Locations locations) {
+			this.application = application;
+			this.profile = profile;
+			this.label = label;
+			this.resolvedLabel = locations.getLabel();
+			this.version = locations.getVersion();
+			this.locations = locations.getLocations();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			EnvironmentCacheKey other = (EnvironmentCacheKey) o;
+			return ObjectUtils.nullSafeEquals(this.application, other.application)
+					&& ObjectUtils.nullSafeEquals(this.profile, other.profile)
+					&& ObjectUtils.nullSafeEquals(this.label, other.label)
+					&& ObjectUtils.nullSafeEquals(this.resolvedLabel, other.resolvedLabel)
+					&& ObjectUtils.nullSafeEquals(this.version, other.version)
+					&& Arrays.equals(this.locations, other.locations);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = ObjectUtils.nullSafeHashCode(this.application);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.profile);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.label);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.version);
+			result = 31 * result + Arrays.hashCode(this.locations);
+			return result;
+		}
+
+	}
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Serves the environments of many application, profiles and label tuples in one request.
+ * The tuples are resolved grouped by label in one {@link EnvironmentBatch}, so each
+ * label is refreshed once, and the results are written to the response as they are
+ * resolved. Each result carries its tuple and either the environment or an error, so one
+ * missing application does not fail the whole batch.
+ *
+ * 在一个请求中提供多个应用程序、配置文件和标签元组的环境。元组在一个{@link EnvironmentBatch}中按标签分组解析，
+ * 因此每个标签只刷新一次，结果在解析时写入响应。每个结果都带有其元组以及环境或错误，因此一个缺失的应用程序不会使整个批次失败。
+ */
+@RestController
+@RequestMapping(method = RequestMethod.POST, path = "${spring.cloud.config.server.prefix:}")
+public class BatchEnvironmentController {
+
+	private static final Log logger = LogFactory.getLog(BatchEnvironmentController.class);
+
+	private final EnvironmentController environmentController;
+
+	private final ObjectMapper objectMapper;
+
+	public BatchEnvironmentController(EnvironmentController environmentController,
+			ObjectMapper objectMapper) {
+		this.environmentController = environmentController;
+		this.objectMapper = objectMapper;
+	}
+
+	@RequestMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public void batch(@RequestBody List<EnvironmentRequest> requests,
+			HttpServletResponse response) throws IOException {
+		List<EnvironmentRequest> ordered = new ArrayList<>(requests);
+		// Stable, so the requests for a label stay in order
+		ordered.sort(Comparator.comparing(request -> String.valueOf(request.getLabel())));
+		response.setStatus(HttpStatus.OK.value());
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		JsonGenerator generator = this.objectMapper.getFactory()
+				.createGenerator(response.getOutputStream());
+		EnvironmentBatch batch = EnvironmentBatch.open();
+		try {
+			generator.writeStartArray();
+			for (EnvironmentRequest request : ordered) {
+				generator.writeStartObject();
+				generator.writeStringField("name", request.getName());
+				generator.writeStringField("profiles", request.getProfiles());
+				generator.writeStringField("label", request.getLabel());
+				try {
+					if (request.getName() == null || request.getProfiles() == null) {
+						throw new IllegalArgumentException(
+								"The name and profiles of each request are required");
+					}
+					Environment environment = this.environmentController.labelled(
+							request.getName(), request.getProfiles(),
+							request.getLabel());
+					generator.writeObjectField("environment", environment);
+				}
+				catch (RuntimeException e) {
+					generator.writeNumberField("status", getStatus(e).value());
+					generator.writeStringField("error", e.getMessage());
+				}
+				generator.writeEndObject();
+			}
+			generator.writeEndArray();
+		}
+		finally {
+			batch.close();
+		}
+		generator.close();
+	}
+
+	private HttpStatus getStatus(RuntimeException e) {
+		if (e instanceof RepositoryException) {
+			return HttpStatus.NOT_FOUND;
+		}
+		if (e instanceof IllegalArgumentException) {
+			return HttpStatus.BAD_REQUEST;
+		}
+		ResponseStatus status = AnnotatedElementUtils.findMergedAnnotation(e.getClass(),
+				ResponseStatus.class);
+		if (status != null) {
+			return status.code();
+		}
+		logger.warn("Cannot load environment in batch", e);
+		return HttpStatus.INTERNAL_SERVER_ERROR;
+	}
+
+	/**
+	 * One application, profiles and label tuple of a batch (a null label is the default
+	 * label of the repository).
+	 */
+	public static class EnvironmentRequest {
+
+		private String name;
+
+		private String profiles;
+
+		private String label;
+
+		public EnvironmentRequest() {
+		}
+
+		public EnvironmentRequest(String name, String profiles, String label) {
+			this.name = name;
+			this.profiles = profiles;
+			this.label = label;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public String getProfiles() {
+			return this.profiles;
+		}
+
+		public void setProfiles(String profiles) {
+			this.profiles = profiles;
+		}
+
+		public String getLabel() {
+			return this.label;
+		}
+
+		public void setLabel(String label) {
+			this.label = label;
+		}
+
+	}
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.cloud.config.client.ConfigClientProperties;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.server.support.Environments;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.ObjectUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * A delegating {@link EnvironmentRepository} that lets concurrent requests for the same
+ * application, profiles and label share a single call to the delegate. This is not a
+ * cache: a request that arrives after the shared call has completed calls the delegate
+ * again. Every caller gets its own copy of the result, so callers can add property
+ * sources without affecting each other. Some repositories (e.g. Vault) read credentials
+ * from the headers of the current request, so only requests with the same credential
+ * headers share a call.
+ *
+ * 一个委托{@link EnvironmentRepository}，它让对相同应用程序、配置文件和标签的并发请求共享对委托的一次调用。
+ * 这不是缓存：在共享调用完成后到达的请求会再次调用委托。每个调用者都获得自己的结果副本，因此调用者可以添加属性源而互不影响。
+ * 某些存储库（例如Vault）从当前请求的头中读取凭据，因此只有具有相同凭据头的请求才会共享调用。
+ */
+public class CoalescingEnvironmentRepository implements EnvironmentRepository {
+
+	/**
+	 * The headers of a request that repositories may read credentials (or state) from.
+	 */
+	private static final String[] CREDENTIAL_HEADERS = { HttpHeaders.AUTHORIZATION,
+			ConfigClientProperties.TOKEN_HEADER, ConfigClientProperties.STATE_HEADER };
+
+	private final EnvironmentRepository delegate;
+
+	private final Map<RequestKey, CompletableFuture<Environment>> inFlight = new ConcurrentHashMap<>();
+
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	private boolean enabled = true;
+
+	public CoalescingEnvironmentRepository(EnvironmentRepository delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Environment findOne(String application, String profile, String label) {
+		this.requestCount.incrementAndGet();
+		if (!this.enabled) {
+			return this.delegate.findOne(application, profile, label);
+		}
+		RequestKey key = new RequestKey(application, profile, label,
+				getCredentials());
+		CompletableFuture<Environment> future = new CompletableFuture<>();
+		CompletableFuture<Environment> existing = this.inFlight.putIfAbsent(key, future);
+		if (existing != null) {
+			this.coalescedCount.incrementAndGet();
+			Environment environment = join(existing);
+			return environment == null ? null
+					: Environments.copy(environment);
+		}
+		try {
+			Environment environment = this.delegate.findOne(application, profile,
+					label);
+			this.inFlight.remove(key, future);
+			future.complete(environment);
+			return environment == null ? null
+					: Environments.copy(environment);
+		}
+		catch (RuntimeException | Error e) {
+			this.inFlight.remove(key, future);
+			future.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	private Environment join(CompletableFuture<Environment> future) {
+		try {
+			return future.join();
+		}
+		catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+
+	private static String[] getCredentials() {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (!(attributes instanceof ServletRequestAttributes)) {
+			return null;
+		}
+		HttpServletRequest request = ((ServletRequestAttributes) attributes)
+				.getRequest();
+		String[] credentials = new String[CREDENTIAL_HEADERS.length];
+		for (int i = 0; i < CREDENTIAL_HEADERS.length; i++) {
+			credentials[i] = request.getHeader(CREDENTIAL_HEADERS[i]);
+		}
+		return credentials;
+	}
+
+	/**
+	 * @return the number of calls to {@link #findOne(String, String, String)}
+	 */
+	public long getRequestCount() {
+		return this.requestCount.get();
+	}
+
+	/**
+	 * @return the number of calls that shared the result of another call in flight
+	 */
+	public long getCoalescedCount() {
+		return this.coalescedCount.get();
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	private static final class RequestKey {
+
+		private final String application;
+
+		private final String profile;
+
+		private final String label;
+
+		private final String[] credentials;
+
+		RequestKey(String application, String profile, String label,
+				String[] credentials) {
+			this.application = application;
+			this.profile = profile;
+			this.label = label;
+			this.credentials = credentials;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			RequestKey other = (RequestKey) o;
+			return ObjectUtils.nullSafeEquals(this.application, other.application)
+					&& ObjectUtils.nullSafeEquals(this.profile, other.profile)
+					&& ObjectUtils.nullSafeEquals(this.label, other.label)
+					&& ObjectUtils.nullSafeEquals(this.credentials, other.credentials);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = ObjectUtils.nullSafeHashCode(this.application);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.profile);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.label);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.credentials);
+			return result;
+		}
+
+	}
+
+}
@@ -15,24 +15,65 @@
  */
 package org.springframework.cloud.config.server.environment;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.cloud.config.environment.Environment;
 import org.springframework.core.OrderComparator;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 /**
  * An {@link EnvironmentRepository} composed of multiple ordered {@link EnvironmentRepository}s.
+ * With a pool (see {@link #setPoolSize(int)}) the repositories are called in parallel,
+ * and the results are still merged in their order. Each repository can have a
+ * {@link Policy} with a timeout and whether its failures are skipped (fail open) or fail
+ * the whole composite (fail closed, the default). A repository that times out is
+ * interrupted, and a call that finds the pool and its queue full fails at once.
  *
  * {@link EnvironmentRepository}由多个有序{@link EnvironmentRepository}组成。
  * 组合环境变量仓库
+ * 有了线程池（参见{@link #setPoolSize(int)}），存储库会被并行调用，而结果仍按其顺序合并。
+ * 每个存储库都可以有一个{@link Policy}，包含超时时间以及它的失败是被跳过（失败开放）还是使整个组合失败（失败关闭，默认值）。
+ * 超时的存储库会被中断，发现线程池及其队列已满的调用会立即失败。
  *
  * @author Ryan Baxter
  */
-public class CompositeEnvironmentRepository implements EnvironmentRepository {
+public class CompositeEnvironmentRepository implements EnvironmentRepository, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(CompositeEnvironmentRepository.class);
+
+	/**
+	 * The default number of calls that wait for a thread of the pool.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 100;
 
 	protected List<EnvironmentRepository> environmentRepositories;
 
+	private final Map<EnvironmentRepository, Policy> policies = new IdentityHashMap<>();
+
+	private Policy defaultPolicy = new Policy();
+
+	private ExecutorService executor;
+
 	/**
 	 * Creates a new {@link CompositeEnvironmentRepository}.
 	 * @param environmentRepositories The list of {@link EnvironmentRepository}s to create the composite from.
@@ -44,6 +85,61 @@ public class CompositeEnvironmentRepository implements EnvironmentRepository {
 		this.environmentRepositories = environmentRepositories;
 	}
 
+	/**
+	 * Call the repositories in parallel on a pool of this many threads (0, the default,
+	 * calls them one after the other on the calling thread).
+	 *
+	 * 在这么多线程的池上并行调用存储库（0，默认值，在调用线程上逐个调用它们）。
+	 *
+	 * @param poolSize the number of threads
+	 */
+	public void setPoolSize(int poolSize) {
+		setPoolSize(poolSize, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Call the repositories in parallel on a pool of this many threads, with at most
+	 * this many calls waiting for a thread. The calls that would wait beyond that (when
+	 * a hung repository holds the threads) fail at once.
+	 *
+	 * 在这么多线程的池上并行调用存储库，最多有这么多调用等待线程。超出的调用（当挂起的存储库占用线程时）会立即失败。
+	 *
+	 * @param poolSize the number of threads (0 to call the repositories one after the
+	 * other)
+	 * @param queueCapacity the number of calls that can wait for a thread
+	 */
+	public void setPoolSize(int poolSize, int queueCapacity) {
+		destroy();
+		if (poolSize > 0) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(
+					"config-server-composite-");
+			threadFactory.setDaemon(true);
+			this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L,
+					TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory);
+		}
+	}
+
+	/**
+	 * @param defaultPolicy the policy of the repositories without one of their own
+	 */
+	public void setDefaultPolicy(Policy defaultPolicy) {
+		this.defaultPolicy = defaultPolicy;
+	}
+
+	/**
+	 * @param repository one of the repositories of this composite
+	 * @param policy the policy of the repository
+	 */
+	public void setPolicy(EnvironmentRepository repository, Policy policy) {
+		this.policies.put(repository, policy);
+	}
+
+	public Policy getPolicy(EnvironmentRepository repository) {
+		Policy policy = this.policies.get(repository);
+		return policy != null ? policy : this.defaultPolicy;
+	}
+
     /**
      * 通过{@link org.springframework.boot.actuate.health.AbstractHealthIndicator}的doHealthCheck 方法
      * @param application
@@ -62,11 +158,213 @@ public class CompositeEnvironmentRepository implements EnvironmentRepository {
 			env.setVersion(envRepo.getVersion());
 			env.setState(envRepo.getState());
 		} else {
-			for (EnvironmentRepository repo : environmentRepositories) {
-				env.addAll(repo.findOne(application, profile, label).getPropertySources());
+			for (Environment envRepo : invokeAll(this.environmentRepositories,
+					repo -> repo.findOne(application, profile, label))) {
+				if (envRepo != null) {
+					env.addAll(envRepo.getPropertySources());
+				}
 			}
 		}
 		// 实际对应的环境变量
 		return env;
 	}
+
+	/**
+	 * Call the repositories, in parallel if there is a pool, and apply their policies.
+	 * The timeout of a repository starts when its call starts running (a call waiting
+	 * for a thread is also given up after the timeout). The calls in parallel see the
+	 * request of the caller (see {@link RequestContextHolder}); a call that ignores the
+	 * interruption after its timeout still sees that request after it has completed, so
+	 * the repositories should only read it (like the headers) before they block.
+	 *
+	 * 调用存储库（如果有线程池则并行调用），并应用它们的策略。存储库的超时从其调用开始运行时计算（等待线程的调用在超时后也会被放弃）。
+	 * 并行调用能看到调用者的请求（参见{@link RequestContextHolder}）；超时后忽略中断的调用在请求完成后仍能看到该请求，
+	 * 因此存储库应只在阻塞之前读取它（例如请求头）。
+	 *
+	 * @param repositories the repositories to call
+	 * @param call the call to make on each repository
+	 * @return the results in the order of the repositories, with null for the
+	 * repositories that failed open
+	 */
+	protected <T> List<T> invokeAll(List<EnvironmentRepository> repositories,
+			Function<EnvironmentRepository, T> call) {
+		List<T> results = new ArrayList<>(repositories.size());
+		// A batch is bound to its thread, so the repositories stay on it
+		if (this.executor == null || repositories.size() < 2 || EnvironmentBatch.isOpen()) {
+			for (EnvironmentRepository repository : repositories) {
+				try {
+					results.add(call.apply(repository));
+				}
+				catch (RuntimeException e) {
+					results.add(failed(repository, e));
+				}
+			}
+			return results;
+		}
+		// Some repositories (e.g. Vault) read the headers of the current request
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		List<Call<T>> calls = new ArrayList<>(repositories.size());
+		try {
+			for (EnvironmentRepository repository : repositories) {
+				calls.add(submit(repository, call, attributes));
+			}
+			for (Call<T> submitted : calls) {
+				results.add(await(submitted));
+			}
+		}
+		finally {
+			// Only the calls that have not started yet, a running fetch is not
+			// interrupted unless it timed out
+			for (Call<T> submitted : calls) {
+				if (submitted.future != null) {
+					submitted.future.cancel(false);
+				}
+			}
+		}
+		return results;
+	}
+
+	private <T> Call<T> submit(EnvironmentRepository repository,
+			Function<EnvironmentRepository, T> call, RequestAttributes attributes) {
+		Call<T> submitted = new Call<>(repository);
+		try {
+			submitted.future = this.executor.submit(() -> {
+				submitted.start();
+				RequestContextHolder.setRequestAttributes(attributes);
+				try {
+					return call.apply(repository);
+				}
+				finally {
+					RequestContextHolder.resetRequestAttributes();
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			submitted.rejected = e;
+		}
+		return submitted;
+	}
+
+	private <T> T await(Call<T> call) {
+		EnvironmentRepository repository = call.repository;
+		if (call.rejected != null) {
+			return failed(repository, new IllegalStateException(
+					"Too many calls waiting for the pool to call " + repository,
+					call.rejected));
+		}
+		long timeout = getPolicy(repository).getTimeout();
+		try {
+			if (timeout <= 0) {
+				return call.future.get();
+			}
+			if (!call.started.await(timeout, TimeUnit.MILLISECONDS)) {
+				throw new TimeoutException();
+			}
+			return call.future.get(
+					Math.max(0, call.start + timeout - System.currentTimeMillis()),
+					TimeUnit.MILLISECONDS);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			return failed(repository, cause instanceof RuntimeException
+					? (RuntimeException) cause
+					: new IllegalStateException(cause.getMessage(), cause));
+		}
+		catch (TimeoutException e) {
+			call.future.cancel(true);
+			return failed(repository, new IllegalStateException(
+					"Timed out after " + timeout + "ms waiting for " + repository));
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for " + repository, e);
+		}
+	}
+
+	/**
+	 * Apply the policy of a repository to one of its failures.
+	 * @param repository the repository that failed
+	 * @param e the failure
+	 * @return null if the repository fails open
+	 * @throws RuntimeException the failure if the repository fails closed
+	 */
+	protected <T> T failed(EnvironmentRepository repository, RuntimeException e) {
+		if (!getPolicy(repository).isFailOpen()) {
+			throw e;
+		}
+		logger.warn("Skipping failed repository " + repository + ": " + e.getMessage());
+		if (logger.isDebugEnabled()) {
+			logger.debug("Repository failure", e);
+		}
+		return null;
+	}
+
+	@Override
+	public void destroy() {
+		if (this.executor != null) {
+			this.executor.shutdown();
+			this.executor = null;
+		}
+	}
+
+	/**
+	 * A call of one repository on the pool.
+	 */
+	private static class Call<T> {
+
+		private final EnvironmentRepository repository;
+
+		private final CountDownLatch started = new CountDownLatch(1);
+
+		private volatile long start;
+
+		private Future<T> future;
+
+		private RejectedExecutionException rejected;
+
+		Call(EnvironmentRepository repository) {
+			this.repository = repository;
+		}
+
+		void start() {
+			this.start = System.currentTimeMillis();
+			this.started.countDown();
+		}
+
+	}
+
+	/**
+	 * How the composite treats one of its repositories.
+	 *
+	 * 组合如何对待其中一个存储库。
+	 */
+	public static class Policy {
+
+		private long timeout;
+
+		private boolean failOpen;
+
+		public Policy() {
+		}
+
+		/**
+		 * @param timeout the time (in milliseconds) to wait for the repository when it is
+		 * called in parallel (0 for no limit)
+		 * @param failOpen true to skip the repository when it fails (or times out), false
+		 * to fail the composite
+		 */
+		public Policy(long timeout, boolean failOpen) {
+			this.timeout = timeout;
+			this.failOpen = failOpen;
+		}
+
+		public long getTimeout() {
+			return this.timeout;
+		}
+
+		public boolean isFailOpen() {
+			return this.failOpen;
+		}
+
+	}
 }
@@ -0,0 +1,520 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.environment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.boot.context.config.ConfigFileApplicationListener;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.bind.PropertySourcesPlaceholdersResolver;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.PropertySourceLoader;
+import org.springframework.boot.env.RandomValuePropertySource;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.Profiles;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.SpringFactoriesLoader;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.ResourceUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Loads config files into an {@link ConfigurableEnvironment} using the
+ * {@link PropertySourceLoader property source loaders} directly, following the same
+ * <code>spring.config.name</code>, <code>spring.config.location</code> and profile
+ * ordering rules as the {@link ConfigFileApplicationListener}, but without starting a
+ * <code>SpringApplication</code> (and hence without creating an application context).
+ *
+ * 直接使用{@link PropertySourceLoader}将配置文件加载到{@link ConfigurableEnvironment}中，
+ * 遵循与{@link ConfigFileApplicationListener}相同的规则，但不启动SpringApplication（因此不创建应用程序上下文）。
+ *
+ * @see NativeEnvironmentProperties.LoadingEngine#PROPERTY_SOURCE_LOADER
+ */
+public class ConfigFileEnvironmentLoader {
+
+	private static final Log logger = LogFactory.getLog(ConfigFileEnvironmentLoader.class);
+
+	private static final Bindable<String[]> STRING_ARRAY = Bindable.of(String[].class);
+
+	private static final Set<String> NO_SEARCH_NAMES = Collections.singleton(null);
+
+	private final ResourceLoader resourceLoader;
+
+	private final List<PropertySourceLoader> propertySourceLoaders;
+
+	public ConfigFileEnvironmentLoader() {
+		this(new DefaultResourceLoader());
+	}
+
+	public ConfigFileEnvironmentLoader(ResourceLoader resourceLoader) {
+		this(resourceLoader, SpringFactoriesLoader.loadFactories(
+				PropertySourceLoader.class, ConfigFileEnvironmentLoader.class.getClassLoader()));
+	}
+
+	public ConfigFileEnvironmentLoader(ResourceLoader resourceLoader,
+			List<PropertySourceLoader> propertySourceLoaders) {
+		this.resourceLoader = resourceLoader;
+		this.propertySourceLoaders = propertySourceLoaders;
+	}
+
+	/**
+	 * Add the config files found by the <code>spring.config.*</code> properties of the
+	 * environment to its property sources, and set its active profiles.
+	 *
+	 * @param environment the environment to load into
+	 */
+	public void load(ConfigurableEnvironment environment) {
+		RandomValuePropertySource.addToEnvironment(environment);
+		new Loader(environment).load();
+	}
+
+	private class Loader {
+
+		private final ConfigurableEnvironment environment;
+
+		private final PropertySourcesPlaceholdersResolver placeholdersResolver;
+
+		private final Deque<Profile> profiles = new LinkedList<>();
+
+		private final List<Profile> processedProfiles = new LinkedList<>();
+
+		private boolean activatedProfiles;
+
+		private final Map<Profile, MutablePropertySources> loaded = new LinkedHashMap<>();
+
+		private final Map<Resource, List<Document>> documents = new HashMap<>();
+
+		Loader(ConfigurableEnvironment environment) {
+			this.environment = environment;
+			this.placeholdersResolver = new PropertySourcesPlaceholdersResolver(
+					environment);
+		}
+
+		void load() {
+			initializeProfiles();
+			while (!this.profiles.isEmpty()) {
+				Profile profile = this.profiles.poll();
+				if (profile != null && !profile.isDefaultProfile()) {
+					addProfileToEnvironment(profile.getName());
+				}
+				load(profile, this::getPositiveProfileFilter,
+						addToLoaded(MutablePropertySources::addLast, false));
+				this.processedProfiles.add(profile);
+			}
+			resetEnvironmentProfiles();
+			load(null, this::getNegativeProfileFilter,
+					addToLoaded(MutablePropertySources::addFirst, true));
+			addLoadedPropertySources();
+		}
+
+		private void initializeProfiles() {
+			// The default profile is represented as null, and it is processed first so
+			// that it has lowest priority
+			this.profiles.add(null);
+			Set<Profile> activatedViaProperty = getProfilesActivatedViaProperty();
+			for (String name : this.environment.getActiveProfiles()) {
+				Profile profile = new Profile(name);
+				if (!activatedViaProperty.contains(profile)) {
+					this.profiles.add(profile);
+				}
+			}
+			addActiveProfiles(activatedViaProperty);
+			if (this.profiles.size() == 1) {
+				for (String name : this.environment.getDefaultProfiles()) {
+					this.profiles.add(new Profile(name, true));
+				}
+			}
+		}
+
+		private Set<Profile> getProfilesActivatedViaProperty() {
+			if (!this.environment.containsProperty(
+					ConfigFileApplicationListener.ACTIVE_PROFILES_PROPERTY)
+					&& !this.environment.containsProperty(
+							ConfigFileApplicationListener.INCLUDE_PROFILES_PROPERTY)) {
+				return Collections.emptySet();
+			}
+			Binder binder = Binder.get(this.environment);
+			Set<Profile> activeProfiles = new LinkedHashSet<>();
+			activeProfiles.addAll(getProfiles(binder,
+					ConfigFileApplicationListener.INCLUDE_PROFILES_PROPERTY));
+			activeProfiles.addAll(getProfiles(binder,
+					ConfigFileApplicationListener.ACTIVE_PROFILES_PROPERTY));
+			return activeProfiles;
+		}
+
+		private void addActiveProfiles(Set<Profile> profiles) {
+			if (profiles.isEmpty() || this.activatedProfiles) {
+				return;
+			}
+			this.profiles.addAll(profiles);
+			this.activatedProfiles = true;
+			this.profiles.removeIf(profile -> profile != null && profile.isDefaultProfile());
+		}
+
+		private void addIncludedProfiles(Set<Profile> includeProfiles) {
+			List<Profile> existingProfiles = new ArrayList<>(this.profiles);
+			this.profiles.clear();
+			this.profiles.addAll(includeProfiles);
+			this.profiles.removeAll(this.processedProfiles);
+			this.profiles.addAll(existingProfiles);
+		}
+
+		private Predicate<Document> getPositiveProfileFilter(Profile profile) {
+			return document -> {
+				if (profile == null) {
+					return ObjectUtils.isEmpty(document.profiles);
+				}
+				return ObjectUtils.containsElement(document.profiles, profile.getName())
+						&& this.environment
+								.acceptsProfiles(Profiles.of(document.profiles));
+			};
+		}
+
+		private Predicate<Document> getNegativeProfileFilter(Profile profile) {
+			return document -> profile == null && !ObjectUtils.isEmpty(document.profiles)
+					&& this.environment.acceptsProfiles(Profiles.of(document.profiles));
+		}
+
+		private BiConsumer<Profile, Document> addToLoaded(
+				BiConsumer<MutablePropertySources, PropertySource<?>> addMethod,
+				boolean checkForExisting) {
+			return (profile, document) -> {
+				if (checkForExisting) {
+					for (MutablePropertySources merged : this.loaded.values()) {
+						if (merged.contains(document.propertySource.getName())) {
+							return;
+						}
+					}
+				}
+				MutablePropertySources merged = this.loaded.computeIfAbsent(profile,
+						key -> new MutablePropertySources());
+				addMethod.accept(merged, document.propertySource);
+			};
+		}
+
+		private void load(Profile profile,
+				Function<Profile, Predicate<Document>> filterFactory,
+				BiConsumer<Profile, Document> consumer) {
+			for (String location : getSearchLocations()) {
+				Set<String> names = location.endsWith("/") ? getSearchNames()
+						: NO_SEARCH_NAMES;
+				for (String name : names) {
+					load(location, name, profile, filterFactory, consumer);
+				}
+			}
+		}
+
+		private void load(String location, String name, Profile profile,
+				Function<Profile, Predicate<Document>> filterFactory,
+				BiConsumer<Profile, Document> consumer) {
+			if (!StringUtils.hasText(name)) {
+				for (PropertySourceLoader loader : propertySourceLoaders) {
+					if (canLoadFileExtension(loader, location)) {
+						load(loader, location, profile, filterFactory.apply(profile),
+								consumer);
+						return;
+					}
+				}
+			}
+			Set<String> processed = new HashSet<>();
+			for (PropertySourceLoader loader : propertySourceLoaders) {
+				for (String fileExtension : loader.getFileExtensions()) {
+					if (processed.add(fileExtension)) {
+						loadForFileExtension(loader, location + name, "." + fileExtension,
+								profile, filterFactory, consumer);
+					}
+				}
+			}
+		}
+
+		private boolean canLoadFileExtension(PropertySourceLoader loader, String name) {
+			for (String fileExtension : loader.getFileExtensions()) {
+				if (StringUtils.endsWithIgnoreCase(name, fileExtension)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void loadForFileExtension(PropertySourceLoader loader, String prefix,
+				String fileExtension, Profile profile,
+				Function<Profile, Predicate<Document>> filterFactory,
+				BiConsumer<Profile, Document> consumer) {
+			Predicate<Document> defaultFilter = filterFactory.apply(null);
+			Predicate<Document> profileFilter = filterFactory.apply(profile);
+			if (profile != null) {
+				// Try profile-specific file and profile section in profile file
+				String profileSpecificFile = prefix + "-" + profile + fileExtension;
+				load(loader, profileSpecificFile, profile, defaultFilter, consumer);
+				load(loader, profileSpecificFile, profile, profileFilter, consumer);
+				// Try profile specific sections in files we've already processed
+				for (Profile processedProfile : this.processedProfiles) {
+					if (processedProfile != null) {
+						String previouslyLoaded = prefix + "-" + processedProfile
+								+ fileExtension;
+						load(loader, previouslyLoaded, profile, profileFilter, consumer);
+					}
+				}
+			}
+			// Also try the profile-specific section (if any) of the normal file
+			load(loader, prefix + fileExtension, profile, profileFilter, consumer);
+		}
+
+		private void load(PropertySourceLoader loader, String location, Profile profile,
+				Predicate<Document> filter, BiConsumer<Profile, Document> consumer) {
+			try {
+				Resource resource = resourceLoader.getResource(location);
+				if (resource == null || !resource.exists()) {
+					return;
+				}
+				if (!StringUtils.hasText(
+						StringUtils.getFilenameExtension(resource.getFilename()))) {
+					return;
+				}
+				String name = "applicationConfig: [" + location + "]";
+				List<Document> documents = loadDocuments(loader, name, resource);
+				if (CollectionUtils.isEmpty(documents)) {
+					return;
+				}
+				List<Document> loaded = new ArrayList<>();
+				for (Document document : documents) {
+					if (filter.test(document)) {
+						addActiveProfiles(document.activeProfiles);
+						addIncludedProfiles(document.includeProfiles);
+						loaded.add(document);
+					}
+				}
+				Collections.reverse(loaded);
+				for (Document document : loaded) {
+					consumer.accept(profile, document);
+				}
+				if (!loaded.isEmpty() && logger.isDebugEnabled()) {
+					logger.debug("Loaded config file '" + location + "'"
+							+ (profile != null ? " for profile " + profile : ""));
+				}
+			}
+			catch (Exception ex) {
+				throw new IllegalStateException("Failed to load property "
+						+ "source from location '" + location + "'", ex);
+			}
+		}
+
+		private List<Document> loadDocuments(PropertySourceLoader loader, String name,
+				Resource resource) throws IOException {
+			List<Document> documents = this.documents.get(resource);
+			if (documents == null) {
+				documents = new ArrayList<>();
+				List<PropertySource<?>> loaded = loader.load(name, resource);
+				if (loaded != null) {
+					for (PropertySource<?> propertySource : loaded) {
+						documents.add(asDocument(propertySource));
+					}
+				}
+				this.documents.put(resource, documents);
+			}
+			return documents;
+		}
+
+		private Document asDocument(PropertySource<?> propertySource) {
+			Binder binder = new Binder(ConfigurationPropertySources.from(propertySource),
+					this.placeholdersResolver);
+			return new Document(propertySource,
+					binder.bind("spring.profiles", STRING_ARRAY).orElse(null),
+					getProfiles(binder,
+							ConfigFileApplicationListener.ACTIVE_PROFILES_PROPERTY),
+					getProfiles(binder,
+							ConfigFileApplicationListener.INCLUDE_PROFILES_PROPERTY));
+		}
+
+		private Set<Profile> getProfiles(Binder binder, String name) {
+			Set<Profile> profiles = new LinkedHashSet<>();
+			for (String profile : binder.bind(name, STRING_ARRAY)
+					.orElse(new String[0])) {
+				profiles.add(new Profile(profile));
+			}
+			return profiles;
+		}
+
+		private void addProfileToEnvironment(String profile) {
+			for (String activeProfile : this.environment.getActiveProfiles()) {
+				if (activeProfile.equals(profile)) {
+					return;
+				}
+			}
+			this.environment.addActiveProfile(profile);
+		}
+
+		private Set<String> getSearchLocations() {
+			Set<String> locations = new LinkedHashSet<>();
+			String property = ConfigFileApplicationListener.CONFIG_LOCATION_PROPERTY;
+			if (this.environment.containsProperty(property)) {
+				for (String path : asResolvedSet(this.environment.getProperty(property))) {
+					if (!path.contains("$")) {
+						path = StringUtils.cleanPath(path);
+						if (!ResourceUtils.isUrl(path)) {
+							path = ResourceUtils.FILE_URL_PREFIX + path;
+						}
+					}
+					locations.add(path);
+				}
+			}
+			return locations;
+		}
+
+		private Set<String> getSearchNames() {
+			String property = ConfigFileApplicationListener.CONFIG_NAME_PROPERTY;
+			if (this.environment.containsProperty(property)) {
+				return asResolvedSet(this.environment.getProperty(property));
+			}
+			return asResolvedSet("application");
+		}
+
+		private Set<String> asResolvedSet(String value) {
+			List<String> list = Arrays.asList(StringUtils.trimArrayElements(StringUtils
+					.commaDelimitedListToStringArray(value != null
+							? this.environment.resolvePlaceholders(value) : "")));
+			Collections.reverse(list);
+			return new LinkedHashSet<>(list);
+		}
+
+		/**
+		 * Makes the order of active profiles in the environment match the order in
+		 * which they were processed.
+		 */
+		private void resetEnvironmentProfiles() {
+			List<String> names = new ArrayList<>();
+			for (Profile profile : this.processedProfiles) {
+				if (profile != null && !profile.isDefaultProfile()) {
+					names.add(profile.getName());
+				}
+			}
+			this.environment.setActiveProfiles(names.toArray(new String[0]));
+		}
+
+		private void addLoadedPropertySources() {
+			MutablePropertySources destination = this.environment.getPropertySources();
+			List<MutablePropertySources> loaded = new ArrayList<>(this.loaded.values());
+			Collections.reverse(loaded);
+			String lastAdded = null;
+			Set<String> added = new HashSet<>();
+			for (MutablePropertySources sources : loaded) {
+				for (PropertySource<?> source : sources) {
+					if (added.add(source.getName())) {
+						if (lastAdded == null) {
+							destination.addLast(source);
+						}
+						else {
+							destination.addAfter(lastAdded, source);
+						}
+						lastAdded = source.getName();
+					}
+				}
+			}
+		}
+
+	}
+
+	private static class Profile {
+
+		private final String name;
+
+		private final boolean defaultProfile;
+
+		Profile(String name) {
+			this(name, false);
+		}
+
+		Profile(String name, boolean defaultProfile) {
+			this.name = name;
+			this.defaultProfile = defaultProfile;
+		}
+
+		String getName() {
+			return this.name;
+		}
+
+		boolean isDefaultProfile() {
+			return this.defaultProfile;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (obj == null || obj.getClass() != getClass()) {
+				return false;
+			}
+			return ((Profile) obj).name.equals(this.name);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.name.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return this.name;
+		}
+
+	}
+
+	private static class Document {
+
+		private final PropertySource<?> propertySource;
+
+		private final String[] profiles;
+
+		private final Set<Profile> activeProfiles;
+
+		private final Set<Profile> includeProfiles;
+
+		Document(PropertySource<?> propertySource, String[] profiles,
+				Set<Profile> activeProfiles, Set<Profile> includeProfiles) {
+			this.propertySource = propertySource;
+			this.profiles = profiles;
+			this.activeProfiles = activeProfiles;
+			this.includeProfiles = includeProfiles;
+		}
+
+	}
+
+}
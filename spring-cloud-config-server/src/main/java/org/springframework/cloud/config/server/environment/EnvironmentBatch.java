@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A batch of environment lookups made by one thread, e.g. for the batch endpoint. While a
+ * batch is open, a repository refreshes each label (fetching from the remote) at most
+ * once, and repositories without a cache of parsed files share one for the duration of
+ * the batch. A batch must be closed by the thread that opened it, so use it in a
+ * try-with-resources block.
+ *
+ * 由一个线程发起的一批环境查找，例如用于批量端点。在批次打开期间，存储库对每个标签最多刷新一次（从远程获取），
+ * 没有已解析文件缓存的存储库在批次期间共享一个缓存。批次必须由打开它的线程关闭，因此请在try-with-resources块中使用它。
+ */
+public final class EnvironmentBatch implements AutoCloseable {
+
+	private static final ThreadLocal<EnvironmentBatch> current = new ThreadLocal<>();
+
+	private static final int FILE_CACHE_SIZE = 1000;
+
+	private final Map<Object, Set<String>> refreshed = new IdentityHashMap<>();
+
+	private final boolean owner;
+
+	private PropertySourceFileCache fileCache;
+
+	private EnvironmentBatch(boolean owner) {
+		this.owner = owner;
+	}
+
+	/**
+	 * Open a batch on the current thread. If there is one already, this joins it (and
+	 * closing it has no effect).
+	 *
+	 * @return the batch
+	 */
+	public static EnvironmentBatch open() {
+		EnvironmentBatch batch = current.get();
+		if (batch != null) {
+			return new EnvironmentBatch(false);
+		}
+		batch = new EnvironmentBatch(true);
+		current.set(batch);
+		return batch;
+	}
+
+	@Override
+	public void close() {
+		if (this.owner) {
+			current.remove();
+		}
+	}
+
+	/**
+	 * @return true if a batch is open on the current thread
+	 */
+	static boolean isOpen() {
+		return current.get() != null;
+	}
+
+	/**
+	 * @return true if a batch is open and the repository has already refreshed the label
+	 * in it
+	 */
+	static boolean isRefreshed(Object repository, String label) {
+		EnvironmentBatch batch = current.get();
+		if (batch == null) {
+			return false;
+		}
+		Set<String> labels = batch.refreshed.get(repository);
+		return labels != null && labels.contains(label);
+	}
+
+	/**
+	 * Record that the repository has refreshed the label (if a batch is open).
+	 */
+	static void setRefreshed(Object repository, String label) {
+		EnvironmentBatch batch = current.get();
+		if (batch != null) {
+			batch.refreshed.computeIfAbsent(repository, key -> new HashSet<>())
+					.add(label);
+		}
+	}
+
+	/**
+	 * @return a cache of parsed files for the batch, or null if there is no batch open
+	 */
+	static PropertySourceFileCache getFileCache() {
+		EnvironmentBatch batch = current.get();
+		if (batch == null) {
+			return null;
+		}
+		if (batch.fileCache == null) {
+			batch.fileCache = new PropertySourceFileCache(FILE_CACHE_SIZE);
+		}
+		return batch.fileCache;
+	}
+
+}
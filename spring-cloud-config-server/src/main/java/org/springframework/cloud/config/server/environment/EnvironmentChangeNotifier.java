@@ -0,0 +1,283 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.context.ApplicationListener;
+import org.springframework.http.MediaType;
+import org.springframework.util.ObjectUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Keeps the streams of the clients that watch their environment, and sends a
+ * <code>change</code> event (with the new version) to them when the version of the
+ * environment changes. The watched environments are loaded again when a
+ * {@link RepositoryChangeEvent} names their application (e.g. from the monitor, or from a
+ * git fetch that updated refs) and, if a check interval is set, periodically, which refreshes the repository once for
+ * all the clients watching the same environment. Those checks run without a request, so
+ * they fail for backends that take credentials from the request (e.g. Vault), and only
+ * the first failure of each watched environment is logged as a warning.
+ *
+ * 保存监视其环境的客户端的流，并在环境版本更改时向它们发送<code>change</code>事件（带有新版本）。
+ * 当{@link RepositoryChangeEvent}指明其应用程序时（例如来自monitor，或来自更新了引用的git获取），以及如果设置了检查间隔则定期地，
+ * 会重新加载被监视的环境，这样对于监视同一环境的所有客户端，存储库只刷新一次。
+ * 这些检查在没有请求的情况下运行，因此对于从请求中获取凭据的后端（例如Vault）会失败，并且每个被监视环境只有第一次失败会被记录为警告。
+ */
+public class EnvironmentChangeNotifier
+		implements ApplicationListener<RepositoryChangeEvent>, DisposableBean {
+
+	/**
+	 * The name of the events sent when the version of an environment changed.
+	 */
+	public static final String CHANGE_EVENT = "change";
+
+	private static final Log logger = LogFactory.getLog(EnvironmentChangeNotifier.class);
+
+	private final EnvironmentController environmentController;
+
+	private final long timeout;
+
+	private final ConcurrentMap<WatchKey, Watch> watches = new ConcurrentHashMap<>();
+
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * @param environmentController the controller that loads the environments
+	 * @param timeout the time (in milliseconds) after which a stream is closed
+	 * @param checkInterval the time (in seconds) between checks of all the watched
+	 * environments (0 to only check on a {@link RepositoryChangeEvent})
+	 */
+	public EnvironmentChangeNotifier(EnvironmentController environmentController,
+			long timeout, int checkInterval) {
+		this.environmentController = environmentController;
+		this.timeout = timeout;
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "config-server-watch");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (checkInterval > 0) {
+			this.executor.scheduleWithFixedDelay(() -> check(key -> true), checkInterval,
+					checkInterval, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Open a stream of the changes of an environment.
+	 *
+	 * @param name the application name
+	 * @param profiles the profiles
+	 * @param label the label (null for the default)
+	 * @param version the version the client has (null if not known): if the environment
+	 * has another version already the first event is sent straight away
+	 * @return the stream
+	 */
+	public SseEmitter watch(String name, String profiles, String label, String version) {
+		WatchKey key = new WatchKey(name, profiles, label);
+		SseEmitter emitter = new SseEmitter(this.timeout);
+		Watch watch = this.watches.compute(key, (k, existing) -> {
+			Watch result = existing == null ? new Watch() : existing;
+			result.emitters.add(emitter);
+			return result;
+		});
+		Runnable remove = () -> remove(key, emitter);
+		emitter.onCompletion(remove);
+		emitter.onTimeout(remove);
+		emitter.onError(error -> remove(key, emitter));
+		if (watch.version == null) {
+			check(key, watch);
+		}
+		String current = watch.version;
+		if (version != null && current != null && !current.equals(version)) {
+			send(key, emitter, event(key, current, watch.state));
+		}
+		return emitter;
+	}
+
+	@Override
+	public void onApplicationEvent(RepositoryChangeEvent event) {
+		this.executor.execute(() -> check(key -> event.affects(key.name)));
+	}
+
+	/**
+	 * @return the number of open streams
+	 */
+	public int getWatchCount() {
+		int count = 0;
+		for (Watch watch : this.watches.values()) {
+			count += watch.emitters.size();
+		}
+		return count;
+	}
+
+	@Override
+	public void destroy() {
+		this.executor.shutdownNow();
+		for (Watch watch : this.watches.values()) {
+			for (SseEmitter emitter : watch.emitters) {
+				emitter.complete();
+			}
+		}
+		this.watches.clear();
+	}
+
+	void check(Predicate<WatchKey> filter) {
+		for (Map.Entry<WatchKey, Watch> entry : this.watches.entrySet()) {
+			if (filter.test(entry.getKey())) {
+				check(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private void check(WatchKey key, Watch watch) {
+		Environment environment;
+		try {
+			environment = this.environmentController.labelled(key.name, key.profiles,
+					key.label);
+		}
+		catch (RuntimeException e) {
+			// Only once until it works again, e.g. a backend that needs the credentials of
+			// a request fails every check made in the background
+			if (!watch.failing) {
+				watch.failing = true;
+				logger.warn("Cannot check watched environment: " + key, e);
+			}
+			else if (logger.isDebugEnabled()) {
+				logger.debug("Cannot check watched environment: " + key, e);
+			}
+			return;
+		}
+		watch.failing = false;
+		String version = environment.getVersion();
+		String previous;
+		synchronized (watch) {
+			previous = watch.version;
+			if (version == null || version.equals(previous)) {
+				return;
+			}
+			watch.version = version;
+			watch.state = environment.getState();
+		}
+		if (previous != null) {
+			Map<String, Object> event = event(key, version, environment.getState());
+			for (SseEmitter emitter : watch.emitters) {
+				send(key, emitter, event);
+			}
+		}
+	}
+
+	private Map<String, Object> event(WatchKey key, String version, String state) {
+		Map<String, Object> event = new LinkedHashMap<>();
+		event.put("name", key.name);
+		event.put("profiles", key.profiles);
+		event.put("label", key.label);
+		event.put("version", version);
+		event.put("state", state);
+		return event;
+	}
+
+	private void send(WatchKey key, SseEmitter emitter, Map<String, Object> event) {
+		try {
+			emitter.send(SseEmitter.event().name(CHANGE_EVENT)
+					.id(String.valueOf(event.get("version")))
+					.data(event, MediaType.APPLICATION_JSON));
+		}
+		catch (IOException | IllegalStateException e) {
+			// The client went away
+			remove(key, emitter);
+		}
+	}
+
+	private void remove(WatchKey key, SseEmitter emitter) {
+		this.watches.computeIfPresent(key, (k, watch) -> {
+			watch.emitters.remove(emitter);
+			return watch.emitters.isEmpty() ? null : watch;
+		});
+	}
+
+	private static final class Watch {
+
+		private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+		private volatile String version;
+
+		private volatile String state;
+
+		private volatile boolean failing;
+
+	}
+
+	static final class WatchKey {
+
+		private final String name;
+
+		private final String profiles;
+
+		private final String label;
+
+		WatchKey(String name, String profiles, String label) {
+			this.name = name;
+			this.profiles = profiles;
+			this.label = label;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			WatchKey other = (WatchKey) o;
+			return ObjectUtils.nullSafeEquals(this.name, other.name)
+					&& ObjectUtils.nullSafeEquals(this.profiles, other.profiles)
+					&& ObjectUtils.nullSafeEquals(this.label, other.label);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = ObjectUtils.nullSafeHashCode(this.name);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.profiles);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.label);
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return this.name + "/" + this.profiles + "/" + this.label;
+		}
+
+	}
+
+}
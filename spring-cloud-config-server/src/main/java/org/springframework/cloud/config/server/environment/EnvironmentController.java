@@ -15,27 +15,36 @@
  */
 package org.springframework.cloud.config.server.environment;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TreeMap;
 
 import javax.servlet.http.HttpServletResponse;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.DumperOptions.FlowStyle;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.nodes.Tag;
 
 import org.springframework.cloud.config.environment.Environment;
 import org.springframework.cloud.config.environment.PropertySource;
+import org.springframework.cloud.config.server.environment.RenderedResponseCache.RenderedResponse;
+import org.springframework.cloud.config.server.support.EnvironmentPlaceholderResolver;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -46,9 +55,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
 
-import static org.springframework.cloud.config.server.support.EnvironmentPropertySource.prepareEnvironment;
-import static org.springframework.cloud.config.server.support.EnvironmentPropertySource.resolvePlaceholders;
 
 /**
  * @author Dave Syer
@@ -65,12 +74,27 @@ import static org.springframework.cloud.config.server.support.EnvironmentPropert
 @RequestMapping(method = RequestMethod.GET, path = "${spring.cloud.config.server.prefix:}")
 public class EnvironmentController {
 
+	/**
+	 * The charset of the rendered responses (the one that the string message converter
+	 * of Spring Boot writes strings in), which is also added to their content type.
+	 */
+	private static final Charset RESPONSE_CHARSET = StandardCharsets.UTF_8;
+
+	/**
+	 * The size (in bytes) up to which a rendered response is held in memory until it is
+	 * complete. Only larger responses are streamed, so that a failure to render any
+	 * other response is still reported with an error status.
+	 */
+	private static final int STREAMING_THRESHOLD = 1024 * 1024;
+
 	private EnvironmentRepository repository;
 	private ObjectMapper objectMapper;
 
 	private boolean stripDocument = true;
 	private boolean acceptEmpty = true;
 
+	private RenderedResponseCache responseCache;
+
 	public EnvironmentController(EnvironmentRepository repository) {
 		this(repository, new ObjectMapper());
 	}
@@ -99,17 +123,43 @@ public class EnvironmentController {
 	public void setAcceptEmpty(boolean acceptEmpty) {
 		this.acceptEmpty = acceptEmpty;
 	}
+
+	/**
+	 * Cache for the rendered properties, JSON and YAML responses (null disables it).
+	 *
+	 * @param responseCache the cache to set
+	 */
+	public void setResponseCache(RenderedResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
 	
+	public Environment defaultLabel(String name, String profiles) {
+		return defaultLabel(name, profiles, null);
+	}
+
 	@RequestMapping("/{name}/{profiles:.*[^-].*}")
 	public Environment defaultLabel(@PathVariable String name,
-			@PathVariable String profiles) {
-		Environment environment = labelled(name, profiles, null);
+			@PathVariable String profiles, WebRequest request) {
+		Environment environment = labelled(name, profiles, null, request);
 		return environment;
 	}
 
+	/**
+	 * Load the environment, or return null if the request carries an
+	 * <code>If-None-Match</code> header matching the ETag of the environment (the
+	 * response is then a 304).
+	 */
 	@RequestMapping("/{name}/{profiles}/{label:.*}")
 	public Environment labelled(@PathVariable String name, @PathVariable String profiles,
-			@PathVariable String label) {
+			@PathVariable String label, WebRequest request) {
+		Environment environment = labelled(name, profiles, label);
+		if (notModified(environment, request)) {
+			return null;
+		}
+		return environment;
+	}
+
+	public Environment labelled(String name, String profiles, String label) {
 		if (name != null && name.contains("(_)")) {
 			// "(_)" is uncommon in a git repo name, but "/" cannot be matched
 			// by Spring MVC
@@ -129,352 +179,493 @@ public class EnvironmentController {
 		return environment;
 	}
 
+	public ResponseEntity<String> properties(String name, String profiles,
+			boolean resolvePlaceholders) throws IOException {
+		return labelledProperties(name, profiles, null, resolvePlaceholders);
+	}
+
 	@RequestMapping("/{name}-{profiles}.properties")
-	public ResponseEntity<String> properties(@PathVariable String name,
+	public ResponseEntity<byte[]> properties(@PathVariable String name,
 			@PathVariable String profiles,
-			@RequestParam(defaultValue = "true") boolean resolvePlaceholders)
-			throws IOException {
-		return labelledProperties(name, profiles, null, resolvePlaceholders);
+			@RequestParam(defaultValue = "true") boolean resolvePlaceholders,
+			WebRequest request) throws Exception {
+		return labelledProperties(name, profiles, null, resolvePlaceholders, request);
 	}
 
-	@RequestMapping("/{label}/{name}-{profiles}.properties")
-	public ResponseEntity<String> labelledProperties(@PathVariable String name,
-			@PathVariable String profiles, @PathVariable String label,
-			@RequestParam(defaultValue = "true") boolean resolvePlaceholders)
-			throws IOException {
+	public ResponseEntity<String> labelledProperties(String name, String profiles,
+			String label, boolean resolvePlaceholders) throws IOException {
 		validateProfiles(profiles);
 		Environment environment = labelled(name, profiles, label);
+		return getSuccess(
+				render(this::writeProperties, environment, resolvePlaceholders));
+	}
+
+	@RequestMapping("/{label}/{name}-{profiles}.properties")
+	public ResponseEntity<byte[]> labelledProperties(@PathVariable String name,
+			@PathVariable String profiles, @PathVariable String label,
+			@RequestParam(defaultValue = "true") boolean resolvePlaceholders,
+			WebRequest request) throws Exception {
+		return render(name, profiles, label, resolvePlaceholders, "properties",
+				MediaType.TEXT_PLAIN, this::writeProperties, request);
+	}
+
+	private void writeProperties(Environment environment, boolean resolvePlaceholders,
+			Writer output) throws IOException {
 		Map<String, Object> properties = convertToProperties(environment);
-		String propertiesString = getPropertiesString(properties);
-		if (resolvePlaceholders) {
-			propertiesString = resolvePlaceholders(prepareEnvironment(environment),
-					propertiesString);
+		Writer writer = new PlaceholderResolvingWriter(output, resolvePlaceholders
+				? new EnvironmentPlaceholderResolver(environment) : null);
+		boolean first = true;
+		for (Entry<String, Object> entry : properties.entrySet()) {
+			if (!first) {
+				writer.write("\n");
+			}
+			writer.write(entry.getKey() + ": " + entry.getValue());
+			first = false;
 		}
-		return getSuccess(propertiesString);
+		writer.close();
+	}
+
+	public ResponseEntity<String> jsonProperties(String name, String profiles,
+			boolean resolvePlaceholders) throws Exception {
+		return labelledJsonProperties(name, profiles, null, resolvePlaceholders);
 	}
 
 	@RequestMapping("{name}-{profiles}.json")
-	public ResponseEntity<String> jsonProperties(@PathVariable String name,
+	public ResponseEntity<byte[]> jsonProperties(@PathVariable String name,
 			@PathVariable String profiles,
-			@RequestParam(defaultValue = "true") boolean resolvePlaceholders)
-			throws Exception {
-		return labelledJsonProperties(name, profiles, null, resolvePlaceholders);
+			@RequestParam(defaultValue = "true") boolean resolvePlaceholders,
+			WebRequest request) throws Exception {
+		return labelledJsonProperties(name, profiles, null, resolvePlaceholders,
+				request);
 	}
 
-	@RequestMapping("/{label}/{name}-{profiles}.json")
-	public ResponseEntity<String> labelledJsonProperties(@PathVariable String name,
-			@PathVariable String profiles, @PathVariable String label,
-			@RequestParam(defaultValue = "true") boolean resolvePlaceholders)
-			throws Exception {
+	public ResponseEntity<String> labelledJsonProperties(String name, String profiles,
+			String label, boolean resolvePlaceholders) throws Exception {
 		validateProfiles(profiles);
 		Environment environment = labelled(name, profiles, label);
+		return getSuccess(render(this::writeJson, environment, resolvePlaceholders),
+				MediaType.APPLICATION_JSON);
+	}
+
+	@RequestMapping("/{label}/{name}-{profiles}.json")
+	public ResponseEntity<byte[]> labelledJsonProperties(@PathVariable String name,
+			@PathVariable String profiles, @PathVariable String label,
+			@RequestParam(defaultValue = "true") boolean resolvePlaceholders,
+			WebRequest request) throws Exception {
+		return render(name, profiles, label, resolvePlaceholders, "json",
+				MediaType.APPLICATION_JSON, this::writeJson, request);
+	}
+
+	private void writeJson(Environment environment, boolean resolvePlaceholders,
+			Writer output) throws IOException {
 		Map<String, Object> properties = convertToMap(environment);
-		String json = this.objectMapper.writeValueAsString(properties);
-		if (resolvePlaceholders) {
-			json = resolvePlaceholders(prepareEnvironment(environment), json);
-		}
-		return getSuccess(json, MediaType.APPLICATION_JSON);
+		EnvironmentPlaceholderResolver placeholders = resolvePlaceholders
+				? new EnvironmentPlaceholderResolver(environment)
+				: null;
+		JsonGenerator generator = this.objectMapper.getFactory().createGenerator(output);
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		writeJsonValue(generator, properties, placeholders);
+		generator.close();
 	}
 
-	private String getPropertiesString(Map<String, Object> properties) {
-		StringBuilder output = new StringBuilder();
-		for (Entry<String, Object> entry : properties.entrySet()) {
-			if (output.length() > 0) {
-				output.append("\n");
+	/**
+	 * Write a value of the nested map, resolving placeholders in the keys and string
+	 * values one at a time (if a prepared environment is provided).
+	 */
+	private void writeJsonValue(JsonGenerator generator, Object value,
+			EnvironmentPlaceholderResolver placeholders) throws IOException {
+		if (value instanceof Map) {
+			generator.writeStartObject();
+			for (Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				generator.writeFieldName(
+						resolveValue(placeholders, String.valueOf(entry.getKey())));
+				writeJsonValue(generator, entry.getValue(), placeholders);
 			}
-			String line = entry.getKey() + ": " + entry.getValue();
-			output.append(line);
+			generator.writeEndObject();
 		}
-		return output.toString();
+		else if (value instanceof Collection) {
+			generator.writeStartArray();
+			for (Object item : (Collection<?>) value) {
+				writeJsonValue(generator, item, placeholders);
+			}
+			generator.writeEndArray();
+		}
+		else if (value instanceof String) {
+			generator.writeString(resolveValue(placeholders, (String) value));
+		}
+		else {
+			generator.writeObject(value);
+		}
+	}
+
+	private static String resolveValue(EnvironmentPlaceholderResolver placeholders,
+			String value) {
+		return placeholders == null ? value : placeholders.resolvePlaceholders(value);
+	}
+
+	public ResponseEntity<String> yaml(String name, String profiles,
+			boolean resolvePlaceholders) throws Exception {
+		return labelledYaml(name, profiles, null, resolvePlaceholders);
 	}
 
 	@RequestMapping({ "/{name}-{profiles}.yml", "/{name}-{profiles}.yaml" })
-	public ResponseEntity<String> yaml(@PathVariable String name,
+	public ResponseEntity<byte[]> yaml(@PathVariable String name,
 			@PathVariable String profiles,
-			@RequestParam(defaultValue = "true") boolean resolvePlaceholders)
-			throws Exception {
-		return labelledYaml(name, profiles, null, resolvePlaceholders);
+			@RequestParam(defaultValue = "true") boolean resolvePlaceholders,
+			WebRequest request) throws Exception {
+		return labelledYaml(name, profiles, null, resolvePlaceholders, request);
+	}
+
+	public ResponseEntity<String> labelledYaml(String name, String profiles,
+			String label, boolean resolvePlaceholders) throws Exception {
+		validateProfiles(profiles);
+		Environment environment = labelled(name, profiles, label);
+		return getSuccess(render(this::writeYaml, environment, resolvePlaceholders));
 	}
 
 	@RequestMapping({ "/{label}/{name}-{profiles}.yml",
 			"/{label}/{name}-{profiles}.yaml" })
-	public ResponseEntity<String> labelledYaml(@PathVariable String name,
+	public ResponseEntity<byte[]> labelledYaml(@PathVariable String name,
 			@PathVariable String profiles, @PathVariable String label,
-			@RequestParam(defaultValue = "true") boolean resolvePlaceholders)
-			throws Exception {
-		validateProfiles(profiles);
-		Environment environment = labelled(name, profiles, label);
+			@RequestParam(defaultValue = "true") boolean resolvePlaceholders,
+			WebRequest request) throws Exception {
+		return render(name, profiles, label, resolvePlaceholders, "yaml",
+				MediaType.TEXT_PLAIN, this::writeYaml, request);
+	}
+
+	private void writeYaml(Environment environment, boolean resolvePlaceholders,
+			Writer output) throws IOException {
 		Map<String, Object> result = convertToMap(environment);
 		if (this.stripDocument && result.size() == 1
 				&& result.keySet().iterator().next().equals("document")) {
 			Object value = result.get("document");
 			if (value instanceof Collection) {
-				return getSuccess(new Yaml().dumpAs(value, Tag.SEQ, FlowStyle.BLOCK));
+				output.write(new Yaml().dumpAs(value, Tag.SEQ, FlowStyle.BLOCK));
 			}
 			else {
-				return getSuccess(new Yaml().dumpAs(value, Tag.STR, FlowStyle.BLOCK));
+				output.write(new Yaml().dumpAs(value, Tag.STR, FlowStyle.BLOCK));
 			}
+			output.flush();
+			return;
 		}
-		String yaml = new Yaml().dumpAsMap(result);
-
-		if (resolvePlaceholders) {
-			yaml = resolvePlaceholders(prepareEnvironment(environment), yaml);
-		}
-
-		return getSuccess(yaml);
+		DumperOptions options = new DumperOptions();
+		options.setDefaultFlowStyle(FlowStyle.BLOCK);
+		Writer writer = new PlaceholderResolvingWriter(output, resolvePlaceholders
+				? new EnvironmentPlaceholderResolver(environment) : null);
+		new Yaml(options).dump(result, writer);
+		writer.close();
 	}
 
 	/**
-	 * Method {@code convertToMap} converts an {@code Environment} to a nested Map which represents a yml/json structure.
-	 *
-	 * @param input the environment to be converted
-	 * @return the nested map containing the environment's properties
+	 * Load the environment and render it (or take the rendered bytes from the response
+	 * cache). Without a cache a response that outgrows {@link #STREAMING_THRESHOLD} is
+	 * written straight to the output stream of the response (and null is returned), so
+	 * the whole body is never held in memory. Also returns null if the client already
+	 * has the current version (the response is then a 304).
 	 */
-	private Map<String, Object> convertToMap(Environment input) {
-		// First use the current convertToProperties to get a flat Map from the environment
-		Map<String, Object> properties = convertToProperties(input);
-
-		// The root map which holds all the first level properties
-		Map<String, Object> rootMap = new LinkedHashMap<>();
-		for (Map.Entry<String, Object> entry : properties.entrySet()) {
-			String key = entry.getKey();
-			Object value = entry.getValue();
-			PropertyNavigator nav = new PropertyNavigator(key);
-			nav.setMapValue(rootMap, value);
+	private ResponseEntity<byte[]> render(String name, String profiles, String label,
+			boolean resolvePlaceholders, String format, MediaType mediaType,
+			Renderer renderer, WebRequest request) throws Exception {
+		validateProfiles(profiles);
+		Environment environment = labelled(name, profiles, label);
+		String etag = environment == null ? null : getEtag(environment);
+		if (request != null && etag != null && request.checkNotModified(etag)) {
+			return null;
 		}
-		return rootMap;
+		RenderedResponseCache cache = etag == null ? null : this.responseCache;
+		MediaType contentType = new MediaType(mediaType, RESPONSE_CHARSET);
+		RenderedResponse rendered = null;
+		if (cache != null) {
+			rendered = cache.get(name, profiles, label, format, resolvePlaceholders,
+					etag);
+		}
+		if (rendered == null) {
+			// Cached responses are always rendered whole
+			ResponseBuffer bytes = new ResponseBuffer(
+					cache == null ? getResponse(request) : null, contentType);
+			Writer output = new OutputStreamWriter(bytes, RESPONSE_CHARSET);
+			renderer.render(environment, resolvePlaceholders, output);
+			output.flush();
+			if (bytes.isStreaming()) {
+				return null;
+			}
+			byte[] body = bytes.toByteArray();
+			rendered = cache == null ? new RenderedResponse(body, null)
+					: cache.put(name, profiles, label, format, resolvePlaceholders,
+							etag, body);
+		}
+		HttpHeaders headers = getHttpHeaders(contentType);
+		if (cache != null && cache.isGzip()) {
+			headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+			if (rendered.getGzipped() != null && acceptsGzip(request)) {
+				headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+				return new ResponseEntity<>(rendered.getGzipped(), headers,
+						HttpStatus.OK);
+			}
+		}
+		return new ResponseEntity<>(rendered.getBody(), headers, HttpStatus.OK);
 	}
 
-	@ExceptionHandler(RepositoryException.class)
-	public void noSuchLabel(HttpServletResponse response) throws IOException {
-		response.sendError(HttpStatus.NOT_FOUND.value());
+	private String render(Renderer renderer, Environment environment,
+			boolean resolvePlaceholders) throws IOException {
+		StringWriter output = new StringWriter();
+		renderer.render(environment, resolvePlaceholders, output);
+		return output.toString();
 	}
 
-	@ExceptionHandler(IllegalArgumentException.class)
-	public void illegalArgument(HttpServletResponse response) throws IOException {
-		response.sendError(HttpStatus.BAD_REQUEST.value());
+	private HttpServletResponse getResponse(WebRequest request) {
+		if (request instanceof NativeWebRequest) {
+			return ((NativeWebRequest) request)
+					.getNativeResponse(HttpServletResponse.class);
+		}
+		return null;
 	}
 
-	private void validateProfiles(String profiles) {
-		if (profiles.contains("-")) {
-			throw new IllegalArgumentException(
-					"Properties output not supported for name or profiles containing hyphens");
+	private boolean acceptsGzip(WebRequest request) {
+		if (request == null) {
+			return false;
 		}
+		String encodings = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+		return encodings != null && encodings.toLowerCase().contains("gzip");
 	}
 
-	private HttpHeaders getHttpHeaders(MediaType mediaType) {
-		HttpHeaders httpHeaders = new HttpHeaders();
-		httpHeaders.setContentType(mediaType);
-		return httpHeaders;
-	}
+	/**
+	 * Renders an environment in one of the supported formats.
+	 */
+	@FunctionalInterface
+	private interface Renderer {
 
-	private ResponseEntity<String> getSuccess(String body) {
-		return new ResponseEntity<>(body, getHttpHeaders(MediaType.TEXT_PLAIN),
-				HttpStatus.OK);
-	}
+		void render(Environment environment, boolean resolvePlaceholders,
+				Writer output) throws IOException;
 
-	private ResponseEntity<String> getSuccess(String body, MediaType mediaType) {
-		return new ResponseEntity<>(body, getHttpHeaders(mediaType), HttpStatus.OK);
 	}
 
-	private Map<String, Object> convertToProperties(Environment profiles) {
+	/**
+	 * Holds the rendered bytes until there are more than {@link #STREAMING_THRESHOLD} of
+	 * them, and from then on (if there is a response to write to) writes them to the
+	 * response as a 200. A response that is streamed cannot report a failure any more.
+	 */
+	private static class ResponseBuffer extends OutputStream {
 
-		// Map of unique keys containing full map of properties for each unique
-		// key
-		Map<String, Map<String, Object>> map = new LinkedHashMap<>();
-		List<PropertySource> sources = new ArrayList<>(profiles.getPropertySources());
-		Collections.reverse(sources);
-		Map<String, Object> combinedMap = new TreeMap<>();
-		for (PropertySource source : sources) {
+		private final HttpServletResponse response;
 
-			@SuppressWarnings("unchecked")
-			Map<String, Object> value = (Map<String, Object>) source.getSource();
-			for (String key : value.keySet()) {
+		private final MediaType contentType;
 
-				if (!key.contains("[")) {
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
 
-					// Not an array, add unique key to the map
-					combinedMap.put(key, value.get(key));
+		private OutputStream target;
 
-				}
-				else {
+		ResponseBuffer(HttpServletResponse response, MediaType contentType) {
+			this.response = response;
+			this.contentType = contentType;
+		}
 
-					// An existing array might have already been added to the property map
-					// of an unequal size to the current array. Replace the array key in
-					// the current map.
-					key = key.substring(0, key.indexOf("["));
-					Map<String, Object> filtered = new TreeMap<>();
-					for (String index : value.keySet()) {
-						if (index.startsWith(key + "[")) {
-							filtered.put(index, value.get(index));
-						}
-					}
-					map.put(key, filtered);
-				}
-			}
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
 
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			if (this.target == null && this.response != null
+					&& this.buffer.size() + length > STREAMING_THRESHOLD) {
+				this.response.setStatus(HttpStatus.OK.value());
+				this.response.setContentType(this.contentType.toString());
+				this.target = new BufferedOutputStream(this.response.getOutputStream());
+				this.buffer.writeTo(this.target);
+				this.buffer.reset();
+			}
+			if (this.target != null) {
+				this.target.write(bytes, offset, length);
+			}
+			else {
+				this.buffer.write(bytes, offset, length);
+			}
 		}
 
-		// Combine all unique keys for array values into the combined map
-		for (Entry<String, Map<String, Object>> entry : map.entrySet()) {
-			combinedMap.putAll(entry.getValue());
+		@Override
+		public void flush() throws IOException {
+			if (this.target != null) {
+				this.target.flush();
+			}
 		}
 
-		postProcessProperties(combinedMap);
-		return combinedMap;
-	}
+		boolean isStreaming() {
+			return this.target != null;
+		}
 
-	private void postProcessProperties(Map<String, Object> propertiesMap) {
-		for (Iterator<String> iter = propertiesMap.keySet().iterator(); iter.hasNext();) {
-			String key = iter.next();
-			if (key.equals("spring.profiles")) {
-				iter.remove();
-			}
+		byte[] toByteArray() {
+			return this.buffer.toByteArray();
 		}
+
 	}
 
 	/**
-	 * Class {@code PropertyNavigator} is used to navigate through the property key and create necessary Maps and Lists
-	 * making up the nested structure to finally set the property value at the leaf node.
-	 * <p>
-	 * The following rules in yml/json are implemented:
-	 * <pre>
-	 * 1. an array element can be:
-	 *    - a value (leaf)
-	 *    - a map
-	 *    - a nested array
-	 * 2. a map value can be:
-	 *    - a value (leaf)
-	 *    - a nested map
-	 *    - an array
-	 * </pre>
+	 * A writer that resolves placeholders one line at a time, so the rendered text never
+	 * has to be held in memory as a whole. The properties and (block style) YAML
+	 * outputs have one value per line, so this is the same as resolving the whole text.
+	 * Only complete lines are resolved until the writer is closed, which writes the last
+	 * line and flushes the target (but leaves it open). Without placeholders to resolve
+	 * the text is written straight through.
 	 */
-	private static class PropertyNavigator {
+	private static class PlaceholderResolvingWriter extends Writer {
+
+		private final Writer delegate;
 
-		private enum NodeType {LEAF, MAP, ARRAY}
+		private final EnvironmentPlaceholderResolver placeholders;
 
-		private final String propertyKey;
-		private int currentPos;
-		private NodeType valueType;
+		private final StringBuilder line = new StringBuilder();
 
-		private PropertyNavigator(String propertyKey) {
-			this.propertyKey = propertyKey;
-			currentPos = -1;
-			valueType = NodeType.MAP;
+		PlaceholderResolvingWriter(Writer delegate,
+				EnvironmentPlaceholderResolver placeholders) {
+			this.delegate = delegate;
+			this.placeholders = placeholders;
 		}
 
-		private void setMapValue(Map<String, Object> map, Object value) {
-			String key = getKey();
-			if (NodeType.MAP.equals(valueType)) {
-				@SuppressWarnings("unchecked")
-				Map<String, Object> nestedMap = (Map<String, Object>) map.get(key);
-				if (nestedMap == null) {
-					nestedMap = new LinkedHashMap<>();
-					map.put(key, nestedMap);
+		@Override
+		public void write(char[] buffer, int offset, int length) throws IOException {
+			if (this.placeholders == null) {
+				this.delegate.write(buffer, offset, length);
+				return;
+			}
+			for (int i = offset; i < offset + length; i++) {
+				char c = buffer[i];
+				if (c == '\n') {
+					writeLine();
+					this.delegate.write(c);
 				}
-				setMapValue(nestedMap, value);
-			} else if (NodeType.ARRAY.equals(valueType)) {
-				@SuppressWarnings("unchecked")
-				List<Object> list = (List<Object>) map.get(key);
-				if (list == null) {
-					list = new ArrayList<>();
-					map.put(key, list);
+				else {
+					this.line.append(c);
 				}
-				setListValue(list, value);
-			} else {
-				map.put(key, value);
 			}
 		}
 
-		private void setListValue(List<Object> list, Object value) {
-			int index = getIndex();
-			// Fill missing elements if needed
-			while (list.size() <= index) {
-				list.add(null);
-			}
-			if (NodeType.MAP.equals(valueType)) {
-				@SuppressWarnings("unchecked")
-				Map<String, Object> map = (Map<String, Object>) list.get(index);
-				if (map == null) {
-					map = new LinkedHashMap<>();
-					list.set(index, map);
-				}
-				setMapValue(map, value);
-			} else if (NodeType.ARRAY.equals(valueType)) {
-				@SuppressWarnings("unchecked")
-				List<Object> nestedList = (List<Object>) list.get(index);
-				if (nestedList == null) {
-					nestedList = new ArrayList<>();
-					list.set(index, nestedList);
-				}
-				setListValue(nestedList, value);
-			} else {
-				list.set(index, value);
+		private void writeLine() throws IOException {
+			if (this.line.length() > 0) {
+				this.delegate.write(
+						this.placeholders.resolvePlaceholders(this.line.toString()));
+				this.line.setLength(0);
 			}
 		}
 
-		private int getIndex() {
-			// Consider [
-			int start = currentPos + 1;
+		@Override
+		public void flush() throws IOException {
+			// A partial line could still be part of a placeholder
+			this.delegate.flush();
+		}
 
-			for (int i = start; i < propertyKey.length(); i++) {
-				char c = propertyKey.charAt(i);
-				if (c == ']') {
-					currentPos = i;
-					break;
-				} else if (!Character.isDigit(c)) {
-					throw new IllegalArgumentException("Invalid key: " + propertyKey);
-				}
-			}
-			// If no closing ] or if '[]'
-			if (currentPos < start || currentPos == start) {
-				throw new IllegalArgumentException("Invalid key: " + propertyKey);
-			} else {
-				int index = Integer.parseInt(propertyKey.substring(start, currentPos));
-				// Skip the closing ]
-				currentPos++;
-				if (currentPos == propertyKey.length()) {
-					valueType = NodeType.LEAF;
-				} else {
-					switch (propertyKey.charAt(currentPos)) {
-						case '.':
-							valueType = NodeType.MAP;
-							break;
-						case '[':
-							valueType = NodeType.ARRAY;
-							break;
-						default:
-							throw new IllegalArgumentException("Invalid key: " + propertyKey);
-					}
-				}
-				return index;
-			}
+		@Override
+		public void close() throws IOException {
+			writeLine();
+			this.delegate.flush();
 		}
 
-		private String getKey() {
-			// Consider initial value or previous char '.' or '['
-			int start = currentPos + 1;
-			for (int i = start; i < propertyKey.length(); i++) {
-				char currentChar = propertyKey.charAt(i);
-				if (currentChar == '.') {
-					valueType = NodeType.MAP;
-					currentPos = i;
-					break;
-				} else if (currentChar == '[') {
-					valueType = NodeType.ARRAY;
-					currentPos = i;
-					break;
-				}
+	}
+
+	private Map<String, Object> convertToMap(Environment input) {
+		return PropertySourceMerger.nest(convertToProperties(input));
+	}
+
+	/**
+	 * Check the ETag of the environment against the <code>If-None-Match</code> header of
+	 * the request (if there is one). The ETag is also added to the response, so clients
+	 * can use it in their next request.
+	 *
+	 * @return true if the client already has this environment (the response has then
+	 * been marked as 304 Not Modified)
+	 */
+	private boolean notModified(Environment environment, WebRequest request) {
+		if (request == null || environment == null) {
+			return false;
+		}
+		return request.checkNotModified(getEtag(environment));
+	}
+
+	/**
+	 * Compute a strong ETag for an environment from its version and a digest of its
+	 * contents (the version alone is not enough, e.g. for backends without versions or
+	 * with overrides).
+	 *
+	 * @param environment the environment
+	 * @return the quoted ETag
+	 */
+	static String getEtag(Environment environment) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("MD5");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 not supported", e);
+		}
+		update(digest, environment.getName());
+		update(digest, environment.getLabel());
+		update(digest, environment.getVersion());
+		update(digest, environment.getState());
+		if (environment.getProfiles() != null) {
+			for (String profile : environment.getProfiles()) {
+				update(digest, profile);
 			}
-			// If there's no delimiter then it's a key of a leaf
-			if (currentPos < start) {
-				currentPos = propertyKey.length();
-				valueType = NodeType.LEAF;
-				// Else if we encounter '..' or '.[' or start of the property is . or [ then it's invalid
-			} else if (currentPos == start) {
-				throw new IllegalArgumentException("Invalid key: " + propertyKey);
+		}
+		for (PropertySource source : environment.getPropertySources()) {
+			update(digest, source.getName());
+			for (Entry<?, ?> entry : source.getSource().entrySet()) {
+				update(digest, entry.getKey());
+				update(digest, entry.getValue());
 			}
-			return propertyKey.substring(start, currentPos);
 		}
+		StringBuilder etag = new StringBuilder("\"");
+		for (byte b : digest.digest()) {
+			etag.append(Character.forDigit((b >> 4) & 0xF, 16))
+					.append(Character.forDigit(b & 0xF, 16));
+		}
+		return etag.append("\"").toString();
+	}
+
+	private static void update(MessageDigest digest, Object value) {
+		if (value == null) {
+			digest.update((byte) 0);
+			return;
+		}
+		digest.update((byte) 1);
+		byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+		// Length prefix, so that e.g. "ab","c" and "a","bc" differ
+		digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+		digest.update(bytes);
+	}
+
+	@ExceptionHandler(RepositoryException.class)
+	public void noSuchLabel(HttpServletResponse response) throws IOException {
+		response.sendError(HttpStatus.NOT_FOUND.value());
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	public void illegalArgument(HttpServletResponse response) throws IOException {
+		response.sendError(HttpStatus.BAD_REQUEST.value());
+	}
+
+	private void validateProfiles(String profiles) {
+		if (profiles.contains("-")) {
+			throw new IllegalArgumentException(
+					"Properties output not supported for name or profiles containing hyphens");
+		}
+	}
+
+	private HttpHeaders getHttpHeaders(MediaType mediaType) {
+		HttpHeaders httpHeaders = new HttpHeaders();
+		httpHeaders.setContentType(mediaType);
+		return httpHeaders;
+	}
+
+	private ResponseEntity<String> getSuccess(String body) {
+		return new ResponseEntity<>(body, getHttpHeaders(MediaType.TEXT_PLAIN),
+				HttpStatus.OK);
+	}
+
+	private ResponseEntity<String> getSuccess(String body, MediaType mediaType) {
+		return new ResponseEntity<>(body, getHttpHeaders(mediaType), HttpStatus.OK);
+	}
+
+	private Map<String, Object> convertToProperties(Environment environment) {
+		return PropertySourceMerger.merge(environment);
 	}
 }
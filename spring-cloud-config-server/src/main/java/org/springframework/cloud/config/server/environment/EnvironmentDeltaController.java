@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.EnvironmentDelta;
+import org.springframework.cloud.config.server.support.BoundedCache;
+import org.springframework.util.ObjectUtils;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Serves the changes of an environment since a version the client already has, when
+ * the client adds a <code>since</code> parameter (the version of its environment) to
+ * the usual environment endpoints. The environments that have been served recently are
+ * kept, so the delta can be computed without loading old versions from the backend. If
+ * the version is not known (anymore) the response carries the full environment.
+ *
+ * 当客户端向常规环境端点添加<code>since</code>参数（其环境的版本）时，提供自客户端已有版本以来环境的更改。
+ * 最近提供的环境会被保留，因此无需从后端加载旧版本即可计算差异。如果版本未知（或不再已知），响应将携带完整的环境。
+ */
+@RestController
+@RequestMapping(method = RequestMethod.GET, path = "${spring.cloud.config.server.prefix:}")
+public class EnvironmentDeltaController {
+
+	private final EnvironmentController environmentController;
+
+	private final BoundedCache<HistoryKey, Environment> history;
+
+	/**
+	 * @param environmentController the controller that loads the environments
+	 * @param historySize the maximum number of environments to keep
+	 */
+	public EnvironmentDeltaController(EnvironmentController environmentController,
+			int historySize) {
+		this.environmentController = environmentController;
+		this.history = new BoundedCache<>(historySize);
+	}
+
+	@RequestMapping(path = "/{name}/{profiles:.*[^-].*}", params = "since")
+	public EnvironmentDelta defaultLabel(@PathVariable String name,
+			@PathVariable String profiles, @RequestParam String since) {
+		return labelled(name, profiles, null, since);
+	}
+
+	@RequestMapping(path = "/{name}/{profiles}/{label:.*}", params = "since")
+	public EnvironmentDelta labelled(@PathVariable String name,
+			@PathVariable String profiles, @PathVariable String label,
+			@RequestParam String since) {
+		Environment environment = this.environmentController.labelled(name, profiles,
+				label);
+		if (environment == null) {
+			return null;
+		}
+		if (environment.getVersion() == null) {
+			return EnvironmentDelta.full(since, environment);
+		}
+		this.history.put(new HistoryKey(name, profiles, label, environment.getVersion()),
+				environment);
+		Environment previous = this.history
+				.get(new HistoryKey(name, profiles, label, since));
+		if (previous == null) {
+			return EnvironmentDelta.full(since, environment);
+		}
+		return EnvironmentDelta.between(previous, environment);
+	}
+
+	public BoundedCache<?, ?> getHistory() {
+		return this.history;
+	}
+
+	private static final class HistoryKey {
+
+		private final String name;
+
+		private final String profiles;
+
+		private final String label;
+
+		private final String version;
+
+		HistoryKey(String name, String profiles, String label, String version) {
+			this.name = name;
+			this.profiles = profiles;
+			this.label = label;
+			this.version = version;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			HistoryKey other = (HistoryKey) o;
+			return ObjectUtils.nullSafeEquals(this.name, other.name)
+					&& ObjectUtils.nullSafeEquals(this.profiles, other.profiles)
+					&& ObjectUtils.nullSafeEquals(this.label, other.label)
+					&& ObjectUtils.nullSafeEquals(this.version, other.version);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = ObjectUtils.nullSafeHashCode(this.name);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.profiles);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.label);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.version);
+			return result;
+		}
+
+	}
+
+}
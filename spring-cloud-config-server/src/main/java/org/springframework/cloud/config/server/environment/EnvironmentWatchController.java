@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Streams (as server-sent events) the changes of the version of an environment to the
+ * clients that watch it, instead of having them poll the environment endpoints. A stream
+ * is opened by asking for an environment (same path as {@link EnvironmentController})
+ * with <code>Accept: text/event-stream</code>, so it takes no application name.
+ *
+ * 将环境版本的更改（作为服务器发送的事件）流式传输给监视它的客户端，而不是让它们轮询环境端点。
+ * 以<code>Accept: text/event-stream</code>请求环境（与{@link EnvironmentController}相同的路径）即可打开流，
+ * 因此它不会占用任何应用程序名称。
+ */
+@RestController
+@RequestMapping(method = RequestMethod.GET, path = "${spring.cloud.config.server.prefix:}",
+		produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+public class EnvironmentWatchController {
+
+	private final EnvironmentChangeNotifier notifier;
+
+	public EnvironmentWatchController(EnvironmentChangeNotifier notifier) {
+		this.notifier = notifier;
+	}
+
+	@RequestMapping("/{name}/{profiles:.*[^-].*}")
+	public SseEmitter defaultLabel(@PathVariable String name,
+			@PathVariable String profiles,
+			@RequestParam(required = false) String version) {
+		return labelled(name, profiles, null, version);
+	}
+
+	@RequestMapping("/{name}/{profiles}/{label:.*}")
+	public SseEmitter labelled(@PathVariable String name, @PathVariable String profiles,
+			@PathVariable String label, @RequestParam(required = false) String version) {
+		return this.notifier.watch(name, profiles, label, version);
+	}
+
+}
@@ -19,38 +19,65 @@ import java.io.IOException;
 import java.net.Proxy;
 import java.net.URL;
 import java.security.GeneralSecurityException;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.eclipse.jgit.transport.http.HttpConnection;
 import org.eclipse.jgit.transport.http.apache.HttpClientConnection;
 
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.config.server.support.BoundedCache;
 import org.springframework.cloud.config.server.support.HttpClientSupport;
 import org.springframework.util.StringUtils;
 
-import static java.util.stream.Collectors.toMap;
-
 /**
+ * Creates the HTTP connections of JGit with the client of the repository URI (template)
+ * that matches the URL. Each template has one long lived client, with a pool of
+ * connections (and TLS sessions) that all its fetches reuse, and the template that a URL
+ * matches is remembered.
+ *
+ * 使用与URL匹配的存储库URI（模板）的客户端创建JGit的HTTP连接。每个模板有一个长期存在的客户端，
+ * 其连接池（和TLS会话）由其所有获取重用，并且会记住URL匹配的模板。
+ *
  * @author Dylan Roberts
  */
-public class HttpClientConfigurableHttpConnectionFactory implements ConfigurableHttpConnectionFactory {
+public class HttpClientConfigurableHttpConnectionFactory implements ConfigurableHttpConnectionFactory, DisposableBean {
     Log log = LogFactory.getLog(getClass());
 
     private static final String PLACEHOLDER_PATTERN = "\\{(\\w+)}";
 
+    private static final int MATCH_CACHE_SIZE = 1000;
+
+    /**
+     * Stands for no (or more than one) matching template in the cache of matches.
+     */
+    private static final String NO_TEMPLATE = "";
+
     Map<String, HttpClientBuilder> httpClientBuildersByUri = new LinkedHashMap<>();
 
+    private final Map<String, CloseableHttpClient> httpClientsByUri = new ConcurrentHashMap<>();
+
+    private final BoundedCache<String, String> templatesByUrl = new BoundedCache<>(MATCH_CACHE_SIZE);
+
+    private volatile CloseableHttpClient defaultHttpClient;
+
     @Override
     public void addConfiguration(MultipleJGitEnvironmentProperties environmentProperties)
             throws GeneralSecurityException {
@@ -58,6 +85,7 @@ public class HttpClientConfigurableHttpConnectionFactory implements Configurable
         for (JGitEnvironmentProperties repo : environmentProperties.getRepos().values()) {
             addHttpClient(repo);
         }
+        templatesByUrl.invalidateAll();
     }
 
     @Override
@@ -67,18 +95,98 @@ public class HttpClientConfigurableHttpConnectionFactory implements Configurable
 
     @Override
     public HttpConnection create(URL url, Proxy proxy) throws IOException {
-        return new HttpClientConnection(url.toString(), null, lookupHttpClientBuilder(url).build());
+        return new HttpClientConnection(url.toString(), null, lookupHttpClient(url));
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (CloseableHttpClient client : httpClientsByUri.values()) {
+            client.close();
+        }
+        httpClientsByUri.clear();
+        if (defaultHttpClient != null) {
+            defaultHttpClient.close();
+        }
     }
 
     private void addHttpClient(JGitEnvironmentProperties properties) throws GeneralSecurityException {
         if (properties.getUri() != null && properties.getUri().startsWith("http")) {
-            httpClientBuildersByUri.put(properties.getUri(), HttpClientSupport.builder(properties));
+            HttpClientBuilder builder = HttpClientSupport.builder(properties);
+            pool(builder, properties.getHttpPoolSize(), properties.getHttpKeepAlive());
+            httpClientBuildersByUri.put(properties.getUri(), builder);
+            CloseableHttpClient replaced = httpClientsByUri.remove(properties.getUri());
+            if (replaced != null) {
+                try {
+                    replaced.close();
+                }
+                catch (IOException e) {
+                    log.warn("Cannot close http client of " + properties.getUri(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * JGit drops the responses that it retries (a 401 before the credentials are sent, or
+     * a redirect) without reading or closing them, and its connections cannot be closed,
+     * so the body of every unsuccessful response is read at once. That releases its
+     * connection to the pool, which would otherwise stay leased until every later fetch
+     * waits for a connection.
+     */
+    private static final HttpResponseInterceptor RELEASE_UNSUCCESSFUL = (response, context) -> {
+        if (response.getStatusLine().getStatusCode() >= 300 && response.getEntity() != null) {
+            response.setEntity(new BufferedHttpEntity(response.getEntity()));
+        }
+    };
+
+    private static HttpClientBuilder pool(HttpClientBuilder builder, int poolSize, int keepAlive) {
+        long maxKeepAlive = TimeUnit.SECONDS.toMillis(keepAlive);
+        return builder.setMaxConnTotal(poolSize)
+                .setMaxConnPerRoute(poolSize)
+                .setKeepAliveStrategy((response, context) -> {
+                    long duration = DefaultConnectionKeepAliveStrategy.INSTANCE
+                            .getKeepAliveDuration(response, context);
+                    return duration > 0 ? Math.min(duration, maxKeepAlive) : maxKeepAlive;
+                })
+                .addInterceptorLast(RELEASE_UNSUCCESSFUL)
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAlive, TimeUnit.SECONDS);
+    }
+
+    private HttpClient lookupHttpClient(URL url) {
+        String spec = url.toString();
+        String template = templatesByUrl.get(spec);
+        if (template == null) {
+            template = lookupTemplate(url);
+            templatesByUrl.put(spec, template);
+        }
+        if (NO_TEMPLATE.equals(template)) {
+            return getDefaultHttpClient();
+        }
+        return httpClientsByUri.computeIfAbsent(template,
+                key -> httpClientBuildersByUri.get(key).build());
+    }
+
+    private HttpClient getDefaultHttpClient() {
+        if (defaultHttpClient == null) {
+            synchronized (this) {
+                if (defaultHttpClient == null) {
+                    JGitEnvironmentProperties defaults = new JGitEnvironmentProperties();
+                    int timeout = (int) TimeUnit.SECONDS.toMillis(defaults.getTimeout());
+                    HttpClientBuilder builder = HttpClients.custom()
+                            .setDefaultRequestConfig(RequestConfig.custom()
+                                    .setConnectionRequestTimeout(timeout)
+                                    .build());
+                    defaultHttpClient = pool(builder, defaults.getHttpPoolSize(),
+                            defaults.getHttpKeepAlive()).build();
+                }
+            }
         }
+        return defaultHttpClient;
     }
 
-    private HttpClientBuilder lookupHttpClientBuilder(final URL url) {
-        Map<String, HttpClientBuilder> builderMap = httpClientBuildersByUri.entrySet().stream().filter(entry -> {
-            String key = entry.getKey();
+    private String lookupTemplate(final URL url) {
+        List<String> templates = httpClientBuildersByUri.keySet().stream().filter(key -> {
             String spec = getUrlWithPlaceholders(url, key);
             if (spec.equals(key)) {
                 return true;
@@ -92,17 +200,17 @@ public class HttpClientConfigurableHttpConnectionFactory implements Configurable
                 index = spec.lastIndexOf("/");
             }
             return false;
-        }).collect(toMap(Map.Entry::getKey, Map.Entry::getValue));
+        }).collect(Collectors.toList());
 
-        if (builderMap.isEmpty()) {
+        if (templates.isEmpty()) {
             log.warn(String.format("No custom http config found for URL: %s", url));
-            return HttpClients.custom();
+            return NO_TEMPLATE;
         }
-        if (builderMap.size() > 1) {
-            log.error(String.format("More than one git repo URL template matched URL: %s, proxy and skipSslValidation config won't be applied. Matched templates: %s", url, builderMap.keySet().stream().collect(Collectors.joining(", "))));
-            return HttpClients.custom();
+        if (templates.size() > 1) {
+            log.error(String.format("More than one git repo URL template matched URL: %s, proxy and skipSslValidation config won't be applied. Matched templates: %s", url, String.join(", ", templates)));
+            return NO_TEMPLATE;
         }
-        return new ArrayList<>(builderMap.values()).get(0);
+        return templates.get(0);
     }
 
     private String getUrlWithPlaceholders(URL url, String key) {
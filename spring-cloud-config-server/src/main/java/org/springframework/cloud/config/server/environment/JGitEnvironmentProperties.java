@@ -61,6 +61,57 @@ public class JGitEnvironmentProperties extends AbstractScmAccessorProperties
      */
     private int refreshRate = 0;
 
+    /**
+     * Time (in seconds) between fetches from the remote repository in the background.
+     * When set, requests never fetch and only ever read the last fetched state. Default
+     * 0 (fetch on the request path).
+     *
+     * 在后台从远程存储库获取之间的时间（以秒为单位）。设置后，请求从不获取，只读取上次获取的状态。默认0（在请求路径上获取）。
+     */
+    private int backgroundFetchInterval = 0;
+
+    /**
+     * Maximum random delay (in seconds) added to each background fetch interval, so that
+     * many repositories (or servers) do not all fetch at the same moment. Default 0.
+     *
+     * 添加到每个后台获取间隔的最大随机延迟（以秒为单位），以便许多存储库（或服务器）不会同时获取。默认0。
+     */
+    private int backgroundFetchJitter = 0;
+
+    /**
+     * Flag to indicate that files should be read straight from the git object database
+     * for the requested label, instead of checking the label out into the working
+     * directory. Requests for different labels can then be served concurrently.
+     *
+     * 用于指示应直接从git对象数据库中读取所请求标签的文件，而不是将标签检出到工作目录中。这样可以同时处理针对不同标签的请求。
+     */
+    private boolean noCheckout = false;
+
+    /**
+     * The branches (or branch patterns, such as release/*) to clone and fetch, instead
+     * of all of them. Tags are then fetched only when they point into these branches.
+     * Default empty (all the branches and tags).
+     *
+     * 要克隆和获取的分支（或分支模式，例如release/*），而不是所有分支。这样只有指向这些分支的标签才会被获取。默认为空（所有分支和标签）。
+     */
+    private String[] branches = new String[0];
+
+    /**
+     * Maximum number of pooled connections to an HTTP(S) remote repository, reused by all
+     * its fetches. Default 20.
+     *
+     * 与HTTP(S)远程存储库的最大池化连接数，由其所有获取重用。默认20。
+     */
+    private int httpPoolSize = 20;
+
+    /**
+     * Time (in seconds) that an idle pooled connection to an HTTP(S) remote repository is
+     * kept alive for reuse, unless the server asks for less. Default 60.
+     *
+     * 与HTTP(S)远程存储库的空闲池化连接保持活动以供重用的时间（以秒为单位），除非服务器要求更短。默认60。
+     */
+    private int httpKeepAlive = 60;
+
     /**
      * Valid SSH private key. Must be set if ignoreLocalSshSettings is true and Git URI is SSH format.
      * 有效的SSH私钥。 如果ignoreLocalSshSettings为true且Git URI为SSH格式，则必须设置。
@@ -149,6 +200,54 @@ public class JGitEnvironmentProperties extends AbstractScmAccessorProperties
         this.refreshRate = refreshRate;
     }
 
+    public int getBackgroundFetchInterval() {
+        return backgroundFetchInterval;
+    }
+
+    public void setBackgroundFetchInterval(int backgroundFetchInterval) {
+        this.backgroundFetchInterval = backgroundFetchInterval;
+    }
+
+    public int getBackgroundFetchJitter() {
+        return backgroundFetchJitter;
+    }
+
+    public void setBackgroundFetchJitter(int backgroundFetchJitter) {
+        this.backgroundFetchJitter = backgroundFetchJitter;
+    }
+
+    public boolean isNoCheckout() {
+        return noCheckout;
+    }
+
+    public void setNoCheckout(boolean noCheckout) {
+        this.noCheckout = noCheckout;
+    }
+
+    public String[] getBranches() {
+        return branches;
+    }
+
+    public void setBranches(String[] branches) {
+        this.branches = branches;
+    }
+
+    public int getHttpPoolSize() {
+        return httpPoolSize;
+    }
+
+    public void setHttpPoolSize(int httpPoolSize) {
+        this.httpPoolSize = httpPoolSize;
+    }
+
+    public int getHttpKeepAlive() {
+        return httpKeepAlive;
+    }
+
+    public void setHttpKeepAlive(int httpKeepAlive) {
+        this.httpKeepAlive = httpKeepAlive;
+    }
+
     public String getPrivateKey() {
         return privateKey;
     }
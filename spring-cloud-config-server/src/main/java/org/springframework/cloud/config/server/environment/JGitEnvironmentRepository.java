@@ -17,12 +17,27 @@ package org.springframework.cloud.config.server.environment;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 import com.jcraft.jsch.Session;
 import org.eclipse.jgit.api.CheckoutCommand;
@@ -31,6 +46,7 @@ import org.eclipse.jgit.api.CreateBranchCommand.SetupUpstreamMode;
 import org.eclipse.jgit.api.DeleteBranchCommand;
 import org.eclipse.jgit.api.FetchCommand;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.InitCommand;
 import org.eclipse.jgit.api.ListBranchCommand;
 import org.eclipse.jgit.api.ListBranchCommand.ListMode;
 import org.eclipse.jgit.api.MergeCommand;
@@ -44,24 +60,42 @@ import org.eclipse.jgit.api.TransportConfigCallback;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.RefNotFoundException;
 import org.eclipse.jgit.errors.NoRemoteRepositoryException;
+import org.eclipse.jgit.errors.RevisionSyntaxException;
 import org.eclipse.jgit.lib.BranchTrackingStatus;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.CredentialsProvider;
 import org.eclipse.jgit.transport.FetchResult;
 import org.eclipse.jgit.transport.JschConfigSessionFactory;
 import org.eclipse.jgit.transport.OpenSshConfig.Host;
 import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteConfig;
 import org.eclipse.jgit.transport.SshSessionFactory;
 import org.eclipse.jgit.transport.TagOpt;
 import org.eclipse.jgit.transport.TrackingRefUpdate;
+import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.util.FileUtils;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cloud.config.server.support.BoundedCache;
 import org.springframework.cloud.config.server.support.GitCredentialsProviderFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.io.UrlResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
 import static java.lang.String.format;
@@ -80,7 +114,8 @@ import static org.eclipse.jgit.transport.ReceiveCommand.Type.DELETE;
  * @author Gareth Clay
  */
 public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
-		implements EnvironmentRepository, SearchPathLocator, InitializingBean {
+		implements EnvironmentRepository, SearchPathLocator, InitializingBean,
+		DisposableBean, ApplicationEventPublisherAware {
 
 	private static final String FILE_URI_PREFIX = "file:";
 
@@ -106,7 +141,7 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 	 *
 	 * 上次刷新git存储库的时间
 	 */
-	private long lastRefresh;
+	private volatile long lastRefresh;
 
 	/**
 	 * Flag to indicate that the repository should be cloned on startup (not on demand).
@@ -116,6 +151,8 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 	 */
 	private boolean cloneOnStart;
 
+	private final AntPathMatcher matcher = new AntPathMatcher();
+
 	private JGitEnvironmentRepository.JGitFactory gitFactory = new JGitEnvironmentRepository.JGitFactory();
 
 	private String defaultLabel;
@@ -159,6 +196,110 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 	 */
 	private boolean skipSslValidation;
 
+	/**
+	 * Flag to indicate that files should be read straight from the git object database
+	 * for the requested label, instead of checking the label out into the working
+	 * directory.
+	 *
+	 * 用于指示应直接从git对象数据库中读取所请求标签的文件，而不是将标签检出到工作目录中。
+	 */
+	private boolean noCheckout;
+
+	/**
+	 * The branches (or branch patterns) to clone and fetch, instead of all of them. The
+	 * default label has to be one of them. A {@code file:} repository is read in place,
+	 * so all of its branches are available and this is ignored.
+	 *
+	 * 要克隆和获取的分支（或分支模式），而不是所有分支。默认标签必须是其中之一。
+	 * {@code file:}存储库是就地读取的，因此其所有分支都可用，此设置将被忽略。
+	 */
+	private String[] branches;
+
+	/**
+	 * The repository that files are read from when there is no checkout. Kept open so
+	 * that concurrent requests share its object caches.
+	 *
+	 * 没有检出时读取文件的存储库。保持打开状态，以便并发请求共享其对象缓存。
+	 */
+	private volatile Repository repository;
+
+	/**
+	 * Guards the fetches and the clone of the repository. A lock rather than a monitor,
+	 * because it is held during network I/O (and a monitor would pin the carrier of a
+	 * virtual thread).
+	 */
+	private final Lock repositoryLock = new ReentrantLock();
+
+	/**
+	 * Time (in seconds) between fetches from the remote repository in the background (0
+	 * to fetch on the request path).
+	 *
+	 * 在后台从远程存储库获取之间的时间（以秒为单位）（0表示在请求路径上获取）。
+	 */
+	private int backgroundFetchInterval;
+
+	/**
+	 * Maximum random delay (in seconds) added to each background fetch interval.
+	 *
+	 * 添加到每个后台获取间隔的最大随机延迟（以秒为单位）。
+	 */
+	private int backgroundFetchJitter;
+
+	/**
+	 * Runs the background fetches of all the repositories, so that a server with many
+	 * (e.g. placeholder) repositories does not need a thread for each of them.
+	 */
+	private static ScheduledExecutorService fetchScheduler;
+
+	private volatile boolean backgroundFetch;
+
+	private volatile ScheduledFuture<?> fetchTask;
+
+	/**
+	 * Ref updates from background fetches that still have to be applied to the local
+	 * branches (which can only be done while holding the working copy).
+	 *
+	 * 后台获取的引用更新，仍需应用到本地分支（只能在持有工作副本时完成）。
+	 */
+	private final Queue<TrackingRefUpdate> pendingRefUpdates = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Told about the fetches that update refs, so the environments that clients watch
+	 * are checked for a new version.
+	 */
+	private ApplicationEventPublisher applicationEventPublisher;
+
+	private final AtomicLong fetchCount = new AtomicLong();
+
+	private final AtomicLong fetchFailureCount = new AtomicLong();
+
+	private final AtomicLong fetchTotalNanos = new AtomicLong();
+
+	private volatile long lastFetchTime;
+
+	/**
+	 * Incremented whenever a background fetch brings in new refs, so that requests can
+	 * tell whether the working copy still has to be merged.
+	 *
+	 * 每当后台获取带来新的引用时递增，以便请求可以判断工作副本是否仍需合并。
+	 */
+	private final AtomicLong fetchGeneration = new AtomicLong();
+
+	/**
+	 * The label, version and fetch generation that the working copy was last refreshed
+	 * to. Only written while holding the write lock of the working copy.
+	 *
+	 * 工作副本上次刷新到的标签、版本和获取代数。只在持有工作副本的写锁时写入。
+	 */
+	private String currentLabel;
+
+	private String currentVersion;
+
+	private long currentGeneration;
+
+	private final BoundedCache<ObjectId, List<String>> treeDirectories = new BoundedCache<>(
+			64);
+
 	public JGitEnvironmentRepository(ConfigurableEnvironment environment, JGitEnvironmentProperties properties) {
 		super(environment, properties);
 		this.cloneOnStart = properties.isCloneOnStart();
@@ -168,6 +309,10 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 		this.deleteUntrackedBranches = properties.isDeleteUntrackedBranches();
 		this.refreshRate = properties.getRefreshRate();
 		this.skipSslValidation = properties.isSkipSslValidation();
+		this.noCheckout = properties.isNoCheckout();
+		this.branches = properties.getBranches();
+		this.backgroundFetchInterval = properties.getBackgroundFetchInterval();
+		this.backgroundFetchJitter = properties.getBackgroundFetchJitter();
 	}
 
 	public boolean isCloneOnStart() {
@@ -241,6 +386,66 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 		this.deleteUntrackedBranches = deleteUntrackedBranches;
 	}
 
+	public int getBackgroundFetchInterval() {
+		return this.backgroundFetchInterval;
+	}
+
+	public void setBackgroundFetchInterval(int backgroundFetchInterval) {
+		this.backgroundFetchInterval = backgroundFetchInterval;
+	}
+
+	public int getBackgroundFetchJitter() {
+		return this.backgroundFetchJitter;
+	}
+
+	public void setBackgroundFetchJitter(int backgroundFetchJitter) {
+		this.backgroundFetchJitter = backgroundFetchJitter;
+	}
+
+	/**
+	 * @return the number of fetches attempted so far (on the request path or in the
+	 * background)
+	 */
+	public long getFetchCount() {
+		return this.fetchCount.get();
+	}
+
+	public long getFetchFailureCount() {
+		return this.fetchFailureCount.get();
+	}
+
+	/**
+	 * @param unit the time unit to report in
+	 * @return the total time spent fetching
+	 */
+	public double getFetchTotalTime(TimeUnit unit) {
+		return (double) this.fetchTotalNanos.get() / unit.toNanos(1);
+	}
+
+	/**
+	 * @return the time (in milliseconds since the epoch) of the last successful fetch, or
+	 * 0 if there has not been one
+	 */
+	public long getLastFetchTime() {
+		return this.lastFetchTime;
+	}
+
+	public boolean isNoCheckout() {
+		return this.noCheckout;
+	}
+
+	public void setNoCheckout(boolean noCheckout) {
+		this.noCheckout = noCheckout;
+	}
+
+	public String[] getBranches() {
+		return this.branches;
+	}
+
+	public void setBranches(String... branches) {
+		this.branches = branches;
+	}
+
 	public boolean isSkipSslValidation() {
 		return skipSslValidation;
 	}
@@ -249,27 +454,403 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 		this.skipSslValidation = skipSslValidation;
 	}
 
+	/**
+	 * Readers share the working copy as long as it is already on the requested label and
+	 * no refresh is due; fetch, checkout and reset happen under the write lock, which is
+	 * then downgraded so that the caller reads the files it just refreshed. Without a
+	 * checkout nothing is shared between requests, so there is no lock at all.
+	 *
+	 * 只要工作副本已经位于请求的标签上并且不需要刷新，读者就共享工作副本；获取、检出和重置在写锁下进行，
+	 * 然后降级为读锁，以便调用者读取刚刚刷新的文件。没有检出时请求之间不共享任何内容，因此根本没有锁。
+	 */
+	@Override
+	protected <T> T withWorkingCopy(String application, String profile, String label,
+			Function<Locations, T> callback) {
+		if (label == null) {
+			label = this.defaultLabel;
+		}
+		if (this.noCheckout) {
+			return callback.apply(getTreeLocations(application, profile, label));
+		}
+		ReadWriteLock lock = getWorkingCopyLock();
+		lock.readLock().lock();
+		try {
+			Locations locations;
+			if (isCurrent(label)) {
+				locations = new Locations(application, profile, label,
+						this.currentVersion, getSearchLocations(getWorkingDirectory(),
+								application, profile, label));
+			}
+			else {
+				lock.readLock().unlock();
+				lock.writeLock().lock();
+				try {
+					locations = refreshLocations(application, profile, label);
+				}
+				finally {
+					// Downgrade, so nobody can move the working copy on before we read it
+					lock.readLock().lock();
+					lock.writeLock().unlock();
+				}
+			}
+			return callback.apply(locations);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private boolean isCurrent(String label) {
+		if (!label.equals(this.currentLabel)
+				|| !new File(getWorkingDirectory(), ".git").exists()) {
+			return false;
+		}
+		if (EnvironmentBatch.isRefreshed(this, label)) {
+			return true;
+		}
+		if (isBackgroundFetch()) {
+			return this.fetchGeneration.get() == this.currentGeneration;
+		}
+		return this.refreshRate > 0 && System.currentTimeMillis()
+				- this.lastRefresh < (this.refreshRate * 1000);
+	}
+
 	@Override
-	public synchronized Locations getLocations(String application, String profile,
+	public Locations getLocations(String application, String profile,
 			String label) {
 		if (label == null) {
 			label = this.defaultLabel;
 		}
+		if (this.noCheckout) {
+			return getTreeLocations(application, profile, label);
+		}
+		Lock lock = getWorkingCopyLock().writeLock();
+		lock.lock();
+		try {
+			return refreshLocations(application, profile, label);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private Locations refreshLocations(String application, String profile,
+			String label) {
+		long generation = this.fetchGeneration.get();
+		this.currentLabel = null;
 		// ------------------关键方法-----------------
 		// 准备工作目录 , 获得git，会在这里面做git初始化，checkout，merge，等等
 		String version = refresh(label);
+		this.currentLabel = label;
+		this.currentVersion = version;
+		this.currentGeneration = generation;
+		EnvironmentBatch.setRefreshed(this, label);
 		return new Locations(application, profile, label, version,
 				getSearchLocations(getWorkingDirectory(), application, profile, label));
 	}
 
+	/**
+	 * Resolve the label to a commit and locate the files in its tree, without touching
+	 * the working directory. Only fetching from the remote is serialized.
+	 *
+	 * 将标签解析为提交并在其树中定位文件，而不触及工作目录。只有从远程获取是串行的。
+	 */
+	private Locations getTreeLocations(String application, String profile,
+			String label) {
+		Repository repository = fetchRepository(label);
+		try (RevWalk walk = new RevWalk(repository)) {
+			RevCommit commit = walk.parseCommit(resolveCommit(repository, label));
+			ObjectId tree = commit.getTree().copy();
+			String root = getWorkingDirectory().toURI().toString();
+			if (!root.endsWith("/")) {
+				root = root + "/";
+			}
+			List<String> directories = getTreeDirectories(repository, tree);
+			String base = root;
+			String[] locations = getSearchLocations(application, profile, label,
+					value -> matchingDirectories(base, directories, value));
+			return new Locations(application, profile, label, commit.name(), locations,
+					new JGitTreeResourceLoader(repository, tree, root));
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Cannot load environment", e);
+		}
+	}
+
+	private Repository fetchRepository(String label) {
+		this.repositoryLock.lock();
+		try {
+			if (this.repository == null
+					|| !this.repository.getDirectory().exists()) {
+				// A clone that vanished from disk still holds its pack files open
+				closeRepository();
+				this.repository = createGitClient().getRepository();
+			}
+			if (!isBackgroundFetch() && shouldFetch(this.repository)) {
+				try (Git git = Git.wrap(this.repository)) {
+					fetch(git, label);
+				}
+			}
+			return this.repository;
+		}
+		catch (NoRemoteRepositoryException e) {
+			throw new NoSuchRepositoryException("No such repository: " + getUri(), e);
+		}
+		catch (GitAPIException e) {
+			throw new NoSuchRepositoryException(
+					"Cannot clone or checkout repository: " + getUri(), e);
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Cannot load environment", e);
+		}
+		finally {
+			this.repositoryLock.unlock();
+		}
+	}
+
+	private boolean shouldFetch(Repository repository) {
+		if (this.refreshRate > 0 && System.currentTimeMillis()
+				- this.lastRefresh < (this.refreshRate * 1000)) {
+			return false;
+		}
+		return repository.getConfig().getString("remote", "origin", "url") != null;
+	}
+
+	private ObjectId resolveCommit(Repository repository, String label)
+			throws IOException {
+		ObjectId id = null;
+		try {
+			// Prefer the remote branch, since local branches are never merged
+			id = repository.resolve(LOCAL_BRANCH_REF_PREFIX + label + "^{commit}");
+			if (id == null) {
+				// local branches, tags and commit ids
+				id = repository.resolve(label + "^{commit}");
+			}
+		}
+		catch (RevisionSyntaxException e) {
+			throw new NoSuchLabelException("No such label: " + label, e);
+		}
+		if (id == null) {
+			throw new NoSuchLabelException("No such label: " + label);
+		}
+		return id;
+	}
+
+	private List<String> getTreeDirectories(Repository repository, ObjectId tree)
+			throws IOException {
+		List<String> directories = this.treeDirectories.get(tree);
+		if (directories == null) {
+			directories = new ArrayList<>();
+			List<String> prefixes = getSearchPathPrefixes();
+			try (TreeWalk walk = new TreeWalk(repository)) {
+				walk.addTree(tree);
+				walk.setRecursive(false);
+				while (walk.next()) {
+					if (walk.isSubtree()) {
+						String directory = walk.getPathString() + "/";
+						if (prefixes == null || leadsToSearchPath(directory, prefixes)) {
+							directories.add(directory);
+							walk.enterSubtree();
+						}
+					}
+				}
+			}
+			directories = Collections.unmodifiableList(directories);
+			this.treeDirectories.put(tree, directories);
+		}
+		return directories;
+	}
+
+	/**
+	 * The literal beginnings of the search paths (up to their first placeholder or
+	 * wildcard), so that walking a tree can skip the directories that no search path can
+	 * match. The root search path needs no directory at all.
+	 *
+	 * 搜索路径的字面开头（直到其第一个占位符或通配符），以便遍历树时可以跳过任何搜索路径都无法匹配的目录。根搜索路径根本不需要目录。
+	 *
+	 * @return the prefixes, or null if any search path can match any directory
+	 */
+	private List<String> getSearchPathPrefixes() {
+		List<String> prefixes = new ArrayList<>();
+		String[] searchPaths = getSearchPaths();
+		if (searchPaths == null) {
+			return prefixes;
+		}
+		for (String searchPath : searchPaths) {
+			String path = StringUtils.trimLeadingCharacter(
+					StringUtils.cleanPath(searchPath), '/');
+			if (!StringUtils.hasText(path)) {
+				continue;
+			}
+			int end = path.length();
+			for (char wildcard : new char[] { '{', '*', '?' }) {
+				int index = path.indexOf(wildcard);
+				if (index >= 0 && index < end) {
+					end = index;
+				}
+			}
+			if (end == 0) {
+				return null;
+			}
+			prefixes.add(path.substring(0, end));
+		}
+		return prefixes;
+	}
+
+	private boolean leadsToSearchPath(String directory, List<String> prefixes) {
+		for (String prefix : prefixes) {
+			if (prefix.startsWith(directory) || directory.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private List<String> matchingDirectories(String root, List<String> directories,
+			String value) {
+		String pattern = StringUtils.trimLeadingCharacter(StringUtils.cleanPath(value),
+				'/');
+		if (!StringUtils.hasText(pattern)) {
+			return Collections.singletonList(root);
+		}
+		List<String> output = new ArrayList<>();
+		for (String directory : directories) {
+			if (this.matcher.match(pattern, directory)) {
+				output.add(root + directory);
+			}
+		}
+		return output;
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
+		this.applicationEventPublisher = applicationEventPublisher;
+	}
+
+	ApplicationEventPublisher getApplicationEventPublisher() {
+		return this.applicationEventPublisher;
+	}
+
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		Assert.state(getUri() != null,
 				"You need to configure a uri for the git repository");
+		checkBranches();
 		initialize();
 		if (this.cloneOnStart) {
 			initClonedRepository();
 		}
+		if (this.backgroundFetchInterval > 0 && !getUri().startsWith(FILE_URI_PREFIX)) {
+			startBackgroundFetch();
+		}
+	}
+
+	/**
+	 * Stop the background fetch, and close the repository opened without a checkout
+	 * (its pack files and cached windows).
+	 */
+	@Override
+	public void destroy() throws Exception {
+		this.backgroundFetch = false;
+		ScheduledFuture<?> task = this.fetchTask;
+		if (task != null) {
+			task.cancel(false);
+			this.fetchTask = null;
+		}
+		this.repositoryLock.lock();
+		try {
+			closeRepository();
+		}
+		finally {
+			this.repositoryLock.unlock();
+		}
+	}
+
+	private void closeRepository() {
+		if (this.repository != null) {
+			this.repository.close();
+			this.repository = null;
+		}
+	}
+
+	private boolean isBackgroundFetch() {
+		return this.backgroundFetch;
+	}
+
+	private void startBackgroundFetch() {
+		this.backgroundFetch = true;
+		scheduleBackgroundFetch();
+	}
+
+	private static synchronized ScheduledExecutorService getFetchScheduler() {
+		if (fetchScheduler == null) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(
+					"jgit-background-fetch-");
+			threadFactory.setDaemon(true);
+			fetchScheduler = Executors.newScheduledThreadPool(
+					Math.max(2, Runtime.getRuntime().availableProcessors()),
+					threadFactory);
+		}
+		return fetchScheduler;
+	}
+
+	private void scheduleBackgroundFetch() {
+		if (!this.backgroundFetch) {
+			return;
+		}
+		long delay = TimeUnit.SECONDS.toMillis(this.backgroundFetchInterval);
+		if (this.backgroundFetchJitter > 0) {
+			delay += ThreadLocalRandom.current()
+					.nextLong(TimeUnit.SECONDS.toMillis(this.backgroundFetchJitter) + 1);
+		}
+		try {
+			this.fetchTask = getFetchScheduler().schedule(this::backgroundFetch, delay,
+					TimeUnit.MILLISECONDS);
+		}
+		catch (RejectedExecutionException e) {
+			// shutting down
+		}
+	}
+
+	/**
+	 * Fetch from the remote without touching the working directory, so that requests
+	 * can carry on reading the last fetched state meanwhile. With a working copy the
+	 * remote refs are still updated under its write lock, like a fetch on the request
+	 * path, so that no checkout or merge sees them change halfway.
+	 *
+	 * 在不触及工作目录的情况下从远程获取，以便请求在此期间可以继续读取上次获取的状态。有工作副本时，
+	 * 远程引用仍在其写锁下更新（与请求路径上的获取一样），以便没有检出或合并会看到它们中途变化。
+	 */
+	void backgroundFetch() {
+		Lock lock = this.noCheckout ? null : getWorkingCopyLock().writeLock();
+		if (lock != null) {
+			lock.lock();
+		}
+		try {
+			if (!new File(getWorkingDirectory(), ".git").exists()) {
+				// Not cloned yet, the first request will do that
+				return;
+			}
+			try (Git git = openGitRepository()) {
+				FetchResult result = fetch(git, this.defaultLabel);
+				if (result != null && !CollectionUtils
+						.isEmpty(result.getTrackingRefUpdates())) {
+					if (this.deleteUntrackedBranches) {
+						this.pendingRefUpdates.addAll(result.getTrackingRefUpdates());
+					}
+					this.fetchGeneration.incrementAndGet();
+				}
+			}
+		}
+		catch (Exception e) {
+			warn("Background fetch failed for " + getUri(), e);
+		}
+		finally {
+			if (lock != null) {
+				lock.unlock();
+			}
+			scheduleBackgroundFetch();
+		}
 	}
 
 	/**
@@ -286,9 +867,17 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 			// ------------------关键方法--------------
 			// 是否需要pull
 			if (shouldPull(git)) {
-				FetchResult fetchStatus = fetch(git, label);
-				if (deleteUntrackedBranches && fetchStatus != null) {
-					deleteUntrackedLocalBranches(fetchStatus.getTrackingRefUpdates(), git);
+				if (isBackgroundFetch()) {
+					// The remote refs are kept up to date in the background
+					if (this.deleteUntrackedBranches) {
+						deleteUntrackedLocalBranches(drainPendingRefUpdates(), git);
+					}
+				}
+				else {
+					FetchResult fetchStatus = fetch(git, label);
+					if (deleteUntrackedBranches && fetchStatus != null) {
+						deleteUntrackedLocalBranches(fetchStatus.getTrackingRefUpdates(), git);
+					}
 				}
 				// checkout after fetch so we can get any new branches, tags, ect.
 				// 获取结账后我们可以获得任何新的分支，标签等。
@@ -338,6 +927,15 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 		}
 	}
 
+	private List<TrackingRefUpdate> drainPendingRefUpdates() {
+		List<TrackingRefUpdate> updates = new ArrayList<>();
+		TrackingRefUpdate update;
+		while ((update = this.pendingRefUpdates.poll()) != null) {
+			updates.add(update);
+		}
+		return updates;
+	}
+
 	/**
 	 * Clones the remote repository and then opens a connection to it.
 	 *
@@ -473,28 +1071,46 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 	protected FetchResult fetch(Git git, String label) {
 		FetchCommand fetch = git.fetch();
 		fetch.setRemote("origin");
-		fetch.setTagOpt(TagOpt.FETCH_TAGS);
+		if (ObjectUtils.isEmpty(this.branches)) {
+			fetch.setTagOpt(TagOpt.FETCH_TAGS);
+		}
+		else {
+			fetch.setRefSpecs(getBranchRefSpecs());
+			fetch.setTagOpt(TagOpt.AUTO_FOLLOW);
+		}
 		fetch.setRemoveDeletedRefs(deleteUntrackedBranches);
 		if (this.refreshRate > 0) {
 			this.setLastRefresh(System.currentTimeMillis());
 		}
 
 		configureCommand(fetch);
+		long start = System.nanoTime();
+		this.fetchCount.incrementAndGet();
 		try {
 			FetchResult result = fetch.call();
+			this.lastFetchTime = System.currentTimeMillis();
 			if (result.getTrackingRefUpdates() != null
 					&& result.getTrackingRefUpdates().size() > 0) {
 				logger.info("Fetched for remote " + label + " and found "
 						+ result.getTrackingRefUpdates().size() + " updates");
+				if (this.applicationEventPublisher != null) {
+					// Any application may read the updated branches
+					this.applicationEventPublisher.publishEvent(new RepositoryChangeEvent(
+							this, Collections.singleton(RepositoryChangeEvent.ALL_APPLICATIONS)));
+				}
 			}
 			return result;
 		}
 		catch (Exception ex) {
+			this.fetchFailureCount.incrementAndGet();
 			String message = "Could not fetch remote for " + label + " remote: " + git
 					.getRepository().getConfig().getString("remote", "origin", "url");
 			warn(message, ex);
 			return null;
 		}
+		finally {
+			this.fetchTotalNanos.addAndGet(System.nanoTime() - start);
+		}
 	}
 
 	private MergeResult merge(Git git, String label) {
@@ -564,17 +1180,24 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 	// together (this is a once only operation, so it only holds things up on
 	// the first
 	// request).
-	private synchronized Git copyRepository() throws IOException, GitAPIException {
-		// 如果文件夹存在则删除
-		deleteBaseDirIfExists();
-		// 创建文件夹
-		getBasedir().mkdirs();
-		Assert.state(getBasedir().exists(), "Could not create basedir: " + getBasedir());
-		if (getUri().startsWith(FILE_URI_PREFIX)) {
-			return copyFromLocalRepository();
+	private Git copyRepository() throws IOException, GitAPIException {
+		this.repositoryLock.lock();
+		try {
+			// 如果文件夹存在则删除
+			deleteBaseDirIfExists();
+			// 创建文件夹
+			getBasedir().mkdirs();
+			Assert.state(getBasedir().exists(),
+					"Could not create basedir: " + getBasedir());
+			if (getUri().startsWith(FILE_URI_PREFIX)) {
+				return copyFromLocalRepository();
+			}
+			else {
+				return cloneToBasedir();
+			}
 		}
-		else {
-			return cloneToBasedir();
+		finally {
+			this.repositoryLock.unlock();
 		}
 	}
 
@@ -595,8 +1218,14 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 	}
 
 	private Git cloneToBasedir() throws GitAPIException {
+		if (!ObjectUtils.isEmpty(this.branches)) {
+			return fetchBranchesToBasedir();
+		}
 		CloneCommand clone = this.gitFactory.getCloneCommandByCloneRepository()
 				.setURI(getUri()).setDirectory(getBasedir());
+		if (this.noCheckout) {
+			clone.setNoCheckout(true);
+		}
 		configureCommand(clone);
 		try {
 			return clone.call();
@@ -607,6 +1236,75 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 		}
 	}
 
+	/**
+	 * Clone only the configured branches (and the tags that point into them): a clone
+	 * always fetches every tag, so the repository is initialized and fetched instead. The
+	 * first refresh checks the label out.
+	 *
+	 * 只克隆配置的分支（以及指向它们的标签）：克隆总是获取所有标签，因此改为初始化存储库并获取。第一次刷新时检出标签。
+	 */
+	private Git fetchBranchesToBasedir() throws GitAPIException {
+		Git git = this.gitFactory.getInitCommand().setDirectory(getBasedir()).call();
+		try {
+			StoredConfig config = git.getRepository().getConfig();
+			RemoteConfig remote = new RemoteConfig(config, "origin");
+			remote.addURI(new URIish(getUri()));
+			for (RefSpec refSpec : getBranchRefSpecs()) {
+				remote.addFetchRefSpec(refSpec);
+			}
+			remote.setTagOpt(TagOpt.AUTO_FOLLOW);
+			remote.update(config);
+			config.save();
+			FetchCommand fetch = git.fetch().setRemote("origin")
+					.setTagOpt(TagOpt.AUTO_FOLLOW);
+			configureCommand(fetch);
+			fetch.call();
+			return git;
+		}
+		catch (GitAPIException e) {
+			git.close();
+			deleteBaseDirIfExists();
+			throw e;
+		}
+		catch (IOException | URISyntaxException e) {
+			git.close();
+			deleteBaseDirIfExists();
+			throw new IllegalStateException("Cannot set up repository: " + getUri(), e);
+		}
+	}
+
+	private void checkBranches() {
+		if (ObjectUtils.isEmpty(this.branches)) {
+			return;
+		}
+		if (getUri().startsWith(FILE_URI_PREFIX)) {
+			logger.warn("The branches of " + getUri()
+					+ " are ignored, a file: repository is read in place");
+			return;
+		}
+		String label = getDefaultLabel();
+		if (label == null || ObjectId.isId(label)) {
+			return;
+		}
+		for (RefSpec refSpec : getBranchRefSpecs()) {
+			if (refSpec.matchSource(Constants.R_HEADS + label)) {
+				return;
+			}
+		}
+		throw new IllegalStateException("The default label " + label + " of " + getUri()
+				+ " is not one of its branches " + Arrays.toString(this.branches)
+				+ ", so the requests without a label would fail");
+	}
+
+	private List<RefSpec> getBranchRefSpecs() {
+		List<RefSpec> refSpecs = new ArrayList<>();
+		for (String branch : this.branches) {
+			refSpecs.add(new RefSpec("+" + Constants.R_HEADS + branch + ":"
+					+ LOCAL_BRANCH_REF_PREFIX + branch));
+		}
+		return refSpecs;
+	}
+
 	private void deleteBaseDirIfExists() {
 		if (getBasedir().exists()) {
 			for (File file : getBasedir().listFiles()) {
@@ -723,6 +1421,10 @@ public class JGitEnvironmentRepository extends AbstractScmEnvironmentRepository
 			return git;
 		}
 
+		public InitCommand getInitCommand() {
+			return Git.init();
+		}
+
 		public CloneCommand getCloneCommandByCloneRepository() {
 			CloneCommand command = Git.cloneRepository();
 			return command;
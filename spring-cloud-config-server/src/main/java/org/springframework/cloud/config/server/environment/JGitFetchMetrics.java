@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.environment;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Publishes the fetch statistics of git repositories: how long fetches take, how many
+ * fail and how stale (in seconds) the last successful fetch is. Repositories configured
+ * under <code>repos</code> of a {@link MultipleJGitEnvironmentRepository} are included
+ * (tagged with their name).
+ *
+ * 发布git存储库的获取统计信息：获取需要多长时间，失败的次数以及上次成功获取的陈旧程度（以秒为单位）。
+ */
+public class JGitFetchMetrics implements MeterBinder {
+
+	private final Collection<? extends JGitEnvironmentRepository> repositories;
+
+	public JGitFetchMetrics(Collection<? extends JGitEnvironmentRepository> repositories) {
+		this.repositories = repositories;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		for (JGitEnvironmentRepository repository : this.repositories) {
+			bind(registry, repository, "default");
+			if (repository instanceof MultipleJGitEnvironmentRepository) {
+				for (MultipleJGitEnvironmentRepository.PatternMatchingJGitEnvironmentRepository repo : ((MultipleJGitEnvironmentRepository) repository)
+						.getRepos().values()) {
+					bind(registry, repo, StringUtils.hasText(repo.getName())
+							? repo.getName() : repo.getUri());
+				}
+			}
+		}
+	}
+
+	private void bind(MeterRegistry registry, JGitEnvironmentRepository repository,
+			String name) {
+		List<String> tags = new ArrayList<>();
+		tags.add("name");
+		tags.add(name);
+		tags.add("uri");
+		tags.add(String.valueOf(repository.getUri()));
+		Tags all = Tags.of(tags.toArray(new String[0]));
+		FunctionTimer
+				.builder("config.server.git.fetch", repository,
+						JGitEnvironmentRepository::getFetchCount,
+						repo -> repo.getFetchTotalTime(TimeUnit.NANOSECONDS),
+						TimeUnit.NANOSECONDS)
+				.description("Fetches from the remote git repository").tags(all)
+				.register(registry);
+		FunctionCounter
+				.builder("config.server.git.fetch.failures", repository,
+						repo -> repo.getFetchFailureCount())
+				.description("Fetches from the remote git repository that failed")
+				.tags(all).register(registry);
+		Gauge.builder("config.server.git.fetch.staleness", repository,
+				JGitFetchMetrics::staleness)
+				.description("Time since the last successful fetch from the remote")
+				.baseUnit("seconds").tags(all).register(registry);
+	}
+
+	private static double staleness(JGitEnvironmentRepository repository) {
+		long last = repository.getLastFetchTime();
+		if (last == 0) {
+			return Double.NaN;
+		}
+		return (System.currentTimeMillis() - last) / 1000.0;
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+/**
+ * Reports the progress of the pattern repositories of
+ * {@link MultipleJGitEnvironmentRepository}s that are initialized (and cloned) in the
+ * background, with the number of repositories initialized so far and the ones that
+ * failed (and have not served a request since) as details. The server is up once the
+ * default repositories are ready, and a pattern repository that failed only fails the
+ * requests for its own applications, so this is always up: the failures are details,
+ * not a reason to take the whole server out of service.
+ *
+ * 报告在后台初始化（和克隆）的{@link MultipleJGitEnvironmentRepository}的模式存储库的进度，
+ * 并将迄今为止已初始化的存储库数量和失败的存储库作为详细信息。一旦默认存储库准备就绪，服务器就启动了，
+ * 而失败的模式存储库只会使其自己应用程序的请求失败，因此它始终是up状态：失败只是详细信息，而不是让整个服务器停止服务的理由。
+ */
+public class JGitInitializationHealthIndicator extends AbstractHealthIndicator {
+
+	private final Supplier<Collection<? extends JGitEnvironmentRepository>> repositories;
+
+	public JGitInitializationHealthIndicator(
+			Collection<? extends JGitEnvironmentRepository> repositories) {
+		this(() -> repositories);
+	}
+
+	/**
+	 * @param repositories looks up the repositories at each check (for the ones created
+	 * late, like the repositories of a composite)
+	 */
+	public JGitInitializationHealthIndicator(
+			Supplier<Collection<? extends JGitEnvironmentRepository>> repositories) {
+		this.repositories = repositories;
+	}
+
+	@Override
+	protected void doHealthCheck(Health.Builder builder) {
+		int total = 0;
+		int initialized = 0;
+		Map<String, String> failed = new LinkedHashMap<>();
+		for (JGitEnvironmentRepository repository : this.repositories.get()) {
+			if (repository instanceof MultipleJGitEnvironmentRepository) {
+				MultipleJGitEnvironmentRepository multiple = (MultipleJGitEnvironmentRepository) repository;
+				total += multiple.getRepos().size();
+				initialized += multiple.getInitializedRepositoryCount();
+				failed.putAll(multiple.getFailedRepositories());
+			}
+		}
+		builder.up();
+		if (!failed.isEmpty()) {
+			builder.withDetail("failed", failed);
+		}
+		builder.withDetail("repositories", total);
+		builder.withDetail("initialized", initialized);
+	}
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.environment;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.util.StringUtils;
+
+/**
+ * A {@link ResourceLoader} that reads files from a tree in a git object database instead
+ * of from a working copy. Locations under the (virtual) working directory are resolved
+ * to blobs in the tree, so callers can use the same <code>file:</code> locations as they
+ * would with a checkout. Anything else is delegated to a {@link DefaultResourceLoader}.
+ *
+ * 从git对象数据库中的树（而不是工作副本）读取文件的{@link ResourceLoader}。
+ * （虚拟）工作目录下的位置被解析为树中的blob，因此调用者可以使用与检出时相同的file:位置。
+ * 其他任何位置都委托给{@link DefaultResourceLoader}。
+ */
+public class JGitTreeResourceLoader implements ResourceLoader {
+
+	private final ResourceLoader fallback = new DefaultResourceLoader();
+
+	private final Repository repository;
+
+	private final ObjectId tree;
+
+	private final String root;
+
+	/**
+	 * @param repository the repository holding the objects
+	 * @param tree the id of the tree to read
+	 * @param root the URI of the working directory that the tree stands in for
+	 */
+	public JGitTreeResourceLoader(Repository repository, ObjectId tree, String root) {
+		this.repository = repository;
+		this.tree = tree;
+		this.root = root.endsWith("/") ? root : root + "/";
+	}
+
+	@Override
+	public Resource getResource(String location) {
+		String path = getPath(location);
+		if (path == null) {
+			return this.fallback.getResource(location);
+		}
+		return new BlobResource(location, path);
+	}
+
+	@Override
+	public ClassLoader getClassLoader() {
+		return this.fallback.getClassLoader();
+	}
+
+	private String getPath(String location) {
+		String normalized = location;
+		if (normalized.startsWith("file:") && !normalized.startsWith("file:/")) {
+			// Relative file locations can never be in the tree
+			return null;
+		}
+		normalized = normalized.replaceFirst("^file:/+", "file:/");
+		String root = this.root.replaceFirst("^file:/+", "file:/");
+		if (!normalized.startsWith(root)) {
+			return null;
+		}
+		return StringUtils.cleanPath(normalized.substring(root.length()));
+	}
+
+	/**
+	 * A file in the tree, identified by the id of its blob so that parsed content can be
+	 * cached for as long as the blob does not change.
+	 */
+	public class BlobResource extends AbstractResource {
+
+		private final String location;
+
+		private final String path;
+
+		private volatile ObjectId blob;
+
+		private volatile boolean resolved;
+
+		BlobResource(String location, String path) {
+			this.location = location;
+			this.path = path;
+		}
+
+		/**
+		 * @return the location this resource was loaded from
+		 */
+		public String getLocation() {
+			return this.location;
+		}
+
+		/**
+		 * @return the id of the blob, or null if there is no such file in the tree
+		 */
+		public ObjectId getObjectId() {
+			if (!this.resolved) {
+				this.blob = resolve();
+				this.resolved = true;
+			}
+			return this.blob;
+		}
+
+		private ObjectId resolve() {
+			if (!StringUtils.hasText(this.path) || this.path.endsWith("/")) {
+				return null;
+			}
+			try (TreeWalk walk = TreeWalk.forPath(repository, this.path, tree)) {
+				if (walk == null || (walk.getRawMode(0) & FileMode.TYPE_MASK) != FileMode.TYPE_FILE) {
+					return null;
+				}
+				return walk.getObjectId(0);
+			}
+			catch (IOException e) {
+				return null;
+			}
+		}
+
+		@Override
+		public boolean exists() {
+			return getObjectId() != null;
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			ObjectId blob = getObjectId();
+			if (blob == null) {
+				throw new FileNotFoundException(getDescription() + " does not exist");
+			}
+			return repository.open(blob, Constants.OBJ_BLOB).openStream();
+		}
+
+		@Override
+		public long contentLength() throws IOException {
+			ObjectId blob = getObjectId();
+			if (blob == null) {
+				throw new FileNotFoundException(getDescription() + " does not exist");
+			}
+			return repository.open(blob, Constants.OBJ_BLOB).getSize();
+		}
+
+		@Override
+		public Resource createRelative(String relativePath) {
+			return new BlobResource(
+					StringUtils.applyRelativePath(this.location, relativePath),
+					StringUtils.cleanPath(
+							StringUtils.applyRelativePath(this.path, relativePath)));
+		}
+
+		@Override
+		public String getFilename() {
+			return StringUtils.getFilename(this.path);
+		}
+
+		@Override
+		public String getDescription() {
+			return "git tree " + tree.name() + " [" + this.path + "]";
+		}
+
+	}
+
+}
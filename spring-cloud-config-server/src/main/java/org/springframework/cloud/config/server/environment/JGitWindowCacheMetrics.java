@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.eclipse.jgit.storage.file.WindowCacheStats;
+
+/**
+ * Publishes the use of the window cache that all git repositories share: the bytes and
+ * pack files it holds open, against its limits, so that the heap can be sized for the
+ * number of repositories.
+ *
+ * 发布所有git存储库共享的窗口缓存的使用情况：它保持打开的字节数和包文件数，以及其限制，以便可以根据存储库的数量调整堆大小。
+ */
+public class JGitWindowCacheMetrics implements MeterBinder {
+
+	private final WindowCacheConfig config;
+
+	public JGitWindowCacheMetrics(JGitWindowCacheProperties properties) {
+		this.config = properties.toWindowCacheConfig();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("config.server.git.window.cache.open.bytes",
+				WindowCacheStats::getOpenBytes)
+				.description("Bytes of pack files held in memory by the window cache")
+				.baseUnit("bytes").register(registry);
+		Gauge.builder("config.server.git.window.cache.open.files",
+				WindowCacheStats::getOpenFiles)
+				.description("Pack files held open by the window cache")
+				.register(registry);
+		Gauge.builder("config.server.git.window.cache.limit", this.config,
+				WindowCacheConfig::getPackedGitLimit)
+				.description("Maximum bytes of pack files held in memory")
+				.baseUnit("bytes").register(registry);
+		Gauge.builder("config.server.git.window.cache.open.files.limit", this.config,
+				WindowCacheConfig::getPackedGitOpenFiles)
+				.description("Maximum pack files held open").register(registry);
+		Gauge.builder("config.server.git.delta.base.cache.limit", this.config,
+				WindowCacheConfig::getDeltaBaseCacheLimit)
+				.description("Maximum bytes of delta bases cached per reading thread")
+				.baseUnit("bytes").register(registry);
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.environment;
+
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the cache of pack file windows and delta bases that JGit shares between
+ * all the git repositories of the server (there is one such cache per JVM). The settings
+ * that are not set keep the JGit defaults, and the cache is only reconfigured if any is
+ * set.
+ *
+ * JGit在服务器的所有git存储库之间共享的包文件窗口和增量基础缓存的设置（每个JVM有一个这样的缓存）。
+ * 未设置的设置保留JGit默认值，并且仅在设置了任何一个时才重新配置缓存。
+ */
+@ConfigurationProperties("spring.cloud.config.server.git.window-cache")
+public class JGitWindowCacheProperties {
+
+    /**
+     * Maximum number of bytes of pack files held in memory (JGit default 10 MB).
+     *
+     * 内存中保存的包文件的最大字节数（JGit默认10 MB）。
+     */
+    private Long packedGitLimit;
+
+    /**
+     * Size (in bytes) of a window read from a pack file, a power of 2 (JGit default 8 KB).
+     *
+     * 从包文件读取的窗口的大小（以字节为单位），2的幂（JGit默认8 KB）。
+     */
+    private Integer packedGitWindowSize;
+
+    /**
+     * Maximum number of pack files kept open (JGit default 128).
+     *
+     * 保持打开的包文件的最大数量（JGit默认128）。
+     */
+    private Integer packedGitOpenFiles;
+
+    /**
+     * Flag to indicate that windows should be memory mapped instead of read onto the heap
+     * (JGit default false).
+     *
+     * 用于指示窗口应被内存映射而不是读取到堆上的标记（JGit默认false）。
+     */
+    private Boolean packedGitMmap;
+
+    /**
+     * Maximum number of bytes of inflated delta bases cached per reading thread (JGit
+     * default 10 MB).
+     *
+     * 每个读取线程缓存的已解压增量基础的最大字节数（JGit默认10 MB）。
+     */
+    private Integer deltaBaseCacheLimit;
+
+    /**
+     * Size (in bytes) above which objects are streamed instead of loaded whole (JGit
+     * default 50 MB).
+     *
+     * 超过此大小（以字节为单位）的对象将以流的方式读取而不是整体加载（JGit默认50 MB）。
+     */
+    private Integer streamFileThreshold;
+
+    public Long getPackedGitLimit() {
+        return packedGitLimit;
+    }
+
+    public void setPackedGitLimit(Long packedGitLimit) {
+        this.packedGitLimit = packedGitLimit;
+    }
+
+    public Integer getPackedGitWindowSize() {
+        return packedGitWindowSize;
+    }
+
+    public void setPackedGitWindowSize(Integer packedGitWindowSize) {
+        this.packedGitWindowSize = packedGitWindowSize;
+    }
+
+    public Integer getPackedGitOpenFiles() {
+        return packedGitOpenFiles;
+    }
+
+    public void setPackedGitOpenFiles(Integer packedGitOpenFiles) {
+        this.packedGitOpenFiles = packedGitOpenFiles;
+    }
+
+    public Boolean getPackedGitMmap() {
+        return packedGitMmap;
+    }
+
+    public void setPackedGitMmap(Boolean packedGitMmap) {
+        this.packedGitMmap = packedGitMmap;
+    }
+
+    public Integer getDeltaBaseCacheLimit() {
+        return deltaBaseCacheLimit;
+    }
+
+    public void setDeltaBaseCacheLimit(Integer deltaBaseCacheLimit) {
+        this.deltaBaseCacheLimit = deltaBaseCacheLimit;
+    }
+
+    public Integer getStreamFileThreshold() {
+        return streamFileThreshold;
+    }
+
+    public void setStreamFileThreshold(Integer streamFileThreshold) {
+        this.streamFileThreshold = streamFileThreshold;
+    }
+
+    /**
+     * @return true if any setting is set
+     */
+    public boolean isCustomized() {
+        return packedGitLimit != null || packedGitWindowSize != null
+                || packedGitOpenFiles != null || packedGitMmap != null
+                || deltaBaseCacheLimit != null || streamFileThreshold != null;
+    }
+
+    /**
+     * @return the JGit defaults overridden by the settings that are set
+     */
+    public WindowCacheConfig toWindowCacheConfig() {
+        WindowCacheConfig config = new WindowCacheConfig();
+        if (packedGitLimit != null) {
+            config.setPackedGitLimit(packedGitLimit);
+        }
+        if (packedGitWindowSize != null) {
+            config.setPackedGitWindowSize(packedGitWindowSize);
+        }
+        if (packedGitOpenFiles != null) {
+            config.setPackedGitOpenFiles(packedGitOpenFiles);
+        }
+        if (packedGitMmap != null) {
+            config.setPackedGitMMAP(packedGitMmap);
+        }
+        if (deltaBaseCacheLimit != null) {
+            config.setDeltaBaseCacheLimit(deltaBaseCacheLimit);
+        }
+        if (streamFileThreshold != null) {
+            config.setStreamFileThreshold(streamFileThreshold);
+        }
+        return config;
+    }
+
+}
@@ -42,6 +42,37 @@ public class MultipleJGitEnvironmentProperties extends JGitEnvironmentProperties
      */
     private Map<String, PatternMatchingJGitEnvironmentProperties> repos = new LinkedHashMap<>();
 
+    /**
+     * Maximum number of repositories expanded from placeholders in the uri (the least
+     * recently used are evicted, 0 for no limit).
+     */
+    private int placeholderCacheSize = 100;
+
+    /**
+     * Time (in seconds) after which an unused repository expanded from placeholders is
+     * evicted (0 for never).
+     */
+    private long placeholderIdleTimeout = 0;
+
+    /**
+     * Maximum total size (in bytes) of the clones of the repositories expanded from
+     * placeholders (the least recently used are evicted, 0 for no limit).
+     */
+    private long placeholderMaxDiskBytes = 0;
+
+    /**
+     * Number of threads that clone new repositories expanded from placeholders (0 to
+     * clone on the request threads).
+     */
+    private int placeholderCloneThreads = 4;
+
+    /**
+     * Number of threads that initialize (and clone, if they clone on start) the pattern
+     * repositories. With more than one, they are initialized in the background, and the
+     * server starts once the default repository is ready.
+     */
+    private int cloneOnStartThreads = 1;
+
     public Map<String, PatternMatchingJGitEnvironmentProperties> getRepos() {
         return repos;
     }
@@ -50,6 +81,46 @@ public class MultipleJGitEnvironmentProperties extends JGitEnvironmentProperties
         this.repos = repos;
     }
 
+    public int getPlaceholderCacheSize() {
+        return placeholderCacheSize;
+    }
+
+    public void setPlaceholderCacheSize(int placeholderCacheSize) {
+        this.placeholderCacheSize = placeholderCacheSize;
+    }
+
+    public long getPlaceholderIdleTimeout() {
+        return placeholderIdleTimeout;
+    }
+
+    public void setPlaceholderIdleTimeout(long placeholderIdleTimeout) {
+        this.placeholderIdleTimeout = placeholderIdleTimeout;
+    }
+
+    public long getPlaceholderMaxDiskBytes() {
+        return placeholderMaxDiskBytes;
+    }
+
+    public void setPlaceholderMaxDiskBytes(long placeholderMaxDiskBytes) {
+        this.placeholderMaxDiskBytes = placeholderMaxDiskBytes;
+    }
+
+    public int getPlaceholderCloneThreads() {
+        return placeholderCloneThreads;
+    }
+
+    public void setPlaceholderCloneThreads(int placeholderCloneThreads) {
+        this.placeholderCloneThreads = placeholderCloneThreads;
+    }
+
+    public int getCloneOnStartThreads() {
+        return cloneOnStartThreads;
+    }
+
+    public void setCloneOnStartThreads(int cloneOnStartThreads) {
+        this.cloneOnStartThreads = cloneOnStartThreads;
+    }
+
     public static class PatternMatchingJGitEnvironmentProperties extends JGitEnvironmentProperties {
         /**
          * Pattern to match on application name and profiles.
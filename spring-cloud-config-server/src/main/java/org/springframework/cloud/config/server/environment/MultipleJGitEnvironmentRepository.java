@@ -18,16 +18,26 @@ package org.springframework.cloud.config.server.environment;
 import java.io.File;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedHashMap;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.BeanUtils;
 import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.server.support.BoundedCache;
 import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.PatternMatchUtils;
 import org.springframework.util.StringUtils;
 
@@ -54,6 +64,8 @@ import org.springframework.util.StringUtils;
  */
 public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository {
 
+	private static final int ROUTE_CACHE_SIZE = 1000;
+
 	/**
 	 * Map of repository identifier to location and other properties.
      *
@@ -61,7 +73,31 @@ public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
 	 */
 	private Map<String, PatternMatchingJGitEnvironmentRepository> repos;
 
-	private Map<String, JGitEnvironmentRepository> placeholders = new LinkedHashMap<>();
+	private final PlaceholderRepositoryCache placeholders;
+
+	private int cloneOnStartThreads;
+
+	/**
+	 * The initializations of the pattern repositories running in the background.
+	 */
+	private final Map<JGitEnvironmentRepository, Future<?>> initializations = new ConcurrentHashMap<>();
+
+	private final Map<String, String> failedRepositories = new ConcurrentHashMap<>();
+
+	private final AtomicInteger initializedRepositoryCount = new AtomicInteger();
+
+	private ExecutorService initializationExecutor;
+
+	/**
+	 * The repositories by their patterns, built when the repositories are set up.
+	 */
+	private volatile PatternMatchIndex<PatternMatchingJGitEnvironmentRepository> patternIndex;
+
+	/**
+	 * The repositories that match recent application and profiles pairs, in order.
+	 */
+	private final BoundedCache<List<String>, List<PatternMatchingJGitEnvironmentRepository>> routes = new BoundedCache<>(
+			ROUTE_CACHE_SIZE);
 
 	public MultipleJGitEnvironmentRepository(ConfigurableEnvironment environment,
 											 MultipleJGitEnvironmentProperties properties) {
@@ -70,6 +106,12 @@ public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
 				.map(e -> new AbstractMap.SimpleEntry<>(e.getKey(),
 						new PatternMatchingJGitEnvironmentRepository(environment, e.getValue())))
 				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+		this.placeholders = new PlaceholderRepositoryCache(
+				properties.getPlaceholderCacheSize(),
+				properties.getPlaceholderIdleTimeout(),
+				properties.getPlaceholderMaxDiskBytes(),
+				properties.getPlaceholderCloneThreads());
+		this.cloneOnStartThreads = properties.getCloneOnStartThreads();
 	}
 
 	@Override
@@ -89,12 +131,30 @@ public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
 			if (repo.getTransportConfigCallback() == null) {
 				repo.setTransportConfigCallback(getTransportConfigCallback());
 			}
+			if (repo.getApplicationEventPublisher() == null) {
+				repo.setApplicationEventPublisher(getApplicationEventPublisher());
+			}
 			if (getTimeout() != 0 && repo.getTimeout() == 0) {
 				repo.setTimeout(getTimeout());
 			}
 			if (getRefreshRate() != 0 && repo.getRefreshRate() == 0) {
 				repo.setRefreshRate(getRefreshRate());
 			}
+			if (getBackgroundFetchInterval() != 0
+					&& repo.getBackgroundFetchInterval() == 0) {
+				repo.setBackgroundFetchInterval(getBackgroundFetchInterval());
+				repo.setBackgroundFetchJitter(getBackgroundFetchJitter());
+			}
+			if (getEnvironmentCacheSize() != 0 && repo.getEnvironmentCacheSize() == 0) {
+				repo.setEnvironmentCacheSize(getEnvironmentCacheSize());
+				repo.setEnvironmentCacheMaxWeight(getEnvironmentCacheMaxWeight());
+			}
+			if (repo.getLoadingEngine() == NativeEnvironmentProperties.LoadingEngine.SPRING_APPLICATION) {
+				repo.setLoadingEngine(getLoadingEngine());
+			}
+			if (getFileCacheSize() != 0 && repo.getFileCacheSize() == 0) {
+				repo.setFileCacheSize(getFileCacheSize());
+			}
 			String user = repo.getUsername();
 			String passphrase = repo.getPassphrase();
 			if (user == null) {
@@ -107,8 +167,12 @@ public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
 			if (isSkipSslValidation()) {
 				repo.setSkipSslValidation(true);
 			}
-			repo.afterPropertiesSet();
+			if (isNoCheckout()) {
+				repo.setNoCheckout(true);
+			}
 		}
+		initializeRepositories();
+		buildPatternIndex();
 		if (!getBasedir().exists() &&
 			!getBasedir().mkdirs()) {
 				throw new IllegalStateException(
@@ -121,43 +185,195 @@ public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
 		}
 	}
 
+	/**
+	 * Initialize (and clone, if they clone on start) the pattern repositories, one after
+	 * the other, or in the background on a pool if there are clone on start threads. In
+	 * the background, the failure of one repository is logged and does not stop the
+	 * others, and the requests for a repository wait for its initialization.
+	 */
+	private void initializeRepositories() throws Exception {
+		this.initializedRepositoryCount.set(0);
+		this.failedRepositories.clear();
+		if (this.cloneOnStartThreads <= 1 || this.repos.size() < 2) {
+			for (PatternMatchingJGitEnvironmentRepository repo : this.repos.values()) {
+				repo.afterPropertiesSet();
+				this.initializedRepositoryCount.incrementAndGet();
+			}
+			return;
+		}
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(
+				"jgit-clone-on-start-");
+		threadFactory.setDaemon(true);
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(this.cloneOnStartThreads, this.repos.size()), threadFactory);
+		long start = System.currentTimeMillis();
+		for (Map.Entry<String, PatternMatchingJGitEnvironmentRepository> entry : this.repos
+				.entrySet()) {
+			this.initializations.put(entry.getValue(), executor.submit(
+					() -> initializeRepository(entry.getKey(), entry.getValue(), start)));
+		}
+		// The threads end when the queue is done
+		executor.shutdown();
+		this.initializationExecutor = executor;
+	}
+
+	private void initializeRepository(String name,
+			PatternMatchingJGitEnvironmentRepository repo, long start) {
+		try {
+			repo.afterPropertiesSet();
+		}
+		catch (Exception e) {
+			this.failedRepositories.put(name, String.valueOf(e.getMessage()));
+			this.logger.error("Cannot initialize repository " + name + " ("
+					+ repo.getUri() + "), its first request tries again", e);
+		}
+		int initialized = this.initializedRepositoryCount.incrementAndGet();
+		if (initialized == this.repos.size()) {
+			this.logger.info("Initialized " + initialized + " repositories in "
+					+ (System.currentTimeMillis() - start) + "ms ("
+					+ this.failedRepositories.size() + " failed)");
+		}
+		else if (this.logger.isInfoEnabled()) {
+			this.logger.info("Initialized repository " + name + " (" + initialized
+					+ " of " + this.repos.size() + ")");
+		}
+	}
+
+	private void awaitInitialization(JGitEnvironmentRepository repository) {
+		Future<?> initialization = this.initializations.get(repository);
+		if (initialization == null || initialization.isDone()) {
+			return;
+		}
+		try {
+			initialization.get();
+		}
+		catch (ExecutionException e) {
+			// Logged already
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * A pattern repository that failed to initialize has served a request since.
+	 */
+	private void initialized(PatternMatchingJGitEnvironmentRepository repository) {
+		if (this.failedRepositories.isEmpty()) {
+			return;
+		}
+		for (Map.Entry<String, PatternMatchingJGitEnvironmentRepository> entry : this.repos
+				.entrySet()) {
+			if (entry.getValue() == repository
+					&& this.failedRepositories.remove(entry.getKey()) != null) {
+				this.logger.info("Repository " + entry.getKey() + " (" + repository.getUri()
+						+ ") is initialized");
+			}
+		}
+	}
+
+	/**
+	 * @return true when all the pattern repositories are initialized (or have failed)
+	 */
+	public boolean isInitialized() {
+		return this.initializedRepositoryCount.get() >= this.repos.size();
+	}
+
+	public int getInitializedRepositoryCount() {
+		return this.initializedRepositoryCount.get();
+	}
+
+	/**
+	 * @return the error messages of the pattern repositories that failed to initialize in
+	 * the background and have not served a request since, by name
+	 */
+	public Map<String, String> getFailedRepositories() {
+		return Collections.unmodifiableMap(this.failedRepositories);
+	}
+
+	public int getCloneOnStartThreads() {
+		return this.cloneOnStartThreads;
+	}
+
+	public void setCloneOnStartThreads(int cloneOnStartThreads) {
+		this.cloneOnStartThreads = cloneOnStartThreads;
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (this.initializationExecutor != null) {
+			this.initializationExecutor.shutdownNow();
+		}
+		super.destroy();
+		for (JGitEnvironmentRepository repo : this.repos.values()) {
+			repo.destroy();
+		}
+		this.placeholders.destroy();
+	}
+
 	public void setRepos(Map<String, PatternMatchingJGitEnvironmentRepository> repos) {
 		this.repos.putAll(repos);
+		this.patternIndex = null;
+		this.routes.invalidateAll();
 	}
 
+	/**
+	 * @return the repositories by name (changes to the map or to the patterns after
+	 * {@link #afterPropertiesSet()} are not seen by the pattern matching)
+	 */
 	public Map<String, PatternMatchingJGitEnvironmentRepository> getRepos() {
 		return this.repos;
 	}
 
-	@Override
-	public Locations getLocations(String application, String profile, String label) {
+	private PatternMatchIndex<PatternMatchingJGitEnvironmentRepository> buildPatternIndex() {
+		PatternMatchIndex<PatternMatchingJGitEnvironmentRepository> index = new PatternMatchIndex<>();
 		for (PatternMatchingJGitEnvironmentRepository repository : this.repos.values()) {
-			if (repository.matches(application, profile, label)) {
-				for (JGitEnvironmentRepository candidate : getRepositories(repository,
-						application, profile, label)) {
-					try {
-						Environment source = candidate.findOne(application, profile,
-								label);
-						if (source != null) {
-							return candidate.getLocations(application, profile, label);
-						}
-					}
-					catch (Exception e) {
-						if (logger.isDebugEnabled()) {
-							this.logger.debug("Cannot retrieve resource locations from "
-									+ candidate.getUri() + ", cause: ("
-									+ e.getClass().getSimpleName() + ") "
-									+ e.getMessage(), e);
-						}
-						continue;
-					}
-				}
+			if (repository.getPattern() != null) {
+				index.add(repository, repository.getPattern());
+			}
+		}
+		this.patternIndex = index;
+		this.routes.invalidateAll();
+		return index;
+	}
+
+	/**
+	 * The repositories with a pattern that matches the application and one of the
+	 * profiles (see {@link PatternMatchingJGitEnvironmentRepository#matches}), in the
+	 * order of the repositories.
+	 *
+	 * 具有与应用程序和其中一个配置文件匹配的模式的存储库，按存储库的顺序排列。
+	 */
+	List<PatternMatchingJGitEnvironmentRepository> getMatchingRepositories(
+			String application, String profile) {
+		List<String> key = Arrays.asList(application, profile);
+		List<PatternMatchingJGitEnvironmentRepository> matching = this.routes.get(key);
+		if (matching == null) {
+			PatternMatchIndex<PatternMatchingJGitEnvironmentRepository> index = this.patternIndex;
+			if (index == null) {
+				index = buildPatternIndex();
 			}
+			String[] profiles = StringUtils.commaDelimitedListToStringArray(profile);
+			String[] names = new String[profiles.length];
+			for (int i = 0; i < profiles.length; i++) {
+				names[i] = application + "/" + profiles[i];
+			}
+			matching = index.match(names);
+			this.routes.put(key, matching);
+		}
+		return matching;
+	}
+
+	@Override
+	public Locations getLocations(String application, String profile, String label) {
+		JGitEnvironmentRepository candidate = getPatternRepository(application, profile,
+				label);
+		if (candidate != null) {
+			return candidate.getLocations(application, profile, label);
 		}
 		// ------------------关键方法---------------
 		// 获得资源库
-		JGitEnvironmentRepository candidate = getRepository(this, application, profile,
-				label);
+		candidate = getRepository(this, application, profile, label);
 		if (candidate == this) {
 			// ------------------关键方法---------------
 			// 获得git，会在这里面做git初始化，checkout，merge，等等
@@ -166,35 +382,82 @@ public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
 		return candidate.getLocations(application, profile, label);
 	}
 
+	@Override
+	public <T> T withLocations(String application, String profile, String label,
+			Function<Locations, T> callback) {
+		JGitEnvironmentRepository candidate = getPatternRepository(application, profile,
+				label);
+		if (candidate != null) {
+			return candidate.withLocations(application, profile, label, callback);
+		}
+		candidate = getRepository(this, application, profile, label);
+		if (candidate == this) {
+			return super.withLocations(application, profile, label, callback);
+		}
+		return candidate.withLocations(application, profile, label, callback);
+	}
+
+	/**
+	 * Find the first repository matching a pattern that has an environment for the
+	 * request, or null if there is none.
+	 */
+	private JGitEnvironmentRepository getPatternRepository(String application,
+			String profile, String label) {
+		for (PatternMatchingJGitEnvironmentRepository repository : getMatchingRepositories(
+				application, profile)) {
+			for (JGitEnvironmentRepository candidate : getRepositories(repository,
+					application, profile, label)) {
+				try {
+					Environment source = candidate.findOne(application, profile,
+							label);
+					if (source != null) {
+						initialized(repository);
+						return candidate;
+					}
+				}
+				catch (Exception e) {
+					if (logger.isDebugEnabled()) {
+						this.logger.debug("Cannot retrieve resource locations from "
+								+ candidate.getUri() + ", cause: ("
+								+ e.getClass().getSimpleName() + ") "
+								+ e.getMessage(), e);
+					}
+					continue;
+				}
+			}
+		}
+		return null;
+	}
+
 	@Override
 	public Environment findOne(String application, String profile, String label) {
-		for (PatternMatchingJGitEnvironmentRepository repository : this.repos.values()) {
-		    // -------------------关键方法----------------------
-            // 查看是否匹配
-			if (repository.matches(application, profile, label)) {
-				for (JGitEnvironmentRepository candidate : getRepositories(repository,
-						application, profile, label)) {
-					try {
-						if (label == null) {
-							label = candidate.getDefaultLabel();
-						}
-						Environment source = candidate.findOne(application, profile,
-								label);
-						if (source != null) {
-							return source;
-						}
+		// -------------------关键方法----------------------
+		// 查看是否匹配
+		for (PatternMatchingJGitEnvironmentRepository repository : getMatchingRepositories(
+				application, profile)) {
+			for (JGitEnvironmentRepository candidate : getRepositories(repository,
+					application, profile, label)) {
+				try {
+					if (label == null) {
+						label = candidate.getDefaultLabel();
 					}
-					catch (Exception e) {
-						if (logger.isDebugEnabled()) {
-							this.logger.debug(
-									"Cannot load configuration from " + candidate.getUri()
-											+ ", cause: (" + e.getClass().getSimpleName()
-											+ ") " + e.getMessage(),
-									e);
-						}
-						continue;
+					Environment source = candidate.findOne(application, profile,
+							label);
+					if (source != null) {
+						initialized(repository);
+						return source;
 					}
 				}
+				catch (Exception e) {
+					if (logger.isDebugEnabled()) {
+						this.logger.debug(
+								"Cannot load configuration from " + candidate.getUri()
+										+ ", cause: (" + e.getClass().getSimpleName()
+										+ ") " + e.getMessage(),
+								e);
+					}
+					continue;
+				}
 			}
 		}
 		// ---------------关键方法----------------
@@ -214,6 +477,7 @@ public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
 	private List<JGitEnvironmentRepository> getRepositories(
 			JGitEnvironmentRepository repository, String application, String profile,
 			String label) {
+		awaitInitialization(repository);
 		List<JGitEnvironmentRepository> list = new ArrayList<>();
 		String[] profiles = profile == null ? new String[] { null }
 				: StringUtils.commaDelimitedListToStringArray(profile);
@@ -254,12 +518,16 @@ public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
 			key = key.replace("{label}", label);
 		}
 
-		// placeholders 不存在，则存入map
-		if (!this.placeholders.containsKey(key)) {
-			// ----------------关键方法--------------
-			this.placeholders.put(key, getRepository(repository, key));
-		}
-		return this.placeholders.get(key);
+		// placeholders 不存在，则存入缓存（并异步克隆）
+		// ----------------关键方法--------------
+		return this.placeholders.get(key, uri -> getRepository(repository, uri), label);
+	}
+
+	/**
+	 * @return the cache of the repositories expanded from placeholders
+	 */
+	PlaceholderRepositoryCache getPlaceholders() {
+		return this.placeholders;
 	}
 
 	private JGitEnvironmentRepository getRepository(JGitEnvironmentRepository source,
@@ -268,6 +536,7 @@ public class MultipleJGitEnvironmentRepository extends JGitEnvironmentRepository
 				new JGitEnvironmentProperties());
 		File basedir = repository.getBasedir();
 		BeanUtils.copyProperties(source, repository);
+		repository.setApplicationEventPublisher(source.getApplicationEventPublisher());
 		repository.setUri(uri);
 		repository.setBasedir(
 				new File(source.getBasedir().getParentFile(), basedir.getName()));
@@ -34,6 +34,8 @@ public class MultipleJGitEnvironmentRepositoryFactory implements EnvironmentRepo
 	private ConfigServerProperties server;
 	private Optional<ConfigurableHttpConnectionFactory> connectionFactory;
 	private Optional<TransportConfigCallback> customTransportConfigCallback;
+	private JGitWindowCacheProperties windowCache;
+	private boolean windowCacheInstalled;
 
     @Deprecated
     public MultipleJGitEnvironmentRepositoryFactory(ConfigurableEnvironment environment, ConfigServerProperties server,
@@ -51,9 +53,20 @@ public class MultipleJGitEnvironmentRepositoryFactory implements EnvironmentRepo
 		this.customTransportConfigCallback = customTransportConfigCallback;
 	}
 
+	/**
+	 * Set the settings of the window cache that all the repositories built here share.
+	 * The cache is reconfigured when the first repository is built.
+	 *
+	 * 设置这里构建的所有存储库共享的窗口缓存的设置。构建第一个存储库时重新配置缓存。
+	 */
+	public void setWindowCache(JGitWindowCacheProperties windowCache) {
+		this.windowCache = windowCache;
+	}
+
 	@Override
 	public MultipleJGitEnvironmentRepository build(MultipleJGitEnvironmentProperties environmentProperties)
 			throws Exception {
+		installWindowCache();
 		if (connectionFactory.isPresent()) {
 			HttpTransport.setConnectionFactory(connectionFactory.get());
 			connectionFactory.get().addConfiguration(environmentProperties);
@@ -69,6 +82,13 @@ public class MultipleJGitEnvironmentRepositoryFactory implements EnvironmentRepo
 		return repository;
 	}
 
+	private synchronized void installWindowCache() {
+		if (!windowCacheInstalled && windowCache != null && windowCache.isCustomized()) {
+			windowCache.toWindowCacheConfig().install();
+			windowCacheInstalled = true;
+		}
+	}
+
     private TransportConfigCallback buildTransportConfigCallback(MultipleJGitEnvironmentProperties gitEnvironmentProperties) {
         if (gitEnvironmentProperties.isIgnoreLocalSshSettings()) {
             return new PropertiesBasedSshTransportConfigCallback(gitEnvironmentProperties);
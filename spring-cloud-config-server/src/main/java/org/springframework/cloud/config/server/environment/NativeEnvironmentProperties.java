@@ -43,6 +43,17 @@ public class NativeEnvironmentProperties implements EnvironmentRepositoryPropert
      */
     private String version;
     private int order = Ordered.LOWEST_PRECEDENCE;
+    /**
+     * The engine used to load the configuration files. Defaults to running a (minimal)
+     * SpringApplication for each request.
+     */
+    private LoadingEngine loadingEngine = LoadingEngine.SPRING_APPLICATION;
+    /**
+     * Maximum number of parsed configuration files to cache, keyed by path and content
+     * (last modified time and size). Only used by the property-source-loader engine.
+     * Default 0 (disabled).
+     */
+    private int fileCacheSize = 0;
 
     public Boolean getFailOnError() {
         return failOnError;
@@ -92,4 +103,34 @@ public class NativeEnvironmentProperties implements EnvironmentRepositoryPropert
     public void setOrder(int order) {
         this.order = order;
     }
+
+    public LoadingEngine getLoadingEngine() {
+        return loadingEngine;
+    }
+
+    public void setLoadingEngine(LoadingEngine loadingEngine) {
+        this.loadingEngine = loadingEngine;
+    }
+
+    public int getFileCacheSize() {
+        return fileCacheSize;
+    }
+
+    public void setFileCacheSize(int fileCacheSize) {
+        this.fileCacheSize = fileCacheSize;
+    }
+
+    /**
+     * Ways of turning config files into property sources.
+     */
+    public enum LoadingEngine {
+        /**
+         * Run a SpringApplication (with only the config file listener) per request.
+         */
+        SPRING_APPLICATION,
+        /**
+         * Use the property source loaders directly, with no application context.
+         */
+        PROPERTY_SOURCE_LOADER
+    }
 }
@@ -39,6 +39,8 @@ import org.springframework.core.Ordered;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.MapPropertySource;
 import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.util.StringUtils;
 
 /**
@@ -99,6 +101,19 @@ public class NativeEnvironmentRepository
 
 	private int order;
 
+	/**
+	 * The engine used to load the configuration files.
+	 *
+	 * 用于加载配置文件的引擎。
+	 */
+	private NativeEnvironmentProperties.LoadingEngine loadingEngine;
+
+	private ConfigFileEnvironmentLoader loader = new ConfigFileEnvironmentLoader();
+
+	private PropertySourceFileCache fileCache;
+
+	private ResourceLoader resourceLoader;
+
 	public NativeEnvironmentRepository(ConfigurableEnvironment environment, NativeEnvironmentProperties properties) {
 		this.environment = environment;
 		this.addLabelLocations = properties.getAddLabelLocations();
@@ -107,6 +122,10 @@ public class NativeEnvironmentRepository
 		this.order = properties.getOrder();
 		this.searchLocations = properties.getSearchLocations();
 		this.version = properties.getVersion();
+		this.loadingEngine = properties.getLoadingEngine();
+		if (properties.getFileCacheSize() > 0) {
+			setFileCache(new PropertySourceFileCache(properties.getFileCacheSize()));
+		}
 	}
 
 	public void setFailOnError(boolean failOnError) {
@@ -133,12 +152,63 @@ public class NativeEnvironmentRepository
 		this.defaultLabel = defaultLabel;
 	}
 
+	public NativeEnvironmentProperties.LoadingEngine getLoadingEngine() {
+		return this.loadingEngine;
+	}
+
+	public void setLoadingEngine(NativeEnvironmentProperties.LoadingEngine loadingEngine) {
+		this.loadingEngine = loadingEngine;
+	}
+
+	public PropertySourceFileCache getFileCache() {
+		return this.fileCache;
+	}
+
+	/**
+	 * @param fileCache a cache of parsed files to use with the
+	 * {@link NativeEnvironmentProperties.LoadingEngine#PROPERTY_SOURCE_LOADER} engine
+	 * (may be shared with other repositories), or null for no caching
+	 */
+	public void setFileCache(PropertySourceFileCache fileCache) {
+		this.fileCache = fileCache;
+		this.loader = createLoader();
+	}
+
+	public ResourceLoader getResourceLoader() {
+		return this.resourceLoader;
+	}
+
+	/**
+	 * @param resourceLoader the resource loader to read the configuration files with, or
+	 * null for the default
+	 */
+	public void setResourceLoader(ResourceLoader resourceLoader) {
+		this.resourceLoader = resourceLoader;
+		this.loader = createLoader();
+	}
+
+	private ConfigFileEnvironmentLoader createLoader() {
+		ResourceLoader resourceLoader = this.resourceLoader != null ? this.resourceLoader
+				: new DefaultResourceLoader();
+		if (this.fileCache == null) {
+			return new ConfigFileEnvironmentLoader(resourceLoader);
+		}
+		return new ConfigFileEnvironmentLoader(resourceLoader,
+				this.fileCache.getPropertySourceLoaders());
+	}
+
 	@Override
 	public Environment findOne(String config, String profile, String label) {
+		if (this.loadingEngine == NativeEnvironmentProperties.LoadingEngine.PROPERTY_SOURCE_LOADER) {
+			return load(config, profile, label);
+		}
 		SpringApplicationBuilder builder = new SpringApplicationBuilder(
 				PropertyPlaceholderAutoConfiguration.class);
 		ConfigurableEnvironment environment = getEnvironment(profile);
 		builder.environment(environment);
+		if (this.resourceLoader != null) {
+			builder.resourceLoader(this.resourceLoader);
+		}
 		builder.web(WebApplicationType.NONE).bannerMode(Mode.OFF);
 		if (!logger.isDebugEnabled()) {
 			// Make the mini-application startup less verbose
@@ -166,6 +236,25 @@ public class NativeEnvironmentRepository
 		}
 	}
 
+	/**
+	 * Load the config files straight into a fresh environment, with no application
+	 * context, applying the same rules as the SpringApplication would.
+	 */
+	private Environment load(String config, String profile, String label) {
+		ConfigurableEnvironment environment = getEnvironment(profile);
+		@SuppressWarnings("unchecked")
+		Map<String, Object> map = (Map<String, Object>) environment.getPropertySources()
+				.get("profiles").getSource();
+		map.put(ConfigFileApplicationListener.CONFIG_NAME_PROPERTY,
+				getConfigName(config));
+		map.put(ConfigFileApplicationListener.CONFIG_LOCATION_PROPERTY,
+				getConfigLocation(config, profile, label));
+		this.loader.load(environment);
+		environment.getPropertySources().remove("profiles");
+		return clean(new PassthruEnvironmentRepository(environment).findOne(config,
+				profile, label));
+	}
+
 	@Override
 	public Locations getLocations(String application, String profile, String label) {
 		String[] locations = this.searchLocations;
@@ -288,16 +377,25 @@ public class NativeEnvironmentRepository
 
 	private String[] getArgs(String application, String profile, String label) {
 		List<String> list = new ArrayList<String>();
+		list.add("--spring.config.name=" + getConfigName(application));
+		list.add("--spring.cloud.bootstrap.enabled=false");
+		list.add("--encrypt.failOnError=" + this.failOnError);
+		list.add("--spring.config.location="
+				+ getConfigLocation(application, profile, label));
+		return list.toArray(new String[0]);
+	}
+
+	private String getConfigName(String application) {
 		String config = application;
 		if (!config.startsWith("application")) {
 			config = "application," + config;
 		}
-		list.add("--spring.config.name=" + config);
-		list.add("--spring.cloud.bootstrap.enabled=false");
-		list.add("--encrypt.failOnError=" + this.failOnError);
-		list.add("--spring.config.location=" + StringUtils.arrayToCommaDelimitedString(
-				getLocations(application, profile, label).getLocations()));
-		return list.toArray(new String[0]);
+		return config;
+	}
+
+	private String getConfigLocation(String application, String profile, String label) {
+		return StringUtils.arrayToCommaDelimitedString(
+				getLocations(application, profile, label).getLocations());
 	}
 
 	public String[] getSearchLocations() {
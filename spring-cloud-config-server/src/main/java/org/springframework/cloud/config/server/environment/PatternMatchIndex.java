@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.util.PatternMatchUtils;
+
+/**
+ * An index of the simple patterns (as in {@link PatternMatchUtils#simpleMatch}) of some
+ * values, to find the values with a pattern that matches a string without trying every
+ * pattern. The patterns without a wildcard are looked up by hash, and the others are
+ * kept in a trie by the literal prefix before their first wildcard, so only the patterns
+ * whose prefix starts the string are tried. The matches are returned in the order in
+ * which the values were added. Not thread safe while values are added.
+ *
+ * 一些值的简单模式（如{@link PatternMatchUtils#simpleMatch}）的索引，用于查找具有与字符串匹配的模式的值，而无需尝试每个模式。
+ * 没有通配符的模式通过哈希查找，其他模式按其第一个通配符之前的字面前缀保存在前缀树中，因此只尝试前缀是字符串开头的模式。
+ * 匹配项按照添加值的顺序返回。添加值时不是线程安全的。
+ *
+ * @param <T> the value type
+ */
+class PatternMatchIndex<T> {
+
+	private final List<T> values = new ArrayList<>();
+
+	private final Map<String, BitSet> literals = new HashMap<>();
+
+	private final Node root = new Node();
+
+	/**
+	 * Add a value with its patterns (null patterns never match).
+	 *
+	 * @param value the value
+	 * @param patterns the patterns of the value
+	 */
+	public void add(T value, String... patterns) {
+		int rank = this.values.size();
+		this.values.add(value);
+		for (String pattern : patterns) {
+			if (pattern == null) {
+				continue;
+			}
+			int wildcard = pattern.indexOf('*');
+			if (wildcard < 0) {
+				this.literals.computeIfAbsent(pattern, key -> new BitSet()).set(rank);
+				continue;
+			}
+			Node node = this.root;
+			for (int i = 0; i < wildcard; i++) {
+				node = node.children.computeIfAbsent(pattern.charAt(i), key -> new Node());
+			}
+			node.patterns.add(pattern);
+			node.ranks.add(rank);
+		}
+	}
+
+	/**
+	 * @param strings the strings to match
+	 * @return the values with a pattern that matches any of the strings, in the order
+	 * they were added
+	 */
+	public List<T> match(String... strings) {
+		BitSet ranks = new BitSet();
+		for (String string : strings) {
+			BitSet literal = this.literals.get(string);
+			if (literal != null) {
+				ranks.or(literal);
+			}
+			Node node = this.root;
+			for (int i = 0; node != null; i++) {
+				node.match(string, ranks);
+				node = i < string.length() ? node.children.get(string.charAt(i)) : null;
+			}
+		}
+		List<T> result = new ArrayList<>(ranks.cardinality());
+		for (int rank = ranks.nextSetBit(0); rank >= 0; rank = ranks.nextSetBit(rank + 1)) {
+			result.add(this.values.get(rank));
+		}
+		return result;
+	}
+
+	private static class Node {
+
+		private final Map<Character, Node> children = new HashMap<>();
+
+		private final List<String> patterns = new ArrayList<>();
+
+		private final List<Integer> ranks = new ArrayList<>();
+
+		void match(String string, BitSet matched) {
+			for (int i = 0; i < this.patterns.size(); i++) {
+				int rank = this.ranks.get(i);
+				if (!matched.get(rank)
+						&& PatternMatchUtils.simpleMatch(this.patterns.get(i), string)) {
+					matched.set(rank);
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * The repositories of the URIs that {@link MultipleJGitEnvironmentRepository} expands
+ * from placeholders, by URI. The least recently used repositories are evicted when there
+ * are too many, when they have not been used for a while, or when their clones take up
+ * too much disk. A new repository is cloned on a small pool, so the concurrent requests
+ * for it share one clone, but each of them still waits until the clone is done. An
+ * evicted repository is stopped (and the repository it holds open is closed), and its
+ * clone is deleted by the next cleanup (so the requests still using it can finish).
+ *
+ * {@link MultipleJGitEnvironmentRepository}从占位符展开的URI的存储库，按URI索引。当存储库过多、一段时间未使用或其克隆占用过多磁盘时，
+ * 最近最少使用的存储库将被驱逐。新存储库在一个小池上克隆，因此对它的并发请求共享同一次克隆，但每个请求仍会等待克隆完成。
+ * 被驱逐的存储库将被停止（并关闭其打开的存储库），其克隆将在下一次清理时被删除（因此仍在使用它的请求可以完成）。
+ */
+class PlaceholderRepositoryCache {
+
+	private static final Log logger = LogFactory.getLog(PlaceholderRepositoryCache.class);
+
+	private static final long CLEANUP_INTERVAL = TimeUnit.SECONDS.toMillis(60);
+
+	private final long cleanupInterval;
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f,
+			true);
+
+	private final List<Retired> retired = new ArrayList<>();
+
+	private final int maximumSize;
+
+	private final long idleTimeout;
+
+	private final long maximumDiskBytes;
+
+	private final int cloneThreads;
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	private ExecutorService cloneExecutor;
+
+	private ScheduledExecutorService cleanupExecutor;
+
+	private volatile long diskBytes;
+
+	/**
+	 * @param maximumSize the maximum number of repositories (0 for no limit)
+	 * @param idleTimeout the time (in seconds) after which an unused repository is
+	 * evicted (0 for never)
+	 * @param maximumDiskBytes the maximum total size of the clones (0 for no limit)
+	 * @param cloneThreads the number of threads that clone new repositories (0 to clone
+	 * on the requesting threads)
+	 */
+	PlaceholderRepositoryCache(int maximumSize, long idleTimeout,
+			long maximumDiskBytes, int cloneThreads) {
+		this(maximumSize, idleTimeout, maximumDiskBytes, cloneThreads, CLEANUP_INTERVAL);
+	}
+
+	/**
+	 * @param cleanupInterval the time (in milliseconds) between cleanups, and before an
+	 * evicted clone is deleted (0 to clean up only when asked to)
+	 */
+	PlaceholderRepositoryCache(int maximumSize, long idleTimeout,
+			long maximumDiskBytes, int cloneThreads, long cleanupInterval) {
+		this.cleanupInterval = cleanupInterval;
+		this.maximumSize = maximumSize;
+		this.idleTimeout = TimeUnit.SECONDS.toMillis(idleTimeout);
+		this.maximumDiskBytes = maximumDiskBytes;
+		this.cloneThreads = cloneThreads;
+	}
+
+	/**
+	 * Get the repository of a URI, creating and cloning it if there is none yet. Blocks
+	 * until the clone of a new repository is done (or has failed).
+	 *
+	 * @param uri the expanded URI
+	 * @param factory creates the repository of the URI
+	 * @param label the label to check out in a new clone
+	 * @return the repository
+	 */
+	public JGitEnvironmentRepository get(String uri,
+			Function<String, JGitEnvironmentRepository> factory, String label) {
+		Entry entry;
+		List<Entry> evicted = new ArrayList<>();
+		synchronized (this.entries) {
+			entry = this.entries.get(uri);
+			if (entry == null) {
+				entry = new Entry(factory.apply(uri));
+				entry.clone = startClone(entry.repository, label);
+				this.entries.put(uri, entry);
+				Iterator<Entry> iter = this.entries.values().iterator();
+				while (this.maximumSize > 0 && this.entries.size() > this.maximumSize) {
+					evicted.add(iter.next());
+					iter.remove();
+				}
+				startCleanup();
+			}
+			entry.lastAccess = System.currentTimeMillis();
+		}
+		retire(evicted);
+		awaitClone(entry);
+		return entry.repository;
+	}
+
+	private Future<?> startClone(JGitEnvironmentRepository repository, String label) {
+		if (this.cloneThreads <= 0) {
+			return null;
+		}
+		if (this.cloneExecutor == null) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(
+					"jgit-placeholder-clone-");
+			threadFactory.setDaemon(true);
+			this.cloneExecutor = Executors.newFixedThreadPool(this.cloneThreads,
+					threadFactory);
+		}
+		return this.cloneExecutor.submit(() -> repository
+				.refresh(label != null ? label : repository.getDefaultLabel()));
+	}
+
+	private void awaitClone(Entry entry) {
+		Future<?> clone = entry.clone;
+		if (clone == null || clone.isDone()) {
+			return;
+		}
+		try {
+			clone.get();
+		}
+		catch (ExecutionException e) {
+			// The request tries again, and reports the failure if there still is one
+			if (logger.isDebugEnabled()) {
+				logger.debug("Cannot clone " + entry.repository.getUri(), e.getCause());
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void startCleanup() {
+		if (this.cleanupExecutor == null && this.cleanupInterval > 0) {
+			this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor(
+					runnable -> {
+						Thread thread = new Thread(runnable,
+								"jgit-placeholder-cleanup");
+						thread.setDaemon(true);
+						return thread;
+					});
+			this.cleanupExecutor.scheduleWithFixedDelay(this::cleanup,
+					this.cleanupInterval, this.cleanupInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Delete the clones retired before the last cleanup, and evict the repositories that
+	 * are idle or over the disk budget.
+	 */
+	void cleanup() {
+		try {
+			deleteRetired(System.currentTimeMillis() - this.cleanupInterval);
+			List<Entry> evicted = new ArrayList<>();
+			List<Entry> snapshot;
+			synchronized (this.entries) {
+				long idleSince = System.currentTimeMillis() - this.idleTimeout;
+				for (Iterator<Entry> iter = this.entries.values().iterator(); iter
+						.hasNext();) {
+					Entry entry = iter.next();
+					if (this.idleTimeout > 0 && entry.lastAccess < idleSince) {
+						evicted.add(entry);
+						iter.remove();
+					}
+				}
+				snapshot = new ArrayList<>(this.entries.values());
+			}
+			// Sizing the clones reads the disk, so not while holding the lock
+			long total = 0;
+			for (Entry entry : snapshot) {
+				entry.diskBytes = sizeOf(entry.repository.getBasedir());
+				total += entry.diskBytes;
+			}
+			if (this.maximumDiskBytes > 0 && total > this.maximumDiskBytes) {
+				synchronized (this.entries) {
+					for (Iterator<Entry> iter = this.entries.values().iterator(); iter
+							.hasNext() && total > this.maximumDiskBytes;) {
+						Entry entry = iter.next();
+						evicted.add(entry);
+						iter.remove();
+						total -= entry.diskBytes;
+					}
+				}
+			}
+			this.diskBytes = total;
+			retire(evicted);
+		}
+		catch (RuntimeException e) {
+			logger.warn("Cannot clean up placeholder repositories", e);
+		}
+	}
+
+	private void retire(List<Entry> evicted) {
+		for (Entry entry : evicted) {
+			this.evictionCount.incrementAndGet();
+			if (logger.isDebugEnabled()) {
+				logger.debug("Evicting repository " + entry.repository.getUri());
+			}
+			try {
+				entry.repository.destroy();
+			}
+			catch (Exception e) {
+				logger.warn("Cannot stop repository " + entry.repository.getUri(), e);
+			}
+			if (entry.clone != null) {
+				entry.clone.cancel(false);
+			}
+			synchronized (this.retired) {
+				this.retired.add(new Retired(entry.repository.getBasedir(),
+						System.currentTimeMillis()));
+			}
+		}
+	}
+
+	private void deleteRetired(long before) {
+		List<Retired> expired = new ArrayList<>();
+		synchronized (this.retired) {
+			for (Iterator<Retired> iter = this.retired.iterator(); iter.hasNext();) {
+				Retired retired = iter.next();
+				if (retired.time <= before) {
+					expired.add(retired);
+					iter.remove();
+				}
+			}
+		}
+		for (Retired retired : expired) {
+			FileSystemUtils.deleteRecursively(retired.basedir);
+		}
+	}
+
+	private long sizeOf(File directory) {
+		if (!directory.exists()) {
+			return 0;
+		}
+		try (Stream<Path> paths = Files.walk(directory.toPath())) {
+			return paths.filter(Files::isRegularFile).mapToLong(path -> {
+				try {
+					return Files.size(path);
+				}
+				catch (IOException e) {
+					// Deleted meanwhile
+					return 0;
+				}
+			}).sum();
+		}
+		catch (IOException | UncheckedIOException e) {
+			return 0;
+		}
+	}
+
+	public int size() {
+		synchronized (this.entries) {
+			return this.entries.size();
+		}
+	}
+
+	public long getEvictionCount() {
+		return this.evictionCount.get();
+	}
+
+	/**
+	 * @return the total size of the clones at the last cleanup
+	 */
+	public long getDiskBytes() {
+		return this.diskBytes;
+	}
+
+	/**
+	 * Stop all the repositories (their clones are kept).
+	 */
+	public void destroy() throws Exception {
+		if (this.cleanupExecutor != null) {
+			this.cleanupExecutor.shutdownNow();
+		}
+		if (this.cloneExecutor != null) {
+			this.cloneExecutor.shutdownNow();
+		}
+		List<Entry> all;
+		synchronized (this.entries) {
+			all = new ArrayList<>(this.entries.values());
+		}
+		for (Entry entry : all) {
+			entry.repository.destroy();
+		}
+		deleteRetired(Long.MAX_VALUE);
+	}
+
+	Map<String, JGitEnvironmentRepository> getRepositories() {
+		Map<String, JGitEnvironmentRepository> repositories = new LinkedHashMap<>();
+		synchronized (this.entries) {
+			for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+				repositories.put(entry.getKey(), entry.getValue().repository);
+			}
+		}
+		return repositories;
+	}
+
+	private static class Entry {
+
+		private final JGitEnvironmentRepository repository;
+
+		private volatile Future<?> clone;
+
+		private volatile long lastAccess;
+
+		private volatile long diskBytes;
+
+		Entry(JGitEnvironmentRepository repository) {
+			this.repository = repository;
+		}
+
+	}
+
+	private static class Retired {
+
+		private final File basedir;
+
+		private final long time;
+
+		Retired(File basedir, long time) {
+			this.basedir = basedir;
+			this.time = time;
+		}
+
+	}
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.environment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.jgit.lib.ObjectId;
+
+import org.springframework.boot.env.PropertySourceLoader;
+import org.springframework.cloud.config.server.support.BoundedCache;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.SpringFactoriesLoader;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * A cache of parsed configuration files, shared by all the requests that a repository
+ * serves, so that files common to many applications (e.g. <code>application.yml</code>)
+ * are parsed once per change instead of once per request. Entries are keyed by the
+ * absolute location of the file plus an identity of its content (the blob id for files
+ * read from a git object database, otherwise the last modified time and size of the
+ * file), so an edited file is always parsed again.
+ *
+ * 已解析配置文件的缓存，由存储库服务的所有请求共享，因此许多应用程序共用的文件（例如application.yml）
+ * 在每次更改时只解析一次，而不是每个请求都解析一次。条目以文件的绝对位置加上其内容标识（从git对象数据库读取的文件使用blob id，
+ * 否则使用最后修改时间和大小）为键，因此编辑过的文件总会被重新解析。
+ */
+public class PropertySourceFileCache {
+
+	private static final Log logger = LogFactory.getLog(PropertySourceFileCache.class);
+
+	private final BoundedCache<FileKey, List<PropertySource<?>>> cache;
+
+	private final List<PropertySourceLoader> propertySourceLoaders;
+
+	/**
+	 * @param maximumSize the maximum number of parsed files to keep
+	 */
+	public PropertySourceFileCache(int maximumSize) {
+		this.cache = new BoundedCache<>(maximumSize);
+		this.propertySourceLoaders = Collections.unmodifiableList(
+				wrap(SpringFactoriesLoader.loadFactories(PropertySourceLoader.class,
+						PropertySourceFileCache.class.getClassLoader())));
+	}
+
+	/**
+	 * @return the default property source loaders, backed by this cache
+	 */
+	public List<PropertySourceLoader> getPropertySourceLoaders() {
+		return this.propertySourceLoaders;
+	}
+
+	/**
+	 * @param loaders the loaders to decorate
+	 * @return loaders that consult this cache before delegating to the originals
+	 */
+	public List<PropertySourceLoader> wrap(List<PropertySourceLoader> loaders) {
+		List<PropertySourceLoader> result = new ArrayList<>();
+		for (PropertySourceLoader loader : loaders) {
+			result.add(new CachingPropertySourceLoader(loader));
+		}
+		return result;
+	}
+
+	public BoundedCache<?, ?> getCache() {
+		return this.cache;
+	}
+
+	/**
+	 * Compute the identity of the content of a resource, or null if it cannot be
+	 * determined cheaply (in which case the resource is not cached).
+	 */
+	protected Object getContentIdentity(Resource resource) {
+		if (resource instanceof JGitTreeResourceLoader.BlobResource) {
+			ObjectId blob = ((JGitTreeResourceLoader.BlobResource) resource)
+					.getObjectId();
+			return blob == null ? null : blob.name();
+		}
+		try {
+			long modified = resource.lastModified();
+			if (modified <= 0) {
+				return null;
+			}
+			return modified + ":" + resource.contentLength();
+		}
+		catch (IOException e) {
+			return null;
+		}
+	}
+
+	private String getPath(Resource resource) {
+		if (resource instanceof JGitTreeResourceLoader.BlobResource) {
+			return ((JGitTreeResourceLoader.BlobResource) resource).getLocation();
+		}
+		try {
+			if (resource.isFile()) {
+				return resource.getFile().getAbsolutePath();
+			}
+			return resource.getURL().toString();
+		}
+		catch (IOException e) {
+			return null;
+		}
+	}
+
+	private class CachingPropertySourceLoader implements PropertySourceLoader {
+
+		private final PropertySourceLoader delegate;
+
+		CachingPropertySourceLoader(PropertySourceLoader delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public String[] getFileExtensions() {
+			return this.delegate.getFileExtensions();
+		}
+
+		@Override
+		public List<PropertySource<?>> load(String name, Resource resource)
+				throws IOException {
+			String path = getPath(resource);
+			Object identity = path == null ? null : getContentIdentity(resource);
+			if (identity == null) {
+				return this.delegate.load(name, resource);
+			}
+			FileKey key = new FileKey(this.delegate.getClass().getName(), name, path,
+					identity);
+			List<PropertySource<?>> loaded = cache.get(key);
+			if (loaded == null) {
+				loaded = this.delegate.load(name, resource);
+				loaded = loaded == null ? Collections.emptyList()
+						: Collections.unmodifiableList(new ArrayList<>(loaded));
+				if (!(resource instanceof JGitTreeResourceLoader.BlobResource)) {
+					// Any older content of the same file can never be asked for again
+					// (whereas blobs for other labels are still current)
+					cache.invalidateIf(other -> path.equals(other.path)
+							&& !identity.equals(other.identity));
+				}
+				cache.put(key, loaded);
+				if (logger.isDebugEnabled()) {
+					logger.debug("Parsed and cached " + path + " (" + identity + ")");
+				}
+			}
+			return loaded;
+		}
+
+	}
+
+	private static final class FileKey {
+
+		private final String loader;
+
+		private final String name;
+
+		private final String path;
+
+		private final Object identity;
+
+		FileKey(String loader, String name, String path, Object identity) {
+			this.loader = loader;
+			this.name = name;
+			this.path = path;
+			this.identity = identity;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			FileKey other = (FileKey) o;
+			return this.loader.equals(other.loader)
+					&& ObjectUtils.nullSafeEquals(this.name, other.name)
+					&& this.path.equals(other.path)
+					&& this.identity.equals(other.identity);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = this.loader.hashCode();
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.name);
+			result = 31 * result + this.path.hashCode();
+			result = 31 * result + this.identity.hashCode();
+			return result;
+		}
+
+	}
+
+}
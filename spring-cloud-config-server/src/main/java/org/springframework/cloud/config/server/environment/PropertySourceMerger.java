@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+
+/**
+ * Merges the property sources of an {@link Environment} into a single flat map, and turns
+ * a flat map into the nested map and list structure of a YAML or JSON document. Both
+ * steps take a single pass over the keys.
+ * <p>
+ * When merging, a property source with higher precedence overrides single values key by
+ * key, but replaces indexed values (<code>foo[0]</code>, <code>foo[1]</code>, ...)
+ * as a whole, so a shorter list is not padded with the elements of a longer one.
+ *
+ * 将{@link Environment}的属性源合并为单个扁平映射，并将扁平映射转换为YAML或JSON文档的嵌套映射和列表结构。两个步骤都只对键遍历一次。
+ * 合并时，优先级更高的属性源逐个键覆盖单值，但整体替换带索引的值（<code>foo[0]</code>、<code>foo[1]</code>……），
+ * 因此较短的列表不会被较长列表的元素填充。
+ */
+public final class PropertySourceMerger {
+
+	private PropertySourceMerger() {
+	}
+
+	/**
+	 * Merge the property sources of the environment (the first one has the highest
+	 * precedence).
+	 *
+	 * @param environment the environment
+	 * @return the merged properties, sorted by key
+	 */
+	public static Map<String, Object> merge(Environment environment) {
+		List<PropertySource> sources = environment.getPropertySources();
+		Map<String, Object> merged = new HashMap<>();
+		// The elements of each list (by the key up to the first '['), from the source
+		// with the highest precedence that has the list
+		Map<String, Map<String, Object>> lists = new HashMap<>();
+		for (int i = sources.size() - 1; i >= 0; i--) {
+			Map<String, Map<String, Object>> sourceLists = null;
+			for (Map.Entry<?, ?> entry : sources.get(i).getSource().entrySet()) {
+				String key = (String) entry.getKey();
+				int bracket = key.indexOf('[');
+				if (bracket < 0) {
+					merged.put(key, entry.getValue());
+					continue;
+				}
+				if (sourceLists == null) {
+					sourceLists = new HashMap<>();
+				}
+				sourceLists.computeIfAbsent(key.substring(0, bracket),
+						name -> new HashMap<>()).put(key, entry.getValue());
+			}
+			if (sourceLists != null) {
+				lists.putAll(sourceLists);
+			}
+		}
+		for (Map<String, Object> elements : lists.values()) {
+			merged.putAll(elements);
+		}
+		merged.remove("spring.profiles");
+		return new TreeMap<>(merged);
+	}
+
+	/**
+	 * Turn flat property keys (e.g. <code>foo.bar[0].spam</code>) into nested maps and
+	 * lists.
+	 *
+	 * @param properties the flat properties
+	 * @return the nested map
+	 * @throws IllegalArgumentException if a key is not a valid property path
+	 */
+	public static Map<String, Object> nest(Map<String, Object> properties) {
+		Map<String, Object> root = new LinkedHashMap<>();
+		for (Map.Entry<String, Object> entry : properties.entrySet()) {
+			put(root, entry.getKey(), entry.getValue());
+		}
+		return root;
+	}
+
+	private static void put(Map<String, Object> root, String key, Object value) {
+		Map<String, Object> map = root;
+		List<Object> list = null;
+		int length = key.length();
+		int position = 0;
+		while (true) {
+			if (list == null) {
+				// A name ends at the next '.' or '[' (or at the end of the key)
+				int end = position;
+				while (end < length && key.charAt(end) != '.'
+						&& key.charAt(end) != '[') {
+					end++;
+				}
+				if (end == position && end < length) {
+					throw new IllegalArgumentException("Invalid key: " + key);
+				}
+				String name = key.substring(position, end);
+				if (end == length) {
+					map.put(name, value);
+					return;
+				}
+				if (key.charAt(end) == '.') {
+					map = childMap(map, name);
+				}
+				else {
+					list = childList(map, name);
+				}
+				position = end + 1;
+			}
+			else {
+				// An index is all digits up to the next ']'
+				int end = position;
+				long index = 0;
+				while (end < length && key.charAt(end) != ']') {
+					int digit = Character.digit(key.charAt(end), 10);
+					index = index * 10 + digit;
+					if (digit < 0 || index > Integer.MAX_VALUE) {
+						throw new IllegalArgumentException("Invalid key: " + key);
+					}
+					end++;
+				}
+				if (end == position || end == length) {
+					throw new IllegalArgumentException("Invalid key: " + key);
+				}
+				while (list.size() <= index) {
+					list.add(null);
+				}
+				end++;
+				if (end == length) {
+					list.set((int) index, value);
+					return;
+				}
+				char next = key.charAt(end);
+				if (next == '.') {
+					map = childMap(list, (int) index);
+					list = null;
+				}
+				else if (next == '[') {
+					list = childList(list, (int) index);
+				}
+				else {
+					throw new IllegalArgumentException("Invalid key: " + key);
+				}
+				position = end + 1;
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> childMap(Map<String, Object> map, String name) {
+		return (Map<String, Object>) map.computeIfAbsent(name,
+				key -> new LinkedHashMap<>());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Object> childList(Map<String, Object> map, String name) {
+		return (List<Object>) map.computeIfAbsent(name, key -> new ArrayList<>());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> childMap(List<Object> list, int index) {
+		Map<String, Object> map = (Map<String, Object>) list.get(index);
+		if (map == null) {
+			map = new LinkedHashMap<>();
+			list.set(index, map);
+		}
+		return map;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Object> childList(List<Object> list, int index) {
+		List<Object> nested = (List<Object>) list.get(index);
+		if (nested == null) {
+			nested = new ArrayList<>();
+			list.set(index, nested);
+		}
+		return nested;
+	}
+
+}
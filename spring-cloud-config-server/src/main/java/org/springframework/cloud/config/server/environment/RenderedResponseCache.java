@@ -0,0 +1,180 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.cloud.config.server.support.BoundedCache;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * A cache of rendered responses of the properties, JSON and YAML endpoints, holding the
+ * bytes ready to be sent (and optionally a gzipped copy). Entries are keyed by the
+ * request and by the ETag of the environment they were rendered from, so a changed
+ * environment never hits a stale entry. The cache is bounded both by number of entries
+ * and by the total number of bytes held.
+ *
+ * 属性、JSON和YAML端点渲染后响应的缓存，保存准备发送的字节（以及可选的gzip副本）。条目以请求和渲染所用环境的ETag为键，
+ * 因此更改后的环境永远不会命中过时的条目。缓存同时受条目数量和所持有字节总数的限制。
+ */
+public class RenderedResponseCache {
+
+	private final BoundedCache<ResponseKey, RenderedResponse> cache;
+
+	private final boolean gzip;
+
+	/**
+	 * @param maximumSize the maximum number of responses to keep
+	 * @param maximumBytes the maximum number of bytes to keep (0 for no limit)
+	 * @param gzip whether to keep a gzipped copy of each response as well
+	 */
+	public RenderedResponseCache(int maximumSize, long maximumBytes, boolean gzip) {
+		this.cache = new BoundedCache<>(maximumSize, maximumBytes,
+				(key, value) -> value.getWeight());
+		this.gzip = gzip;
+	}
+
+	/**
+	 * @return the cached response or null if there is none
+	 */
+	public RenderedResponse get(String name, String profiles, String label,
+			String format, boolean resolvePlaceholders, String etag) {
+		return this.cache.get(new ResponseKey(name, profiles, label, format,
+				resolvePlaceholders, etag));
+	}
+
+	/**
+	 * Cache a rendered response.
+	 *
+	 * @return the response as it was cached
+	 */
+	public RenderedResponse put(String name, String profiles, String label,
+			String format, boolean resolvePlaceholders, String etag, byte[] body) {
+		RenderedResponse response = new RenderedResponse(body,
+				this.gzip ? gzip(body) : null);
+		this.cache.put(new ResponseKey(name, profiles, label, format,
+				resolvePlaceholders, etag), response);
+		return response;
+	}
+
+	public boolean isGzip() {
+		return this.gzip;
+	}
+
+	public BoundedCache<?, ?> getCache() {
+		return this.cache;
+	}
+
+	private static byte[] gzip(byte[] body) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4 + 32);
+		try (GZIPOutputStream output = new GZIPOutputStream(bytes)) {
+			output.write(body);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Cannot compress response", e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * A rendered response body.
+	 */
+	public static class RenderedResponse {
+
+		private final byte[] body;
+
+		private final byte[] gzipped;
+
+		public RenderedResponse(byte[] body, byte[] gzipped) {
+			this.body = body;
+			this.gzipped = gzipped;
+		}
+
+		public byte[] getBody() {
+			return this.body;
+		}
+
+		/**
+		 * @return the gzipped body, or null if it was not compressed
+		 */
+		public byte[] getGzipped() {
+			return this.gzipped;
+		}
+
+		long getWeight() {
+			return this.body.length + (this.gzipped == null ? 0 : this.gzipped.length);
+		}
+
+	}
+
+	private static final class ResponseKey {
+
+		private final String name;
+
+		private final String profiles;
+
+		private final String label;
+
+		private final String format;
+
+		private final boolean resolvePlaceholders;
+
+		private final String etag;
+
+		ResponseKey(String name, String profiles, String label, String format,
+				boolean resolvePlaceholders, String etag) {
+			this.name = name;
+			this.profiles = profiles;
+			this.label = label;
+			this.format = format;
+			this.resolvePlaceholders = resolvePlaceholders;
+			this.etag = etag;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			ResponseKey other = (ResponseKey) o;
+			return this.resolvePlaceholders == other.resolvePlaceholders
+					&& ObjectUtils.nullSafeEquals(this.name, other.name)
+					&& ObjectUtils.nullSafeEquals(this.profiles, other.profiles)
+					&& ObjectUtils.nullSafeEquals(this.label, other.label)
+					&& ObjectUtils.nullSafeEquals(this.format, other.format)
+					&& ObjectUtils.nullSafeEquals(this.etag, other.etag);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = ObjectUtils.nullSafeHashCode(this.name);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.profiles);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.label);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.format);
+			result = 31 * result + (this.resolvePlaceholders ? 1 : 0);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.etag);
+			return result;
+		}
+
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.environment;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Event published when the configuration of some applications changed in the backend
+ * (for instance by a webhook of the repository provider), so the environments watched
+ * by clients can be checked for a new version.
+ *
+ * 当某些应用程序的配置在后端发生更改时（例如通过存储库提供者的webhook）发布的事件，以便检查客户端监视的环境是否有新版本。
+ */
+@SuppressWarnings("serial")
+public class RepositoryChangeEvent extends ApplicationEvent {
+
+	/**
+	 * The application name that stands for all the applications.
+	 */
+	public static final String ALL_APPLICATIONS = "*";
+
+	private final Collection<String> applications;
+
+	/**
+	 * @param source the component that noticed the change
+	 * @param applications the names of the applications whose configuration changed,
+	 * optionally followed by <code>:profiles</code> (<code>*</code> for all of them)
+	 */
+	public RepositoryChangeEvent(Object source, Collection<String> applications) {
+		super(source);
+		this.applications = Collections
+				.unmodifiableCollection(new LinkedHashSet<>(applications));
+	}
+
+	public Collection<String> getApplications() {
+		return this.applications;
+	}
+
+	/**
+	 * @param name the name of an application (or a comma separated list of them)
+	 * @return true if the configuration of the application may have changed
+	 */
+	public boolean affects(String name) {
+		for (String application : this.applications) {
+			int index = application.indexOf(":");
+			String changed = index < 0 ? application : application.substring(0, index);
+			if (ALL_APPLICATIONS.equals(changed)) {
+				return true;
+			}
+			for (String candidate : name.split(",")) {
+				if (changed.equals(candidate.trim())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+}
@@ -18,6 +18,10 @@ package org.springframework.cloud.config.server.environment;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import org.springframework.core.io.ResourceLoader;
 
 /**
  * A {@link CompositeEnvironmentRepository} which implements {@link SearchPathLocator}.
@@ -35,12 +39,80 @@ public class SearchPathCompositeEnvironmentRepository extends CompositeEnvironme
 
 	@Override
 	public Locations getLocations(String application, String profile, String label) {
-		List<String> locations = new ArrayList<>();
+		return merge(application, profile, label, invokeAll(getLocators(),
+				repo -> ((SearchPathLocator) repo).getLocations(application, profile, label)));
+	}
+
+	/**
+	 * The callback runs inside the {@code withLocations} of every repository, one nested
+	 * in the other (always in the order of the repositories, so that concurrent callers
+	 * take the locks of the working copies in the same order), so the files of none of
+	 * them change until it returns. The repositories are therefore located one after the
+	 * other and without timeouts, but a repository that fails open is still skipped.
+	 *
+	 * 回调在每个存储库的{@code withLocations}内运行，一个嵌套在另一个中（始终按存储库的顺序，以便并发调用者以相同的顺序
+	 * 获取工作副本的锁），因此在它返回之前它们的文件都不会改变。因此存储库是一个接一个地定位的，没有超时，但失败开放的存储库仍会被跳过。
+	 */
+	@Override
+	public <T> T withLocations(String application, String profile, String label,
+			Function<Locations, T> callback) {
+		return withLocations(getLocators(), 0, new ArrayList<>(), application, profile,
+				label, callback);
+	}
+
+	private <T> T withLocations(List<EnvironmentRepository> locators, int index,
+			List<Locations> found, String application, String profile, String label,
+			Function<Locations, T> callback) {
+		if (index == locators.size()) {
+			return callback.apply(merge(application, profile, label, found));
+		}
+		EnvironmentRepository repository = locators.get(index);
+		AtomicBoolean located = new AtomicBoolean();
+		try {
+			return ((SearchPathLocator) repository).withLocations(application, profile,
+					label, locations -> {
+						located.set(true);
+						found.add(locations);
+						return withLocations(locators, index + 1, found, application,
+								profile, label, callback);
+					});
+		}
+		catch (RuntimeException e) {
+			if (located.get()) {
+				// Not this repository, but a later one or the callback
+				throw e;
+			}
+			failed(repository, e);
+			return withLocations(locators, index + 1, found, application, profile,
+					label, callback);
+		}
+	}
+
+	private List<EnvironmentRepository> getLocators() {
+		List<EnvironmentRepository> locators = new ArrayList<>();
 		for(EnvironmentRepository repo : this.environmentRepositories) {
 			if(repo instanceof SearchPathLocator) {
-				locations.addAll(Arrays.asList(((SearchPathLocator) repo).getLocations(application, profile, label).getLocations()));
+				locators.add(repo);
+			}
+		}
+		return locators;
+	}
+
+	private Locations merge(String application, String profile, String label,
+			List<Locations> found) {
+		List<String> locations = new ArrayList<>();
+		ResourceLoader resourceLoader = null;
+		for (Locations repoLocations : found) {
+			if (repoLocations != null) {
+				locations.addAll(Arrays.asList(repoLocations.getLocations()));
+				// Only a git repository without a checkout has a loader of its own, and
+				// it falls back to the default one for the locations of the others
+				if (resourceLoader == null) {
+					resourceLoader = repoLocations.getResourceLoader();
+				}
 			}
 		}
-		return new Locations(application, profile, label, null, locations.toArray(new String[locations.size()]));
+		return new Locations(application, profile, label, null,
+				locations.toArray(new String[locations.size()]), resourceLoader);
 	}
 }
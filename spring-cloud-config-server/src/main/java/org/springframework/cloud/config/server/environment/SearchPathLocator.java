@@ -17,6 +17,9 @@
 package org.springframework.cloud.config.server.environment;
 
 import java.util.Arrays;
+import java.util.function.Function;
+
+import org.springframework.core.io.ResourceLoader;
 
 /**
  * Strategy for locating a search path for resource (e.g. in the file system or
@@ -31,19 +34,45 @@ public interface SearchPathLocator {
 
 	Locations getLocations(String application, String profile, String label);
 
+	/**
+	 * Locate the search path and pass it to the callback, making sure that the files at
+	 * the locations do not change until the callback returns (e.g. that a shared working
+	 * copy is not switched to another label in the meantime).
+	 *
+	 * 定位搜索路径并将其传递给回调，确保在回调返回之前这些位置的文件不会更改（例如，共享的工作副本不会在此期间切换到其他标签）。
+	 *
+	 * @param callback the work to do with the locations
+	 * @return the result of the callback
+	 */
+	default <T> T withLocations(String application, String profile, String label,
+			Function<Locations, T> callback) {
+		return callback.apply(getLocations(application, profile, label));
+	}
+
 	class Locations {
 		private final String application;
 		private final String profile;
 		private final String label;
 		private final String[] locations;
 		private final String version;
+		private final ResourceLoader resourceLoader;
 
 		public Locations(String application, String profile, String label, String version, String[] locations) {
+			this(application, profile, label, version, locations, null);
+		}
+
+		/**
+		 * @param resourceLoader the resource loader to use to read the locations, or null
+		 * if the default one will do (e.g. they are in the file system)
+		 */
+		public Locations(String application, String profile, String label, String version, String[] locations,
+				ResourceLoader resourceLoader) {
 			this.application = application;
 			this.profile = profile;
 			this.label = label;
 			this.locations = locations;
 			this.version = version;
+			this.resourceLoader = resourceLoader;
 		}
 
 		public String[] getLocations() {
@@ -66,6 +95,10 @@ public interface SearchPathLocator {
 			return label;
 		}
 
+		public ResourceLoader getResourceLoader() {
+			return resourceLoader;
+		}
+
 		@Override
 		public String toString() {
 			return "Locations [application=" + application + ", profile=" + profile
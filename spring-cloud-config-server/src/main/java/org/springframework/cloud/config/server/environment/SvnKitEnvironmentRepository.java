@@ -17,6 +17,8 @@ package org.springframework.cloud.config.server.environment;
 
 import java.io.File;
 import java.net.URI;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -53,6 +55,12 @@ public class SvnKitEnvironmentRepository extends AbstractScmEnvironmentRepositor
 	 */
 	private String defaultLabel;
 
+	/**
+	 * Guards the working copy during checkouts and updates (a lock rather than a monitor,
+	 * because it is held during network I/O).
+	 */
+	private final Lock workingCopyLock = new ReentrantLock();
+
 	public String getDefaultLabel() {
 		return this.defaultLabel;
 	}
@@ -67,33 +75,39 @@ public class SvnKitEnvironmentRepository extends AbstractScmEnvironmentRepositor
 	}
 
 	@Override
-	public synchronized Locations getLocations(String application, String profile,
+	public Locations getLocations(String application, String profile,
 			String label) {
 		if (label == null) {
 			label = this.defaultLabel;
 		}
-		SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
-		if (hasText(getUsername())) {
-			svnOperationFactory
-					.setAuthenticationManager(new DefaultSVNAuthenticationManager(null,
-							false, getUsername(), getPassword()));
-		}
+		this.workingCopyLock.lock();
 		try {
-			String version;
-			if (new File(getWorkingDirectory(), ".svn").exists()) {
-				version = update(svnOperationFactory, label);
+			SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
+			if (hasText(getUsername())) {
+				svnOperationFactory
+						.setAuthenticationManager(new DefaultSVNAuthenticationManager(null,
+								false, getUsername(), getPassword()));
 			}
-			else {
-				version = checkout(svnOperationFactory);
+			try {
+				String version;
+				if (new File(getWorkingDirectory(), ".svn").exists()) {
+					version = update(svnOperationFactory, label);
+				}
+				else {
+					version = checkout(svnOperationFactory);
+				}
+				return new Locations(application, profile, label, version,
+						getPaths(application, profile, label));
+			}
+			catch (SVNException e) {
+				throw new IllegalStateException("Cannot checkout repository", e);
+			}
+			finally {
+				svnOperationFactory.dispose();
 			}
-			return new Locations(application, profile, label, version,
-					getPaths(application, profile, label));
-		}
-		catch (SVNException e) {
-			throw new IllegalStateException("Cannot checkout repository", e);
 		}
 		finally {
-			svnOperationFactory.dispose();
+			this.workingCopyLock.unlock();
 		}
 	}
 
@@ -17,14 +17,18 @@
 package org.springframework.cloud.config.server.resource;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
 import org.springframework.cloud.config.server.environment.SearchPathLocator;
+import org.springframework.cloud.config.server.environment.SearchPathLocator.Locations;
 import org.springframework.context.ResourceLoaderAware;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
+import org.springframework.util.StreamUtils;
 import org.springframework.util.StringUtils;
 
 /**
@@ -48,18 +52,33 @@ public class GenericResourceRepository
 		this.resourceLoader = resourceLoader;
 	}
 
+	/**
+	 * The content is read while the locator still guarantees that the files do not
+	 * change, and returned in memory, so concurrent requests for other labels cannot
+	 * switch the working copy underneath the caller.
+	 */
 	@Override
-	public synchronized Resource findOne(String application, String profile, String label,
+	public Resource findOne(String application, String profile, String label,
 			String path) {
-		String[] locations = this.service.getLocations(application, profile, label).getLocations();
+		return this.service.withLocations(application, profile, label,
+				found -> findOne(found, profile, path));
+	}
+
+	private Resource findOne(Locations found, String profile, String path) {
+		String[] locations = found.getLocations();
+		ResourceLoader resourceLoader = found.getResourceLoader() != null
+				? found.getResourceLoader() : this.resourceLoader;
 		try {
 			for (int i = locations.length; i-- > 0;) {
 				String location = locations[i];
 				for (String local : getProfilePaths(profile, path)) {
-					Resource file = this.resourceLoader.getResource(location)
+					Resource file = resourceLoader.getResource(location)
 							.createRelative(local);
 					if (file.exists() && file.isReadable()) {
-						return file;
+						try (InputStream is = file.getInputStream()) {
+							return new ByteArrayResource(StreamUtils.copyToByteArray(is),
+									file.getDescription());
+						}
 					}
 				}
 			}
@@ -17,7 +17,6 @@
 package org.springframework.cloud.config.server.resource;
 
 import static org.springframework.cloud.config.server.support.EnvironmentPropertySource.prepareEnvironment;
-import static org.springframework.cloud.config.server.support.EnvironmentPropertySource.resolvePlaceholders;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -27,6 +26,7 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.cloud.config.environment.Environment;
 import org.springframework.cloud.config.server.environment.EnvironmentRepository;
+import org.springframework.cloud.config.server.support.EnvironmentPlaceholderResolver;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -104,7 +104,7 @@ public class ResourceController {
 		return path;
 	}
 
-	synchronized String retrieve(String name, String profile, String label, String path,
+	String retrieve(String name, String profile, String label, String path,
 			boolean resolvePlaceholders) throws IOException {
 		if (name != null && name.contains("(_)")) {
 			// "(_)" is uncommon in a git repo name, but "/" cannot be matched
@@ -129,21 +129,22 @@ public class ResourceController {
 			if (resolvePlaceholders) {
 				Environment environment = this.environmentRepository.findOne(name,
 						profile, label);
-				text = resolvePlaceholders(prepareEnvironment(environment), text);
+				text = new EnvironmentPlaceholderResolver(environment)
+						.resolvePlaceholders(text);
 			}
 			return text;
 		}
 	}
 
 	@RequestMapping(value = "/{name}/{profile}/{label}/**", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
-	public synchronized byte[] binary(@PathVariable String name,
+	public byte[] binary(@PathVariable String name,
 			@PathVariable String profile, @PathVariable String label,
 			HttpServletRequest request) throws IOException {
 		String path = getFilePath(request, name, profile, label);
 		return binary(name, profile, label, path);
 	}
 
-	synchronized byte[] binary(String name, String profile, String label, String path)
+	byte[] binary(String name, String profile, String label, String path)
 			throws IOException {
 		if (name != null && name.contains("(_)")) {
 			// "(_)" is uncommon in a git repo name, but "/" cannot be matched
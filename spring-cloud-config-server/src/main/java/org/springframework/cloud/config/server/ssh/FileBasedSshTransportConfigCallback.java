@@ -17,7 +17,6 @@ package org.springframework.cloud.config.server.ssh;
 
 import com.jcraft.jsch.Session;
 import org.eclipse.jgit.api.TransportConfigCallback;
-import org.eclipse.jgit.transport.JschConfigSessionFactory;
 import org.eclipse.jgit.transport.OpenSshConfig;
 import org.eclipse.jgit.transport.SshSessionFactory;
 import org.eclipse.jgit.transport.Transport;
@@ -26,12 +25,21 @@ import org.springframework.cloud.config.server.environment.MultipleJGitEnvironme
 
 /**
  * Configure JGit transport command to use a default SSH session factory based on local machines SSH config.
- * Allow strict host key checking to be set.
+ * Allow strict host key checking to be set. The factory (with the SSH config, keys and known hosts it has read, and
+ * its open sessions) is shared by all the commands.
  */
 public class FileBasedSshTransportConfigCallback implements TransportConfigCallback {
 
     private MultipleJGitEnvironmentProperties sshUriProperties;
 
+    private final SshSessionFactory sessionFactory = new PooledJschConfigSessionFactory() {
+        @Override
+        protected void configure(OpenSshConfig.Host hc, Session session) {
+            session.setConfig("StrictHostKeyChecking",
+                    sshUriProperties.isStrictHostKeyChecking() ? "yes" : "no");
+        }
+    };
+
     public FileBasedSshTransportConfigCallback(MultipleJGitEnvironmentProperties sshUriProperties) {
         this.sshUriProperties = sshUriProperties;
     }
@@ -42,12 +50,6 @@ public class FileBasedSshTransportConfigCallback implements TransportConfigCallb
 
     @Override
     public void configure(Transport transport) {
-        SshSessionFactory.setInstance(new JschConfigSessionFactory() {
-            @Override
-            protected void configure(OpenSshConfig.Host hc, Session session) {
-                session.setConfig("StrictHostKeyChecking",
-                        sshUriProperties.isStrictHostKeyChecking() ? "yes" : "no");
-            }
-        });
+        SshSessionFactory.setInstance(sessionFactory);
     }
 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.ssh;
+
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.jcraft.jsch.Session;
+import org.eclipse.jgit.errors.TransportException;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.JschConfigSessionFactory;
+import org.eclipse.jgit.transport.JschSession;
+import org.eclipse.jgit.transport.RemoteSession;
+import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.util.FS;
+
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * A {@link JschConfigSessionFactory} that keeps the SSH sessions that JGit is done with
+ * open for a while, so that the next fetch from the same host (as the same user) reuses
+ * the connection instead of going through a new handshake and authentication. A session
+ * is used by one fetch at a time, and the idle ones are disconnected after a minute (or
+ * as soon as the server closes them).
+ *
+ * 一个{@link JschConfigSessionFactory}，它将JGit用完的SSH会话保持打开一段时间，以便下一次从同一主机（以同一用户）的获取
+ * 重用连接，而不是经历新的握手和身份验证。一个会话一次由一个获取使用，空闲的会话在一分钟后（或服务器关闭它们时）断开连接。
+ */
+public abstract class PooledJschConfigSessionFactory extends JschConfigSessionFactory {
+
+	private static final long IDLE_TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+
+	private static final int MAX_IDLE_PER_KEY = 4;
+
+	/**
+	 * The JSch session of a JGit session, which JGit does not expose.
+	 */
+	private static final Field SESSION_FIELD = findSessionField();
+
+	private final Map<URIish, Deque<IdleSession>> idle = new HashMap<>();
+
+	private ScheduledExecutorService reaper;
+
+	@Override
+	public RemoteSession getSession(URIish uri, CredentialsProvider credentialsProvider,
+			FS fs, int tms) throws TransportException {
+		// The same user (and password) on the same host and port
+		URIish key = uri.setPath("");
+		Session session = lease(key);
+		if (session != null) {
+			return new PooledSession(key, session, uri);
+		}
+		RemoteSession remote = openSession(uri, credentialsProvider, fs, tms);
+		session = getJschSession(remote);
+		if (session == null) {
+			return remote;
+		}
+		return new PooledSession(key, session, uri);
+	}
+
+	/**
+	 * Connect a new session.
+	 */
+	RemoteSession openSession(URIish uri, CredentialsProvider credentialsProvider,
+			FS fs, int tms) throws TransportException {
+		return super.getSession(uri, credentialsProvider, fs, tms);
+	}
+
+	private Session lease(URIish key) {
+		List<Session> expired = new ArrayList<>();
+		Session leased = null;
+		synchronized (this.idle) {
+			Deque<IdleSession> sessions = this.idle.get(key);
+			long now = System.currentTimeMillis();
+			while (leased == null && sessions != null && !sessions.isEmpty()) {
+				IdleSession candidate = sessions.pollLast();
+				if (candidate.session.isConnected()
+						&& now - candidate.since < IDLE_TIMEOUT) {
+					leased = candidate.session;
+				}
+				else {
+					expired.add(candidate.session);
+				}
+			}
+		}
+		disconnect(expired);
+		return leased;
+	}
+
+	private void release(URIish key, Session session) {
+		if (!session.isConnected()) {
+			return;
+		}
+		boolean kept;
+		synchronized (this.idle) {
+			Deque<IdleSession> sessions = this.idle.computeIfAbsent(key,
+					k -> new ArrayDeque<>());
+			kept = sessions.size() < MAX_IDLE_PER_KEY;
+			if (kept) {
+				sessions.addLast(new IdleSession(session, System.currentTimeMillis()));
+				startReaper();
+			}
+		}
+		if (!kept) {
+			session.disconnect();
+		}
+	}
+
+	private void startReaper() {
+		if (this.reaper == null) {
+			this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "jgit-ssh-session-reaper");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.reaper.scheduleWithFixedDelay(this::disconnectIdle, IDLE_TIMEOUT,
+					IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Disconnect the sessions that have been idle for too long (their threads would
+	 * otherwise keep the JVM alive).
+	 */
+	void disconnectIdle() {
+		List<Session> expired = new ArrayList<>();
+		synchronized (this.idle) {
+			long now = System.currentTimeMillis();
+			for (Iterator<Deque<IdleSession>> sessions = this.idle.values()
+					.iterator(); sessions.hasNext();) {
+				Deque<IdleSession> deque = sessions.next();
+				for (Iterator<IdleSession> iter = deque.iterator(); iter.hasNext();) {
+					IdleSession candidate = iter.next();
+					if (!candidate.session.isConnected()
+							|| now - candidate.since >= IDLE_TIMEOUT) {
+						expired.add(candidate.session);
+						iter.remove();
+					}
+				}
+				if (deque.isEmpty()) {
+					sessions.remove();
+				}
+			}
+		}
+		disconnect(expired);
+	}
+
+	/**
+	 * @return the number of open sessions that no fetch is using
+	 */
+	public int getIdleSessionCount() {
+		synchronized (this.idle) {
+			return this.idle.values().stream().mapToInt(Deque::size).sum();
+		}
+	}
+
+	private void disconnect(List<Session> sessions) {
+		for (Session session : sessions) {
+			session.disconnect();
+		}
+	}
+
+	private static Session getJschSession(RemoteSession remote) {
+		if (SESSION_FIELD == null || !(remote instanceof JschSession)) {
+			return null;
+		}
+		return (Session) ReflectionUtils.getField(SESSION_FIELD, remote);
+	}
+
+	private static Field findSessionField() {
+		Field field = ReflectionUtils.findField(JschSession.class, null, Session.class);
+		if (field != null) {
+			ReflectionUtils.makeAccessible(field);
+		}
+		return field;
+	}
+
+	private static class IdleSession {
+
+		private final Session session;
+
+		private final long since;
+
+		IdleSession(Session session, long since) {
+			this.session = session;
+			this.since = since;
+		}
+
+	}
+
+	/**
+	 * A JGit session over a pooled JSch session, which goes back to the pool instead of
+	 * being disconnected. Each command still runs on a channel of its own.
+	 */
+	private class PooledSession extends JschSession {
+
+		private final URIish key;
+
+		private final Session session;
+
+		private boolean released;
+
+		PooledSession(URIish key, Session session, URIish uri) {
+			super(session, uri);
+			this.key = key;
+			this.session = session;
+		}
+
+		@Override
+		public void disconnect() {
+			synchronized (this) {
+				if (this.released) {
+					return;
+				}
+				this.released = true;
+			}
+			release(this.key, this.session);
+		}
+
+	}
+
+}
@@ -24,12 +24,15 @@ import org.springframework.cloud.config.server.environment.MultipleJGitEnvironme
 
 /**
  * Configure JGit transport command to use a SSH session factory that is configured using properties defined
- * in {@link MultipleJGitEnvironmentProperties}
+ * in {@link MultipleJGitEnvironmentProperties}. The factory (with its parsed keys and open sessions) is shared by
+ * all the commands.
  */
 public class PropertiesBasedSshTransportConfigCallback implements TransportConfigCallback {
 
     private MultipleJGitEnvironmentProperties sshUriProperties;
 
+    private volatile PropertyBasedSshSessionFactory sessionFactory;
+
     public PropertiesBasedSshTransportConfigCallback(MultipleJGitEnvironmentProperties sshUriProperties) {
         this.sshUriProperties = sshUriProperties;
     }
@@ -42,9 +45,19 @@ public class PropertiesBasedSshTransportConfigCallback implements TransportConfi
     public void configure(Transport transport) {
         if (transport instanceof SshTransport) {
             SshTransport sshTransport = (SshTransport) transport;
-            sshTransport.setSshSessionFactory(
-                    new PropertyBasedSshSessionFactory(
-                            new SshUriPropertyProcessor(sshUriProperties).getSshKeysByHostname(), new JSch()));
+            sshTransport.setSshSessionFactory(getSessionFactory());
+        }
+    }
+
+    private PropertyBasedSshSessionFactory getSessionFactory() {
+        if (sessionFactory == null) {
+            synchronized (this) {
+                if (sessionFactory == null) {
+                    sessionFactory = new PropertyBasedSshSessionFactory(
+                            new SshUriPropertyProcessor(sshUriProperties).getSshKeysByHostname(), JSch::new);
+                }
+            }
         }
+        return sessionFactory;
     }
 }
@@ -15,13 +15,15 @@
  */
 package org.springframework.cloud.config.server.ssh;
 
+import java.io.File;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import com.jcraft.jsch.HostKey;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
-import org.eclipse.jgit.transport.JschConfigSessionFactory;
 import org.eclipse.jgit.transport.OpenSshConfig.Host;
 import org.eclipse.jgit.util.Base64;
 import org.eclipse.jgit.util.FS;
@@ -31,11 +33,13 @@ import org.springframework.cloud.config.server.environment.JGitEnvironmentProper
 /**
  * In a cloud environment local SSH config files such as `.known_hosts` may not be suitable for providing
  * configuration settings due to ephemeral filesystems. This flag enables SSH config to be provided as application
- * properties
+ * properties. Each host has its own {@link JSch}, so its sessions only offer its own private key. The private key
+ * and host key of a host are parsed only for its first session, the known hosts file is read again only when it
+ * changes, and the sessions are reused (see {@link PooledJschConfigSessionFactory}).
  * @author William Tran
  * @author Ollie Hughes
  */
-public class PropertyBasedSshSessionFactory extends JschConfigSessionFactory {
+public class PropertyBasedSshSessionFactory extends PooledJschConfigSessionFactory {
 
 	private static final String STRICT_HOST_KEY_CHECKING = "StrictHostKeyChecking";
 	private static final String PREFERRED_AUTHENTICATIONS = "PreferredAuthentications";
@@ -43,11 +47,13 @@ public class PropertyBasedSshSessionFactory extends JschConfigSessionFactory {
 	private static final String NO_OPTION = "no";
 	private static final String SERVER_HOST_KEY = "server_host_key";
 	private final Map<String, JGitEnvironmentProperties> sshKeysByHostname;
-	private final JSch jSch;
+	private final Supplier<JSch> jSchFactory;
+	private final Map<String, HostJSch> jSchByHostname = new ConcurrentHashMap<>();
 
-	public PropertyBasedSshSessionFactory(Map<String, JGitEnvironmentProperties> sshKeysByHostname, JSch jSch) {
+	public PropertyBasedSshSessionFactory(Map<String, JGitEnvironmentProperties> sshKeysByHostname,
+			Supplier<JSch> jSchFactory) {
 		this.sshKeysByHostname = sshKeysByHostname;
-		this.jSch = jSch;
+		this.jSchFactory = jSchFactory;
 	}
 
 	@Override
@@ -71,18 +77,50 @@ public class PropertyBasedSshSessionFactory extends JschConfigSessionFactory {
 	@Override
 	protected Session createSession(Host hc, String user, String host, int port, FS fs) throws JSchException {
 		if (sshKeysByHostname.containsKey(host)) {
-			JGitEnvironmentProperties sshUriProperties = sshKeysByHostname.get(host);
-			jSch.addIdentity(host, sshUriProperties.getPrivateKey().getBytes(), null, null);
-			if (sshUriProperties.getKnownHostsFile() != null) {
-				jSch.setKnownHosts(sshUriProperties.getKnownHostsFile());
+			HostJSch hostJSch = jSchByHostname.computeIfAbsent(host, key -> new HostJSch(jSchFactory.get()));
+			return hostJSch.getSession(user, host, port, sshKeysByHostname.get(host));
+		}
+		throw new JSchException("no keys configured for hostname " + host);
+	}
+
+	/**
+	 * The {@link JSch} of a host, with the private key of the host only and the known hosts file as last read.
+	 */
+	private static class HostJSch {
+
+		private final JSch jSch;
+		private boolean configured;
+		private String knownHostsFile;
+		private long knownHostsModified;
+
+		HostJSch(JSch jSch) {
+			this.jSch = jSch;
+		}
+
+		synchronized Session getSession(String user, String host, int port,
+				JGitEnvironmentProperties sshUriProperties) throws JSchException {
+			String knownHosts = sshUriProperties.getKnownHostsFile();
+			boolean reload = false;
+			if (knownHosts != null) {
+				long modified = new File(knownHosts).lastModified();
+				if (!knownHosts.equals(knownHostsFile) || modified != knownHostsModified) {
+					// Replaces every host key, including the one of the properties
+					jSch.setKnownHosts(knownHosts);
+					knownHostsFile = knownHosts;
+					knownHostsModified = modified;
+					reload = true;
+				}
 			}
-			if (sshUriProperties.getHostKey() != null) {
+			if (!configured) {
+				jSch.addIdentity(host, sshUriProperties.getPrivateKey().getBytes(), null, null);
+			}
+			if (sshUriProperties.getHostKey() != null && (!configured || reload)) {
 				HostKey hostkey = new HostKey(host, Base64.decode(sshUriProperties.getHostKey()));
 				jSch.getHostKeyRepository().add(hostkey, null);
 			}
+			configured = true;
 			return jSch.getSession(user, host, port);
 		}
-		throw new JSchException("no keys configured for hostname " + host);
 	}
 
 }
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.function.Function;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -235,6 +236,19 @@ public abstract class AbstractScmAccessor implements ResourceLoaderAware {
 
 	protected String[] getSearchLocations(File dir, String application, String profile,
 			String label) {
+		return getSearchLocations(application, profile, label,
+				value -> matchingDirectories(dir, value));
+	}
+
+	/**
+	 * Expand the search paths for the given application, profile and label, using the
+	 * supplied strategy to list the existing directories that match each path.
+	 *
+	 * @param directories a function from a search path (relative to the root, always
+	 * ending with a slash) to the locations of the matching directories
+	 */
+	protected String[] getSearchLocations(String application, String profile,
+			String label, Function<String, List<String>> directories) {
 		String[] locations = this.searchPaths;
 		if (locations == null || locations.length == 0) {
 			locations = AbstractScmAccessorProperties.DEFAULT_LOCATIONS;
@@ -267,7 +281,7 @@ public abstract class AbstractScmAccessor implements ResourceLoaderAware {
 					if (!value.endsWith("/")) {
 						value = value + "/";
 					}
-					output.addAll(matchingDirectories(dir, value));
+					output.addAll(directories.apply(value));
 				}
 			}
 		}
@@ -17,6 +17,7 @@ package org.springframework.cloud.config.server.support;
 
 import java.io.File;
 
+import org.springframework.cloud.config.server.environment.NativeEnvironmentProperties.LoadingEngine;
 import org.springframework.core.Ordered;
 
 /**
@@ -82,6 +83,39 @@ public class AbstractScmAccessorProperties implements EnvironmentRepositoryPrope
      */
     private String defaultLabel;
 
+    /**
+     * Maximum number of environments to keep in memory, keyed by the resolved version
+     * (e.g. the commit id) as well as the application, profile and label. Default 0
+     * (disabled).
+     *
+     * 在内存中缓存的环境的最大数量，按解析的版本（例如提交ID）以及应用程序、配置文件和标签作为键。默认0（禁用）。
+     */
+    private int environmentCacheSize = 0;
+
+    /**
+     * Maximum total number of properties held in the environment cache. Default 0 (no
+     * limit other than the number of entries).
+     *
+     * 环境缓存中保存的属性总数的最大值。默认0（除条目数量外无限制）。
+     */
+    private long environmentCacheMaxWeight = 0;
+
+    /**
+     * The engine used to load the configuration files from the local working copy.
+     *
+     * 用于从本地工作副本加载配置文件的引擎。
+     */
+    private LoadingEngine loadingEngine = LoadingEngine.SPRING_APPLICATION;
+
+    /**
+     * Maximum number of parsed configuration files to cache, shared by all the
+     * applications served from the repository. Only used by the property-source-loader
+     * engine. Default 0 (disabled).
+     *
+     * 缓存的已解析配置文件的最大数量，由存储库提供的所有应用程序共享。仅由property-source-loader引擎使用。默认0（禁用）。
+     */
+    private int fileCacheSize = 0;
+
     public String getUri() {
         return uri;
     }
@@ -154,4 +188,36 @@ public class AbstractScmAccessorProperties implements EnvironmentRepositoryPrope
     public void setDefaultLabel(String defaultLabel) {
         this.defaultLabel = defaultLabel;
     }
+
+    public int getEnvironmentCacheSize() {
+        return environmentCacheSize;
+    }
+
+    public void setEnvironmentCacheSize(int environmentCacheSize) {
+        this.environmentCacheSize = environmentCacheSize;
+    }
+
+    public long getEnvironmentCacheMaxWeight() {
+        return environmentCacheMaxWeight;
+    }
+
+    public void setEnvironmentCacheMaxWeight(long environmentCacheMaxWeight) {
+        this.environmentCacheMaxWeight = environmentCacheMaxWeight;
+    }
+
+    public LoadingEngine getLoadingEngine() {
+        return loadingEngine;
+    }
+
+    public void setLoadingEngine(LoadingEngine loadingEngine) {
+        this.loadingEngine = loadingEngine;
+    }
+
+    public int getFileCacheSize() {
+        return fileCacheSize;
+    }
+
+    public void setFileCacheSize(int fileCacheSize) {
+        this.fileCacheSize = fileCacheSize;
+    }
 }
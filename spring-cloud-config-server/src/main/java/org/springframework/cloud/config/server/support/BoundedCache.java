@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.support;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.springframework.util.Assert;
+
+/**
+ * A small thread safe least-recently-used cache, bounded by number of entries and
+ * (optionally) by the total weight of its values. Keeps hit, miss and eviction counts so
+ * that callers can report on how effective it is.
+ *
+ * 一个线程安全的LRU缓存，按条目数量以及（可选）值的总权重进行限制，并记录命中、未命中和驱逐次数。
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class BoundedCache<K, V> {
+
+	private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f,
+			true);
+
+	private final long maximumSize;
+
+	private final long maximumWeight;
+
+	private final Weigher<? super K, ? super V> weigher;
+
+	private long weight;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	public BoundedCache(long maximumSize) {
+		this(maximumSize, 0, (key, value) -> 1);
+	}
+
+	/**
+	 * @param maximumSize the maximum number of entries (must be positive)
+	 * @param maximumWeight the maximum total weight of all entries, or 0 for no limit
+	 * @param weigher the strategy for computing the weight of an entry
+	 */
+	public BoundedCache(long maximumSize, long maximumWeight,
+			Weigher<? super K, ? super V> weigher) {
+		Assert.isTrue(maximumSize > 0, "maximumSize must be positive");
+		Assert.notNull(weigher, "weigher must not be null");
+		this.maximumSize = maximumSize;
+		this.maximumWeight = maximumWeight;
+		this.weigher = weigher;
+	}
+
+	/**
+	 * @param key the key to look up
+	 * @return the cached value or null if there is none
+	 */
+	public V get(K key) {
+		Entry<V> entry;
+		synchronized (this.entries) {
+			entry = this.entries.get(key);
+		}
+		if (entry == null) {
+			this.missCount.incrementAndGet();
+			return null;
+		}
+		this.hitCount.incrementAndGet();
+		return entry.value;
+	}
+
+	public void put(K key, V value) {
+		long weight = this.weigher.weigh(key, value);
+		if (this.maximumWeight > 0 && weight > this.maximumWeight) {
+			// Would evict everything else and still not fit
+			return;
+		}
+		synchronized (this.entries) {
+			Entry<V> previous = this.entries.put(key, new Entry<>(value, weight));
+			if (previous != null) {
+				this.weight -= previous.weight;
+			}
+			this.weight += weight;
+			evict();
+		}
+	}
+
+	public void invalidate(K key) {
+		synchronized (this.entries) {
+			Entry<V> previous = this.entries.remove(key);
+			if (previous != null) {
+				this.weight -= previous.weight;
+			}
+		}
+	}
+
+	/**
+	 * Remove all the entries whose key matches the predicate.
+	 *
+	 * @param predicate the test for keys to remove
+	 */
+	public void invalidateIf(Predicate<? super K> predicate) {
+		synchronized (this.entries) {
+			for (Iterator<Map.Entry<K, Entry<V>>> iter = this.entries.entrySet()
+					.iterator(); iter.hasNext();) {
+				Map.Entry<K, Entry<V>> entry = iter.next();
+				if (predicate.test(entry.getKey())) {
+					this.weight -= entry.getValue().weight;
+					iter.remove();
+				}
+			}
+		}
+	}
+
+	public void invalidateAll() {
+		synchronized (this.entries) {
+			this.entries.clear();
+			this.weight = 0;
+		}
+	}
+
+	public long size() {
+		synchronized (this.entries) {
+			return this.entries.size();
+		}
+	}
+
+	public long weight() {
+		synchronized (this.entries) {
+			return this.weight;
+		}
+	}
+
+	public long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	public long getMissCount() {
+		return this.missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return this.evictionCount.get();
+	}
+
+	private void evict() {
+		Iterator<Entry<V>> iter = this.entries.values().iterator();
+		while (iter.hasNext() && (this.entries.size() > this.maximumSize
+				|| (this.maximumWeight > 0 && this.weight > this.maximumWeight))) {
+			Entry<V> eldest = iter.next();
+			this.weight -= eldest.weight;
+			iter.remove();
+			this.evictionCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Strategy for computing the weight of a cache entry.
+	 *
+	 * @param <K> the key type
+	 * @param <V> the value type
+	 */
+	@FunctionalInterface
+	public interface Weigher<K, V> {
+
+		long weigh(K key, V value);
+
+	}
+
+	private static class Entry<V> {
+
+		private final V value;
+
+		private final long weight;
+
+		Entry(V value, long weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+
+	}
+
+}
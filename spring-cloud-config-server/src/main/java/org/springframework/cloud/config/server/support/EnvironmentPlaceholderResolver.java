@@ -0,0 +1,188 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.support;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.util.PropertyPlaceholderHelper;
+
+/**
+ * Resolves <code>${...}</code> placeholders in text against the properties of an
+ * {@link Environment}, with the same semantics as
+ * {@link EnvironmentPropertySource#resolvePlaceholders} (defaults, nested and recursive
+ * placeholders, unresolvable placeholders left alone, <code>\${...}</code> escapes) but
+ * without building a {@link org.springframework.core.env.StandardEnvironment}. The
+ * property sources are merged into one index when the resolver is created, and the
+ * positions of the placeholders in a text are cached, so resolving takes time
+ * proportional to the number of placeholders rather than to the length of the text.
+ *
+ * 针对{@link Environment}的属性解析文本中的<code>${...}</code>占位符，语义与{@link EnvironmentPropertySource#resolvePlaceholders}相同
+ * （默认值、嵌套和递归占位符、无法解析的占位符保持原样、<code>\${...}</code>转义），但不构建StandardEnvironment。
+ * 创建解析器时将属性源合并为一个索引，并缓存文本中占位符的位置，因此解析所需时间与占位符数量成正比，而不是与文本长度成正比。
+ */
+public class EnvironmentPlaceholderResolver {
+
+	private static final String PREFIX = "${";
+
+	private static final String SUFFIX = "}";
+
+	private static final String SIMPLE_PREFIX = "{";
+
+	private static final String ESCAPED_PREFIX = "\\${";
+
+	private static final String MASKED_PREFIX = "$_{";
+
+	private static final PropertyPlaceholderHelper helper = new PropertyPlaceholderHelper(
+			PREFIX, SUFFIX, ":", true);
+
+	/**
+	 * Parsed texts, shared by all resolvers (a template does not depend on the
+	 * environment). Bounded by the number of templates and their total length.
+	 */
+	private static final BoundedCache<String, Template> templates = new BoundedCache<>(
+			1024, 1024 * 1024, (text, template) -> text.length());
+
+	private final Map<String, Object> properties;
+
+	private final ConversionService conversionService = DefaultConversionService
+			.getSharedInstance();
+
+	public EnvironmentPlaceholderResolver(Environment environment) {
+		this.properties = new HashMap<>();
+		List<PropertySource> sources = environment.getPropertySources();
+		// The first property source has the highest precedence
+		for (int i = sources.size() - 1; i >= 0; i--) {
+			for (Map.Entry<?, ?> entry : sources.get(i).getSource().entrySet()) {
+				this.properties.put(String.valueOf(entry.getKey()), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Resolve the placeholders in the text.
+	 *
+	 * @param text the text
+	 * @return the text with the placeholders that could be resolved replaced
+	 */
+	public String resolvePlaceholders(String text) {
+		if (text.indexOf(ESCAPED_PREFIX) >= 0) {
+			// Mask out escaped placeholders
+			text = text.replace(ESCAPED_PREFIX, MASKED_PREFIX);
+		}
+		String result = text;
+		if (text.indexOf(PREFIX) >= 0) {
+			result = getTemplate(text).resolve(this);
+		}
+		if (result.indexOf(MASKED_PREFIX) >= 0) {
+			result = result.replace(MASKED_PREFIX, PREFIX);
+		}
+		return result;
+	}
+
+	private String getProperty(String name) {
+		Object value = this.properties.get(name);
+		if (value == null || value instanceof String) {
+			return (String) value;
+		}
+		return this.conversionService.convert(value, String.class);
+	}
+
+	private static Template getTemplate(String text) {
+		Template template = templates.get(text);
+		if (template == null) {
+			template = new Template(text);
+			templates.put(text, template);
+		}
+		return template;
+	}
+
+	/**
+	 * A text split into literal parts and (top level) placeholders.
+	 */
+	private static class Template {
+
+		private final String[] parts;
+
+		Template(String text) {
+			List<String> parts = new ArrayList<>();
+			int literal = 0;
+			int start = text.indexOf(PREFIX);
+			while (start >= 0) {
+				int end = findPlaceholderEndIndex(text, start);
+				if (end < 0) {
+					break;
+				}
+				end += SUFFIX.length();
+				parts.add(text.substring(literal, start));
+				parts.add(text.substring(start, end));
+				literal = end;
+				start = text.indexOf(PREFIX, end);
+			}
+			parts.add(text.substring(literal));
+			this.parts = parts.toArray(new String[0]);
+		}
+
+		/**
+		 * The same as {@link PropertyPlaceholderHelper}: braces inside a placeholder
+		 * have to be balanced.
+		 */
+		private static int findPlaceholderEndIndex(String text, int start) {
+			int index = start + PREFIX.length();
+			int withinNestedPlaceholder = 0;
+			while (index < text.length()) {
+				if (text.startsWith(SUFFIX, index)) {
+					if (withinNestedPlaceholder == 0) {
+						return index;
+					}
+					withinNestedPlaceholder--;
+					index += SUFFIX.length();
+				}
+				else if (text.startsWith(SIMPLE_PREFIX, index)) {
+					withinNestedPlaceholder++;
+					index += SIMPLE_PREFIX.length();
+				}
+				else {
+					index++;
+				}
+			}
+			return -1;
+		}
+
+		String resolve(EnvironmentPlaceholderResolver resolver) {
+			StringBuilder result = new StringBuilder();
+			for (int i = 0; i < this.parts.length; i++) {
+				if (i % 2 == 0) {
+					result.append(this.parts[i]);
+				}
+				else {
+					result.append(helper.replacePlaceholders(this.parts[i],
+							resolver::getProperty));
+				}
+			}
+			return result.toString();
+		}
+
+	}
+
+}
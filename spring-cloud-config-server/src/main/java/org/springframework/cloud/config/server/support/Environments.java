@@ -0,0 +1,47 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.support;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+
+/**
+ * Helpers for the environments that repositories share between callers (e.g. from a
+ * cache, or with coalesced requests), which are free to modify what they get (e.g. to
+ * add overrides).
+ *
+ * 存储库在调用者之间共享的环境（例如来自缓存，或合并的请求）的辅助方法，调用者可以自由修改它们得到的环境（例如添加覆盖）。
+ */
+public final class Environments {
+
+	private Environments() {
+	}
+
+	/**
+	 * @param environment the environment to copy
+	 * @return a copy of the environment with copies of its property sources, which the
+	 * caller can change without affecting the original
+	 */
+	public static Environment copy(Environment environment) {
+		Environment result = new Environment(environment);
+		for (PropertySource source : environment.getPropertySources()) {
+			result.add(new PropertySource(source.getName(), source.getSource()));
+		}
+		return result;
+	}
+
+}
@@ -63,6 +63,7 @@ public class HttpClientSupport {
                 .setDefaultRequestConfig(RequestConfig.custom()
                         .setSocketTimeout(timeout)
                         .setConnectTimeout(timeout)
+                        .setConnectionRequestTimeout(timeout)
                         .build());
     }
 }
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.support;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ServletInvocableHandlerMethod;
+
+/**
+ * A {@link RequestMappingHandlerAdapter} that runs the handler methods of some
+ * controllers (the ones that block on the repositories) on a bounded executor as
+ * asynchronous requests, so the servlet container threads are released while the
+ * repositories are loading. The arguments are resolved and the results are written on
+ * the container threads as usual. At most a fixed number of requests wait for or run on
+ * the executor, the others are rejected with a {@link ServerBusyException}. A request
+ * that times out (or fails) while its handler method runs still counts until the method
+ * returns, since the method may ignore the interrupt, and a handler method whose request
+ * is already over when its turn comes is not run at all. The request is bound to the
+ * executor thread while a handler method runs (see {@link RequestContextHolder}), for the
+ * repositories that read the credentials of the caller from it.
+ *
+ * 一个{@link RequestMappingHandlerAdapter}，它将某些控制器（在存储库上阻塞的控制器）的处理程序方法作为异步请求在有界执行器上运行，
+ * 因此在存储库加载时会释放servlet容器线程。参数的解析和结果的写入照常在容器线程上进行。
+ * 最多有固定数量的请求在执行器上等待或运行，其他请求将被拒绝并抛出{@link ServerBusyException}。
+ * 在处理程序方法运行时超时（或失败）的请求在该方法返回之前仍然计数，因为该方法可能忽略中断；
+ * 轮到执行时请求已经结束的处理程序方法根本不会运行。
+ * 处理程序方法运行时，请求会绑定到执行器线程（参见{@link RequestContextHolder}），供从中读取调用者凭据的存储库使用。
+ */
+public class OffloadingRequestMappingHandlerAdapter extends RequestMappingHandlerAdapter {
+
+	private static final int WAITING = 0;
+
+	private static final int STARTED = 1;
+
+	private static final int ABANDONED = 2;
+
+	private final AsyncTaskExecutor executor;
+
+	private final Set<Class<?>> handlerTypes;
+
+	private final Semaphore permits;
+
+	private Long timeout;
+
+	/**
+	 * @param executor the executor for the handler methods
+	 * @param handlerTypes the controllers whose handler methods run on the executor
+	 * @param maxRequests the maximum number of requests running on or waiting for the
+	 * executor
+	 */
+	public OffloadingRequestMappingHandlerAdapter(AsyncTaskExecutor executor,
+			Collection<Class<?>> handlerTypes, int maxRequests) {
+		this.executor = executor;
+		this.handlerTypes = new LinkedHashSet<>(handlerTypes);
+		this.permits = new Semaphore(maxRequests);
+	}
+
+	/**
+	 * @param timeout the time (in milliseconds) after which an offloaded request fails
+	 * (null for the default of the asynchronous requests)
+	 */
+	public void setTimeout(Long timeout) {
+		this.timeout = timeout;
+	}
+
+	public AsyncTaskExecutor getExecutor() {
+		return this.executor;
+	}
+
+	/**
+	 * @return the number of requests that can still be accepted
+	 */
+	public int getAvailablePermits() {
+		return this.permits.availablePermits();
+	}
+
+	@Override
+	protected ServletInvocableHandlerMethod createInvocableHandlerMethod(
+			HandlerMethod handlerMethod) {
+		if (!isOffloaded(handlerMethod.getBeanType())) {
+			return super.createInvocableHandlerMethod(handlerMethod);
+		}
+		return new OffloadedHandlerMethod(handlerMethod);
+	}
+
+	private boolean isOffloaded(Class<?> beanType) {
+		for (Class<?> type : this.handlerTypes) {
+			if (type.isAssignableFrom(beanType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private class OffloadedHandlerMethod extends ServletInvocableHandlerMethod {
+
+		OffloadedHandlerMethod(HandlerMethod handlerMethod) {
+			super(handlerMethod);
+		}
+
+		@Override
+		public Object invokeForRequest(NativeWebRequest request,
+				ModelAndViewContainer mavContainer, Object... providedArgs)
+				throws Exception {
+			Object[] args = getMethodArgumentValues(request, mavContainer, providedArgs);
+			RequestAttributes attributes = requestAttributes(request);
+			Semaphore permits = OffloadingRequestMappingHandlerAdapter.this.permits;
+			if (!permits.tryAcquire()) {
+				throw new ServerBusyException(
+						"Too many requests are waiting for the repositories");
+			}
+			// The permit is released when the handler returns, or when the request is
+			// over if the handler has not started by then (and then never starts)
+			AtomicInteger state = new AtomicInteger(WAITING);
+			WebAsyncTask<Object> task = new WebAsyncTask<>(
+					OffloadingRequestMappingHandlerAdapter.this.timeout,
+					OffloadingRequestMappingHandlerAdapter.this.executor, () -> {
+						if (!state.compareAndSet(WAITING, STARTED)) {
+							// Nobody is waiting for the result any more
+							return null;
+						}
+						RequestContextHolder.setRequestAttributes(attributes);
+						try {
+							return doInvoke(args);
+						}
+						finally {
+							RequestContextHolder.resetRequestAttributes();
+							permits.release();
+						}
+					});
+			task.onCompletion(() -> {
+				if (state.compareAndSet(WAITING, ABANDONED)) {
+					permits.release();
+				}
+			});
+			return task;
+		}
+
+		private RequestAttributes requestAttributes(NativeWebRequest request) {
+			HttpServletRequest servletRequest = request
+					.getNativeRequest(HttpServletRequest.class);
+			if (servletRequest == null) {
+				return RequestContextHolder.getRequestAttributes();
+			}
+			// Not the attributes of the container thread: those are marked as completed
+			// once the initial dispatch returns
+			return new ServletRequestAttributes(servletRequest,
+					request.getNativeResponse(HttpServletResponse.class));
+		}
+
+	}
+
+}
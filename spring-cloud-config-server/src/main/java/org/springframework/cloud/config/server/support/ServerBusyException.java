@@ -0,0 +1,36 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.support;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a request cannot be accepted because too many requests are waiting for
+ * the repositories already, so the client can try again later.
+ *
+ * 当由于太多请求已在等待存储库而无法接受请求时抛出，以便客户端稍后重试。
+ */
+@SuppressWarnings("serial")
+@ResponseStatus(code = HttpStatus.SERVICE_UNAVAILABLE, reason = "Server Busy")
+public class ServerBusyException extends RuntimeException {
+
+	public ServerBusyException(String message) {
+		super(message);
+	}
+
+}
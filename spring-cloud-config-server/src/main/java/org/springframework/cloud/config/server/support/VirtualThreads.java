@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.config.server.support;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Access to the virtual threads of the JVM (Java 21 or later), while the server itself
+ * is built for older versions of Java.
+ *
+ * 访问JVM的虚拟线程（Java 21或更高版本），而服务器本身是为旧版本的Java构建的。
+ */
+public final class VirtualThreads {
+
+	private static final Method NEW_EXECUTOR = ReflectionUtils
+			.findMethod(Executors.class, "newVirtualThreadPerTaskExecutor");
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * @return true if the JVM has virtual threads
+	 */
+	public static boolean isAvailable() {
+		return NEW_EXECUTOR != null;
+	}
+
+	/**
+	 * @return an executor that runs each task on a new virtual thread
+	 * @throws IllegalStateException if the JVM does not have virtual threads
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor() {
+		if (!isAvailable()) {
+			throw new IllegalStateException("Virtual threads need Java 21 or later, not "
+					+ System.getProperty("java.version"));
+		}
+		return (ExecutorService) ReflectionUtils.invokeMethod(NEW_EXECUTOR, null);
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server;
+
+import java.io.IOException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.server.support.OffloadingRequestMappingHandlerAdapter;
+import org.springframework.cloud.config.server.test.ConfigServerTestUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = ConfigServerApplication.class,
+		properties = { "spring.config.name:configserver",
+				"spring.cloud.config.server.async.enabled:true",
+				"spring.cloud.config.server.async.pool-size:2" },
+		webEnvironment = RANDOM_PORT)
+@ActiveProfiles({ "test", "native" })
+public class AsyncConfigServerIntegrationTests {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private RequestMappingHandlerAdapter adapter;
+
+	@BeforeClass
+	public static void init() throws IOException {
+		ConfigServerTestUtils.prepareLocalRepo();
+	}
+
+	@Test
+	public void environmentLoadedOnPool() {
+		assertThat(this.adapter, instanceOf(OffloadingRequestMappingHandlerAdapter.class));
+		ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) ((OffloadingRequestMappingHandlerAdapter) this.adapter)
+				.getExecutor();
+		long submitted = executor.getThreadPoolExecutor().getTaskCount();
+		Environment environment = new TestRestTemplate().getForObject(
+				"http://localhost:" + this.port + "/foo/development/", Environment.class);
+		assertFalse(environment.getPropertySources().isEmpty());
+		assertEquals("overrides", environment.getPropertySources().get(0).getName());
+		assertTrue(executor.getThreadPoolExecutor().getTaskCount() > submitted);
+	}
+
+	@Test
+	public void streamedFormat() {
+		ResponseEntity<String> response = new TestRestTemplate().getForEntity(
+				"http://localhost:" + this.port + "/foo-development.properties",
+				String.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertThat(response.getBody(), containsString("spring.cloud.config.enabled: true"));
+	}
+
+	@Test
+	public void errorsHandled() {
+		ResponseEntity<String> response = new TestRestTemplate().getForEntity(
+				"http://localhost:" + this.port + "/bad/default/", String.class);
+		assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+		assertEquals(1000, ((OffloadingRequestMappingHandlerAdapter) this.adapter)
+				.getAvailablePermits());
+	}
+
+	@Test
+	public void encryptionEndpoint() {
+		ResponseEntity<String> response = new TestRestTemplate().getForEntity(
+				"http://localhost:" + this.port + "/encrypt/status", String.class);
+		assertThat(response.getBody(), containsString("status"));
+	}
+
+}
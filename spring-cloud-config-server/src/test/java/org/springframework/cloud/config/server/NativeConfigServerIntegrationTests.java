@@ -6,11 +6,14 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.server.environment.JGitInitializationHealthIndicator;
 import org.springframework.cloud.config.server.test.ConfigServerTestUtils;
+import org.springframework.context.ApplicationContext;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
@@ -29,6 +32,9 @@ public class NativeConfigServerIntegrationTests {
 	
 	@LocalServerPort
 	private int port;
+
+	@Autowired
+	private ApplicationContext context;
 	
 	@BeforeClass
 	public static void init() throws IOException{
@@ -43,6 +49,12 @@ public class NativeConfigServerIntegrationTests {
 		assertEquals("{spring.cloud.config.enabled=true}", environment.getPropertySources().get(0).getSource().toString());
 	}
 
+	@Test
+	public void noJGitInitializationHealthIndicator() {
+		assertEquals(0, this.context
+				.getBeanNamesForType(JGitInitializationHealthIndicator.class).length);
+	}
+
 	@Test
 	public void badYaml() {
 		ResponseEntity<String> response = new TestRestTemplate().getForEntity("http://localhost:"
@@ -22,7 +22,10 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
@@ -32,8 +35,10 @@ import org.springframework.cloud.config.environment.PropertySource;
 import org.springframework.cloud.config.server.EnableConfigServer;
 import org.springframework.cloud.config.server.environment.EnvironmentRepository;
 import org.springframework.cloud.config.server.environment.EnvironmentRepositoryFactory;
+import org.springframework.cloud.config.server.environment.JGitInitializationHealthIndicator;
 import org.springframework.cloud.config.server.support.EnvironmentRepositoryProperties;
 import org.springframework.cloud.config.server.test.ConfigServerTestUtils;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
@@ -111,6 +116,9 @@ public class CustomCompositeEnvironmentRepositoryTests {
 		@LocalServerPort
 		private int port;
 
+		@Autowired
+		private ApplicationContext context;
+
 		@BeforeClass
 		public static void init() throws Exception {
 			ConfigServerTestUtils.prepareLocalRepo();
@@ -127,6 +135,14 @@ public class CustomCompositeEnvironmentRepositoryTests {
 			assertEquals("p", propertySources.get(2).getName());
 		}
 
+		@Test
+		public void jgitInitializationHealthIndicator() {
+			Health health = this.context.getBean(JGitInitializationHealthIndicator.class)
+					.health();
+			assertEquals(Status.UP, health.getStatus());
+			assertEquals(0, health.getDetails().get("repositories"));
+		}
+
 		@Configuration
 		@EnableAutoConfiguration
 		@EnableConfigServer
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.environment;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.jgit.util.FileUtils;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+import org.springframework.cloud.config.server.test.ConfigServerTestUtils;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.ResourceUtils;
+
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertEquals;
+
+public class BatchEnvironmentControllerTests {
+
+	private EnvironmentRepository repository = Mockito.mock(EnvironmentRepository.class);
+
+	@Test
+	public void batch() throws Exception {
+		Environment foo = new Environment("foo", "default");
+		foo.setLabel("master");
+		foo.add(new PropertySource("one", Collections.singletonMap("a", "b")));
+		Mockito.when(this.repository.findOne("foo", "default", "master")).thenReturn(foo);
+		Mockito.when(this.repository.findOne("bar", "default", "other"))
+				.thenThrow(new NoSuchLabelException("No such label: other"));
+		Mockito.when(this.repository.findOne("spam", "dev", null))
+				.thenReturn(new Environment("spam", "dev"));
+		ObjectMapper objectMapper = new ObjectMapper();
+		MockMvc mvc = MockMvcBuilders.standaloneSetup(new BatchEnvironmentController(
+				new EnvironmentController(this.repository), objectMapper)).build();
+		mvc.perform(MockMvcRequestBuilders.post("/batch")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"name\":\"foo\",\"profiles\":\"default\",\"label\":\"master\"},"
+						+ "{\"name\":\"bar\",\"profiles\":\"default\",\"label\":\"other\"},"
+						+ "{\"name\":\"spam\",\"profiles\":\"dev\"},"
+						+ "{\"name\":\"missing\"}]"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.content()
+						.contentType(MediaType.APPLICATION_JSON))
+				// Grouped by label
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("foo"))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].environment.propertySources[0].source.a")
+						.value("b"))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[1].name").value("spam"))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[1].label").value(nullValue()))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[1].environment.name")
+						.value("spam"))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[2].name").value("missing"))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[2].status").value(400))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[3].name").value("bar"))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[3].status").value(404))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[3].error")
+						.value("No such label: other"));
+	}
+
+	@Test
+	public void oneRefreshPerLabel() throws Exception {
+		String uri = ConfigServerTestUtils.prepareLocalRepo();
+		File basedir = new File("target/config");
+		if (basedir.exists()) {
+			FileUtils.delete(basedir, FileUtils.RECURSIVE | FileUtils.RETRY);
+		}
+		AtomicInteger refreshes = new AtomicInteger();
+		JGitEnvironmentRepository repository = new JGitEnvironmentRepository(
+				new StandardEnvironment(), new JGitEnvironmentProperties()) {
+			@Override
+			public String refresh(String label) {
+				refreshes.incrementAndGet();
+				return super.refresh(label);
+			}
+		};
+		repository.setUri(ResourceUtils.getFile(uri).getAbsolutePath());
+		repository.setBasedir(basedir);
+		repository.findOne("bar", "default", "master");
+		repository.findOne("foo", "default", "master");
+		assertEquals(2, refreshes.get());
+		EnvironmentBatch batch = EnvironmentBatch.open();
+		try {
+			repository.findOne("bar", "default", "master");
+			repository.findOne("foo", "default", "master");
+			repository.findOne("foo", "staging", "master");
+			repository.findOne("foo", "default", "raw");
+			repository.findOne("bar", "default", "raw");
+		}
+		finally {
+			batch.close();
+		}
+		assertEquals(4, refreshes.get());
+		repository.findOne("foo", "default", "raw");
+		assertEquals(5, refreshes.get());
+	}
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.environment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.cloud.config.client.ConfigClientProperties;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class CoalescingEnvironmentRepositoryTests {
+
+	private static final int THREADS = 4;
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private final AtomicInteger calls = new AtomicInteger();
+
+	private volatile RuntimeException failure;
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+	private final CoalescingEnvironmentRepository repository = new CoalescingEnvironmentRepository(
+			(application, profile, label) -> {
+				this.calls.incrementAndGet();
+				try {
+					this.release.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				if (this.failure != null) {
+					throw this.failure;
+				}
+				Environment environment = new Environment(application, profile);
+				environment.add(new PropertySource("one",
+						Collections.singletonMap("foo", label)));
+				return environment;
+			});
+
+	@After
+	public void close() {
+		this.executor.shutdownNow();
+	}
+
+	@Test
+	public void concurrentIdenticalRequestsShareOneCall() throws Exception {
+		List<Future<Environment>> results = submit("foo", "default", "master");
+		Environment first = results.get(0).get(10, TimeUnit.SECONDS);
+		for (Future<Environment> result : results) {
+			Environment environment = result.get(10, TimeUnit.SECONDS);
+			assertEquals("master", environment.getPropertySources().get(0).getSource()
+					.get("foo"));
+			if (environment != first) {
+				assertNotSame(first.getPropertySources(),
+						environment.getPropertySources());
+			}
+		}
+		assertEquals(1, this.calls.get());
+		assertEquals(THREADS, this.repository.getRequestCount());
+		assertEquals(THREADS - 1, this.repository.getCoalescedCount());
+		// Nothing is kept once the call has completed
+		this.repository.findOne("foo", "default", "master");
+		assertEquals(2, this.calls.get());
+	}
+
+	@Test
+	public void differentRequestsNotCoalesced() throws Exception {
+		this.release.countDown();
+		this.repository.findOne("foo", "default", "master");
+		this.repository.findOne("foo", "default", "other");
+		this.repository.findOne("bar", "default", "master");
+		assertEquals(3, this.calls.get());
+		assertEquals(0, this.repository.getCoalescedCount());
+	}
+
+	@Test
+	public void requestsWithDifferentTokensNotCoalesced() throws Exception {
+		List<Future<Environment>> results = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			MockHttpServletRequest request = new MockHttpServletRequest();
+			if (i % 2 == 1) {
+				request.addHeader(ConfigClientProperties.TOKEN_HEADER, "token");
+			}
+			results.add(this.executor.submit(() -> {
+				RequestContextHolder.setRequestAttributes(
+						new ServletRequestAttributes(request));
+				try {
+					return this.repository.findOne("foo", "default", "master");
+				}
+				finally {
+					RequestContextHolder.resetRequestAttributes();
+				}
+			}));
+		}
+		long deadline = System.currentTimeMillis() + 10000;
+		while (this.calls.get() + this.repository.getCoalescedCount() < THREADS
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		this.release.countDown();
+		for (Future<Environment> result : results) {
+			result.get(10, TimeUnit.SECONDS);
+		}
+		// One call without a token and one with
+		assertEquals(2, this.calls.get());
+		assertEquals(THREADS - 2, this.repository.getCoalescedCount());
+	}
+
+	@Test
+	public void failureSharedWithWaitingRequests() throws Exception {
+		this.failure = new NoSuchLabelException("No such label: master");
+		List<Future<Environment>> results = submit("foo", "default", "master");
+		for (Future<Environment> result : results) {
+			try {
+				result.get(10, TimeUnit.SECONDS);
+				fail("Expected NoSuchLabelException");
+			}
+			catch (ExecutionException e) {
+				assertSame(this.failure, e.getCause());
+			}
+		}
+		assertEquals(1, this.calls.get());
+	}
+
+	@Test
+	public void disabled() throws Exception {
+		this.repository.setEnabled(false);
+		this.release.countDown();
+		List<Future<Environment>> results = submit("foo", "default", "master");
+		for (Future<Environment> result : results) {
+			result.get(10, TimeUnit.SECONDS);
+		}
+		assertEquals(THREADS, this.calls.get());
+	}
+
+	private List<Future<Environment>> submit(String application, String profile,
+			String label) throws InterruptedException {
+		List<Future<Environment>> results = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			results.add(this.executor.submit(
+					() -> this.repository.findOne(application, profile, label)));
+		}
+		// Wait for all of them to be either in the delegate or waiting for it
+		long deadline = System.currentTimeMillis() + 10000;
+		while (this.calls.get() + this.repository.getCoalescedCount() < THREADS
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		this.release.countDown();
+		return results;
+	}
+
+}
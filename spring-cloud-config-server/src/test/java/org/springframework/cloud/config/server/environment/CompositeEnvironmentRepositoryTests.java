@@ -18,6 +18,11 @@ package org.springframework.cloud.config.server.environment;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
 import org.junit.Test;
 import org.springframework.cloud.config.environment.Environment;
 import org.springframework.cloud.config.environment.PropertySource;
@@ -28,9 +33,17 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.core.Ordered;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.ResourceLoader;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 
 /**
@@ -152,6 +165,228 @@ public class CompositeEnvironmentRepositoryTests {
 
 	}
 
+	@Test
+	public void parallelKeepsOrder() {
+		PropertySource p1 = mock(PropertySource.class);
+		doReturn("p1").when(p1).getName();
+		PropertySource p2 = mock(PropertySource.class);
+		doReturn("p2").when(p2).getName();
+		Environment e1 = new Environment("app", "dev");
+		e1.add(p1);
+		Environment e2 = new Environment("app", "dev");
+		e2.add(p2);
+		SearchPathLocator.Locations loc1 = new SearchPathLocator.Locations("app", "dev", "label", "version", new String[]{"loc1"});
+		SearchPathLocator.Locations loc2 = new SearchPathLocator.Locations("app", "dev", "label", "version", new String[]{"loc2"});
+		List<EnvironmentRepository> repos = new ArrayList<EnvironmentRepository>();
+		repos.add(new SlowEnvironmentRepository(1, e1, loc1, 500));
+		repos.add(new SlowEnvironmentRepository(2, e2, loc2, 500));
+		SearchPathCompositeEnvironmentRepository compositeRepo = new SearchPathCompositeEnvironmentRepository(repos);
+		compositeRepo.setPoolSize(2);
+		try {
+			long start = System.currentTimeMillis();
+			Environment compositeEnv = compositeRepo.findOne("app", "dev", "label");
+			assertTrue(System.currentTimeMillis() - start < 1000);
+			assertEquals(2, compositeEnv.getPropertySources().size());
+			assertEquals("p1", compositeEnv.getPropertySources().get(0).getName());
+			assertEquals("p2", compositeEnv.getPropertySources().get(1).getName());
+			assertArrayEquals(new String[]{"loc1", "loc2"},
+					compositeRepo.getLocations("app", "dev", "label").getLocations());
+		}
+		finally {
+			compositeRepo.destroy();
+		}
+	}
+
+	@Test
+	public void resourceLoaderOfDelegateKept() {
+		ResourceLoader resourceLoader = new DefaultResourceLoader();
+		SearchPathLocator.Locations loc1 = new SearchPathLocator.Locations("app", "dev", "label", "version", new String[]{"loc1"});
+		SearchPathLocator.Locations loc2 = new SearchPathLocator.Locations("app", "dev", "label", "version", new String[]{"loc2"}, resourceLoader);
+		List<EnvironmentRepository> repos = new ArrayList<EnvironmentRepository>();
+		repos.add(new TestOrderedEnvironmentRepository(1, new Environment("app", "dev"), loc1));
+		repos.add(new TestOrderedEnvironmentRepository(2, new Environment("app", "dev"), loc2));
+		SearchPathCompositeEnvironmentRepository compositeRepo = new SearchPathCompositeEnvironmentRepository(repos);
+		SearchPathLocator.Locations locations = compositeRepo.getLocations("app", "dev", "label");
+		assertArrayEquals(new String[]{"loc1", "loc2"}, locations.getLocations());
+		assertSame(resourceLoader, locations.getResourceLoader());
+	}
+
+	@Test
+	public void withLocationsHoldsEveryRepository() {
+		List<String> held = new ArrayList<>();
+		SearchPathLocator.Locations loc1 = new SearchPathLocator.Locations("app", "dev", "label", "version", new String[]{"loc1"});
+		SearchPathLocator.Locations loc2 = new SearchPathLocator.Locations("app", "dev", "label", "version", new String[]{"loc2"});
+		List<EnvironmentRepository> repos = new ArrayList<EnvironmentRepository>();
+		repos.add(new HoldingEnvironmentRepository(2, loc2, held));
+		repos.add(new HoldingEnvironmentRepository(1, loc1, held));
+		EnvironmentRepository failing = new HoldingEnvironmentRepository(3, null, held);
+		repos.add(failing);
+		SearchPathCompositeEnvironmentRepository compositeRepo = new SearchPathCompositeEnvironmentRepository(repos);
+		compositeRepo.setPolicy(failing, new CompositeEnvironmentRepository.Policy(0, true));
+		String[] locations = compositeRepo.withLocations("app", "dev", "label", found -> {
+			assertEquals(Arrays.asList("loc1", "loc2"), held);
+			return found.getLocations();
+		});
+		assertArrayEquals(new String[]{"loc1", "loc2"}, locations);
+		assertTrue(held.isEmpty());
+		try {
+			compositeRepo.withLocations("app", "dev", "label", found -> {
+				throw new NoSuchLabelException("No such label");
+			});
+			fail("Expected NoSuchLabelException");
+		}
+		catch (NoSuchLabelException e) {
+			assertTrue(held.isEmpty());
+		}
+	}
+
+	@Test
+	public void timedOutRepositorySkippedWhenFailOpen() {
+		PropertySource p1 = mock(PropertySource.class);
+		doReturn("p1").when(p1).getName();
+		Environment e1 = new Environment("app", "dev");
+		e1.add(p1);
+		List<EnvironmentRepository> repos = new ArrayList<EnvironmentRepository>();
+		EnvironmentRepository slow = new SlowEnvironmentRepository(1, new Environment("app", "dev"), null, 2000);
+		repos.add(slow);
+		repos.add(new TestOrderedEnvironmentRepository(2, e1, null));
+		CompositeEnvironmentRepository compositeRepo = new CompositeEnvironmentRepository(repos);
+		compositeRepo.setPoolSize(2);
+		compositeRepo.setPolicy(slow, new CompositeEnvironmentRepository.Policy(100, true));
+		try {
+			long start = System.currentTimeMillis();
+			Environment compositeEnv = compositeRepo.findOne("app", "dev", "label");
+			assertTrue(System.currentTimeMillis() - start < 2000);
+			assertEquals(1, compositeEnv.getPropertySources().size());
+			assertEquals("p1", compositeEnv.getPropertySources().get(0).getName());
+		}
+		finally {
+			compositeRepo.destroy();
+		}
+	}
+
+	@Test
+	public void timedOutRepositoryInterrupted() throws Exception {
+		CountDownLatch interrupted = new CountDownLatch(1);
+		EnvironmentRepository hung = new TestOrderedEnvironmentRepository(1, new Environment("app", "dev"), null) {
+			@Override
+			public Environment findOne(String application, String profile, String label) {
+				try {
+					Thread.sleep(10000);
+				}
+				catch (InterruptedException e) {
+					interrupted.countDown();
+				}
+				return super.findOne(application, profile, label);
+			}
+		};
+		List<EnvironmentRepository> repos = new ArrayList<EnvironmentRepository>();
+		repos.add(hung);
+		repos.add(new TestOrderedEnvironmentRepository(2, new Environment("app", "dev"), null));
+		CompositeEnvironmentRepository compositeRepo = new CompositeEnvironmentRepository(repos);
+		compositeRepo.setPoolSize(2);
+		compositeRepo.setPolicy(hung, new CompositeEnvironmentRepository.Policy(100, true));
+		try {
+			compositeRepo.findOne("app", "dev", "label");
+			assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+		}
+		finally {
+			compositeRepo.destroy();
+		}
+	}
+
+	@Test
+	public void timeoutStartsWhenCallRuns() {
+		PropertySource p1 = mock(PropertySource.class);
+		doReturn("p1").when(p1).getName();
+		PropertySource p2 = mock(PropertySource.class);
+		doReturn("p2").when(p2).getName();
+		Environment e1 = new Environment("app", "dev");
+		e1.add(p1);
+		Environment e2 = new Environment("app", "dev");
+		e2.add(p2);
+		List<EnvironmentRepository> repos = new ArrayList<EnvironmentRepository>();
+		repos.add(new SlowEnvironmentRepository(1, e1, null, 500));
+		EnvironmentRepository queued = new SlowEnvironmentRepository(2, e2, null, 50);
+		repos.add(queued);
+		CompositeEnvironmentRepository compositeRepo = new CompositeEnvironmentRepository(repos);
+		// The second repository waits for the only thread longer than its timeout
+		compositeRepo.setPoolSize(1);
+		compositeRepo.setPolicy(queued, new CompositeEnvironmentRepository.Policy(400, false));
+		try {
+			Environment compositeEnv = compositeRepo.findOne("app", "dev", "label");
+			assertEquals(2, compositeEnv.getPropertySources().size());
+			assertEquals("p2", compositeEnv.getPropertySources().get(1).getName());
+		}
+		finally {
+			compositeRepo.destroy();
+		}
+	}
+
+	@Test
+	public void saturatedPoolFailsAtOnce() {
+		AtomicBoolean called = new AtomicBoolean();
+		EnvironmentRepository rejected = new TestOrderedEnvironmentRepository(3, new Environment("app", "dev"), null) {
+			@Override
+			public Environment findOne(String application, String profile, String label) {
+				called.set(true);
+				return super.findOne(application, profile, label);
+			}
+		};
+		List<EnvironmentRepository> repos = new ArrayList<EnvironmentRepository>();
+		repos.add(new SlowEnvironmentRepository(1, new Environment("app", "dev"), null, 300));
+		repos.add(new TestOrderedEnvironmentRepository(2, new Environment("app", "dev"), null));
+		repos.add(rejected);
+		CompositeEnvironmentRepository compositeRepo = new CompositeEnvironmentRepository(repos);
+		// One call runs and one waits, there is no room for the third
+		compositeRepo.setPoolSize(1, 1);
+		compositeRepo.setPolicy(rejected, new CompositeEnvironmentRepository.Policy(0, true));
+		try {
+			compositeRepo.findOne("app", "dev", "label");
+			assertFalse(called.get());
+		}
+		finally {
+			compositeRepo.destroy();
+		}
+		compositeRepo = new CompositeEnvironmentRepository(repos);
+		compositeRepo.setPoolSize(1, 1);
+		try {
+			compositeRepo.findOne("app", "dev", "label");
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			assertTrue(e.getMessage().startsWith("Too many calls"));
+		}
+		finally {
+			compositeRepo.destroy();
+		}
+	}
+
+	@Test
+	public void failedRepositoryFailsCompositeWhenFailClosed() {
+		EnvironmentRepository failing = mock(EnvironmentRepository.class);
+		doThrow(new NoSuchLabelException("No such label")).when(failing).findOne("app", "dev", "label");
+		List<EnvironmentRepository> repos = new ArrayList<EnvironmentRepository>();
+		repos.add(failing);
+		repos.add(new TestOrderedEnvironmentRepository(2, new Environment("app", "dev"), null));
+		CompositeEnvironmentRepository compositeRepo = new CompositeEnvironmentRepository(repos);
+		compositeRepo.setPoolSize(2);
+		try {
+			compositeRepo.findOne("app", "dev", "label");
+			fail("Expected NoSuchLabelException");
+		}
+		catch (NoSuchLabelException e) {
+			assertEquals("No such label", e.getMessage());
+		}
+		finally {
+			compositeRepo.destroy();
+		}
+		// Sequential calls apply the policies too
+		compositeRepo = new CompositeEnvironmentRepository(repos);
+		compositeRepo.setDefaultPolicy(new CompositeEnvironmentRepository.Policy(0, true));
+		assertEquals(0, compositeRepo.findOne("app", "dev", "label").getPropertySources().size());
+	}
+
 	@Test
 	public void overridingCompositeEnvRepo_contextLoads() {
 		try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
@@ -160,6 +395,64 @@ public class CompositeEnvironmentRepositoryTests {
 		}
 	}
 
+	private static class SlowEnvironmentRepository extends TestOrderedEnvironmentRepository {
+
+		private final long delay;
+
+		SlowEnvironmentRepository(int order, Environment env, Locations locations, long delay) {
+			super(order, env, locations);
+			this.delay = delay;
+		}
+
+		@Override
+		public Environment findOne(String application, String profile, String label) {
+			sleep();
+			return super.findOne(application, profile, label);
+		}
+
+		@Override
+		public Locations getLocations(String application, String profile, String label) {
+			sleep();
+			return super.getLocations(application, profile, label);
+		}
+
+		private void sleep() {
+			try {
+				Thread.sleep(this.delay);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static class HoldingEnvironmentRepository extends TestOrderedEnvironmentRepository {
+
+		private final List<String> held;
+
+		HoldingEnvironmentRepository(int order, Locations locations, List<String> held) {
+			super(order, new Environment("app", "dev"), locations);
+			this.held = held;
+		}
+
+		@Override
+		public <T> T withLocations(String application, String profile, String label,
+				Function<Locations, T> callback) {
+			Locations locations = getLocations(application, profile, label);
+			if (locations == null) {
+				throw new IllegalStateException("Cannot locate");
+			}
+			String location = locations.getLocations()[0];
+			this.held.add(location);
+			try {
+				return callback.apply(locations);
+			}
+			finally {
+				this.held.remove(location);
+			}
+		}
+	}
+
 	@Configuration
 	static class OverrideCompositeConfig {
 		@Bean
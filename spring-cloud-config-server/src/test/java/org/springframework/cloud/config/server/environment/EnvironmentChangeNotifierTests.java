@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.environment;
+
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class EnvironmentChangeNotifierTests {
+
+	private EnvironmentRepository repository = Mockito.mock(EnvironmentRepository.class);
+
+	private EnvironmentChangeNotifier notifier;
+
+	private MockMvc mvc;
+
+	@Before
+	public void init() {
+		EnvironmentController controller = new EnvironmentController(this.repository);
+		this.notifier = new EnvironmentChangeNotifier(controller, 10000, 0);
+		this.mvc = MockMvcBuilders.standaloneSetup(controller,
+				new EnvironmentWatchController(this.notifier)).build();
+	}
+
+	@After
+	public void close() {
+		this.notifier.destroy();
+	}
+
+	@Test
+	public void changeSentToWatchers() throws Exception {
+		Mockito.when(this.repository.findOne("foo", "default", "master"))
+				.thenReturn(environment("foo", "v1"));
+		Mockito.when(this.repository.findOne("bar", "default", "master"))
+				.thenReturn(environment("bar", "v1"));
+		MockHttpServletResponse foo = watch("/foo/default/master", "v1");
+		MockHttpServletResponse other = watch("/foo/default/master", "v1");
+		MockHttpServletResponse bar = watch("/bar/default/master", "v1");
+		assertEquals(3, this.notifier.getWatchCount());
+		assertEquals("", foo.getContentAsString());
+		Mockito.when(this.repository.findOne("foo", "default", "master"))
+				.thenReturn(environment("foo", "v2"));
+		Mockito.when(this.repository.findOne("bar", "default", "master"))
+				.thenReturn(environment("bar", "v2"));
+		this.notifier.onApplicationEvent(
+				new RepositoryChangeEvent(this, Collections.singleton("foo:default")));
+		waitFor(foo, "v2");
+		waitFor(other, "v2");
+		assertThat(foo.getContentAsString(), containsString("event:change"));
+		assertThat(foo.getContentAsString(), containsString("\"version\":\"v2\""));
+		// Only foo was named by the event
+		assertThat(bar.getContentAsString(), not(containsString("v2")));
+		this.notifier.onApplicationEvent(
+				new RepositoryChangeEvent(this, Collections.singleton("*")));
+		waitFor(bar, "v2");
+		// Checked once per environment (on the first watch and each event), not once
+		// per watcher
+		Mockito.verify(this.repository, Mockito.timeout(5000).times(3)).findOne("foo",
+				"default", "master");
+	}
+
+	@Test
+	public void failedChecksKeepWatchers() throws Exception {
+		Mockito.when(this.repository.findOne("foo", "default", "master"))
+				.thenReturn(environment("foo", "v1"));
+		MockHttpServletResponse foo = watch("/foo/default/master", "v1");
+		// e.g. a backend that needs the credentials of a request
+		Mockito.when(this.repository.findOne("foo", "default", "master"))
+				.thenThrow(new IllegalStateException("No thread-bound request found"));
+		this.notifier.check(key -> true);
+		this.notifier.check(key -> true);
+		assertEquals(1, this.notifier.getWatchCount());
+		Mockito.reset(this.repository);
+		Mockito.when(this.repository.findOne("foo", "default", "master"))
+				.thenReturn(environment("foo", "v2"));
+		this.notifier.check(key -> true);
+		waitFor(foo, "v2");
+	}
+
+	@Test
+	public void outdatedWatcherNotifiedStraightAway() throws Exception {
+		Mockito.when(this.repository.findOne("foo", "default", null))
+				.thenReturn(environment("foo", "v2"));
+		MockHttpServletResponse foo = watch("/foo/default", "v1");
+		assertThat(foo.getContentAsString(), containsString("\"version\":\"v2\""));
+	}
+
+	@Test
+	public void environmentOfApplicationNamedWatchServed() throws Exception {
+		Mockito.when(this.repository.findOne("watch", "development", "master"))
+				.thenReturn(environment("watch", "v1"));
+		Mockito.when(this.repository.findOne("watch", "development", null))
+				.thenReturn(environment("watch", "v1"));
+		for (String path : new String[] { "/watch/development/master", "/watch/development" }) {
+			for (MediaType accept : new MediaType[] { MediaType.ALL, MediaType.APPLICATION_JSON }) {
+				this.mvc.perform(MockMvcRequestBuilders.get(path).accept(accept))
+						.andExpect(MockMvcResultMatchers.request().asyncNotStarted())
+						.andExpect(MockMvcResultMatchers.status().isOk())
+						.andExpect(MockMvcResultMatchers.content()
+								.contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+						.andExpect(MockMvcResultMatchers.jsonPath("$.name").value("watch"));
+			}
+		}
+		assertEquals(0, this.notifier.getWatchCount());
+	}
+
+	private MockHttpServletResponse watch(String path, String version)
+			throws Exception {
+		return this.mvc.perform(MockMvcRequestBuilders.get(path).param("version", version)
+				.accept(MediaType.TEXT_EVENT_STREAM))
+				.andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn()
+				.getResponse();
+	}
+
+	private void waitFor(MockHttpServletResponse response, String content)
+			throws Exception {
+		long end = System.currentTimeMillis() + 5000;
+		while (!response.getContentAsString().contains(content)
+				&& System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		assertTrue(response.getContentAsString().contains(content));
+	}
+
+	private Environment environment(String name, String version) {
+		return new Environment(name, new String[] { "default" }, "master", version,
+				null);
+	}
+
+}
@@ -16,6 +16,7 @@
 
 package org.springframework.cloud.config.server.environment;
 
+import java.util.Collections;
 import java.util.HashMap;
 import org.hamcrest.Matchers;
 import org.junit.Before;
@@ -158,6 +159,53 @@ public class EnvironmentControllerIntegrationTests {
 				.andExpect(MockMvcResultMatchers.content().string(Matchers.containsString("\"propertySources\":")));
 	}
 
+	@Test
+	public void environmentNotModified() throws Exception {
+		Mockito.when(this.repository.findOne("foo", "default", "awesome"))
+				.thenReturn(this.environment);
+		String etag = this.mvc.perform(MockMvcRequestBuilders.get("/foo/default/awesome"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.header().exists("ETag")).andReturn()
+				.getResponse().getHeader("ETag");
+		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default/awesome")
+				.header("If-None-Match", etag))
+				.andExpect(MockMvcResultMatchers.status().isNotModified())
+				.andExpect(MockMvcResultMatchers.content().string(""));
+	}
+
+	@Test
+	public void environmentModified() throws Exception {
+		Mockito.when(this.repository.findOne("foo", "default", null))
+				.thenReturn(this.environment);
+		String etag = this.mvc.perform(MockMvcRequestBuilders.get("/foo/default"))
+				.andReturn().getResponse().getHeader("ETag");
+		Environment changed = new Environment("foo", "default");
+		changed.add(new PropertySource("foo", Collections.singletonMap("a", "b")));
+		Mockito.when(this.repository.findOne("foo", "default", null))
+				.thenReturn(changed);
+		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default")
+				.header("If-None-Match", etag))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.header().string("ETag",
+						Matchers.not(etag)));
+	}
+
+	@Test
+	public void formatsNotModified() throws Exception {
+		Mockito.when(this.repository.findOne("foo", "default", "label"))
+				.thenReturn(this.environment);
+		for (String path : new String[] { "/label/foo-default.properties",
+				"/label/foo-default.json", "/label/foo-default.yml" }) {
+			String etag = this.mvc.perform(MockMvcRequestBuilders.get(path))
+					.andExpect(MockMvcResultMatchers.status().isOk()).andReturn()
+					.getResponse().getHeader("ETag");
+			this.mvc.perform(MockMvcRequestBuilders.get(path)
+					.header("If-None-Match", etag))
+					.andExpect(MockMvcResultMatchers.status().isNotModified())
+					.andExpect(MockMvcResultMatchers.content().string(""));
+		}
+	}
+
 	@Configuration
 	@EnableWebMvc
 	@Import(PropertyPlaceholderAutoConfiguration.class)
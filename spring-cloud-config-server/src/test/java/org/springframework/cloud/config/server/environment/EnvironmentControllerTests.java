@@ -15,10 +15,17 @@
  */
 package org.springframework.cloud.config.server.environment;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.After;
 import org.junit.Before;
@@ -30,10 +37,14 @@ import org.mockito.Mockito;
 import org.springframework.cloud.config.environment.Environment;
 import org.springframework.cloud.config.environment.PropertySource;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
@@ -41,8 +52,11 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Dave Syer
@@ -53,6 +67,9 @@ import static org.junit.Assert.assertTrue;
  */
 public class EnvironmentControllerTests {
 
+	private static final MediaType TEXT_PLAIN_UTF8 = new MediaType(MediaType.TEXT_PLAIN,
+			StandardCharsets.UTF_8);
+
 	@Rule
 	public ExpectedException expected = ExpectedException.none();
 
@@ -469,6 +486,82 @@ public class EnvironmentControllerTests {
 		assertEquals("{\"a\":{\"b\":{\"c\":\"spam\"}}}", json);
 	}
 
+	@Test
+	public void placeholdersResolvedInStreamedFormats() throws Exception {
+		whenPlaceholders();
+		MockMvc mvc = MockMvcBuilders.standaloneSetup(this.controller).build();
+		mvc.perform(MockMvcRequestBuilders.get("/foo-bar.yml")).andExpect(
+				MockMvcResultMatchers.content().string("a:\n  b:\n    c: bar\nfoo: bar\n"));
+		mvc.perform(MockMvcRequestBuilders.get("/foo-bar.properties")).andExpect(
+				MockMvcResultMatchers.content().string("a.b.c: bar\nfoo: bar"));
+		mvc.perform(MockMvcRequestBuilders.get("/foo-bar.json"))
+				.andExpect(MockMvcResultMatchers.content()
+						.string("{\"a\":{\"b\":{\"c\":\"bar\"}},\"foo\":\"bar\"}"));
+		mvc.perform(MockMvcRequestBuilders.get("/foo-bar.properties")
+				.param("resolvePlaceholders", "false")).andExpect(
+				MockMvcResultMatchers.content().string("a.b.c: ${foo}\nfoo: bar"));
+	}
+
+	@Test
+	public void renderingFailureIsNotSentAsSuccess() throws Exception {
+		this.environment.add(new PropertySource("one", Collections.singletonMap("foo",
+				new Object() {
+					@Override
+					public String toString() {
+						throw new IllegalStateException("Cannot render");
+					}
+				})));
+		Mockito.when(this.repository.findOne("foo", "bar", null))
+				.thenReturn(this.environment);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		try {
+			this.controller.labelledProperties("foo", "bar", null, true,
+					new ServletWebRequest(new MockHttpServletRequest(), response));
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			assertEquals("Cannot render", e.getMessage());
+		}
+		assertFalse(response.isCommitted());
+		assertEquals(0, response.getContentAsByteArray().length);
+	}
+
+	@Test
+	public void largeResponseStreamed() throws Exception {
+		Map<String, Object> map = new LinkedHashMap<>();
+		Set<String> expected = new HashSet<>();
+		String value = new String(new char[1000]).replace('\0', 'x');
+		for (int i = 0; i < 2000; i++) {
+			map.put("key" + i, "${foo}" + value);
+			expected.add("key" + i + ": bar" + value);
+		}
+		map.put("foo", "bar");
+		expected.add("foo: bar");
+		this.environment.add(new PropertySource("one", map));
+		Mockito.when(this.repository.findOne("foo", "bar", null))
+				.thenReturn(this.environment);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertNull(this.controller.labelledProperties("foo", "bar", null, true,
+				new ServletWebRequest(new MockHttpServletRequest(), response)));
+		assertEquals(200, response.getStatus());
+		assertEquals(TEXT_PLAIN_UTF8.toString(), response.getContentType());
+		assertEquals(expected, new HashSet<>(
+				Arrays.asList(response.getContentAsString().split("\n"))));
+	}
+
+	@Test
+	public void placeholdersResolvedInJsonAreEscaped() throws Exception {
+		this.environment.add(new PropertySource("one",
+				Collections.singletonMap("foo", "say \"hi\"")));
+		this.environment.addFirst(
+				new PropertySource("two", Collections.singletonMap("a.b.c", "${foo}")));
+		Mockito.when(this.repository.findOne("foo", "bar", null))
+				.thenReturn(this.environment);
+		String json = this.controller.jsonProperties("foo", "bar", true).getBody();
+		assertEquals("{\"a\":{\"b\":{\"c\":\"say \\\"hi\\\"\"}},\"foo\":\"say \\\"hi\\\"\"}",
+				json);
+	}
+
 	private void whenPlaceholders() {
 		Map<String, Object> map = new LinkedHashMap<String, Object>();
 		map.put("foo", "bar");
@@ -529,7 +622,7 @@ public class EnvironmentControllerTests {
 		MockMvc mvc = MockMvcBuilders.standaloneSetup(this.controller).build();
 		mvc.perform(MockMvcRequestBuilders.get("/foo-bar.yml"))
 				.andExpect(
-						MockMvcResultMatchers.content().contentType(MediaType.TEXT_PLAIN))
+						MockMvcResultMatchers.content().contentType(TEXT_PLAIN_UTF8))
 				.andExpect(MockMvcResultMatchers.content().string("{}\n"));
 	}
 
@@ -540,7 +633,7 @@ public class EnvironmentControllerTests {
 		MockMvc mvc = MockMvcBuilders.standaloneSetup(this.controller).build();
 		mvc.perform(MockMvcRequestBuilders.get("/foo-bar.json"))
 				.andExpect(MockMvcResultMatchers.content()
-						.contentType(MediaType.APPLICATION_JSON))
+						.contentType(MediaType.APPLICATION_JSON_UTF8))
 				.andExpect(MockMvcResultMatchers.content().string("{}"));
 	}
 
@@ -550,7 +643,7 @@ public class EnvironmentControllerTests {
 				.thenReturn(this.environment);
 		MockMvc mvc = MockMvcBuilders.standaloneSetup(this.controller).build();
 		mvc.perform(MockMvcRequestBuilders.get("/other/foo-bar.yml")).andExpect(
-				MockMvcResultMatchers.content().contentType(MediaType.TEXT_PLAIN));
+				MockMvcResultMatchers.content().contentType(TEXT_PLAIN_UTF8));
 	}
 
 	@Test
@@ -559,7 +652,7 @@ public class EnvironmentControllerTests {
 				.thenReturn(this.environment);
 		MockMvc mvc = MockMvcBuilders.standaloneSetup(this.controller).build();
 		mvc.perform(MockMvcRequestBuilders.get("/other/foo-bar.properties")).andExpect(
-				MockMvcResultMatchers.content().contentType(MediaType.TEXT_PLAIN));
+				MockMvcResultMatchers.content().contentType(TEXT_PLAIN_UTF8));
 	}
 
 	@Test
@@ -568,7 +661,7 @@ public class EnvironmentControllerTests {
 				.thenReturn(this.environment);
 		MockMvc mvc = MockMvcBuilders.standaloneSetup(this.controller).build();
 		mvc.perform(MockMvcRequestBuilders.get("/foo-bar.properties")).andExpect(
-				MockMvcResultMatchers.content().contentType(MediaType.TEXT_PLAIN));
+				MockMvcResultMatchers.content().contentType(TEXT_PLAIN_UTF8));
 	}
 
 	@Test
@@ -578,7 +671,7 @@ public class EnvironmentControllerTests {
 		MockMvc mvc = MockMvcBuilders.standaloneSetup(this.controller).build();
 		mvc.perform(MockMvcRequestBuilders.get("/other/foo-bar-foo2-bar2-spam.yml"))
 				.andExpect(MockMvcResultMatchers.content()
-						.contentType(MediaType.TEXT_PLAIN));
+						.contentType(TEXT_PLAIN_UTF8));
 	}
 
 	@Test
@@ -587,7 +680,7 @@ public class EnvironmentControllerTests {
 				.thenReturn(this.environment);
 		MockMvc mvc = MockMvcBuilders.standaloneSetup(this.controller).build();
 		mvc.perform(MockMvcRequestBuilders.get("/other/foo-bar.json")).andExpect(
-				MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON));
+				MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON_UTF8));
 	}
 
 	@Test
@@ -596,7 +689,7 @@ public class EnvironmentControllerTests {
 				.thenReturn(this.environment);
 		MockMvc mvc = MockMvcBuilders.standaloneSetup(this.controller).build();
 		mvc.perform(MockMvcRequestBuilders.get("/foo-bar.json")).andExpect(
-				MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON));
+				MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON_UTF8));
 	}
 
 	@Test
@@ -606,8 +699,72 @@ public class EnvironmentControllerTests {
 		MockMvc mvc = MockMvcBuilders.standaloneSetup(this.controller).build();
 		mvc.perform(MockMvcRequestBuilders.get("/other/foo-bar-foo2-bar2-spam.json"))
 				.andExpect(MockMvcResultMatchers.content()
-						.contentType(MediaType.APPLICATION_JSON));
+						.contentType(MediaType.APPLICATION_JSON_UTF8));
+
+	}
+
+	@Test
+	public void nonLatinCharactersInUtf8() throws Exception {
+		this.environment.add(new PropertySource("one", Collections.singletonMap("a", "\u4e2d\u6587 \u20ac")));
+		Mockito.when(this.repository.findOne("foo", "bar", null))
+				.thenReturn(this.environment);
+		MockMvc mvc = MockMvcBuilders.standaloneSetup(this.controller).build();
+		byte[] body = mvc.perform(MockMvcRequestBuilders.get("/foo-bar.properties"))
+				.andExpect(MockMvcResultMatchers.content().contentType(TEXT_PLAIN_UTF8))
+				.andReturn().getResponse().getContentAsByteArray();
+		assertEquals("a: \u4e2d\u6587 \u20ac", new String(body, StandardCharsets.UTF_8));
+	}
 
+	@Test
+	public void cachedResponse() throws Exception {
+		RenderedResponseCache cache = new RenderedResponseCache(10, 0, false);
+		this.controller.setResponseCache(cache);
+		this.environment.add(new PropertySource("one", Collections.singletonMap("a.b.c", "d")));
+		Mockito.when(this.repository.findOne("foo", "bar", null))
+				.thenReturn(this.environment);
+		MockMvc mvc = MockMvcBuilders.standaloneSetup(this.controller).build();
+		for (int i = 0; i < 2; i++) {
+			mvc.perform(MockMvcRequestBuilders.get("/foo-bar.properties"))
+					.andExpect(MockMvcResultMatchers.content()
+							.contentType(TEXT_PLAIN_UTF8))
+					.andExpect(MockMvcResultMatchers.content().string("a.b.c: d"));
+		}
+		assertEquals(1, cache.getCache().getHitCount());
+		// A different format is a different response
+		mvc.perform(MockMvcRequestBuilders.get("/foo-bar.yml"))
+				.andExpect(MockMvcResultMatchers.content().string("a:\n  b:\n    c: d\n"));
+		assertEquals(1, cache.getCache().getHitCount());
+		// So is a changed environment, even with the same version
+		Environment changed = new Environment("foo", "master");
+		changed.add(new PropertySource("one", Collections.singletonMap("a.b.c", "e")));
+		Mockito.when(this.repository.findOne("foo", "bar", null)).thenReturn(changed);
+		mvc.perform(MockMvcRequestBuilders.get("/foo-bar.properties"))
+				.andExpect(MockMvcResultMatchers.content().string("a.b.c: e"));
+		assertEquals(1, cache.getCache().getHitCount());
+	}
+
+	@Test
+	public void gzippedResponse() throws Exception {
+		this.controller.setResponseCache(new RenderedResponseCache(10, 0, true));
+		this.environment.add(new PropertySource("one", Collections.singletonMap("a", "b")));
+		Mockito.when(this.repository.findOne("foo", "bar", null))
+				.thenReturn(this.environment);
+		MockMvc mvc = MockMvcBuilders.standaloneSetup(this.controller).build();
+		byte[] body = mvc
+				.perform(MockMvcRequestBuilders.get("/foo-bar.json")
+						.header("Accept-Encoding", "gzip, deflate"))
+				.andExpect(MockMvcResultMatchers.header().string("Content-Encoding",
+						"gzip"))
+				.andExpect(MockMvcResultMatchers.header().string("Vary",
+						"Accept-Encoding"))
+				.andReturn().getResponse().getContentAsByteArray();
+		try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(body))) {
+			assertEquals("{\"a\":\"b\"}",
+					StreamUtils.copyToString(input, StandardCharsets.UTF_8));
+		}
+		mvc.perform(MockMvcRequestBuilders.get("/foo-bar.json"))
+				.andExpect(MockMvcResultMatchers.header().doesNotExist("Content-Encoding"))
+				.andExpect(MockMvcResultMatchers.content().string("{\"a\":\"b\"}"));
 	}
 
 }
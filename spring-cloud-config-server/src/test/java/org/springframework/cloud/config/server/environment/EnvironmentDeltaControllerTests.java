@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.environment;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.EnvironmentDelta;
+import org.springframework.cloud.config.environment.PropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class EnvironmentDeltaControllerTests {
+
+	private EnvironmentRepository repository = Mockito.mock(EnvironmentRepository.class);
+
+	private MockMvc mvc;
+
+	@Before
+	public void init() {
+		EnvironmentController controller = new EnvironmentController(this.repository);
+		this.mvc = MockMvcBuilders.standaloneSetup(controller,
+				new EnvironmentDeltaController(controller, 10)).build();
+	}
+
+	@Test
+	public void unknownVersion() throws Exception {
+		Mockito.when(this.repository.findOne("foo", "default", "master"))
+				.thenReturn(environment("v1", map("a", "1")));
+		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default/master")
+				.param("since", "v0"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.fromVersion").value("v0"))
+				.andExpect(MockMvcResultMatchers.jsonPath("$.version").value("v1"))
+				.andExpect(MockMvcResultMatchers.jsonPath("$.propertySources")
+						.doesNotExist())
+				.andExpect(MockMvcResultMatchers
+						.jsonPath("$.environment.propertySources[0].source.a")
+						.value("1"));
+	}
+
+	@Test
+	public void changedKeys() throws Exception {
+		Environment v1 = environment("v1", map("a", "1", "b", "2", "c", "3"));
+		Environment v2 = environment("v2", map("a", "1", "b", "changed", "d", "4"));
+		Mockito.when(this.repository.findOne("foo", "default", null)).thenReturn(v1);
+		this.mvc.perform(
+				MockMvcRequestBuilders.get("/foo/default").param("since", "v0"));
+		Mockito.when(this.repository.findOne("foo", "default", null)).thenReturn(v2);
+		String json = this.mvc
+				.perform(MockMvcRequestBuilders.get("/foo/default").param("since", "v1"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.environment").doesNotExist())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.fromVersion").value("v1"))
+				.andExpect(MockMvcResultMatchers.jsonPath("$.propertySources[0].name")
+						.value("one"))
+				.andExpect(MockMvcResultMatchers
+						.jsonPath("$.propertySources[0].added.d").value("4"))
+				.andExpect(MockMvcResultMatchers
+						.jsonPath("$.propertySources[0].changed.b").value("changed"))
+				.andExpect(MockMvcResultMatchers
+						.jsonPath("$.propertySources[0].changed.a").doesNotExist())
+				.andExpect(MockMvcResultMatchers
+						.jsonPath("$.propertySources[0].removed[0]").value("c"))
+				.andExpect(MockMvcResultMatchers.jsonPath("$.propertySources[1].name")
+						.value("two"))
+				.andExpect(MockMvcResultMatchers.jsonPath("$.propertySources[1].added")
+						.doesNotExist())
+				.andReturn().getResponse().getContentAsString();
+		EnvironmentDelta delta = new ObjectMapper().readValue(json,
+				EnvironmentDelta.class);
+		assertFalse(delta.isFull());
+		Environment applied = delta.apply(v1);
+		assertEquals("v2", applied.getVersion());
+		assertEquals(2, applied.getPropertySources().size());
+		assertEquals(v2.getPropertySources().get(0).getSource(),
+				applied.getPropertySources().get(0).getSource());
+		assertEquals(v2.getPropertySources().get(1).getSource(),
+				applied.getPropertySources().get(1).getSource());
+	}
+
+	@Test
+	public void plainRequestUnchanged() throws Exception {
+		Mockito.when(this.repository.findOne("foo", "default", null))
+				.thenReturn(environment("v1", map("a", "1")));
+		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.propertySources[0].source.a")
+						.value("1"));
+	}
+
+	private Environment environment(String version, Map<String, Object> values) {
+		Environment environment = new Environment("foo", new String[] { "default" },
+				"master", version, null);
+		environment.add(new PropertySource("one", values));
+		environment.add(new PropertySource("two", Collections.singletonMap("x", "y")));
+		return environment;
+	}
+
+	private static Map<String, Object> map(String... keysAndValues) {
+		Map<String, Object> map = new LinkedHashMap<>();
+		for (int i = 0; i < keysAndValues.length; i += 2) {
+			map.put(keysAndValues[i], keysAndValues[i + 1]);
+		}
+		return map;
+	}
+
+}
@@ -1,23 +1,40 @@
 package org.springframework.cloud.config.server.environment;
 
+import java.io.File;
 import java.lang.reflect.Field;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 
 import org.apache.http.client.HttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.junit.http.SimpleHttpServer;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.transport.HttpTransport;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
 import org.eclipse.jgit.transport.http.HttpConnection;
+import org.eclipse.jgit.transport.http.HttpConnectionFactory;
+import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import org.springframework.util.ReflectionUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class HttpClientConfigurableHttpConnectionFactoryTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private HttpClientConfigurableHttpConnectionFactory connectionFactory;
 
     @Before
@@ -25,6 +42,11 @@ public class HttpClientConfigurableHttpConnectionFactoryTest {
         connectionFactory = new HttpClientConfigurableHttpConnectionFactory();
     }
 
+    @After
+    public void tearDown() throws Exception {
+        connectionFactory.destroy();
+    }
+
     @Test
     public void noConfigAdded() throws Exception {
         HttpConnection actual = connectionFactory.create(new URL("http://localhost/test.git"));
@@ -165,6 +187,84 @@ public class HttpClientConfigurableHttpConnectionFactoryTest {
         assertThat(actualHttpClientBuilder).isSameAs(expectedHttpClientBuilder);
     }
 
+    @Test
+    public void sameClientReused() throws Exception {
+        MultipleJGitEnvironmentProperties properties = new MultipleJGitEnvironmentProperties();
+        properties.setUri("http://localhost/{placeholder}-test.git");
+        connectionFactory.addConfiguration(properties);
+
+        HttpClient first = getActualHttpClient(connectionFactory.create(new URL("http://localhost/value-test.git/info/refs")));
+        HttpClient second = getActualHttpClient(connectionFactory.create(new URL("http://localhost/value-test.git/git-upload-pack")));
+        HttpClient other = getActualHttpClient(connectionFactory.create(new URL("http://localhost/other-test.git/info/refs")));
+
+        assertThat(second).isSameAs(first);
+        assertThat(other).isSameAs(first);
+    }
+
+    @Test
+    public void sameDefaultClientReused() throws Exception {
+        HttpClient first = getActualHttpClient(connectionFactory.create(new URL("http://localhost/test.git")));
+        HttpClient second = getActualHttpClient(connectionFactory.create(new URL("http://localhost/test.git")));
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void clientReplacedWithConfiguration() throws Exception {
+        String url = "http://localhost/test.git";
+        MultipleJGitEnvironmentProperties properties = new MultipleJGitEnvironmentProperties();
+        properties.setUri(url);
+        connectionFactory.addConfiguration(properties);
+        HttpClient first = getActualHttpClient(connectionFactory.create(new URL(url)));
+
+        properties.setHttpPoolSize(5);
+        connectionFactory.addConfiguration(properties);
+        HttpClient second = getActualHttpClient(connectionFactory.create(new URL(url)));
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(getActualHttpClientBuilder(connectionFactory.create(new URL(url))))
+                .isSameAs(connectionFactory.httpClientBuildersByUri.get(url));
+    }
+
+    @Test(timeout = 60000)
+    public void unauthorizedResponsesReleaseConnections() throws Exception {
+        SimpleHttpServer server = new SimpleHttpServer(new FileRepository(new File(
+                getClass().getResource("/test1-config-repo/git").toURI())));
+        server.start();
+        HttpConnectionFactory previous = HttpTransport.getConnectionFactory();
+        try {
+            String uri = server.getUri().toString();
+            MultipleJGitEnvironmentProperties properties = new MultipleJGitEnvironmentProperties();
+            properties.setUri(uri);
+            connectionFactory.addConfiguration(properties);
+            HttpTransport.setConnectionFactory(connectionFactory);
+            int fetches = properties.getHttpPoolSize() + 5;
+
+            // Each request is first answered with a 401, then retried with the credentials
+            for (int i = 0; i < fetches; i++) {
+                Git.cloneRepository().setURI(uri).setDirectory(folder.newFolder())
+                        .setCredentialsProvider(credentials("letmein")).call().close();
+            }
+            for (int i = 0; i < fetches; i++) {
+                assertThatThrownBy(() -> lsRemote(uri, "wrong"))
+                        .isInstanceOf(TransportException.class);
+            }
+        }
+        finally {
+            HttpTransport.setConnectionFactory(previous);
+            server.stop();
+        }
+    }
+
+    private static Collection<Ref> lsRemote(String uri, String password) throws Exception {
+        return Git.lsRemoteRepository().setRemote(uri)
+                .setCredentialsProvider(credentials(password)).call();
+    }
+
+    private static UsernamePasswordCredentialsProvider credentials(String password) {
+        return new UsernamePasswordCredentialsProvider("agitter", password);
+    }
+
     private HttpClient getActualHttpClient(HttpConnection actualConnection) {
         Field clientField = ReflectionUtils.findField(actualConnection.getClass(), "client");
         ReflectionUtils.makeAccessible(clientField);
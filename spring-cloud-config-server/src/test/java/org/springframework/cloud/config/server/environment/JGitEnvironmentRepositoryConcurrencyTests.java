@@ -17,11 +17,17 @@
 package org.springframework.cloud.config.server.environment;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 
 import org.eclipse.jgit.util.FileUtils;
 import org.junit.After;
@@ -35,13 +41,21 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.cloud.config.environment.Environment;
 import org.springframework.cloud.config.server.config.ConfigServerProperties;
 import org.springframework.cloud.config.server.config.EnvironmentRepositoryConfiguration;
+import org.springframework.cloud.config.server.resource.GenericResourceRepository;
 import org.springframework.cloud.config.server.test.ConfigServerTestUtils;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.util.ResourceUtils;
+import org.springframework.util.StreamUtils;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 
 /**
  * @author Dave Syer
@@ -49,10 +63,16 @@ import static org.junit.Assert.assertEquals;
  */
 public class JGitEnvironmentRepositoryConcurrencyTests {
 
+	private static final int THREADS = 4;
+
 	private ConfigurableApplicationContext context;
 
 	private File basedir = new File("target/config");
 
+	private volatile CyclicBarrier barrier;
+
+	private ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
 	@Before
 	public void init() throws Exception {
 		if (this.basedir.exists()) {
@@ -66,6 +86,7 @@ public class JGitEnvironmentRepositoryConcurrencyTests {
 		if (this.context != null) {
 			this.context.close();
 		}
+		this.executor.shutdownNow();
 	}
 
 	@Test
@@ -96,6 +117,122 @@ public class JGitEnvironmentRepositoryConcurrencyTests {
 		assertEquals("master", environment.getLabel());
 	}
 
+	@Test
+	public void readersShareWorkingCopy() throws Exception {
+		JGitEnvironmentRepository repository = barrierRepository();
+		Environment expected = repository.findOne("bar", "staging", "master");
+		this.barrier = new CyclicBarrier(THREADS);
+		List<Future<Environment>> results = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			results.add(this.executor.submit(
+					() -> repository.findOne("bar", "staging", "master")));
+		}
+		for (Future<Environment> result : results) {
+			Environment environment = result.get(30, TimeUnit.SECONDS);
+			assertEquals(expected.getVersion(), environment.getVersion());
+			assertEquals(expected.getPropertySources().get(0).getSource(),
+					environment.getPropertySources().get(0).getSource());
+		}
+	}
+
+	@Test
+	public void labelsSwitchedUnderReaders() throws Exception {
+		JGitEnvironmentRepository repository = barrierRepository();
+		String[] labels = { "master", "raw" };
+		Map<String, Environment> expected = new HashMap<>();
+		Map<String, String> content = new HashMap<>();
+		GenericResourceRepository resources = new GenericResourceRepository(
+				repository);
+		resources.setResourceLoader(new DefaultResourceLoader());
+		for (String label : labels) {
+			expected.put(label, repository.findOne("bar", "staging", label));
+			content.put(label, read(resources.findOne("bar", "staging", label,
+					"application.yml")));
+		}
+		assertNotEquals(expected.get("master").getVersion(),
+				expected.get("raw").getVersion());
+		List<Future<?>> results = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			int offset = i;
+			results.add(this.executor.submit(() -> {
+				for (int j = 0; j < 10; j++) {
+					String label = labels[(offset + j) % labels.length];
+					Environment environment = repository.findOne("bar", "staging",
+							label);
+					assertEquals(expected.get(label).getVersion(),
+							environment.getVersion());
+					assertEquals(expected.get(label).getPropertySources().size(),
+							environment.getPropertySources().size());
+					for (int k = 0; k < environment.getPropertySources().size(); k++) {
+						assertEquals(
+								expected.get(label).getPropertySources().get(k)
+										.getSource(),
+								environment.getPropertySources().get(k).getSource());
+					}
+					assertEquals(content.get(label), read(resources.findOne("bar",
+							"staging", label, "application.yml")));
+				}
+				return null;
+			}));
+		}
+		for (Future<?> result : results) {
+			result.get(60, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void backgroundFetchWaitsForReaders() throws Exception {
+		JGitEnvironmentRepository repository = barrierRepository();
+		repository.findOne("bar", "staging", "master");
+		long fetches = repository.getFetchCount();
+		Lock lock = repository.getWorkingCopyLock().readLock();
+		lock.lock();
+		Future<?> fetch;
+		try {
+			fetch = this.executor.submit(repository::backgroundFetch);
+			Thread.sleep(200L);
+			assertFalse(fetch.isDone());
+			assertEquals(fetches, repository.getFetchCount());
+		}
+		finally {
+			lock.unlock();
+		}
+		fetch.get(30, TimeUnit.SECONDS);
+		assertEquals(fetches + 1, repository.getFetchCount());
+	}
+
+	private JGitEnvironmentRepository barrierRepository() throws Exception {
+		String uri = ConfigServerTestUtils.prepareLocalRepo();
+		JGitEnvironmentRepository repository = new JGitEnvironmentRepository(
+				new StandardEnvironment(), new JGitEnvironmentProperties()) {
+			@Override
+			protected Environment doFindOne(String application, String profile,
+					String label, Locations locations) {
+				CyclicBarrier barrier = JGitEnvironmentRepositoryConcurrencyTests.this.barrier;
+				if (barrier != null) {
+					try {
+						// Only passes if all the readers are in here at the same time
+						barrier.await(10, TimeUnit.SECONDS);
+					}
+					catch (Exception e) {
+						throw new IllegalStateException("Readers were serialized", e);
+					}
+				}
+				return super.doFindOne(application, profile, label, locations);
+			}
+		};
+		// Clone (rather than use the source repository directly) and do not fetch again
+		repository.setUri(ResourceUtils.getFile(uri).getAbsolutePath());
+		repository.setBasedir(this.basedir);
+		repository.setRefreshRate(3600);
+		return repository;
+	}
+
+	private String read(Resource resource) throws Exception {
+		return StreamUtils.copyToString(resource.getInputStream(),
+				StandardCharsets.UTF_8);
+	}
+
 	@Configuration
 	@EnableConfigurationProperties(ConfigServerProperties.class)
 	@Import({ PropertyPlaceholderAutoConfiguration.class,
@@ -25,9 +25,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.eclipse.jgit.api.CheckoutCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ResetCommand.ResetType;
@@ -36,6 +39,7 @@ import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
 import org.eclipse.jgit.util.FileUtils;
 import org.hamcrest.Matchers;
 import org.junit.After;
@@ -51,6 +55,7 @@ import org.springframework.cloud.config.environment.Environment;
 import org.springframework.cloud.config.server.config.ConfigServerProperties;
 import org.springframework.cloud.config.server.config.EnvironmentRepositoryConfiguration;
 import org.springframework.cloud.config.server.test.ConfigServerTestUtils;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -127,6 +132,100 @@ public class JGitEnvironmentRepositoryIntegrationTests {
 		assertEquals("foo", environment.getPropertySources().get(0).getSource().get("foo"));
 	}
 
+	@Test
+	public void pullWithEnvironmentCache() throws Exception {
+		ConfigServerTestUtils.prepareLocalRepo();
+		String uri = ConfigServerTestUtils.copyLocalRepo("config-copy");
+		this.context = new SpringApplicationBuilder(TestConfiguration.class).web(WebApplicationType.NONE)
+				.run("--spring.cloud.config.server.git.uri=" + uri,
+						"--spring.cloud.config.server.git.environmentCacheSize=10");
+		JGitEnvironmentRepository repository = this.context.getBean(JGitEnvironmentRepository.class);
+		repository.findOne("bar", "staging", "master");
+		Environment environment = repository.findOne("bar", "staging", "master");
+		assertEquals("bar", environment.getPropertySources().get(0).getSource().get("foo"));
+		assertEquals(1, repository.getEnvironmentCache().getHitCount());
+		assertEquals(1, repository.getEnvironmentCache().size());
+		Git git = Git.open(ResourceUtils.getFile(uri).getAbsoluteFile());
+		git.checkout().setName("master").call();
+		StreamUtils.copy("foo: foo", Charset.defaultCharset(),
+				new FileOutputStream(ResourceUtils.getFile(uri + "/bar.properties")));
+		git.add().addFilepattern("bar.properties").call();
+		git.commit().setMessage("Updated for pull").call();
+		environment = repository.findOne("bar", "staging", "master");
+		assertEquals("foo", environment.getPropertySources().get(0).getSource().get("foo"));
+		// The entry for the old commit was evicted when the label moved on
+		assertEquals(1, repository.getEnvironmentCache().size());
+		assertEquals(2, repository.getEnvironmentCache().getMissCount());
+	}
+
+	@Test
+	public void pullWithBackgroundFetch() throws Exception {
+		ConfigServerTestUtils.prepareLocalRepo();
+		String uri = ConfigServerTestUtils.copyLocalRepo("config-copy");
+		File remote = ResourceUtils.getFile(uri).getAbsoluteFile();
+		this.context = new SpringApplicationBuilder(TestConfiguration.class).web(WebApplicationType.NONE)
+				.run("--spring.cloud.config.server.git.uri=" + remote.getPath(),
+						"--spring.cloud.config.server.git.backgroundFetchInterval=3600");
+		JGitEnvironmentRepository repository = this.context.getBean(JGitEnvironmentRepository.class);
+		List<RepositoryChangeEvent> changes = new ArrayList<>();
+		this.context.addApplicationListener((ApplicationListener<RepositoryChangeEvent>) changes::add);
+		Environment environment = repository.findOne("bar", "staging", "master");
+		assertEquals("bar", environment.getPropertySources().get(0).getSource().get("foo"));
+		Git git = Git.open(remote);
+		git.checkout().setName("master").call();
+		StreamUtils.copy("foo: foo", Charset.defaultCharset(),
+				new FileOutputStream(new File(remote, "bar.properties")));
+		git.add().addFilepattern("bar.properties").call();
+		git.commit().setMessage("Updated for pull").call();
+		// Requests only read what was fetched last
+		environment = repository.findOne("bar", "staging", "master");
+		assertEquals("bar", environment.getPropertySources().get(0).getSource().get("foo"));
+		assertEquals(0, repository.getFetchCount());
+		repository.backgroundFetch();
+		assertEquals(1, repository.getFetchCount());
+		// The watched environments are checked for the fetched change
+		assertEquals(1, changes.size());
+		assertTrue(changes.get(0).affects("bar"));
+		environment = repository.findOne("bar", "staging", "master");
+		assertEquals("foo", environment.getPropertySources().get(0).getSource().get("foo"));
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		this.context.getBean(JGitFetchMetrics.class).bindTo(registry);
+		assertEquals(1, registry.get("config.server.git.fetch").functionTimer().count(), 0);
+		assertTrue(registry.get("config.server.git.fetch.staleness").gauge().value() >= 0);
+		// Nothing new
+		repository.backgroundFetch();
+		assertEquals(1, changes.size());
+	}
+
+	@Test
+	public void sharedWindowCache() throws Exception {
+		ConfigServerTestUtils.prepareLocalRepo();
+		String uri = ConfigServerTestUtils.copyLocalRepo("config-copy");
+		File remote = ResourceUtils.getFile(uri).getAbsoluteFile();
+		try {
+			this.context = new SpringApplicationBuilder(TestConfiguration.class)
+					.web(WebApplicationType.NONE)
+					.run("--spring.cloud.config.server.git.uri=" + remote.getPath(),
+							"--spring.cloud.config.server.git.noCheckout=true",
+							"--spring.cloud.config.server.git.window-cache.packed-git-limit=20971520",
+							"--spring.cloud.config.server.git.window-cache.packed-git-mmap=true");
+			JGitEnvironmentRepository repository = this.context
+					.getBean(JGitEnvironmentRepository.class);
+			Environment environment = repository.findOne("bar", "staging", "master");
+			assertEquals("bar", environment.getPropertySources().get(0).getSource().get("foo"));
+			SimpleMeterRegistry registry = new SimpleMeterRegistry();
+			this.context.getBean(JGitWindowCacheMetrics.class).bindTo(registry);
+			assertEquals(20971520, registry.get("config.server.git.window.cache.limit")
+					.gauge().value(), 0);
+			assertTrue(registry.get("config.server.git.window.cache.open.bytes").gauge()
+					.value() >= 0);
+		}
+		finally {
+			// The cache is global, so put the defaults back for the other tests
+			new WindowCacheConfig().install();
+		}
+	}
+
 	/**
 	 * Tests a special use case where the remote repository has been updated
 	 * with a forced push conflicting with the local repo of the Config Server.
@@ -58,17 +58,22 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.server.resource.GenericResourceRepository;
 import org.springframework.cloud.config.server.support.AwsCodeCommitCredentialProvider;
 import org.springframework.cloud.config.server.support.GitSkipSslValidationCredentialsProvider;
 import org.springframework.cloud.config.server.support.PassphraseCredentialsProvider;
 import org.springframework.cloud.config.server.test.ConfigServerTestUtils;
 import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.ResourceUtils;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
@@ -112,6 +117,16 @@ public class JGitEnvironmentRepositoryTests {
 		assertVersion(environment);
 	}
 
+	@Test
+	public void vanillaWithPropertySourceLoaderEngine() {
+		this.repository.setLoadingEngine(NativeEnvironmentProperties.LoadingEngine.PROPERTY_SOURCE_LOADER);
+		Environment environment = this.repository.findOne("bar", "staging", "master");
+		assertEquals(2, environment.getPropertySources().size());
+		assertEquals(this.repository.getUri() + "/bar.properties", environment.getPropertySources().get(0).getName());
+		assertEquals(this.repository.getUri() + "/application.yml", environment.getPropertySources().get(1).getName());
+		assertVersion(environment);
+	}
+
 	@Test
 	public void nested() throws IOException {
 		String uri = ConfigServerTestUtils.prepareLocalRepo("another-config-repo");
@@ -138,6 +153,161 @@ public class JGitEnvironmentRepositoryTests {
 		assertVersion(environment);
 	}
 
+	@Test
+	public void noCheckoutSameAsCheckout() {
+		for (NativeEnvironmentProperties.LoadingEngine engine : NativeEnvironmentProperties.LoadingEngine.values()) {
+			this.repository.setLoadingEngine(engine);
+			this.repository.setNoCheckout(false);
+			Environment expected = this.repository.findOne("bar", "staging", "master");
+			this.repository.setNoCheckout(true);
+			Environment actual = this.repository.findOne("bar", "staging", "master");
+			assertEquals(expected.getVersion(), actual.getVersion());
+			assertEquals(expected.getPropertySources().size(), actual.getPropertySources().size());
+			for (int i = 0; i < expected.getPropertySources().size(); i++) {
+				assertEquals(expected.getPropertySources().get(i).getName(),
+						actual.getPropertySources().get(i).getName());
+				assertEquals(expected.getPropertySources().get(i).getSource(),
+						actual.getPropertySources().get(i).getSource());
+			}
+		}
+	}
+
+	@Test
+	public void noCheckoutNestedPattern() throws IOException {
+		String uri = ConfigServerTestUtils.prepareLocalRepo("another-config-repo");
+		this.repository.setUri(uri);
+		this.repository.setNoCheckout(true);
+		this.repository.setSearchPaths(new String[] { "sub*" });
+		Environment environment = this.repository.findOne("bar", "staging", "master");
+		assertEquals(2, environment.getPropertySources().size());
+		assertEquals(this.repository.getUri() + "/sub/application.yml",
+				environment.getPropertySources().get(0).getName());
+		assertVersion(environment);
+	}
+
+	@Test
+	public void noCheckoutLeavesWorkingTreeAlone() throws Exception {
+		String branch;
+		try (Git git = Git.open(ResourceUtils.getFile(this.repository.getUri()))) {
+			branch = git.getRepository().getBranch();
+		}
+		this.repository.setNoCheckout(true);
+		Environment raw = this.repository.findOne("bar", "staging", "raw");
+		assertEquals(2, raw.getPropertySources().size());
+		assertEquals(this.repository.getUri() + "/bar.properties", raw.getPropertySources().get(0).getName());
+		Environment tag = this.repository.findOne("bar", "staging", "foo");
+		assertEquals(2, tag.getPropertySources().size());
+		Environment master = this.repository.findOne("bar", "staging", "master");
+		assertVersion(master);
+		assertFalse(raw.getVersion().equals(master.getVersion()));
+		try (Git git = Git.open(ResourceUtils.getFile(this.repository.getUri()))) {
+			assertEquals(branch, git.getRepository().getBranch());
+			assertTrue(git.status().call().isClean());
+		}
+	}
+
+	@Test
+	public void noCheckoutClone() throws Exception {
+		this.repository.setUri(ResourceUtils.getFile(this.repository.getUri()).getAbsolutePath());
+		this.repository.setBasedir(this.basedir);
+		this.repository.setNoCheckout(true);
+		Environment environment = this.repository.findOne("bar", "staging", "raw");
+		assertEquals(2, environment.getPropertySources().size());
+		assertEquals(this.repository.getUri() + "/bar.properties", environment.getPropertySources().get(0).getName());
+		assertVersion(environment);
+		assertFalse(new File(this.basedir, "bar.properties").exists());
+		Resource resource = new GenericResourceRepository(this.repository).findOne("bar",
+				"staging", "raw", "bar.properties");
+		assertTrue(resource.exists());
+		assertFalse(new File(this.basedir, "bar.properties").exists());
+	}
+
+	@Test
+	public void noCheckoutRepositoryClosedOnDestroy() throws Exception {
+		this.repository.setNoCheckout(true);
+		this.repository.findOne("bar", "staging", "master");
+		assertNotNull(ReflectionTestUtils.getField(this.repository, "repository"));
+		this.repository.destroy();
+		assertNull(ReflectionTestUtils.getField(this.repository, "repository"));
+		// Opened again by the next request
+		assertEquals(2, this.repository.findOne("bar", "staging", "master")
+				.getPropertySources().size());
+	}
+
+	@Test
+	public void noCheckoutPlaceholderInSearchPath() throws IOException {
+		String uri = ConfigServerTestUtils.prepareLocalRepo("another-config-repo");
+		this.repository.setUri(uri);
+		this.repository.setNoCheckout(true);
+		this.repository.setSearchPaths(new String[] { "{application}" });
+		Environment environment = this.repository.findOne("sub", "staging", "master");
+		assertEquals(1, environment.getPropertySources().size());
+		assertEquals(this.repository.getUri() + "/sub/application.yml",
+				environment.getPropertySources().get(0).getName());
+	}
+
+	@Test
+	public void branchesClone() throws Exception {
+		this.repository.setUri(ResourceUtils.getFile(this.repository.getUri()).getAbsolutePath());
+		this.repository.setBasedir(this.basedir);
+		this.repository.setBranches("master");
+		Environment environment = this.repository.findOne("bar", "staging", "master");
+		assertEquals(2, environment.getPropertySources().size());
+		assertVersion(environment);
+		assertTrue(new File(this.basedir, "bar.properties").exists());
+		try (Git git = Git.open(this.basedir)) {
+			assertNotNull(git.getRepository().exactRef("refs/remotes/origin/master"));
+			assertNull(git.getRepository().exactRef("refs/remotes/origin/raw"));
+		}
+		this.exception.expect(NoSuchLabelException.class);
+		this.repository.findOne("bar", "staging", "raw");
+	}
+
+	@Test
+	public void noCheckoutBranchesClone() throws Exception {
+		this.repository.setUri(ResourceUtils.getFile(this.repository.getUri()).getAbsolutePath());
+		this.repository.setBasedir(this.basedir);
+		this.repository.setNoCheckout(true);
+		this.repository.setBranches("ra*");
+		Environment environment = this.repository.findOne("bar", "staging", "raw");
+		assertEquals(2, environment.getPropertySources().size());
+		assertFalse(new File(this.basedir, "bar.properties").exists());
+		try (Git git = Git.open(this.basedir)) {
+			assertNull(git.getRepository().exactRef("refs/remotes/origin/master"));
+		}
+		this.exception.expect(NoSuchLabelException.class);
+		this.repository.findOne("bar", "staging", "master");
+	}
+
+	@Test
+	public void defaultLabelNotInBranches() throws Exception {
+		this.repository.setUri(ResourceUtils.getFile(this.repository.getUri()).getAbsolutePath());
+		this.repository.setBasedir(this.basedir);
+		this.repository.setBranches("ra*");
+		this.exception.expect(IllegalStateException.class);
+		this.exception.expectMessage("default label master");
+		this.repository.afterPropertiesSet();
+	}
+
+	@Test
+	public void defaultLabelInBranchPattern() throws Exception {
+		String uri = this.repository.getUri();
+		this.repository.setUri(ResourceUtils.getFile(uri).getAbsolutePath());
+		this.repository.setBasedir(this.basedir);
+		this.repository.setBranches("ra*", "mas*");
+		this.repository.afterPropertiesSet();
+		// A file: repository is read in place, with all its branches
+		this.repository.setUri(uri);
+		this.repository.setBranches("ra*");
+		this.repository.afterPropertiesSet();
+	}
+
+	@Test(expected = NoSuchLabelException.class)
+	public void noCheckoutMissingLabel() {
+		this.repository.setNoCheckout(true);
+		this.repository.findOne("bar", "staging", "missing");
+	}
+
 	private void assertVersion(Environment environment) {
 		String version = environment.getVersion();
 		assertNotNull("version was null", version);
@@ -27,7 +27,6 @@ import org.springframework.cloud.config.server.environment.MultipleJGitEnvironme
 import org.springframework.cloud.config.server.environment.SearchPathLocator.Locations;
 import org.springframework.cloud.config.server.test.ConfigServerTestUtils;
 import org.springframework.core.env.StandardEnvironment;
-import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.util.StringUtils;
 
 import static org.hamcrest.CoreMatchers.containsString;
@@ -149,11 +148,8 @@ public class MultipleJGitEnvironmentProfilePlaceholderRepositoryTests {
 				"test2-config-repo", "missing-config-repo" });
 	}
 
-	@SuppressWarnings("unchecked")
 	private JGitEnvironmentRepository getRepository(String uri) {
-		Map<String, JGitEnvironmentRepository> repos = (Map<String, JGitEnvironmentRepository>) ReflectionTestUtils
-				.getField(repository, "placeholders");
-		return repos.get(uri);
+		return this.repository.getPlaceholders().getRepositories().get(uri);
 	}
 
 	private void assertVersion(Environment environment) {
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.environment;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.server.environment.MultipleJGitEnvironmentRepository.PatternMatchingJGitEnvironmentRepository;
+import org.springframework.core.env.StandardEnvironment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MultipleJGitEnvironmentRepositoryInitializationTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+	private MultipleJGitEnvironmentRepository repository;
+
+	@Before
+	public void init() throws Exception {
+		this.repository = new MultipleJGitEnvironmentRepository(new StandardEnvironment(),
+				new MultipleJGitEnvironmentProperties());
+		this.repository.setUri("https://example.com/config");
+		this.repository.setBasedir(this.folder.newFolder("config"));
+		Map<String, PatternMatchingJGitEnvironmentRepository> repos = new LinkedHashMap<>();
+		repos.put("one", createRepository("one", false));
+		repos.put("two", createRepository("two", true));
+		repos.put("three", createRepository("three", false));
+		this.repository.setRepos(repos);
+	}
+
+	@After
+	public void close() throws Exception {
+		this.release.countDown();
+		this.repository.destroy();
+	}
+
+	@Test
+	public void initializesInBackground() throws Exception {
+		this.repository.setCloneOnStartThreads(3);
+		this.repository.afterPropertiesSet();
+		assertFalse(this.repository.isInitialized());
+		assertEquals(0, this.repository.getInitializedRepositoryCount());
+		this.release.countDown();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!this.repository.isInitialized()
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(this.repository.isInitialized());
+		assertEquals(Collections.singleton("two"),
+				this.repository.getFailedRepositories().keySet());
+		assertEquals(3, this.threads.size());
+		for (String thread : this.threads) {
+			assertTrue(thread, thread.startsWith("jgit-clone-on-start-"));
+		}
+		JGitInitializationHealthIndicator indicator = new JGitInitializationHealthIndicator(
+				Collections.singletonList(this.repository));
+		Health health = indicator.health();
+		// The other repositories serve fine
+		assertEquals(Status.UP, health.getStatus());
+		assertEquals(3, health.getDetails().get("repositories"));
+		assertEquals(3, health.getDetails().get("initialized"));
+		assertEquals(Collections.singleton("two"),
+				((Map<?, ?>) health.getDetails().get("failed")).keySet());
+		// The first request tries again, and succeeds
+		this.repository.findOne("two", "default", "master");
+		assertTrue(this.repository.getFailedRepositories().isEmpty());
+		health = indicator.health();
+		assertEquals(Status.UP, health.getStatus());
+		assertFalse(health.getDetails().containsKey("failed"));
+	}
+
+	@Test
+	public void initializesOnStartupThreadByDefault() throws Exception {
+		this.release.countDown();
+		try {
+			this.repository.afterPropertiesSet();
+			fail("Expected the startup to fail");
+		}
+		catch (IllegalStateException e) {
+			// One after the other, the first failure stops the startup
+			assertEquals("Cannot clone", e.getMessage());
+		}
+		assertFalse(this.repository.isInitialized());
+		assertEquals(Collections.singleton(Thread.currentThread().getName()),
+				this.threads);
+	}
+
+	private PatternMatchingJGitEnvironmentRepository createRepository(String name,
+			boolean fail) {
+		PatternMatchingJGitEnvironmentRepository repo = new PatternMatchingJGitEnvironmentRepository() {
+			@Override
+			public void afterPropertiesSet() throws Exception {
+				threads.add(Thread.currentThread().getName());
+				release.await(5, TimeUnit.SECONDS);
+				if (fail) {
+					throw new IllegalStateException("Cannot clone");
+				}
+			}
+
+			@Override
+			public Environment findOne(String application, String profile,
+					String label) {
+				return new Environment(application, profile);
+			}
+		};
+		repo.setPattern(new String[] { name });
+		repo.setUri("https://example.com/" + System.identityHashCode(repo));
+		return repo;
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.environment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cloud.config.server.environment.MultipleJGitEnvironmentRepository.PatternMatchingJGitEnvironmentRepository;
+import org.springframework.core.env.StandardEnvironment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the pattern index of {@link MultipleJGitEnvironmentRepository} against a linear
+ * scan of the patterns, with many repositories.
+ */
+public class MultipleJGitEnvironmentRepositoryPatternIndexTests {
+
+	private static final int REPOS = 500;
+
+	private MultipleJGitEnvironmentRepository repository;
+
+	private final List<String[]> requests = new ArrayList<>();
+
+	@Before
+	public void init() {
+		this.repository = new MultipleJGitEnvironmentRepository(new StandardEnvironment(),
+				new MultipleJGitEnvironmentProperties());
+		Map<String, PatternMatchingJGitEnvironmentRepository> repos = new LinkedHashMap<>();
+		for (int i = 0; i < REPOS; i++) {
+			PatternMatchingJGitEnvironmentRepository repo = new PatternMatchingJGitEnvironmentRepository();
+			repo.setUri("https://example.com/config-" + i);
+			switch (i % 5) {
+			case 0:
+				repo.setPattern(new String[] { "app" + i });
+				break;
+			case 1:
+				repo.setPattern(new String[] { "team" + i + "-*" });
+				break;
+			case 2:
+				repo.setPattern(new String[] { "app" + i + "/prod*", "app" + i + "/staging" });
+				break;
+			case 3:
+				repo.setPattern(new String[] { "*-service" + i });
+				break;
+			default:
+				repo.setPattern(new String[] { "svc" + i + "*/dev" });
+			}
+			repos.put("repo" + i, repo);
+		}
+		this.repository.setRepos(repos);
+		for (int i = 0; i < REPOS; i++) {
+			this.requests.add(new String[] { "app" + i, "default" });
+			this.requests.add(new String[] { "app" + i, "dev,prod" });
+			this.requests.add(new String[] { "team" + i + "-billing", "default" });
+			this.requests.add(new String[] { "orders-service" + i, "cloud" });
+			this.requests.add(new String[] { "svc" + i + "x", "dev" });
+			this.requests.add(new String[] { "other" + i, "default" });
+		}
+	}
+
+	@Test
+	public void sameMatchesAsPatterns() {
+		int matched = 0;
+		for (String[] request : this.requests) {
+			List<PatternMatchingJGitEnvironmentRepository> expected = scan(request[0],
+					request[1]);
+			assertEquals(Arrays.toString(request), expected,
+					this.repository.getMatchingRepositories(request[0], request[1]));
+			matched += expected.isEmpty() ? 0 : 1;
+		}
+		assertTrue(matched >= REPOS);
+		assertEquals(0, this.repository.getMatchingRepositories("app1", null).size());
+	}
+
+	private List<PatternMatchingJGitEnvironmentRepository> scan(String application,
+			String profile) {
+		List<PatternMatchingJGitEnvironmentRepository> matching = new ArrayList<>();
+		for (PatternMatchingJGitEnvironmentRepository repo : this.repository.getRepos()
+				.values()) {
+			if (repo.matches(application, profile, null)) {
+				matching.add(repo);
+			}
+		}
+		return matching;
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.environment;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+import org.springframework.cloud.config.server.environment.NativeEnvironmentProperties.LoadingEngine;
+import org.springframework.core.env.StandardEnvironment;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compatibility checks that the {@link LoadingEngine#PROPERTY_SOURCE_LOADER} engine
+ * produces exactly the same environments as the SpringApplication based one.
+ */
+@RunWith(Parameterized.class)
+public class NativeEnvironmentRepositoryLoadingEngineTests {
+
+	private final String application;
+
+	private final String profile;
+
+	private final String label;
+
+	private final String[] searchLocations;
+
+	public NativeEnvironmentRepositoryLoadingEngineTests(String application,
+			String profile, String label, String[] searchLocations) {
+		this.application = application;
+		this.profile = profile;
+		this.label = label;
+		this.searchLocations = searchLocations;
+	}
+
+	@Parameters(name = "{0}/{1}/{2} in {3}")
+	public static Collection<Object[]> parameters() {
+		String[] root = { "classpath:/loading-engine/" };
+		String[] file = { "file:./src/test/resources/loading-engine/" };
+		String[] labelled = { "classpath:/loading-engine/{label}/",
+				"classpath:/loading-engine/" };
+		String[] test = { "classpath:/test" };
+		return Arrays.asList(new Object[][] {
+				{ "foo", "default", "master", root },
+				{ "foo", "dev", "master", root },
+				{ "foo", "prod", "master", root },
+				{ "foo", "prod,eu", "master", root },
+				{ "foo", "dev,prod", "master", root },
+				{ "foo", "prod,dev", "master", root },
+				{ "bar", "default", "master", root },
+				{ "bar", "eu", "master", root },
+				{ "foo,bar", "dev", "master", root },
+				{ "application", "dev", "master", root },
+				{ "foo", "dev", "master", file },
+				{ "foo", "dev", "dev", labelled },
+				{ "foo", "dev", "master", labelled },
+				{ "foo", "development", "master", test },
+				{ "foo", "development", "dev", test },
+				{ "missing", "default", "master", root } });
+	}
+
+	@Test
+	public void sameAsSpringApplication() {
+		Environment expected = findOne(LoadingEngine.SPRING_APPLICATION);
+		Environment actual = findOne(LoadingEngine.PROPERTY_SOURCE_LOADER);
+		assertEquals(expected.getName(), actual.getName());
+		assertArrayEquals(expected.getProfiles(), actual.getProfiles());
+		assertEquals(expected.getLabel(), actual.getLabel());
+		assertEquals(expected.getVersion(), actual.getVersion());
+		assertEquals(names(expected), names(actual));
+		for (int i = 0; i < expected.getPropertySources().size(); i++) {
+			assertEquals(expected.getPropertySources().get(i).getSource(),
+					actual.getPropertySources().get(i).getSource());
+		}
+	}
+
+	private Environment findOne(LoadingEngine engine) {
+		NativeEnvironmentProperties properties = new NativeEnvironmentProperties();
+		properties.setLoadingEngine(engine);
+		properties.setSearchLocations(this.searchLocations.clone());
+		properties.setVersion("myversion");
+		NativeEnvironmentRepository repository = new NativeEnvironmentRepository(
+				new StandardEnvironment(), properties);
+		return repository.findOne(this.application, this.profile, this.label);
+	}
+
+	private String names(Environment environment) {
+		StringBuilder names = new StringBuilder();
+		for (PropertySource source : environment.getPropertySources()) {
+			names.append(source.getName()).append("\n");
+		}
+		return names.toString();
+	}
+
+}
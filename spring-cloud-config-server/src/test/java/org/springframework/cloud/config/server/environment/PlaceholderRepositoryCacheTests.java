@@ -0,0 +1,169 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.environment;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PlaceholderRepositoryCacheTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Map<String, JGitEnvironmentRepository> created = new HashMap<>();
+
+	private final AtomicInteger refreshes = new AtomicInteger();
+
+	private PlaceholderRepositoryCache cache;
+
+	@After
+	public void close() throws Exception {
+		if (this.cache != null) {
+			this.cache.destroy();
+		}
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed() throws Exception {
+		this.cache = new PlaceholderRepositoryCache(2, 0, 0, 1, 0);
+		this.cache.get("a", this::create, "master");
+		this.cache.get("b", this::create, null);
+		this.cache.get("a", this::create, "master");
+		this.cache.get("c", this::create, "master");
+		assertEquals(2, this.cache.size());
+		assertEquals(1, this.cache.getEvictionCount());
+		assertTrue(this.cache.getRepositories().containsKey("a"));
+		assertFalse(this.cache.getRepositories().containsKey("b"));
+		Mockito.verify(this.created.get("b")).destroy();
+		Mockito.verify(this.created.get("b")).refresh("default");
+		Mockito.verify(this.created.get("a")).refresh("master");
+		assertEquals(3, this.refreshes.get());
+		// The clone of the evicted repository is deleted by the next cleanup
+		assertTrue(this.created.get("b").getBasedir().exists());
+		this.cache.cleanup();
+		assertFalse(this.created.get("b").getBasedir().exists());
+		assertTrue(this.created.get("a").getBasedir().exists());
+	}
+
+	@Test
+	public void evictsIdle() throws Exception {
+		this.cache = new PlaceholderRepositoryCache(0, 1, 0, 0, 0);
+		this.cache.get("a", this::create, "master");
+		Thread.sleep(1100);
+		this.cache.get("b", this::create, "master");
+		this.cache.cleanup();
+		assertEquals(1, this.cache.size());
+		assertTrue(this.cache.getRepositories().containsKey("b"));
+		// Cloned on the request thread
+		assertEquals(0, this.refreshes.get());
+	}
+
+	@Test
+	public void evictsOverDiskBudget() throws Exception {
+		this.cache = new PlaceholderRepositoryCache(0, 0, 1500, 1, 0);
+		write(this.cache.get("a", this::create, "master"), 1000);
+		write(this.cache.get("b", this::create, "master"), 1000);
+		this.cache.cleanup();
+		assertEquals(1, this.cache.size());
+		assertTrue(this.cache.getRepositories().containsKey("b"));
+		this.cache.cleanup();
+		assertEquals(1000, this.cache.getDiskBytes());
+		assertFalse(this.created.get("a").getBasedir().exists());
+	}
+
+	@Test
+	public void concurrentRequestsShareOneClone() throws Exception {
+		this.cache = new PlaceholderRepositoryCache(10, 0, 0, 1, 0);
+		CountDownLatch release = new CountDownLatch(1);
+		Function<String, JGitEnvironmentRepository> factory = uri -> {
+			JGitEnvironmentRepository repository = create(uri);
+			Mockito.doAnswer(invocation -> {
+				this.refreshes.incrementAndGet();
+				release.await(5, TimeUnit.SECONDS);
+				return "master";
+			}).when(repository).refresh("master");
+			return repository;
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<JGitEnvironmentRepository> first = executor
+					.submit(() -> this.cache.get("a", factory, "master"));
+			Future<JGitEnvironmentRepository> second = executor
+					.submit(() -> this.cache.get("a", factory, "master"));
+			Thread.sleep(100);
+			assertFalse(first.isDone());
+			assertFalse(second.isDone());
+			release.countDown();
+			assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+			assertEquals(1, this.refreshes.get());
+			assertEquals(1, this.created.size());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private JGitEnvironmentRepository create(String uri) {
+		JGitEnvironmentRepository repository = Mockito
+				.mock(JGitEnvironmentRepository.class);
+		File basedir;
+		try {
+			basedir = this.folder.newFolder(uri);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		Mockito.when(repository.getBasedir()).thenReturn(basedir);
+		Mockito.when(repository.getUri()).thenReturn(uri);
+		Mockito.when(repository.getDefaultLabel()).thenReturn("default");
+		Mockito.when(repository.refresh(Mockito.anyString())).thenAnswer(invocation -> {
+			this.refreshes.incrementAndGet();
+			return invocation.getArgument(0);
+		});
+		synchronized (this.created) {
+			this.created.put(uri, repository);
+		}
+		return repository;
+	}
+
+	private void write(JGitEnvironmentRepository repository, int size)
+			throws IOException {
+		Files.write(new File(repository.getBasedir(), "application.yml").toPath(),
+				new byte[size]);
+	}
+
+}
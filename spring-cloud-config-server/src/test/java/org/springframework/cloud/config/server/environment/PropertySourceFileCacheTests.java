@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.environment;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.server.environment.NativeEnvironmentProperties.LoadingEngine;
+import org.springframework.core.env.StandardEnvironment;
+
+import static org.junit.Assert.assertEquals;
+
+public class PropertySourceFileCacheTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private NativeEnvironmentRepository repository(String location) {
+		NativeEnvironmentProperties properties = new NativeEnvironmentProperties();
+		properties.setLoadingEngine(LoadingEngine.PROPERTY_SOURCE_LOADER);
+		properties.setFileCacheSize(10);
+		properties.setSearchLocations(new String[] { location });
+		return new NativeEnvironmentRepository(new StandardEnvironment(), properties);
+	}
+
+	@Test
+	public void sharedFilesParsedOnceForAllApplications() {
+		NativeEnvironmentRepository repository = repository(
+				"classpath:/loading-engine/");
+		Environment foo = repository.findOne("foo", "default", "master");
+		long hits = repository.getFileCache().getCache().getHitCount();
+		Environment bar = repository.findOne("bar", "default", "master");
+		// application.yml came from the cache, bar.yml and bar-extra.yml were parsed
+		assertEquals(hits + 1, repository.getFileCache().getCache().getHitCount());
+		assertEquals(
+				foo.getPropertySources().get(foo.getPropertySources().size() - 1)
+						.getSource(),
+				bar.getPropertySources().get(bar.getPropertySources().size() - 1)
+						.getSource());
+		Environment again = repository.findOne("foo", "default", "master");
+		assertEquals(foo.getPropertySources().get(0).getSource(),
+				again.getPropertySources().get(0).getSource());
+	}
+
+	@Test
+	public void changedFileParsedAgain() throws Exception {
+		File file = new File(this.folder.getRoot(), "foo.properties");
+		Files.write(file.toPath(), "foo=bar\n".getBytes(StandardCharsets.UTF_8));
+		NativeEnvironmentRepository repository = repository(
+				this.folder.getRoot().toURI().toString());
+		Environment environment = repository.findOne("foo", "default", "master");
+		assertEquals("bar", environment.getPropertySources().get(0).getSource()
+				.get("foo"));
+		Files.write(file.toPath(), "foo=spam\n".getBytes(StandardCharsets.UTF_8));
+		environment = repository.findOne("foo", "default", "master");
+		assertEquals("spam", environment.getPropertySources().get(0).getSource()
+				.get("foo"));
+		assertEquals(1, repository.getFileCache().getCache().size());
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.environment;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PropertySourceMergerTests {
+
+	@Test
+	public void higherPrecedenceWins() {
+		Environment environment = new Environment("foo", "default");
+		environment.add(new PropertySource("high", map("a", "1", "spring.profiles", "x")));
+		environment.add(new PropertySource("low", map("a", "2", "b", "3")));
+		Map<String, Object> merged = PropertySourceMerger.merge(environment);
+		assertEquals(map("a", "1", "b", "3"), merged);
+	}
+
+	@Test
+	public void listsReplacedAsAWhole() {
+		Environment environment = new Environment("foo", "default");
+		environment.add(new PropertySource("high", map("list[0]", "a", "other[0]", "x")));
+		environment.add(new PropertySource("low",
+				map("list[0]", "b", "list[1]", "c", "list[2].name", "d")));
+		Map<String, Object> merged = PropertySourceMerger.merge(environment);
+		assertEquals(map("list[0]", "a", "other[0]", "x"), merged);
+	}
+
+	@Test
+	public void sortedByKey() {
+		Environment environment = new Environment("foo", "default");
+		environment.add(new PropertySource("one", map("b", "1", "a[1]", "2", "a[0]", "3")));
+		assertEquals(Arrays.asList("a[0]", "a[1]", "b"),
+				Arrays.asList(PropertySourceMerger.merge(environment).keySet()
+						.toArray()));
+	}
+
+	@Test
+	public void nested() {
+		Map<String, Object> nested = PropertySourceMerger.nest(map("a.b[0].c", "1",
+				"a.b[1][1]", "2", "a.d", "3", "e", "4"));
+		assertEquals("{a={b=[{c=1}, [null, 2]], d=3}, e=4}", nested.toString());
+	}
+
+	@Test
+	public void invalidKeys() {
+		for (String key : new String[] { ".a", "a..b", "a.[0]", "a[]", "a[0", "a[x]",
+				"a[0]b", "a[99999999999]" }) {
+			try {
+				PropertySourceMerger.nest(Collections.singletonMap(key, "value"));
+				fail("Expected IllegalArgumentException for " + key);
+			}
+			catch (IllegalArgumentException e) {
+				assertEquals("Invalid key: " + key, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Large lists (merging and nesting them used to take time quadratic in their size)
+	 * are merged and nested like small ones.
+	 */
+	@Test
+	public void largeLists() {
+		int size = 10000;
+		Environment environment = new Environment("foo", "default");
+		Map<String, Object> high = new LinkedHashMap<>();
+		Map<String, Object> low = new LinkedHashMap<>();
+		for (int i = 0; i < size; i++) {
+			high.put("servers[" + i + "].host", "host" + i);
+			high.put("servers[" + i + "].port", i);
+			low.put("servers[" + i + "].host", "other" + i);
+			low.put("names[" + i + "]", "name" + i);
+			low.put("key" + i, i);
+		}
+		environment.add(new PropertySource("high", high));
+		environment.add(new PropertySource("low", low));
+		Map<String, Object> merged = PropertySourceMerger.merge(environment);
+		Map<String, Object> nested = PropertySourceMerger.nest(merged);
+		assertEquals(4 * size, merged.size());
+		List<?> servers = (List<?>) nested.get("servers");
+		assertEquals(size, servers.size());
+		assertEquals(map("host", "host7", "port", 7), servers.get(7));
+		assertEquals(size, ((List<?>) nested.get("names")).size());
+		assertEquals("name" + (size - 1), ((List<?>) nested.get("names")).get(size - 1));
+		assertEquals(size - 1, nested.get("key" + (size - 1)));
+	}
+
+	private static Map<String, Object> map(Object... keysAndValues) {
+		Map<String, Object> map = new LinkedHashMap<>();
+		for (int i = 0; i < keysAndValues.length; i += 2) {
+			map.put((String) keysAndValues[i], keysAndValues[i + 1]);
+		}
+		return map;
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.environment;
+
+import org.junit.Test;
+
+import org.springframework.cloud.config.server.environment.RenderedResponseCache.RenderedResponse;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RenderedResponseCacheTests {
+
+	@Test
+	public void keyedByRequestAndEtag() {
+		RenderedResponseCache cache = new RenderedResponseCache(10, 0, false);
+		byte[] body = "a: b".getBytes();
+		cache.put("foo", "default", null, "properties", true, "\"1\"", body);
+		RenderedResponse response = cache.get("foo", "default", null, "properties",
+				true, "\"1\"");
+		assertArrayEquals(body, response.getBody());
+		assertNull(response.getGzipped());
+		assertNull(cache.get("foo", "default", null, "properties", true, "\"2\""));
+		assertNull(cache.get("foo", "default", null, "properties", false, "\"1\""));
+		assertNull(cache.get("foo", "default", null, "yaml", true, "\"1\""));
+		assertNull(cache.get("foo", "default", "master", "properties", true, "\"1\""));
+	}
+
+	@Test
+	public void boundedByBytes() {
+		RenderedResponseCache cache = new RenderedResponseCache(10, 100, false);
+		for (int i = 0; i < 5; i++) {
+			cache.put("foo", "default", null, "properties", true, "\"" + i + "\"",
+					new byte[40]);
+		}
+		assertTrue(cache.getCache().weight() <= 100);
+		assertEquals(2, cache.getCache().size());
+		assertNotNull(cache.get("foo", "default", null, "properties", true, "\"4\""));
+	}
+
+	@Test
+	public void gzipped() {
+		RenderedResponseCache cache = new RenderedResponseCache(10, 0, true);
+		RenderedResponse response = cache.put("foo", "default", null, "json", true,
+				"\"1\"", new byte[1000]);
+		assertNotNull(response.getGzipped());
+		assertTrue(response.getGzipped().length < 1000);
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.ssh;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jcraft.jsch.Session;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.JschSession;
+import org.eclipse.jgit.transport.OpenSshConfig.Host;
+import org.eclipse.jgit.transport.RemoteSession;
+import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.util.FS;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PooledJschConfigSessionFactoryTests {
+
+	private final List<Session> opened = new ArrayList<>();
+
+	private final PooledJschConfigSessionFactory factory = new PooledJschConfigSessionFactory() {
+
+		@Override
+		RemoteSession openSession(URIish uri, CredentialsProvider credentialsProvider,
+				FS fs, int tms) {
+			Session session = Mockito.mock(Session.class);
+			when(session.isConnected()).thenReturn(true);
+			opened.add(session);
+			return new JschSession(session, uri);
+		}
+
+		@Override
+		protected void configure(Host hc, Session session) {
+		}
+
+	};
+
+	@Test
+	public void reusesReleasedSession() throws Exception {
+		RemoteSession first = this.factory.getSession(
+				new URIish("ssh://git@example.com/one.git"), null, FS.DETECTED, 0);
+		first.disconnect();
+		assertEquals(1, this.factory.getIdleSessionCount());
+		RemoteSession second = this.factory.getSession(
+				new URIish("ssh://git@example.com/two.git"), null, FS.DETECTED, 0);
+		assertTrue(second instanceof JschSession);
+		assertEquals(1, this.opened.size());
+		assertEquals(0, this.factory.getIdleSessionCount());
+		second.disconnect();
+		Mockito.verify(this.opened.get(0), Mockito.never()).disconnect();
+	}
+
+	@Test
+	public void sessionUsedByOneFetchAtATime() throws Exception {
+		URIish uri = new URIish("ssh://git@example.com/one.git");
+		RemoteSession first = this.factory.getSession(uri, null, FS.DETECTED, 0);
+		RemoteSession second = this.factory.getSession(uri, null, FS.DETECTED, 0);
+		assertEquals(2, this.opened.size());
+		first.disconnect();
+		second.disconnect();
+		assertEquals(2, this.factory.getIdleSessionCount());
+	}
+
+	@Test
+	public void separateSessionsPerUserAndHost() throws Exception {
+		this.factory.getSession(new URIish("ssh://git@example.com/one.git"), null,
+				FS.DETECTED, 0).disconnect();
+		this.factory.getSession(new URIish("ssh://other@example.com/one.git"), null,
+				FS.DETECTED, 0).disconnect();
+		this.factory.getSession(new URIish("ssh://git@example.org/one.git"), null,
+				FS.DETECTED, 0).disconnect();
+		assertEquals(3, this.opened.size());
+	}
+
+	@Test
+	public void closedSessionNotReused() throws Exception {
+		URIish uri = new URIish("ssh://git@example.com/one.git");
+		this.factory.getSession(uri, null, FS.DETECTED, 0).disconnect();
+		when(this.opened.get(0).isConnected()).thenReturn(false);
+		this.factory.getSession(uri, null, FS.DETECTED, 0);
+		assertEquals(2, this.opened.size());
+		verify(this.opened.get(0)).disconnect();
+	}
+
+	@Test
+	public void disconnectsIdleSessions() throws Exception {
+		this.factory.getSession(new URIish("ssh://git@example.com/one.git"), null,
+				FS.DETECTED, 0).disconnect();
+		when(this.opened.get(0).isConnected()).thenReturn(false);
+		this.factory.disconnectIdle();
+		assertEquals(0, this.factory.getIdleSessionCount());
+		verify(this.opened.get(0)).disconnect();
+	}
+
+}
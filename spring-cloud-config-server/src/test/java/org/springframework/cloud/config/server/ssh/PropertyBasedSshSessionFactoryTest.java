@@ -17,9 +17,12 @@
 package org.springframework.cloud.config.server.ssh;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import com.jcraft.jsch.HostKey;
@@ -28,7 +31,9 @@ import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.Session;
 import org.eclipse.jgit.transport.OpenSshConfig.Host;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
@@ -38,7 +43,11 @@ import org.springframework.cloud.config.server.environment.JGitEnvironmentProper
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -55,6 +64,8 @@ public class PropertyBasedSshSessionFactoryTest {
 	private static final String HOST_KEY_ALGORITHM = "ecdsa-sha2-nistp256";
 	private static final String PRIVATE_KEY = getResourceAsString("/ssh/key");
 	private PropertyBasedSshSessionFactory factory;
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
 	@Mock
 	private Host hc;
 	@Mock
@@ -62,6 +73,8 @@ public class PropertyBasedSshSessionFactoryTest {
 	@Mock
 	private JSch jSch;
 	@Mock
+	private JSch otherJSch;
+	@Mock
 	private HostKeyRepository hostKeyRepository;
 	
 	@Test
@@ -117,6 +130,21 @@ public class PropertyBasedSshSessionFactoryTest {
 		verify(jSch).addIdentity("gitlab.example.local", PRIVATE_KEY.getBytes(), null, null);
 	}
 
+	@Test
+	public void privateKeyIsParsedOnce() throws Exception {
+		JGitEnvironmentProperties sshKey = new JGitEnvironmentProperties();
+		sshKey.setUri("git@gitlab.example.local:someorg/somerepo.git");
+		sshKey.setPrivateKey(PRIVATE_KEY);
+		sshKey.setKnownHostsFile("/ssh/known_hosts");
+		setupSessionFactory(sshKey);
+
+		factory.createSession(hc, null, SshUriPropertyProcessor.getHostname(sshKey.getUri()), 22, null);
+		factory.createSession(hc, null, SshUriPropertyProcessor.getHostname(sshKey.getUri()), 22, null);
+		verify(jSch).addIdentity("gitlab.example.local", PRIVATE_KEY.getBytes(), null, null);
+		verify(jSch).setKnownHosts("/ssh/known_hosts");
+		verify(jSch, times(2)).getSession(null, "gitlab.example.local", 22);
+	}
+
 	@Test
 	public void hostKeyIsUsed() throws Exception {
 		JGitEnvironmentProperties sshKey = new JGitEnvironmentProperties();
@@ -162,10 +190,58 @@ public class PropertyBasedSshSessionFactoryTest {
 		Assert.assertEquals("/ssh/known_hosts", captor.getValue());
 	}
 
+	@Test
+	public void privateKeyIsOnlyOfferedToItsHost() throws Exception {
+		JGitEnvironmentProperties sshKey = new JGitEnvironmentProperties();
+		sshKey.setUri("git@gitlab.example.local:someorg/somerepo.git");
+		sshKey.setPrivateKey(PRIVATE_KEY);
+		JGitEnvironmentProperties otherSshKey = new JGitEnvironmentProperties();
+		otherSshKey.setUri("git@github.example.local:someorg/somerepo.git");
+		otherSshKey.setPrivateKey(PRIVATE_KEY + "other");
+		Map<String, JGitEnvironmentProperties> sshKeysByHostname = new HashMap<>();
+		sshKeysByHostname.put("gitlab.example.local", sshKey);
+		sshKeysByHostname.put("github.example.local", otherSshKey);
+		Iterator<JSch> jSchs = Arrays.asList(jSch, otherJSch).iterator();
+		factory = new PropertyBasedSshSessionFactory(sshKeysByHostname, jSchs::next);
+
+		factory.createSession(hc, null, "gitlab.example.local", 22, null);
+		factory.createSession(hc, null, "github.example.local", 22, null);
+		factory.createSession(hc, null, "gitlab.example.local", 22, null);
+
+		verify(jSch).addIdentity("gitlab.example.local", PRIVATE_KEY.getBytes(), null, null);
+		verify(jSch, never()).addIdentity(eq("github.example.local"), any(byte[].class), any(), any());
+		verify(jSch, times(2)).getSession(null, "gitlab.example.local", 22);
+		verify(otherJSch).addIdentity("github.example.local", (PRIVATE_KEY + "other").getBytes(), null, null);
+		verify(otherJSch, never()).addIdentity(eq("gitlab.example.local"), any(byte[].class), any(), any());
+		verify(otherJSch).getSession(null, "github.example.local", 22);
+	}
+
+	@Test
+	public void knownHostsFileIsReloadedWhenModified() throws Exception {
+		File knownHosts = folder.newFile("known_hosts");
+		JGitEnvironmentProperties sshKey = new JGitEnvironmentProperties();
+		sshKey.setUri("git@gitlab.example.local:someorg/somerepo.git");
+		sshKey.setHostKey(HOST_KEY);
+		sshKey.setPrivateKey(PRIVATE_KEY);
+		sshKey.setKnownHostsFile(knownHosts.getAbsolutePath());
+		setupSessionFactory(sshKey);
+
+		factory.createSession(hc, null, "gitlab.example.local", 22, null);
+		factory.createSession(hc, null, "gitlab.example.local", 22, null);
+		verify(jSch).setKnownHosts(knownHosts.getAbsolutePath());
+
+		Assert.assertTrue(knownHosts.setLastModified(knownHosts.lastModified() + 10000));
+		factory.createSession(hc, null, "gitlab.example.local", 22, null);
+		verify(jSch, times(2)).setKnownHosts(knownHosts.getAbsolutePath());
+		// The host key of the properties is added again to the reloaded known hosts
+		verify(hostKeyRepository, times(2)).add(any(HostKey.class), isNull());
+		verify(jSch).addIdentity("gitlab.example.local", PRIVATE_KEY.getBytes(), null, null);
+	}
+
 	private void setupSessionFactory(JGitEnvironmentProperties sshKey) {
 		Map<String, JGitEnvironmentProperties> sshKeysByHostname = new HashMap<>();
 		sshKeysByHostname.put(SshUriPropertyProcessor.getHostname(sshKey.getUri()), sshKey);
-		factory = new PropertyBasedSshSessionFactory(sshKeysByHostname, jSch) ;
+		factory = new PropertyBasedSshSessionFactory(sshKeysByHostname, () -> jSch) ;
 		when(hc.getHostName()).thenReturn(SshUriPropertyProcessor.getHostname(sshKey.getUri()));
 		when(jSch.getHostKeyRepository()).thenReturn(hostKeyRepository);
 	}
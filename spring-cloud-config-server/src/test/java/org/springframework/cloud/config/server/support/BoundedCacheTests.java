@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.support;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BoundedCacheTests {
+
+	@Test
+	public void hitsAndMisses() {
+		BoundedCache<String, String> cache = new BoundedCache<>(2);
+		assertNull(cache.get("foo"));
+		cache.put("foo", "bar");
+		assertEquals("bar", cache.get("foo"));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed() {
+		BoundedCache<String, String> cache = new BoundedCache<>(2);
+		cache.put("one", "1");
+		cache.put("two", "2");
+		cache.get("one");
+		cache.put("three", "3");
+		assertEquals(2, cache.size());
+		assertNull(cache.get("two"));
+		assertEquals("1", cache.get("one"));
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void evictsByWeight() {
+		BoundedCache<String, String> cache = new BoundedCache<>(10, 5,
+				(key, value) -> value.length());
+		cache.put("one", "123");
+		cache.put("two", "45");
+		assertEquals(5, cache.weight());
+		cache.put("three", "6");
+		assertEquals(3, cache.weight());
+		assertNull(cache.get("one"));
+		cache.put("four", "123456");
+		assertNull(cache.get("four"));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void invalidateIf() {
+		BoundedCache<String, String> cache = new BoundedCache<>(10);
+		cache.put("foo.1", "1");
+		cache.put("foo.2", "2");
+		cache.put("bar.1", "3");
+		cache.invalidateIf(key -> key.startsWith("foo"));
+		assertEquals(1, cache.size());
+		assertEquals("3", cache.get("bar.1"));
+	}
+
+}
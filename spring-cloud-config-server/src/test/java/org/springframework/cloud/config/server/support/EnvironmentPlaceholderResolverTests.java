@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.support;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class EnvironmentPlaceholderResolverTests {
+
+	private final Environment environment = new Environment("foo", "default");
+
+	public EnvironmentPlaceholderResolverTests() {
+		Map<String, Object> high = new LinkedHashMap<>();
+		high.put("foo", "bar");
+		high.put("nested", "${foo}-${number}");
+		high.put("name", "foo");
+		high.put("with:colon", "colon");
+		high.put("empty", "");
+		Map<String, Object> low = new LinkedHashMap<>();
+		low.put("foo", "lower");
+		low.put("number", 42);
+		low.put("only.low", "low");
+		low.put("circular", "${circular}");
+		this.environment.add(new PropertySource("high", high));
+		this.environment.add(new PropertySource("low", low));
+	}
+
+	@Test
+	public void sameAsStandardEnvironment() {
+		String[] texts = { "plain", "${foo}", "a ${foo} b ${only.low} c", "${number}",
+				"${nested}", "${missing}", "${missing:default}", "${missing:${foo}}",
+				"${${name}}", "${with:colon}", "${empty:x}", "\\${foo} ${foo}",
+				"${foo", "${foo} ${unbalanced{", "{${foo}}", "${a{b}c} ${foo}",
+				"$${foo}}", "line\n${foo}\n${missing}\n", "" };
+		EnvironmentPlaceholderResolver resolver = new EnvironmentPlaceholderResolver(
+				this.environment);
+		for (String text : texts) {
+			String expected = EnvironmentPropertySource.resolvePlaceholders(
+					EnvironmentPropertySource.prepareEnvironment(this.environment), text);
+			assertEquals(text, expected, resolver.resolvePlaceholders(text));
+			// Again, from the cached template
+			assertEquals(text, expected, resolver.resolvePlaceholders(text));
+		}
+	}
+
+	@Test
+	public void circularReference() {
+		try {
+			new EnvironmentPlaceholderResolver(this.environment)
+					.resolvePlaceholders("${circular}");
+			fail("Expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException e) {
+			assertEquals("Circular placeholder reference 'circular' in property definitions",
+					e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.support;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.server.environment.BatchEnvironmentController;
+import org.springframework.cloud.config.server.environment.EnvironmentController;
+import org.springframework.cloud.config.server.environment.EnvironmentRepository;
+import org.springframework.cloud.config.server.environment.EnvironmentWatch;
+import org.springframework.cloud.config.server.environment.VaultEnvironmentProperties;
+import org.springframework.cloud.config.server.environment.VaultEnvironmentRepository;
+import org.springframework.cloud.config.server.environment.VaultKvAccessStrategy.VaultResponse;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurationSupport;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class OffloadingRequestMappingHandlerAdapterTests {
+
+	private static final EnvironmentRepository repository = Mockito
+			.mock(EnvironmentRepository.class);
+
+	private static final RestTemplate rest = Mockito.mock(RestTemplate.class);
+
+	private static final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+	private AnnotationConfigWebApplicationContext context;
+
+	private MockMvc mvc;
+
+	private static volatile int maxRequests;
+
+	@Before
+	public void init() {
+		executor.setThreadNamePrefix("offloaded-");
+		executor.initialize();
+		start(1);
+	}
+
+	private void start(int permits) {
+		if (this.context != null) {
+			this.context.close();
+		}
+		maxRequests = permits;
+		this.context = new AnnotationConfigWebApplicationContext();
+		this.context.setServletContext(new MockServletContext());
+		this.context.register(TestConfiguration.class);
+		this.context.refresh();
+		this.mvc = MockMvcBuilders.webAppContextSetup(this.context).build();
+	}
+
+	@After
+	public void close() {
+		this.context.close();
+		executor.shutdown();
+		Mockito.reset(repository, rest);
+	}
+
+	@Test
+	public void busyWhenAllPermitsTaken() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicReference<String> thread = new AtomicReference<>();
+		Mockito.when(repository.findOne("foo", "default", null)).thenAnswer(invocation -> {
+			thread.set(Thread.currentThread().getName());
+			started.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			return new Environment("foo", "default");
+		});
+		MvcResult first = this.mvc.perform(MockMvcRequestBuilders.get("/foo/default"))
+				.andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		// The only permit is taken by the first request
+		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default"))
+				.andExpect(MockMvcResultMatchers.status().isServiceUnavailable());
+		release.countDown();
+		first.getAsyncResult(5000);
+		this.mvc.perform(MockMvcRequestBuilders.asyncDispatch(first))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.name").value("foo"));
+		assertTrue(thread.get().startsWith("offloaded-"));
+		assertEquals(1, ((OffloadingRequestMappingHandlerAdapter) this.context
+				.getBean(RequestMappingHandlerAdapter.class)).getAvailablePermits());
+	}
+
+	@Test
+	public void timedOutRequestsHoldPermitUntilHandlerReturns() throws Exception {
+		start(2);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Mockito.when(repository.findOne("foo", "default", null)).thenAnswer(invocation -> {
+			started.countDown();
+			// A fetch that does not stop when interrupted
+			while (true) {
+				try {
+					release.await();
+					return new Environment("foo", "default");
+				}
+				catch (InterruptedException e) {
+					// keep going
+				}
+			}
+		});
+		MvcResult running = this.mvc.perform(MockMvcRequestBuilders.get("/foo/default"))
+				.andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		// Waits for the only thread of the pool
+		MvcResult waiting = this.mvc.perform(MockMvcRequestBuilders.get("/foo/default"))
+				.andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+		OffloadingRequestMappingHandlerAdapter adapter = (OffloadingRequestMappingHandlerAdapter) this.context
+				.getBean(RequestMappingHandlerAdapter.class);
+		assertEquals(0, adapter.getAvailablePermits());
+		timeOut(running);
+		// The handler of the timed out request still runs
+		assertEquals(0, adapter.getAvailablePermits());
+		this.mvc.perform(MockMvcRequestBuilders.get("/foo/default"))
+				.andExpect(MockMvcResultMatchers.status().isServiceUnavailable());
+		timeOut(waiting);
+		// The handler of this one never started
+		assertEquals(1, adapter.getAvailablePermits());
+		release.countDown();
+		long end = System.currentTimeMillis() + 5000;
+		while (executor.getThreadPoolExecutor().getCompletedTaskCount() < 2
+				&& System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		assertEquals(2, executor.getThreadPoolExecutor().getCompletedTaskCount());
+		assertEquals(2, adapter.getAvailablePermits());
+		// The request that was over before its turn was not run
+		Mockito.verify(repository).findOne("foo", "default", null);
+	}
+
+	@Test
+	public void batchOffloaded() throws Exception {
+		AtomicReference<String> thread = new AtomicReference<>();
+		Mockito.when(repository.findOne("foo", "default", null)).thenAnswer(invocation -> {
+			thread.set(Thread.currentThread().getName());
+			return new Environment("foo", "default");
+		});
+		MvcResult result = this.mvc
+				.perform(MockMvcRequestBuilders.post("/batch")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("[{\"name\":\"foo\",\"profiles\":\"default\"}]"))
+				.andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+		result.getAsyncResult(5000);
+		this.mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].environment.name").value("foo"));
+		assertTrue(thread.get().startsWith("offloaded-"));
+	}
+
+	private void timeOut(MvcResult result) throws IOException {
+		MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest()
+				.getAsyncContext();
+		AsyncEvent event = new AsyncEvent(asyncContext);
+		for (AsyncListener listener : asyncContext.getListeners()) {
+			listener.onTimeout(event);
+		}
+		for (AsyncListener listener : asyncContext.getListeners()) {
+			listener.onComplete(event);
+		}
+	}
+
+	@Test
+	public void vaultReadsTokenOfOffloadedRequest() throws Exception {
+		AtomicReference<String> token = new AtomicReference<>();
+		VaultResponse response = Mockito.mock(VaultResponse.class);
+		Mockito.when(response.getData()).thenReturn("{\"foo\":\"bar\"}");
+		Mockito.when(rest.exchange(eq("http://127.0.0.1:8200/v1/secret/{key}"),
+				eq(HttpMethod.GET), any(HttpEntity.class), eq(VaultResponse.class),
+				anyString())).thenAnswer(invocation -> {
+					HttpEntity<?> entity = invocation.getArgument(2);
+					token.set(entity.getHeaders().getFirst("X-Vault-Token"));
+					return new ResponseEntity<>(response, HttpStatus.OK);
+				});
+		VaultEnvironmentRepository vault = this.context
+				.getBean(VaultEnvironmentRepository.class);
+		Mockito.when(repository.findOne("foo", "default", null))
+				.thenAnswer(invocation -> vault.findOne("foo", "default", null));
+		MvcResult result = this.mvc
+				.perform(MockMvcRequestBuilders.get("/foo/default")
+						.header("X-Config-Token", "mytoken"))
+				.andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+		result.getAsyncResult(5000);
+		this.mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.propertySources[0].source.foo")
+						.value("bar"));
+		assertEquals("mytoken", token.get());
+	}
+
+	@Configuration
+	protected static class TestConfiguration extends WebMvcConfigurationSupport {
+
+		@Bean
+		public EnvironmentController environmentController() {
+			return new EnvironmentController(repository);
+		}
+
+		@Bean
+		public BatchEnvironmentController batchEnvironmentController() {
+			return new BatchEnvironmentController(environmentController(), new ObjectMapper());
+		}
+
+		@Bean
+		public VaultEnvironmentRepository vaultEnvironmentRepository(
+				ObjectProvider<HttpServletRequest> request) {
+			// The request is injected the way the server does it, as the one bound to
+			// the current thread
+			return new VaultEnvironmentRepository(request, new EnvironmentWatch.Default(),
+					rest, new VaultEnvironmentProperties());
+		}
+
+		@Override
+		protected RequestMappingHandlerAdapter createRequestMappingHandlerAdapter() {
+			return new OffloadingRequestMappingHandlerAdapter(executor,
+					Arrays.asList(EnvironmentController.class, BatchEnvironmentController.class),
+					maxRequests);
+		}
+
+	}
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.config.server.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.server.environment.EnvironmentController;
+import org.springframework.cloud.config.server.environment.EnvironmentRepository;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurationSupport;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs offloaded requests that block on the repository (like a remote fetch) on virtual
+ * threads (Java 21 or later).
+ */
+public class VirtualThreadsTests {
+
+	private static final int REQUESTS = 50;
+
+	private static final EnvironmentRepository repository = Mockito
+			.mock(EnvironmentRepository.class);
+
+	private static ExecutorService executor;
+
+	private AnnotationConfigWebApplicationContext context;
+
+	@After
+	public void close() {
+		if (this.context != null) {
+			this.context.close();
+		}
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		Mockito.reset(repository);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void failsWithoutVirtualThreads() {
+		Assume.assumeFalse(VirtualThreads.isAvailable());
+		VirtualThreads.newVirtualThreadPerTaskExecutor();
+	}
+
+	@Test
+	public void blockedRequestsRunTogetherOnVirtualThreads() throws Exception {
+		Assume.assumeTrue(VirtualThreads.isAvailable());
+		executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+		this.context = new AnnotationConfigWebApplicationContext();
+		this.context.setServletContext(new MockServletContext());
+		this.context.register(TestConfiguration.class);
+		this.context.refresh();
+		MockMvc mvc = MockMvcBuilders.webAppContextSetup(this.context).build();
+		// Every request blocks until all of them are running, so none of them waits for
+		// a thread
+		CountDownLatch running = new CountDownLatch(REQUESTS);
+		AtomicInteger virtual = new AtomicInteger();
+		Mockito.when(repository.findOne("foo", "default", "master"))
+				.thenAnswer(invocation -> {
+					if (isVirtual(Thread.currentThread())) {
+						virtual.incrementAndGet();
+					}
+					running.countDown();
+					running.await(10, TimeUnit.SECONDS);
+					return new Environment("foo", "default");
+				});
+		List<MvcResult> results = new ArrayList<>();
+		for (int i = 0; i < REQUESTS; i++) {
+			results.add(mvc.perform(MockMvcRequestBuilders.get("/foo/default/master"))
+					.andExpect(MockMvcResultMatchers.request().asyncStarted())
+					.andReturn());
+		}
+		assertTrue(running.await(10, TimeUnit.SECONDS));
+		for (MvcResult result : results) {
+			result.getAsyncResult(5000);
+			mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+					.andExpect(MockMvcResultMatchers.status().isOk())
+					.andExpect(MockMvcResultMatchers.jsonPath("$.name").value("foo"));
+		}
+		assertEquals(REQUESTS, virtual.get());
+	}
+
+	private static boolean isVirtual(Thread thread) {
+		return (Boolean) ReflectionUtils.invokeMethod(
+				ReflectionUtils.findMethod(Thread.class, "isVirtual"), thread);
+	}
+
+	@Configuration
+	protected static class TestConfiguration extends WebMvcConfigurationSupport {
+
+		@Bean
+		public EnvironmentController environmentController() {
+			return new EnvironmentController(repository);
+		}
+
+		@Override
+		protected RequestMappingHandlerAdapter createRequestMappingHandlerAdapter() {
+			return new OffloadingRequestMappingHandlerAdapter(
+					new TaskExecutorAdapter(executor),
+					Collections.singleton(EnvironmentController.class), REQUESTS);
+		}
+
+	}
+
+}